@@ -0,0 +1,130 @@
+package calc;
+
+import java.math.BigDecimal;
+
+import item.CalcResult;
+
+/**
+ * 数式の計算に使用する数の種類と、その四則演算を表すインターフェースです。<br>
+ * {@link ArithmeticKernel}は演算のたびに計算結果をdoubleに戻しますが、このインターフェースを実装したクラスを使用すると、
+ * 計算の途中の値をdouble以外の型(BigDecimal等)のまま保持して計算できます。
+ * @param <T> 計算に使用する数の型
+ */
+public interface Arithmetic<T> {
+
+	/**
+	 * 計算に使用する数の種類を選択するのに使用します。
+	 */
+	enum Mode {
+
+		/**
+		 * BigDecimalで計算します。
+		 */
+		Decimal("10進数", BigDecimalArithmetic.getArithmetic()),
+
+		/**
+		 * longの固定小数点数で計算し、オーバーフローした場合のみBigDecimalで計算します。
+		 */
+		FixedPoint("固定小数点数", FixedPointArithmetic.getArithmetic()),
+
+		/**
+		 * 分数で計算し、割り算も丸めません。
+		 */
+		Rational("分数", RationalArithmetic.getArithmetic());
+
+		/**
+		 * 計算方法の名前
+		 */
+		private final String TITLE;
+
+		/**
+		 * 計算に使用する数の種類
+		 */
+		private final Arithmetic<?> ARITHMETIC;
+
+		/**
+		 * 列挙子を初期化します
+		 * @param title 計算方法の名前
+		 * @param arithmetic 計算に使用する数の種類
+		 */
+		private Mode(String title, Arithmetic<?> arithmetic) {
+			this.TITLE = title;
+			this.ARITHMETIC = arithmetic;
+		}
+
+		/**
+		 * 計算方法の名前を返します
+		 * @return 計算方法の名前
+		 */
+		public String getTitle() {
+			return this.TITLE;
+		}
+
+		/**
+		 * 計算に使用する数の種類を返します
+		 * @return 計算に使用する数の種類
+		 */
+		public Arithmetic<?> getArithmetic() {
+			return this.ARITHMETIC;
+		}
+
+	}
+
+	/**
+	 * 数式に入力された数字を、計算に使用する数に変換します。<br>
+	 * 解析済みの数式は変換した数を再利用するため、同じ数字に対しては常に同じ値を返し、返す値は不変である必要があります。
+	 * @param number 数式に入力された数字(入力された桁数のまま、誤差なく変換されています)
+	 * @return 計算に使用する数
+	 */
+	T valueOf(BigDecimal number);
+
+	/**
+	 * xとyを足した値を返します
+	 * @param x
+	 * @param y
+	 * @return 計算結果
+	 */
+	T plus(T x, T y);
+
+	/**
+	 * xからyを引いた値を返します
+	 * @param x
+	 * @param y
+	 * @return 計算結果
+	 */
+	T minus(T x, T y);
+
+	/**
+	 * xとyを掛けた値を返します
+	 * @param x
+	 * @param y
+	 * @return 計算結果
+	 */
+	T multiply(T x, T y);
+
+	/**
+	 * xからyを割った値を返します。
+	 * @param x
+	 * @param y
+	 * @throws ArithmeticException 0で割ろうとした場合
+	 * @return 計算結果
+	 */
+	T divide(T x, T y);
+
+	/**
+	 * 計算結果を{@link CalcResult}に変換します。
+	 * @param value 計算結果
+	 * @return 計算結果
+	 */
+	CalcResult toResult(T value);
+
+	/**
+	 * {@link #toResult(Object)}で変換した計算結果を、表示用の文字列に変換します。
+	 * @param result 計算結果
+	 * @return 計算結果を誤差なく表した文字列
+	 */
+	default String format(CalcResult result) {
+		return result.getDecimal().toPlainString();
+	}
+
+}
@@ -0,0 +1,85 @@
+package calc;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 数式の計算に使用する四則演算を表すインターフェースです。<br>
+ * 四則演算の既定の実装は、doubleを{@link BigDecimal#valueOf(double)}で10進数に変換して計算した場合と同じ結果を返します。
+ * 桁数が少ない場合はBigDecimalを作成せずにlongとdoubleで計算し、それ以外の場合はBigDecimalで計算します。<br>
+ * 画面の表示を行う{@link Calculator}とは異なり状態を持たないため、{@link #getKernel()}で取得した1つのインスタンスを、
+ * 複数のスレッドから同時に使用できます。パーサはこのインターフェースを使用して計算するため、
+ * サーバや一括計算では計算のたびに計算機を作成する必要はありません。
+ */
+public interface ArithmeticKernel {
+
+	/**
+	 * 既定の四則演算を使用する、状態を持たないインスタンスを取得します。
+	 * @return 既定の四則演算を使用するインスタンス
+	 */
+	public static ArithmeticKernel getKernel() {
+		return DefaultKernel.KERNEL;
+	}
+
+	/**
+	 * xとyを足した値を返します
+	 * @param x
+	 * @param y
+	 * @return 計算結果
+	 */
+	default double plus(double x, double y) {
+		double result = DecimalArithmetic.plus(x, y);
+		if (!Double.isNaN(result)) {
+			return result;
+		}
+		return BigDecimal.valueOf(x).add(BigDecimal.valueOf(y)).doubleValue();
+	}
+
+	/**
+	 * xからyを引いた値を返します
+	 * @param x
+	 * @param y
+	 * @return 計算結果
+	 */
+	default double minus(double x, double y) {
+		double result = DecimalArithmetic.minus(x, y);
+		if (!Double.isNaN(result)) {
+			return result;
+		}
+		return BigDecimal.valueOf(x).subtract(BigDecimal.valueOf(y)).doubleValue();
+	}
+
+	/**
+	 * xとyを掛けた値を返します
+	 * @param x
+	 * @param y
+	 * @return 計算結果
+	 */
+	default double multiply(double x, double y) {
+		double result = DecimalArithmetic.multiply(x, y);
+		if (!Double.isNaN(result)) {
+			return result;
+		}
+		return BigDecimal.valueOf(x).multiply(BigDecimal.valueOf(y)).doubleValue();
+	}
+
+	/**
+	 * xからyを割った値を返します。
+	 * 計算結果が循環小数である場合は、15桁目で丸められます。
+	 * @param x
+	 * @param y
+	 * @throws ArithmeticException 0で割ろうとした場合
+	 * @return 計算結果
+	 */
+	default double divide(double x, double y) {
+		if (y == 0) {
+			throw new ArithmeticException("0で割ることは出来ません");
+		}
+		double result = DecimalArithmetic.divide(x, y);
+		if (!Double.isNaN(result)) {
+			return result;
+		}
+		return BigDecimal.valueOf(x).divide(BigDecimal.valueOf(y), 15, RoundingMode.HALF_UP).doubleValue();
+	}
+
+}
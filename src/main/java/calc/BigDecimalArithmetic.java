@@ -0,0 +1,128 @@
+package calc;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import item.CalcResult;
+
+/**
+ * 計算の途中の値をdoubleに戻さず、BigDecimalのまま計算するクラスです。<br>
+ * 足し算、引き算、掛け算は誤差なく計算し、割り算は指定された小数点以下の桁数に丸めます。
+ * {@link MathContext}を指定した場合は、全ての計算結果をその有効桁数に丸めます。
+ */
+public final class BigDecimalArithmetic implements Arithmetic<BigDecimal> {
+
+	/**
+	 * 既定のBigDecimalArithmeticインスタンス
+	 */
+	private static final BigDecimalArithmetic arithmetic = createDefault();
+
+	/**
+	 * 既定のBigDecimalArithmeticインスタンスを取得します。<br>
+	 * システムプロパティ<code>calc.BigDecimalArithmetic.precision</code>に正の数が指定されている場合は、
+	 * 全ての計算結果をその有効桁数に丸めます。指定されていない場合は、割り算の結果のみを
+	 * <code>calc.BigDecimalArithmetic.scale</code>(既定値は15)の小数点以下の桁数に丸めます。<br>
+	 * 丸め方は<code>calc.BigDecimalArithmetic.roundingMode</code>(既定値はHALF_UP)で変更できます。
+	 * @return 既定のBigDecimalArithmeticインスタンス
+	 */
+	public static BigDecimalArithmetic getArithmetic() {
+		return arithmetic;
+	}
+
+	/**
+	 * システムプロパティから既定のインスタンスを作成します。
+	 * @return 既定のBigDecimalArithmeticインスタンス
+	 */
+	private static BigDecimalArithmetic createDefault() {
+		RoundingMode roundingMode = RoundingMode.valueOf(System.getProperty("calc.BigDecimalArithmetic.roundingMode", "HALF_UP"));
+		int precision = Integer.getInteger("calc.BigDecimalArithmetic.precision", 0);
+		if (precision > 0) {
+			return new BigDecimalArithmetic(new MathContext(precision, roundingMode));
+		}
+		return new BigDecimalArithmetic(Integer.getInteger("calc.BigDecimalArithmetic.scale", 15), roundingMode);
+	}
+
+	/**
+	 * 全ての計算結果を丸める有効桁数と丸め方。割り算の結果のみを丸める場合はnull
+	 */
+	private final MathContext MATH_CONTEXT;
+
+	/**
+	 * 割り算の結果の小数点以下の桁数
+	 */
+	private final int SCALE;
+
+	/**
+	 * 割り算の結果の丸め方
+	 */
+	private final RoundingMode ROUNDING_MODE;
+
+	/**
+	 * 全ての計算結果を、指定の有効桁数に丸めるインスタンスを作成します。
+	 * @param mathContext 計算結果の有効桁数と丸め方
+	 * @throws IllegalArgumentException 有効桁数が0(無制限)の場合
+	 */
+	public BigDecimalArithmetic(MathContext mathContext) {
+		if (mathContext.getPrecision() == 0) {
+			throw new IllegalArgumentException("有効桁数を無制限にすることはできません");
+		}
+		this.MATH_CONTEXT = mathContext;
+		this.SCALE = 0;
+		this.ROUNDING_MODE = mathContext.getRoundingMode();
+	}
+
+	/**
+	 * 割り算の結果のみを、指定の小数点以下の桁数に丸めるインスタンスを作成します。
+	 * @param scale 割り算の結果の小数点以下の桁数
+	 * @param roundingMode 割り算の結果の丸め方
+	 * @throws IllegalArgumentException roundingModeがnullの場合
+	 */
+	public BigDecimalArithmetic(int scale, RoundingMode roundingMode) {
+		if (roundingMode == null) {
+			throw new IllegalArgumentException();
+		}
+		this.MATH_CONTEXT = null;
+		this.SCALE = scale;
+		this.ROUNDING_MODE = roundingMode;
+	}
+
+	@Override
+	public BigDecimal valueOf(BigDecimal number) {
+		return (this.MATH_CONTEXT == null) ? number : number.round(this.MATH_CONTEXT);
+	}
+
+	@Override
+	public BigDecimal plus(BigDecimal x, BigDecimal y) {
+		return (this.MATH_CONTEXT == null) ? x.add(y) : x.add(y, this.MATH_CONTEXT);
+	}
+
+	@Override
+	public BigDecimal minus(BigDecimal x, BigDecimal y) {
+		return (this.MATH_CONTEXT == null) ? x.subtract(y) : x.subtract(y, this.MATH_CONTEXT);
+	}
+
+	@Override
+	public BigDecimal multiply(BigDecimal x, BigDecimal y) {
+		return (this.MATH_CONTEXT == null) ? x.multiply(y) : x.multiply(y, this.MATH_CONTEXT);
+	}
+
+	@Override
+	public BigDecimal divide(BigDecimal x, BigDecimal y) {
+		if (y.signum() == 0) {
+			throw new ArithmeticException("0で割ることは出来ません");
+		}
+		return (this.MATH_CONTEXT == null) ? x.divide(y, this.SCALE, this.ROUNDING_MODE) : x.divide(y, this.MATH_CONTEXT);
+	}
+
+	@Override
+	public CalcResult toResult(BigDecimal value) {
+		return new CalcResult(value);
+	}
+
+	@Override
+	public String toString() {
+		return "BigDecimalArithmetic [MATH_CONTEXT=" + MATH_CONTEXT + ", SCALE=" + SCALE + ", ROUNDING_MODE=" + ROUNDING_MODE + "]";
+	}
+
+}
@@ -2,7 +2,6 @@ package calc;
 
 import input.CUIInputer;
 import input.Inputer;
-import item.CalcResult;
 import item.FormulaItem;
 import parse.LogicFormulaParser;
 import parse.ParseException;
@@ -24,6 +23,11 @@ final class CUICalculator implements Calculator {
 	 * 解析に使用するパーサクラスを格納します
 	 */
 	protected Parser parser;
+
+	/**
+	 * 精度モードで計算に使用する数の種類を格納します。doubleで計算する場合はnullです。
+	 */
+	Arithmetic<?> arithmetic;
 	
 	/**
 	 * 捕捉されない例外が発生したときにJVMを終了するかどうか。<br>
@@ -37,13 +41,28 @@ final class CUICalculator implements Calculator {
 	 * 計算に成功した場合はSTDOUTに、計算結果のみ出力します。<br>
 	 * 失敗した場合は、STDOUTに<code>"ERROR"</code>、STDERRにエラーの情報を出力します。<br>
 	 * この機能はクラス読み込み時にシステムプロパティ<code>calc.CUICalculator.scriptMode</code>が<code>true</code>である場合にのみ有効になります。<br>
-	 * Javaから使用する場合は、スクリプトモードより{@link Parser#parseAndCalc(FormulaItem, Calculator)}を直接呼び出す方が便利です。
+	 * Javaから使用する場合は、スクリプトモードより{@link Parser#parseAndCalc(FormulaItem, ArithmeticKernel)}を直接呼び出す方が便利です。
 	 */
 	private static boolean scriptMode = Boolean.getBoolean("calc.CUICalculator.scriptMode");
 
+	/**
+	 * スクリプトモードで、入力の読み込み、計算、出力を別々のスレッドで同時に進めるか否かです。<br>
+	 * 大量の行を入力する場合に、1行ずつ読み込んで計算し出力するより高速に処理します。出力される内容と順番は変わりません。<br>
+	 * この機能はクラス読み込み時にシステムプロパティ<code>calc.CUICalculator.pipelined</code>が<code>true</code>であり、
+	 * スクリプトモードが有効である場合にのみ有効になります。詳細は{@link ScriptPipeline}を参照してください。
+	 */
+	private static boolean pipelined = Boolean.getBoolean("calc.CUICalculator.pipelined");
+
+	/**
+	 * 精度モードで使用する計算方法です。<br>
+	 * クラス読み込み時にシステムプロパティ<code>calc.CUICalculator.precisionMode</code>で
+	 * {@link Arithmetic.Mode}の名前を指定して変更できます。既定値はDecimalです。
+	 */
+	static final Arithmetic.Mode precisionMode = Arithmetic.Mode.valueOf(System.getProperty("calc.CUICalculator.precisionMode", "Decimal"));
+
 	@Override
 	public String toString() {
-		return "CUICalculator [parser=" + parser + "]";
+		return "CUICalculator [parser=" + parser + ", arithmetic=" + arithmetic + "]";
 	}
 
 	@Override
@@ -56,6 +75,10 @@ final class CUICalculator implements Calculator {
 			if(exitVM) System.exit(1);
 		});
 		this.displayMessage();
+		if (scriptMode && pipelined) {
+			new ScriptPipeline(this).run();
+			return;
+		}
 		Inputer inputer = new CUIInputer();
 		while (true) {
 			if (!scriptMode) {
@@ -72,15 +95,23 @@ final class CUICalculator implements Calculator {
 				case "change-mode":
 					this.changeParser();
 					break;
+
+				case "change-precision":
+					this.changePrecision();
+					break;
 					
 				case "":
 					break;
 			
 				default:
-					FormulaItem item = new FormulaItem(inputLine);
 					try {
-						CalcResult result = this.parser.parseAndCalc(item, this);
-						System.out.println(result.get());
+						if (inputLine.startsWith(RangeSweep.PREFIX)) {
+							RangeSweep.parse(inputLine, this.parser).run(this, System.out);
+						} else if (this.arithmetic == null) {
+							System.out.println(this.parser.parseAndCalc(new FormulaItem(inputLine), ArithmeticKernel.getKernel()).get());
+						} else {
+							System.out.println(this.arithmetic.format(this.parser.parseAndCalc(new FormulaItem(inputLine), this.arithmetic)));
+						}
 					} catch (ParseException e) {
 						if (!scriptMode) {
 							System.err.println("計算中にエラーが発生しました: " + e.getCause().getLocalizedMessage());
@@ -103,14 +134,34 @@ final class CUICalculator implements Calculator {
 		}
 		this.changeParser();
 		if (!scriptMode) {
+			System.out.println("\"change-precision\"と入力すると、小数を誤差なく計算する精度モードに切り替わります。");
+			System.out.println("\"sweep x=0..10 step 0.5 : x*x/3\"のように入力すると、xを範囲内の値に置き換えて全て計算します。(\"step 0.5 summary :\"とすると集計結果のみ表示します)");
 			System.out.println("\"exit\"と入力すると電卓プログラムを終了します。");
 		}
 	}
 
+	/**
+	 * 精度モードを切り替えます。<br>
+	 * 精度モードでは、計算の途中の値をdoubleに戻さずに、{@link #precisionMode}で指定された数の種類のまま計算します。
+	 */
+	void changePrecision() {
+		if (this.arithmetic == null) {
+			this.arithmetic = precisionMode.getArithmetic();
+			if (!scriptMode) {
+				System.out.println("現在精度モード(" + precisionMode.getTitle() + ")で動作しています。(小数を誤差なく計算します)");
+			}
+		} else {
+			this.arithmetic = null;
+			if (!scriptMode) {
+				System.out.println("精度モードを終了しました。");
+			}
+		}
+	}
+
 	/**
 	 * 計算モードを変更します
 	 */
-	private void changeParser() {
+	void changeParser() {
 		if (this.parser instanceof SimpleFormulaParser) {
 			this.parser = LogicFormulaParser.getParser();
 			if (!scriptMode) {
@@ -3,13 +3,12 @@
  */
 package calc;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-
 /**
- * 電卓を表すインターフェース。
+ * 電卓を表すインターフェース。<br>
+ * 四則演算は{@link ArithmeticKernel}から継承します。数式の計算だけを行う場合は、
+ * 電卓を作成せずに{@link ArithmeticKernel#getKernel()}を使用してください。
  */
-public interface Calculator {
+public interface Calculator extends ArithmeticKernel {
 	
 	/**
 	 * 電卓画面を表示して入力できるようにします。
@@ -17,51 +16,6 @@ public interface Calculator {
 	 */
 	void display();
 
-	/**
-	 * xとyを足した値を返します
-	 * @param x
-	 * @param y
-	 * @return 計算結果
-	 */
-	default double plus(double x, double y) {
-		return BigDecimal.valueOf(x).add(BigDecimal.valueOf(y)).doubleValue();
-	}
-
-	/**
-	 * xからyを引いた値を返します
-	 * @param x
-	 * @param y
-	 * @return 計算結果
-	 */
-	default double minus(double x, double y) {
-		return BigDecimal.valueOf(x).subtract(BigDecimal.valueOf(y)).doubleValue();
-	}
-
-	/**
-	 * xとyを掛けた値を返します
-	 * @param x
-	 * @param y
-	 * @return 計算結果
-	 */
-	default double multiply(double x, double y) {
-		return BigDecimal.valueOf(x).multiply(BigDecimal.valueOf(y)).doubleValue();
-	}
-
-	/**
-	 * xからyを割った値を返します。
-	 * 計算結果が循環小数である場合は、15桁目で丸められます。
-	 * @param x
-	 * @param y
-	 * @throws ArithmeticException 0で割ろうとした場合
-	 * @return 計算結果
-	 */
-	default double divide(double x, double y) {
-		if (y == 0) {
-			throw new ArithmeticException("0で割ることは出来ません");
-		}
-		return BigDecimal.valueOf(x).divide(BigDecimal.valueOf(y), 15, RoundingMode.HALF_UP).doubleValue();
-	}
-	
 	/**
 	 * 例外の情報をコンソールに表示します。
 	 * @param e 例外
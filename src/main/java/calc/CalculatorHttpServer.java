@@ -0,0 +1,301 @@
+package calc;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import gui.view.CalcWindowFrame.CalcMode;
+import item.FormulaItem;
+import parse.CoalescingEvaluator;
+import parse.ParseException;
+import parse.Parser;
+
+/**
+ * 複数の数式をHTTPで受け付け、まとめて計算するクラスです。<br>
+ * <code>nogui --http ポート番号</code>を指定して起動した場合に使用します。localhostの指定されたポートで、
+ * {@link #PATH}へのPOSTを受け付けます。要求は仮想スレッドで1つずつ処理するため、多数の要求を同時に受け付けることができます。<br>
+ * 要求の本文は次の形式のJSONです(文字コードはUTF-8)。<code>mode</code>は{@link CalcMode}の名前で、省略した場合は<code>Simple</code>です。
+ * <pre>
+ * {"mode": "Logic", "formulas": ["1+2*3", "5/0"]}
+ * </pre>
+ * 応答は数式と同じ順番の計算結果の配列です。エラーが発生した数式は、計算結果の代わりにエラーの内容になります。
+ * <pre>
+ * [{"result": 7.0}, {"error": "0で割ることは出来ません"}]
+ * </pre>
+ * 要求は全体を読み込まずに先頭から順に読み込み、<code>mode</code>が<code>formulas</code>より前にある場合は、
+ * 数式を1つ読み込むごとに計算して応答に書き込みます。最初の計算結果を書き込む前に要求の形式が不正であることがわかった場合は、
+ * 状態コード400で<code>{"error": "エラーの内容"}</code>を応答します。計算結果を書き込んだ後にわかった場合は、状態コードは200のまま、
+ * 配列の最後の要素として<code>{"requestError": "エラーの内容"}</code>を書き込んで応答を終了します。<br>
+ * 同時に受け付けた要求に同じ数式がある場合は、{@link CoalescingEvaluator}で計算を1回にまとめます。<br>
+ * 接続を受け付ける待ち行列の長さは、システムプロパティ<code>calc.CalculatorHttpServer.backlog</code>で指定できます。既定値は1024です。
+ */
+public final class CalculatorHttpServer implements Closeable {
+
+	/**
+	 * 計算の要求を受け付けるパス
+	 */
+	public static final String PATH = "/calc";
+
+	/**
+	 * 接続を受け付ける待ち行列の長さ
+	 */
+	private static final int BACKLOG = Integer.getInteger("calc.CalculatorHttpServer.backlog", 1024);
+
+	/**
+	 * HTTPサーバー
+	 */
+	private final HttpServer SERVER;
+
+	/**
+	 * 要求を処理する、要求ごとに仮想スレッドを作成するExecutor
+	 */
+	private final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+	/**
+	 * 計算に使用する計算機
+	 */
+	private final ArithmeticKernel CALC = ArithmeticKernel.getKernel();
+
+	/**
+	 * サーバーを作成します。
+	 * @param port localhostのポート番号(0の場合は空いているポート)
+	 * @throws IOException ポートを使用できない場合
+	 */
+	private CalculatorHttpServer(int port) throws IOException {
+		this.SERVER = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+		this.SERVER.setExecutor(this.EXECUTOR);
+		this.SERVER.createContext(PATH, this::handle);
+	}
+
+	/**
+	 * 指定されたポートで要求の受け付けを開始します。
+	 * @param port localhostのポート番号(0の場合は空いているポート)
+	 * @return サーバー
+	 * @throws IOException ポートを使用できない場合
+	 */
+	public static CalculatorHttpServer start(int port) throws IOException {
+		CalculatorHttpServer server = new CalculatorHttpServer(port);
+		server.SERVER.start();
+		return server;
+	}
+
+	/**
+	 * 要求を受け付けているアドレスを返します。
+	 * @return アドレス
+	 */
+	public InetSocketAddress getAddress() {
+		return this.SERVER.getAddress();
+	}
+
+	/**
+	 * 要求の受け付けを終了します。処理中の要求は、終わるまで待ちます。
+	 */
+	@Override
+	public void close() {
+		this.SERVER.stop(0);
+		this.EXECUTOR.close();
+	}
+
+	/**
+	 * 1つの要求を処理します。
+	 * @param exchange 要求と応答
+	 * @throws IOException 要求の読み込みや応答の書き込み中にエラーが発生した場合
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				sendError(exchange, 405, "POSTのみ受け付けます");
+				return;
+			}
+			Batch batch = new Batch(exchange);
+			try {
+				batch.run();
+			} catch (IllegalArgumentException e) {
+				if (batch.writer == null) {
+					sendError(exchange, 400, e.getLocalizedMessage());
+				} else {
+					batch.fail(e.getLocalizedMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * エラーの内容を応答します。
+	 * @param exchange 要求と応答
+	 * @param status 状態コード
+	 * @param message エラーの内容
+	 * @throws IOException 応答の書き込み中にエラーが発生した場合
+	 */
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = JsonReader.appendString(new StringBuilder("{\"error\": "), message).append('}').toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	/**
+	 * 1つの要求に含まれる数式を順に計算し、計算結果を応答に書き込むクラスです。
+	 */
+	private final class Batch {
+
+		/**
+		 * 要求と応答
+		 */
+		private final HttpExchange EXCHANGE;
+
+		/**
+		 * 計算に使用するパーサ。modeを読み込む前はnull
+		 */
+		private Parser parser;
+
+		/**
+		 * modeを読み込む前に読み込んだ数式
+		 */
+		private final List<String> waiting = new ArrayList<>();
+
+		/**
+		 * 応答の本文を書き込むWriter。最初の計算結果を書き込むまではnull
+		 */
+		private Writer writer;
+
+		/**
+		 * 要求を処理するインスタンスを作成します。
+		 * @param exchange 要求と応答
+		 */
+		private Batch(HttpExchange exchange) {
+			this.EXCHANGE = exchange;
+		}
+
+		/**
+		 * 要求を読み込みながら計算し、応答を書き込みます。
+		 * @throws IOException 要求の読み込みや応答の書き込み中にエラーが発生した場合
+		 * @throws IllegalArgumentException 要求の形式が不正な場合
+		 */
+		private void run() throws IOException {
+			JsonReader json = new JsonReader(new BufferedReader(new InputStreamReader(this.EXCHANGE.getRequestBody(), StandardCharsets.UTF_8)));
+			boolean formulas = false;
+			json.expect('{');
+			for (boolean first = true; json.hasNext('}', first); first = false) {
+				String name = json.readString();
+				json.expect(':');
+				switch (name) {
+					case "mode":
+						this.setMode(json.readString());
+						break;
+
+					case "formulas":
+						json.expect('[');
+						for (boolean firstFormula = true; json.hasNext(']', firstFormula); firstFormula = false) {
+							String formula = json.readString();
+							if (this.parser == null) {
+								this.waiting.add(formula);
+							} else {
+								this.evaluate(formula);
+							}
+						}
+						formulas = true;
+						break;
+
+					default:
+						json.skipValue();
+				}
+			}
+			json.end();
+			if (!formulas) {
+				throw new IllegalArgumentException("formulasがありません");
+			}
+			if (this.parser == null) {
+				this.setMode(CalcMode.Simple.name());
+			}
+			this.write(null);
+			this.writer.write(']');
+			this.writer.flush();
+		}
+
+		/**
+		 * 計算に使用するパーサを設定し、それまでに読み込んだ数式を計算します。
+		 * @param mode {@link CalcMode}の名前
+		 * @throws IOException 応答の書き込み中にエラーが発生した場合
+		 * @throws IllegalArgumentException modeが不正な場合か、既に設定されている場合
+		 */
+		private void setMode(String mode) throws IOException {
+			if (this.parser != null) {
+				throw new IllegalArgumentException("modeが複数あります");
+			}
+			try {
+				this.parser = CalcMode.valueOf(mode).getParser();
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("modeにはSimpleかLogicを指定してください", e);
+			}
+			for (String formula : this.waiting) {
+				this.evaluate(formula);
+			}
+			this.waiting.clear();
+		}
+
+		/**
+		 * 数式を計算し、計算結果を応答に書き込みます。
+		 * @param formula 数式
+		 * @throws IOException 応答の書き込み中にエラーが発生した場合
+		 */
+		private void evaluate(String formula) throws IOException {
+			StringBuilder element = new StringBuilder();
+			try {
+				double result = CoalescingEvaluator.getEvaluator().parseAndCalc(this.parser, new FormulaItem(formula), CalculatorHttpServer.this.CALC).get().doubleValue();
+				element.append("{\"result\": ").append(result).append('}');
+			} catch (ParseException e) {
+				JsonReader.appendString(element.append("{\"error\": "), e.getCause().getLocalizedMessage()).append('}');
+			}
+			this.write(element);
+		}
+
+		/**
+		 * 計算結果を書き込んだ後に要求の形式が不正であることがわかった場合に、エラーの内容を配列の最後の要素として書き込み、配列を閉じます。
+		 * @param message エラーの内容
+		 * @throws IOException 応答の書き込み中にエラーが発生した場合
+		 */
+		private void fail(String message) throws IOException {
+			this.write(JsonReader.appendString(new StringBuilder("{\"requestError\": "), message).append('}'));
+			this.writer.write(']');
+			this.writer.flush();
+		}
+
+		/**
+		 * 配列の要素を応答に書き込みます。最初の要素を書き込む前に、応答のヘッダを送信します。
+		 * @param element 要素。ヘッダの送信のみ行う場合はnull
+		 * @throws IOException 応答の書き込み中にエラーが発生した場合
+		 */
+		private void write(CharSequence element) throws IOException {
+			if (this.writer == null) {
+				this.EXCHANGE.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+				this.EXCHANGE.sendResponseHeaders(200, 0);
+				this.writer = new BufferedWriter(new OutputStreamWriter(this.EXCHANGE.getResponseBody(), StandardCharsets.UTF_8));
+				this.writer.write('[');
+				if (element != null) {
+					this.writer.append(element);
+				}
+			} else if (element != null) {
+				this.writer.write(", ");
+				this.writer.append(element);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,265 @@
+package calc;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import history.HistoryDAO;
+import item.CalcResult;
+import item.FormulaItem;
+import item.History;
+import parse.CoalescingEvaluator;
+import parse.LogicFormulaParser;
+import parse.ParseException;
+import parse.Parser;
+import parse.SimpleFormulaParser;
+
+/**
+ * 計算機をサーバーとして常駐させ、Unixドメインソケットかlocalhostのポートで数式を受け付けるクラスです。<br>
+ * <code>nogui --server アドレス</code>を指定して起動した場合に使用します。アドレスが数字の場合はlocalhostのTCPポート、
+ * それ以外の場合はUnixドメインソケットのファイルのパスとして扱います。
+ * スクリプトから何度も計算する場合に、計算ごとにJVMを起動する必要がなくなります。<br>
+ * 接続ごとに仮想スレッドを1つ作成し、1行に1つの要求を受け取って、要求と同じ順番に1行ずつ応答します。
+ * 応答を待たずに複数の要求を続けて送信することもできます(応答は、受信済みの要求を全て処理した時点でまとめて送信します)。
+ * 文字コードはUTF-8です。
+ * <ul>
+ * <li>数式: 計算結果を応答します。精度モードの場合は{@link Arithmetic#format(CalcResult)}で変換した値です。
+ * エラーが発生した場合は<code>"ERROR"</code>とタブに続けてエラーの内容を応答します。</li>
+ * <li><code>change-mode</code>、<code>change-precision</code>: CUI電卓と同じく、その接続の計算モードか精度モードを切り替え、<code>"OK"</code>を応答します。</li>
+ * <li><code>exit</code>: 接続を閉じます。</li>
+ * <li>空行: 無視します(応答しません)。</li>
+ * </ul>
+ * 接続の開始時は、CUI電卓と同じく通常モード(左から右に計算)で、精度モードではありません。パーサは既存のインスタンスを共有します。
+ * 精度モードではない場合、複数の接続から同時に同じ数式を受け付けた場合は、{@link CoalescingEvaluator}で計算を1回にまとめます。<br>
+ * システムプロパティ<code>calc.CalculatorServer.history</code>が<code>true</code>の場合は、精度モードではない計算結果を{@link HistoryDAO}で履歴に保存します。
+ */
+public final class CalculatorServer implements Closeable {
+
+	/**
+	 * 計算結果を履歴に保存するか
+	 */
+	private static final boolean HISTORY = Boolean.getBoolean("calc.CalculatorServer.history");
+
+	/**
+	 * 履歴への保存を1つずつ行うためのロック
+	 */
+	private static final ReentrantLock HISTORY_LOCK = new ReentrantLock();
+
+	/**
+	 * 接続を受け付けるチャネル
+	 */
+	private final ServerSocketChannel SERVER;
+
+	/**
+	 * 接続を受け付けているアドレス
+	 */
+	private final SocketAddress ADDRESS;
+
+	/**
+	 * 計算に使用する計算機
+	 */
+	private final ArithmeticKernel CALC = ArithmeticKernel.getKernel();
+
+	/**
+	 * 接続中のチャネル
+	 */
+	private final Set<SocketChannel> CONNECTIONS = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * サーバーを作成します。
+	 * @param server 接続を受け付けるチャネル
+	 * @param address 接続を受け付けているアドレス
+	 */
+	private CalculatorServer(ServerSocketChannel server, SocketAddress address) {
+		this.SERVER = server;
+		this.ADDRESS = address;
+	}
+
+	/**
+	 * 指定されたアドレスで接続の受け付けを開始します。接続を処理するには{@link #serve()}を呼び出してください。
+	 * @param address localhostのTCPポート番号(0の場合は空いているポート)か、Unixドメインソケットのファイルのパス
+	 * @return サーバー
+	 * @throws IOException 接続の受け付けを開始できなかった場合(ソケットのファイルが既にある場合を含む)
+	 */
+	public static CalculatorServer open(String address) throws IOException {
+		if (address.chars().allMatch(Character::isDigit) && !address.isEmpty()) {
+			ServerSocketChannel server = ServerSocketChannel.open();
+			try {
+				server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+				return new CalculatorServer(server, server.getLocalAddress());
+			} catch (IOException | RuntimeException e) {
+				server.close();
+				throw e;
+			}
+		}
+		ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			UnixDomainSocketAddress socket = UnixDomainSocketAddress.of(address);
+			server.bind(socket);
+			return new CalculatorServer(server, socket);
+		} catch (IOException | RuntimeException e) {
+			server.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * 接続を受け付けているアドレスを返します。
+	 * @return TCPの場合は{@link InetSocketAddress}、Unixドメインソケットの場合は{@link UnixDomainSocketAddress}
+	 */
+	public SocketAddress getAddress() {
+		return this.ADDRESS;
+	}
+
+	/**
+	 * {@link #close()}が呼び出されるまで接続を受け付け、接続ごとに仮想スレッドで処理します。
+	 * @throws IOException 接続の受け付け中にエラーが発生した場合
+	 */
+	public void serve() throws IOException {
+		while (true) {
+			SocketChannel channel;
+			try {
+				channel = this.SERVER.accept();
+			} catch (AsynchronousCloseException e) {
+				return;
+			}
+			this.CONNECTIONS.add(channel);
+			Thread.ofVirtual().name("CalculatorServer-connection").start(() -> this.handle(channel));
+		}
+	}
+
+	/**
+	 * 接続の受け付けを終了し、接続中の全ての接続を閉じます。Unixドメインソケットの場合はファイルを削除します。
+	 * @throws IOException 終了中にエラーが発生した場合
+	 */
+	@Override
+	public void close() throws IOException {
+		this.SERVER.close();
+		for (SocketChannel channel : this.CONNECTIONS) {
+			channel.close();
+		}
+		if (this.ADDRESS instanceof UnixDomainSocketAddress socket) {
+			Files.deleteIfExists(socket.getPath());
+		}
+	}
+
+	/**
+	 * 1つの接続を処理します。接続が閉じられるか、<code>exit</code>を受け取るまで、要求を1行ずつ処理します。
+	 * @param channel 接続
+	 */
+	private void handle(SocketChannel channel) {
+		try (channel;
+				BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+				Writer writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+			Connection connection = new Connection();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.equals("exit")) {
+					break;
+				}
+				if (!line.isEmpty()) {
+					writer.write(connection.process(line));
+					writer.write('\n');
+				}
+				// 続けて送信された要求が残っていない場合のみ、まとめて応答します
+				if (!reader.ready()) {
+					writer.flush();
+				}
+			}
+		} catch (IOException e) {
+			// 接続が切断された場合は、その接続の処理のみ終了します
+		} finally {
+			this.CONNECTIONS.remove(channel);
+		}
+	}
+
+	/**
+	 * 接続ごとの計算モードと精度モードの状態です。
+	 */
+	private final class Connection {
+
+		/**
+		 * 計算に使用するパーサ
+		 */
+		private Parser parser = SimpleFormulaParser.getParser();
+
+		/**
+		 * 精度モードで計算に使用する数の種類。doubleで計算する場合はnull
+		 */
+		private Arithmetic<?> arithmetic;
+
+		/**
+		 * 1行の要求を処理します。
+		 * @param line 要求
+		 * @return 応答
+		 */
+		private String process(String line) {
+			switch (line) {
+				case "change-mode":
+					this.parser = (this.parser instanceof SimpleFormulaParser) ? LogicFormulaParser.getParser() : SimpleFormulaParser.getParser();
+					return "OK";
+
+				case "change-precision":
+					this.arithmetic = (this.arithmetic == null) ? CUICalculator.precisionMode.getArithmetic() : null;
+					return "OK";
+
+				default:
+					FormulaItem item = new FormulaItem(line);
+					try {
+						if (this.arithmetic != null) {
+							return this.arithmetic.format(this.parser.parseAndCalc(item, this.arithmetic));
+						}
+						CalcResult result = CoalescingEvaluator.getEvaluator().parseAndCalc(this.parser, item, CalculatorServer.this.CALC);
+						if (HISTORY) {
+							saveHistory(new History(-1, item, result, this.parser));
+						}
+						return String.valueOf(result.get().doubleValue());
+					} catch (ParseException e) {
+						return "ERROR\t" + e.getCause().getLocalizedMessage();
+					} catch (RuntimeException e) {
+						// 予期しないエラーの場合も、1行の要求に1行で応答するため接続は閉じません
+						Calculator.printStackTrace(e);
+						return "ERROR\t" + Objects.toString(e.getLocalizedMessage(), e.getClass().getName());
+					}
+			}
+		}
+
+	}
+
+	/**
+	 * 計算結果を履歴に保存します。保存に失敗した場合も計算結果は応答するため、エラーの内容を出力するのみです。
+	 * @param history 保存する履歴
+	 */
+	private static void saveHistory(History history) {
+		HISTORY_LOCK.lock();
+		try {
+			HistoryDAO.saveHistory(history);
+		} catch (SQLException e) {
+			Calculator.printStackTrace(e);
+		} finally {
+			HISTORY_LOCK.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,221 @@
+package calc;
+
+/**
+ * {@link ArithmeticKernel}の四則演算を、BigDecimalを作成せずにlongとdoubleだけで計算するクラスです。<br>
+ * ArithmeticKernelの四則演算は、doubleを{@link java.math.BigDecimal#valueOf(double)}で10進数に変換して計算し、
+ * 計算結果をdoubleに戻しています。このクラスでは、doubleを同じ10進数(整数部分と小数点以下の桁数)に分解し、
+ * longで誤差なく計算した結果を1回だけdoubleに丸めることで、BigDecimalで計算した場合と全く同じ値を返します。<br>
+ * 桁数が多すぎるなど、同じ値になることを保証できない場合は{@link Double#NaN}を返すため、
+ * 呼び出し元はその場合にBigDecimalで計算し直してください。<br>
+ * システムプロパティ<code>calc.Calculator.bigDecimalOnly</code>が<code>true</code>の場合は、常に{@link Double#NaN}を返します。
+ */
+final class DecimalArithmetic {
+
+	/**
+	 * 常にBigDecimalで計算するか
+	 */
+	private static final boolean DISABLED = Boolean.getBoolean("calc.Calculator.bigDecimalOnly");
+
+	/**
+	 * doubleで誤差なく表すことができる10の累乗
+	 */
+	private static final double[] DOUBLE_POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * longで表すことができる10の累乗
+	 */
+	private static final long[] LONG_POWERS_OF_TEN = new long[19];
+
+	/**
+	 * 10の累乗を掛けてもオーバーフローしない整数の絶対値の上限。<br>
+	 * 2つ足してもオーバーフローしないよう、2の62乗未満にしています。
+	 */
+	private static final long[] SCALE_LIMITS = new long[LONG_POWERS_OF_TEN.length];
+
+	static {
+		LONG_POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < LONG_POWERS_OF_TEN.length; i++) {
+			LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i - 1] * 10;
+		}
+		for (int i = 0; i < SCALE_LIMITS.length; i++) {
+			SCALE_LIMITS[i] = ((1L << 62) - 1) / LONG_POWERS_OF_TEN[i];
+		}
+	}
+
+	/**
+	 * 10進数に分解する際の小数点以下の最大の桁数
+	 */
+	private static final int MAX_OPERAND_SCALE = 15;
+
+	/**
+	 * 10進数に分解する際の整数部分の絶対値の上限。<br>
+	 * これ以下であれば、doubleの丸めの範囲に小数点以下の桁数が同じ10進数が1つしか入らないため、
+	 * 分解した結果が{@link Double#toString(double)}の結果と一致します。
+	 */
+	private static final long MAX_OPERAND_UNSCALED = 100_000_000_000_000L;
+
+	/**
+	 * doubleで誤差なく表すことができる整数の絶対値の上限(2の53乗)
+	 */
+	private static final long MAX_EXACT_LONG = 1L << 53;
+
+	/**
+	 * 割り算の計算結果の小数点以下の桁数。{@link ArithmeticKernel#divide(double, double)}と同じです。
+	 */
+	private static final int DIVIDE_SCALE = 15;
+
+	/**
+	 * このクラスはインスタンス化できません
+	 * @throws UnsupportedOperationException 常に
+	 */
+	private DecimalArithmetic() {
+		throw new UnsupportedOperationException(this.getClass().getName() + "はインスタンス化できません");
+	}
+
+	/**
+	 * longとdoubleだけで計算するかを返します。
+	 * @return システムプロパティ<code>calc.Calculator.bigDecimalOnly</code>が<code>true</code>ではない場合はtrue
+	 */
+	static boolean isEnabled() {
+		return !DISABLED;
+	}
+
+	/**
+	 * xとyを足した値を返します
+	 * @param x
+	 * @param y
+	 * @return 計算結果。BigDecimalで計算した場合と同じになることを保証できない場合は{@link Double#NaN}
+	 */
+	static double plus(double x, double y) {
+		int xScale = scaleOf(x);
+		int yScale = scaleOf(y);
+		if ((xScale < 0) || (yScale < 0)) {
+			return Double.NaN;
+		}
+		int scale = Math.max(xScale, yScale);
+		long xUnscaled = unscaledOf(x, xScale);
+		long yUnscaled = unscaledOf(y, yScale);
+		if ((Math.abs(xUnscaled) > SCALE_LIMITS[scale - xScale]) || (Math.abs(yUnscaled) > SCALE_LIMITS[scale - yScale])) {
+			return Double.NaN;
+		}
+		return toDouble(xUnscaled * LONG_POWERS_OF_TEN[scale - xScale] + yUnscaled * LONG_POWERS_OF_TEN[scale - yScale], scale);
+	}
+
+	/**
+	 * xからyを引いた値を返します
+	 * @param x
+	 * @param y
+	 * @return 計算結果。BigDecimalで計算した場合と同じになることを保証できない場合は{@link Double#NaN}
+	 */
+	static double minus(double x, double y) {
+		return plus(x, -y);
+	}
+
+	/**
+	 * xとyを掛けた値を返します
+	 * @param x
+	 * @param y
+	 * @return 計算結果。BigDecimalで計算した場合と同じになることを保証できない場合は{@link Double#NaN}
+	 */
+	static double multiply(double x, double y) {
+		int xScale = scaleOf(x);
+		int yScale = scaleOf(y);
+		if ((xScale < 0) || (yScale < 0)) {
+			return Double.NaN;
+		}
+		long xUnscaled = unscaledOf(x, xScale);
+		long yUnscaled = unscaledOf(y, yScale);
+		long unscaled = xUnscaled * yUnscaled;
+		if (Math.multiplyHigh(xUnscaled, yUnscaled) != (unscaled >> 63)) {
+			// オーバーフローした場合
+			return Double.NaN;
+		}
+		return toDouble(unscaled, xScale + yScale);
+	}
+
+	/**
+	 * xからyを割った値を返します。
+	 * 計算結果は小数点以下15桁に四捨五入(RoundingMode.HALF_UP)されます。
+	 * @param x
+	 * @param y 0以外の数
+	 * @return 計算結果。BigDecimalで計算した場合と同じになることを保証できない場合は{@link Double#NaN}
+	 */
+	static double divide(double x, double y) {
+		int xScale = scaleOf(x);
+		int yScale = scaleOf(y);
+		if ((xScale < 0) || (yScale < 0)) {
+			return Double.NaN;
+		}
+		// x / y * 10^15 = (xの整数部分 * 10^(yの桁数 - xの桁数 + 15)) / yの整数部分
+		int exponent = yScale - xScale + DIVIDE_SCALE;
+		long xUnscaled = unscaledOf(x, xScale);
+		if ((exponent >= LONG_POWERS_OF_TEN.length) || (Math.abs(xUnscaled) > SCALE_LIMITS[exponent])) {
+			return Double.NaN;
+		}
+		long dividend = xUnscaled * LONG_POWERS_OF_TEN[exponent];
+		long divisor = unscaledOf(y, yScale);
+		long quotient = dividend / divisor;
+		long remainder = Math.abs(dividend % divisor);
+		if (remainder >= Math.abs(divisor) - remainder) {
+			// 0から遠い方に丸めます
+			quotient += ((dividend < 0) == (divisor < 0)) ? 1 : -1;
+		}
+		return toDouble(quotient, DIVIDE_SCALE);
+	}
+
+	/**
+	 * doubleを{@link java.math.BigDecimal#valueOf(double)}と同じ10進数に分解した場合の、小数点以下の桁数を返します。
+	 * @param value 分解する値
+	 * @return 小数点以下の桁数。分解できない場合は-1
+	 */
+	private static int scaleOf(double value) {
+		if (DISABLED) {
+			return -1;
+		}
+		for (int scale = 0; scale <= MAX_OPERAND_SCALE; scale++) {
+			double scaled = Math.rint(value * DOUBLE_POWERS_OF_TEN[scale]);
+			if (!(Math.abs(scaled) <= MAX_OPERAND_UNSCALED)) {
+				return -1;
+			}
+			if (scaled / DOUBLE_POWERS_OF_TEN[scale] == value) {
+				return scale;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * doubleを10進数に分解した場合の、整数部分を返します。
+	 * @param value 分解する値
+	 * @param scale {@link #scaleOf(double)}で求めた小数点以下の桁数
+	 * @return 10進数の整数部分
+	 */
+	private static long unscaledOf(double value, int scale) {
+		return (long) Math.rint(value * DOUBLE_POWERS_OF_TEN[scale]);
+	}
+
+	/**
+	 * 10進数をdoubleに丸めます。<br>
+	 * 整数部分と10の累乗がどちらもdoubleで誤差なく表せる場合、doubleの割り算は正しく丸められるため、
+	 * {@link java.math.BigDecimal#doubleValue()}と同じ値になります。
+	 * @param unscaled 10進数の整数部分
+	 * @param scale 10進数の小数点以下の桁数
+	 * @return 丸めた値。正しく丸められない場合は{@link Double#NaN}
+	 */
+	private static double toDouble(long unscaled, int scale) {
+		while (((Math.abs(unscaled) > MAX_EXACT_LONG) || (scale >= DOUBLE_POWERS_OF_TEN.length))
+				&& (scale > 0) && (unscaled % 10 == 0)) {
+			unscaled /= 10;
+			scale--;
+		}
+		if ((Math.abs(unscaled) > MAX_EXACT_LONG) || (scale >= DOUBLE_POWERS_OF_TEN.length)) {
+			return Double.NaN;
+		}
+		// 0の場合は-0.0ではなく0.0になります
+		return unscaled / DOUBLE_POWERS_OF_TEN[scale];
+	}
+
+}
@@ -0,0 +1,165 @@
+package calc;
+
+/**
+ * {@link ArithmeticKernel}の既定の四則演算を、doubleの列(配列)に対してまとめて計算するクラスです。<br>
+ * 各値の計算結果は{@link DecimalArithmetic}と同じで、BigDecimalで計算した場合と同じになることを保証できる場合はその値、
+ * 保証できない場合は{@link Double#NaN}です。NaNになった値は、呼び出し元で{@link ArithmeticKernel}を使用して計算し直してください。<br>
+ * 実行時にjdk.incubator.vectorモジュールがある場合(<code>--add-modules jdk.incubator.vector</code>を指定した場合)、
+ * 足し算、引き算、掛け算は{@link DecimalVectorKernel}で複数の値を同時に計算し、割り算とベクトルに収まらない残りの値は1つずつ計算します。
+ * モジュールがない場合や、システムプロパティ<code>calc.DecimalColumns.vectorized</code>が<code>false</code>の場合は、全て1つずつ計算します。<br>
+ * 計算結果を格納する列は、計算する値の列と同じ配列・同じ位置でも構いません。
+ */
+public final class DecimalColumns {
+
+	/**
+	 * Vector APIを使用して計算するか
+	 */
+	private static final boolean VECTORIZED = isVectorAvailable();
+
+	/**
+	 * このクラスはインスタンス化できません
+	 * @throws UnsupportedOperationException 常に
+	 */
+	private DecimalColumns() {
+		throw new UnsupportedOperationException(this.getClass().getName() + "はインスタンス化できません");
+	}
+
+	/**
+	 * Vector APIを使用できるかを確認します。
+	 * @return 使用できる場合はtrue
+	 */
+	private static boolean isVectorAvailable() {
+		if (!Boolean.parseBoolean(System.getProperty("calc.DecimalColumns.vectorized", "true")) || !DecimalArithmetic.isEnabled()
+				|| ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+			return false;
+		}
+		try {
+			return DecimalVectorKernel.LANES > 1;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Vector APIを使用して計算するかを返します。
+	 * @return Vector APIを使用して計算する場合はtrue
+	 */
+	public static boolean isVectorized() {
+		return VECTORIZED;
+	}
+
+	/**
+	 * xとyを足した値を、列の値ごとに計算します。
+	 * @param x 1つ目の値の列
+	 * @param xOffset xの最初の位置
+	 * @param y 2つ目の値の列
+	 * @param yOffset yの最初の位置
+	 * @param result 計算結果を格納する列
+	 * @param resultOffset resultの最初の位置
+	 * @param length 計算する値の数
+	 */
+	public static void plus(double[] x, int xOffset, double[] y, int yOffset, double[] result, int resultOffset, int length) {
+		plus(x, xOffset, y, yOffset, result, resultOffset, length, VECTORIZED);
+	}
+
+	/**
+	 * xとyを足した値を、列の値ごとに計算します。
+	 * @param x 1つ目の値の列
+	 * @param xOffset xの最初の位置
+	 * @param y 2つ目の値の列
+	 * @param yOffset yの最初の位置
+	 * @param result 計算結果を格納する列
+	 * @param resultOffset resultの最初の位置
+	 * @param length 計算する値の数
+	 * @param vectorized Vector APIを使用するか
+	 */
+	static void plus(double[] x, int xOffset, double[] y, int yOffset, double[] result, int resultOffset, int length, boolean vectorized) {
+		int i = vectorized ? DecimalVectorKernel.plus(x, xOffset, y, yOffset, result, resultOffset, length, false) : 0;
+		for (; i < length; i++) {
+			result[resultOffset + i] = DecimalArithmetic.plus(x[xOffset + i], y[yOffset + i]);
+		}
+	}
+
+	/**
+	 * xからyを引いた値を、列の値ごとに計算します。
+	 * @param x 1つ目の値の列
+	 * @param xOffset xの最初の位置
+	 * @param y 2つ目の値の列
+	 * @param yOffset yの最初の位置
+	 * @param result 計算結果を格納する列
+	 * @param resultOffset resultの最初の位置
+	 * @param length 計算する値の数
+	 */
+	public static void minus(double[] x, int xOffset, double[] y, int yOffset, double[] result, int resultOffset, int length) {
+		minus(x, xOffset, y, yOffset, result, resultOffset, length, VECTORIZED);
+	}
+
+	/**
+	 * xからyを引いた値を、列の値ごとに計算します。
+	 * @param x 1つ目の値の列
+	 * @param xOffset xの最初の位置
+	 * @param y 2つ目の値の列
+	 * @param yOffset yの最初の位置
+	 * @param result 計算結果を格納する列
+	 * @param resultOffset resultの最初の位置
+	 * @param length 計算する値の数
+	 * @param vectorized Vector APIを使用するか
+	 */
+	static void minus(double[] x, int xOffset, double[] y, int yOffset, double[] result, int resultOffset, int length, boolean vectorized) {
+		int i = vectorized ? DecimalVectorKernel.plus(x, xOffset, y, yOffset, result, resultOffset, length, true) : 0;
+		for (; i < length; i++) {
+			result[resultOffset + i] = DecimalArithmetic.minus(x[xOffset + i], y[yOffset + i]);
+		}
+	}
+
+	/**
+	 * xとyを掛けた値を、列の値ごとに計算します。
+	 * @param x 1つ目の値の列
+	 * @param xOffset xの最初の位置
+	 * @param y 2つ目の値の列
+	 * @param yOffset yの最初の位置
+	 * @param result 計算結果を格納する列
+	 * @param resultOffset resultの最初の位置
+	 * @param length 計算する値の数
+	 */
+	public static void multiply(double[] x, int xOffset, double[] y, int yOffset, double[] result, int resultOffset, int length) {
+		multiply(x, xOffset, y, yOffset, result, resultOffset, length, VECTORIZED);
+	}
+
+	/**
+	 * xとyを掛けた値を、列の値ごとに計算します。
+	 * @param x 1つ目の値の列
+	 * @param xOffset xの最初の位置
+	 * @param y 2つ目の値の列
+	 * @param yOffset yの最初の位置
+	 * @param result 計算結果を格納する列
+	 * @param resultOffset resultの最初の位置
+	 * @param length 計算する値の数
+	 * @param vectorized Vector APIを使用するか
+	 */
+	static void multiply(double[] x, int xOffset, double[] y, int yOffset, double[] result, int resultOffset, int length, boolean vectorized) {
+		int i = vectorized ? DecimalVectorKernel.multiply(x, xOffset, y, yOffset, result, resultOffset, length) : 0;
+		for (; i < length; i++) {
+			result[resultOffset + i] = DecimalArithmetic.multiply(x[xOffset + i], y[yOffset + i]);
+		}
+	}
+
+	/**
+	 * xからyを割った値を、列の値ごとに計算します。割り算はVector APIを使用せず、常に1つずつ計算します。<br>
+	 * 0で割る値は{@link Double#NaN}になります(ArithmeticKernelで計算し直すと例外がスローされます)。
+	 * @param x 1つ目の値の列
+	 * @param xOffset xの最初の位置
+	 * @param y 2つ目の値の列
+	 * @param yOffset yの最初の位置
+	 * @param result 計算結果を格納する列
+	 * @param resultOffset resultの最初の位置
+	 * @param length 計算する値の数
+	 */
+	public static void divide(double[] x, int xOffset, double[] y, int yOffset, double[] result, int resultOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			double divisor = y[yOffset + i];
+			result[resultOffset + i] = (divisor == 0) ? Double.NaN : DecimalArithmetic.divide(x[xOffset + i], divisor);
+		}
+	}
+
+}
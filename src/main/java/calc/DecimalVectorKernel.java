@@ -0,0 +1,159 @@
+package calc;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link DecimalArithmetic}の足し算、引き算、掛け算を、Vector APIで複数の値に対して同時に計算するクラスです。<br>
+ * 計算方法はDecimalArithmeticと同じで、doubleを10進数(整数部分と10の累乗)に分解して計算しますが、
+ * 全ての計算をdoubleのまま行うため、途中の整数が2の53乗未満の場合(doubleで誤差なく表せる場合)のみ計算結果を返します。
+ * その場合の計算結果はDecimalArithmeticと全く同じで、それ以外の場合は{@link Double#NaN}を返します。<br>
+ * このクラスはjdk.incubator.vectorモジュールが必要なため、{@link DecimalColumns}からモジュールがある場合のみ使用します。
+ */
+final class DecimalVectorKernel {
+
+	/**
+	 * 使用するベクトルの種類
+	 */
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * 1回の計算で同時に計算する値の数
+	 */
+	static final int LANES = SPECIES.length();
+
+	/**
+	 * 10進数に分解する際に試す10の累乗(小数点以下の桁数が0～15の場合)
+	 */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+	};
+
+	/**
+	 * 10進数に分解する際の整数部分の絶対値の上限。DecimalArithmeticと同じです。
+	 */
+	private static final double MAX_OPERAND_UNSCALED = 1e14;
+
+	/**
+	 * 計算結果の10の累乗の上限(この値は含まない)。doubleで誤差なく表せる10の累乗の上限は10の22乗です。
+	 */
+	private static final double MAX_RESULT_POWER = 1e22;
+
+	/**
+	 * doubleで誤差なく表すことができる整数の絶対値の上限(2の53乗、この値は含まない)
+	 */
+	private static final double MAX_EXACT = 0x1p53;
+
+	/**
+	 * 足して引くことで小数点以下を丸める値(2の52乗)。絶対値がこれ未満の値は、{@link Math#rint(double)}と同じく最も近い整数(偶数側)に丸められます。
+	 */
+	private static final double ROUNDING = 0x1p52;
+
+	/**
+	 * このクラスはインスタンス化できません
+	 * @throws UnsupportedOperationException 常に
+	 */
+	private DecimalVectorKernel() {
+		throw new UnsupportedOperationException(this.getClass().getName() + "はインスタンス化できません");
+	}
+
+	/**
+	 * xとyを足した値(negateがtrueの場合はxからyを引いた値)を、{@link #LANES}個ずつ計算します。
+	 * @param x 1つ目の値の列
+	 * @param xOffset xの最初の位置
+	 * @param y 2つ目の値の列
+	 * @param yOffset yの最初の位置
+	 * @param result 計算結果を格納する列
+	 * @param resultOffset resultの最初の位置
+	 * @param length 計算する値の数
+	 * @param negate yの符号を反転するか
+	 * @return 計算した値の数(LANESの倍数)。残りは呼び出し元で計算してください
+	 */
+	static int plus(double[] x, int xOffset, double[] y, int yOffset, double[] result, int resultOffset, int length, boolean negate) {
+		int bound = SPECIES.loopBound(length);
+		for (int i = 0; i < bound; i += LANES) {
+			DoubleVector xValue = DoubleVector.fromArray(SPECIES, x, xOffset + i);
+			DoubleVector yValue = DoubleVector.fromArray(SPECIES, y, yOffset + i);
+			if (negate) {
+				yValue = yValue.neg();
+			}
+			DoubleVector xPower = powerOf(xValue);
+			DoubleVector yPower = powerOf(yValue);
+			DoubleVector power = xPower.max(yPower);
+			// 桁数が多い方に揃えます。10の累乗どうしの割り算は誤差なく計算できます
+			DoubleVector xAligned = rint(xValue.mul(xPower)).mul(power.div(xPower));
+			DoubleVector yAligned = rint(yValue.mul(yPower)).mul(power.div(yPower));
+			DoubleVector sum = xAligned.add(yAligned);
+			VectorMask<Double> exact = xAligned.abs().compare(VectorOperators.LT, MAX_EXACT)
+					.and(yAligned.abs().compare(VectorOperators.LT, MAX_EXACT))
+					.and(sum.abs().compare(VectorOperators.LT, MAX_EXACT));
+			// 0の場合は-0.0ではなく0.0になります
+			sum.add(0.0).div(power).blend(Double.NaN, exact.not()).intoArray(result, resultOffset + i);
+		}
+		return bound;
+	}
+
+	/**
+	 * xとyを掛けた値を、{@link #LANES}個ずつ計算します。
+	 * @param x 1つ目の値の列
+	 * @param xOffset xの最初の位置
+	 * @param y 2つ目の値の列
+	 * @param yOffset yの最初の位置
+	 * @param result 計算結果を格納する列
+	 * @param resultOffset resultの最初の位置
+	 * @param length 計算する値の数
+	 * @return 計算した値の数(LANESの倍数)。残りは呼び出し元で計算してください
+	 */
+	static int multiply(double[] x, int xOffset, double[] y, int yOffset, double[] result, int resultOffset, int length) {
+		int bound = SPECIES.loopBound(length);
+		for (int i = 0; i < bound; i += LANES) {
+			DoubleVector xValue = DoubleVector.fromArray(SPECIES, x, xOffset + i);
+			DoubleVector yValue = DoubleVector.fromArray(SPECIES, y, yOffset + i);
+			DoubleVector xPower = powerOf(xValue);
+			DoubleVector yPower = powerOf(yValue);
+			DoubleVector product = rint(xValue.mul(xPower)).mul(rint(yValue.mul(yPower)));
+			DoubleVector power = xPower.mul(yPower);
+			VectorMask<Double> exact = product.abs().compare(VectorOperators.LT, MAX_EXACT)
+					.and(power.compare(VectorOperators.LT, MAX_RESULT_POWER));
+			product.add(0.0).div(power).blend(Double.NaN, exact.not()).intoArray(result, resultOffset + i);
+		}
+		return bound;
+	}
+
+	/**
+	 * 値を{@link java.math.BigDecimal#valueOf(double)}と同じ10進数に分解した場合の、小数点以下の桁数に対応する10の累乗を求めます。<br>
+	 * DecimalArithmeticと同じく、小数点以下の桁数が少ない方から順に、10の累乗を掛けて丸めた値を割り戻して元の値に戻るかを確認します。
+	 * @param value 分解する値
+	 * @return 10の累乗。分解できない値の場合は{@link Double#NaN}
+	 */
+	private static DoubleVector powerOf(DoubleVector value) {
+		DoubleVector power = DoubleVector.broadcast(SPECIES, Double.NaN);
+		VectorMask<Double> pending = SPECIES.maskAll(true);
+		for (double candidate : POWERS_OF_TEN) {
+			DoubleVector scaled = rint(value.mul(candidate));
+			// NaNや無限大との比較は常にfalseになるため、分解できない値として扱われます
+			VectorMask<Double> inRange = scaled.abs().compare(VectorOperators.LE, MAX_OPERAND_UNSCALED);
+			VectorMask<Double> found = inRange.and(scaled.div(candidate).compare(VectorOperators.EQ, value));
+			power = power.blend(candidate, pending.and(found));
+			pending = pending.and(inRange).andNot(found);
+			if (!pending.anyTrue()) {
+				break;
+			}
+		}
+		return power;
+	}
+
+	/**
+	 * 値を最も近い整数(偶数側)に丸めます。<br>
+	 * 絶対値が2の52乗以上の値は正しく丸められない場合がありますが、その場合も整数部分の上限を超えるため、分解できない値として扱われます。
+	 * @param value 丸める値
+	 * @return 丸めた値
+	 */
+	private static DoubleVector rint(DoubleVector value) {
+		DoubleVector rounding = DoubleVector.broadcast(SPECIES, ROUNDING).blend(-ROUNDING, value.compare(VectorOperators.LT, 0.0));
+		return value.add(rounding).sub(rounding);
+	}
+
+}
@@ -0,0 +1,24 @@
+package calc;
+
+/**
+ * 既定の四則演算のみを持つ、{@link ArithmeticKernel#getKernel()}のインスタンスのクラスです。
+ */
+final class DefaultKernel implements ArithmeticKernel {
+
+	/**
+	 * 共通で使用するインスタンス
+	 */
+	static final DefaultKernel KERNEL = new DefaultKernel();
+
+	/**
+	 * インスタンスを作成します。
+	 */
+	private DefaultKernel() {
+	}
+
+	@Override
+	public String toString() {
+		return "DefaultKernel []";
+	}
+
+}
@@ -0,0 +1,345 @@
+package calc;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import item.CalcResult;
+
+/**
+ * 値をlongの整数部分と小数点以下の桁数(固定小数点数)で表し、BigDecimalを作成せずに計算するクラスです。<br>
+ * 計算結果は、同じ桁数と丸め方を指定した{@link BigDecimalArithmetic}と全く同じ(小数点以下の桁数も含めて)になります。<br>
+ * 桁数が多くlongでオーバーフローする場合のみ、{@link Math#multiplyExact(long, long)}等で検出してBigDecimalで計算し直します。
+ * 割り算では割られる数を{@link Math#multiplyHigh(long, long)}で128ビットに広げて計算するため、小数点以下の桁数が多い場合もオーバーフローしにくくなっています。
+ * そのため、小数点以下2～4桁程度の金額の計算であれば、ほとんどの場合longの計算だけで済みます。<br>
+ * 解析済みの数式({@link parse.CompiledFormula})はlongと小数点以下の桁数の配列で計算するため、演算ごとにオブジェクトを作成しません。
+ */
+public final class FixedPointArithmetic implements Arithmetic<FixedPointArithmetic.Value> {
+
+	/**
+	 * 固定小数点数、またはオーバーフローしたためBigDecimalで表した値です。
+	 * @param unscaled 値の整数部分(decimalがnullの場合のみ有効)
+	 * @param scale 値の小数点以下の桁数(decimalがnullの場合のみ有効)
+	 * @param decimal オーバーフローしたためBigDecimalで表した値。固定小数点数で表せる場合はnull
+	 */
+	public record Value(long unscaled, int scale, BigDecimal decimal) {
+
+		/**
+		 * 値をBigDecimalで返します。
+		 * @return 値
+		 */
+		public BigDecimal toBigDecimal() {
+			return (this.decimal != null) ? this.decimal : BigDecimal.valueOf(this.unscaled, this.scale);
+		}
+
+	}
+
+	/**
+	 * 固定小数点数の計算がオーバーフローしたことを表す値です。この値自体は計算結果として使用しません。
+	 */
+	public static final long OVERFLOW = Long.MIN_VALUE;
+
+	/**
+	 * longで表すことができる10の累乗
+	 */
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	/**
+	 * 既定のFixedPointArithmeticインスタンス
+	 */
+	private static final FixedPointArithmetic arithmetic = new FixedPointArithmetic(
+			Integer.getInteger("calc.FixedPointArithmetic.scale", 15),
+			RoundingMode.valueOf(System.getProperty("calc.FixedPointArithmetic.roundingMode", "HALF_UP")));
+
+	/**
+	 * 既定のFixedPointArithmeticインスタンスを取得します。<br>
+	 * 割り算の結果の小数点以下の桁数はシステムプロパティ<code>calc.FixedPointArithmetic.scale</code>(既定値は15)、
+	 * 丸め方は<code>calc.FixedPointArithmetic.roundingMode</code>(既定値はHALF_UP)で変更できます。
+	 * @return 既定のFixedPointArithmeticインスタンス
+	 */
+	public static FixedPointArithmetic getArithmetic() {
+		return arithmetic;
+	}
+
+	/**
+	 * 割り算の結果の小数点以下の桁数
+	 */
+	private final int SCALE;
+
+	/**
+	 * 割り算の結果の丸め方
+	 */
+	private final RoundingMode ROUNDING_MODE;
+
+	/**
+	 * オーバーフローした場合に使用する計算方法
+	 */
+	private final BigDecimalArithmetic FALLBACK;
+
+	/**
+	 * 割り算の結果を、指定の小数点以下の桁数に丸めるインスタンスを作成します。
+	 * @param scale 割り算の結果の小数点以下の桁数
+	 * @param roundingMode 割り算の結果の丸め方
+	 * @throws IllegalArgumentException roundingModeがnullの場合
+	 */
+	public FixedPointArithmetic(int scale, RoundingMode roundingMode) {
+		this.FALLBACK = new BigDecimalArithmetic(scale, roundingMode);
+		this.SCALE = scale;
+		this.ROUNDING_MODE = roundingMode;
+	}
+
+	@Override
+	public Value valueOf(BigDecimal number) {
+		int scale = number.scale();
+		if ((scale >= 0) && (scale < POWERS_OF_TEN.length) && (number.precision() < POWERS_OF_TEN.length)) {
+			return new Value(number.scaleByPowerOfTen(scale).longValue(), scale, null);
+		}
+		return new Value(0, 0, number);
+	}
+
+	@Override
+	public Value plus(Value x, Value y) {
+		if ((x.decimal() == null) && (y.decimal() == null)) {
+			long unscaled = this.plus(x.unscaled(), x.scale(), y.unscaled(), y.scale());
+			if (unscaled != OVERFLOW) {
+				return new Value(unscaled, Math.max(x.scale(), y.scale()), null);
+			}
+		}
+		return new Value(0, 0, this.FALLBACK.plus(x.toBigDecimal(), y.toBigDecimal()));
+	}
+
+	@Override
+	public Value minus(Value x, Value y) {
+		if ((x.decimal() == null) && (y.decimal() == null)) {
+			long unscaled = this.minus(x.unscaled(), x.scale(), y.unscaled(), y.scale());
+			if (unscaled != OVERFLOW) {
+				return new Value(unscaled, Math.max(x.scale(), y.scale()), null);
+			}
+		}
+		return new Value(0, 0, this.FALLBACK.minus(x.toBigDecimal(), y.toBigDecimal()));
+	}
+
+	@Override
+	public Value multiply(Value x, Value y) {
+		if ((x.decimal() == null) && (y.decimal() == null)) {
+			long unscaled = this.multiply(x.unscaled(), x.scale(), y.unscaled(), y.scale());
+			if (unscaled != OVERFLOW) {
+				return new Value(unscaled, x.scale() + y.scale(), null);
+			}
+		}
+		return new Value(0, 0, this.FALLBACK.multiply(x.toBigDecimal(), y.toBigDecimal()));
+	}
+
+	/**
+	 * {@inheritDoc}<br>
+	 * 計算結果は指定された小数点以下の桁数に丸められます。
+	 */
+	@Override
+	public Value divide(Value x, Value y) {
+		if ((x.decimal() == null) && (y.decimal() == null)) {
+			long unscaled = this.divide(x.unscaled(), x.scale(), y.unscaled(), y.scale());
+			if (unscaled != OVERFLOW) {
+				return new Value(unscaled, this.SCALE, null);
+			}
+		}
+		return new Value(0, 0, this.FALLBACK.divide(x.toBigDecimal(), y.toBigDecimal()));
+	}
+
+	/**
+	 * 固定小数点数どうしを足します。計算結果の小数点以下の桁数は、xとyの桁数の大きい方です。
+	 * @param x xの整数部分
+	 * @param xScale xの小数点以下の桁数
+	 * @param y yの整数部分
+	 * @param yScale yの小数点以下の桁数
+	 * @return 計算結果の整数部分。オーバーフローした場合は{@link #OVERFLOW}
+	 */
+	public long plus(long x, int xScale, long y, int yScale) {
+		int scale = Math.max(xScale, yScale);
+		try {
+			return checkOverflow(Math.addExact(align(x, scale - xScale), align(y, scale - yScale)));
+		} catch (ArithmeticException e) {
+			return OVERFLOW;
+		}
+	}
+
+	/**
+	 * 固定小数点数どうしを引きます。計算結果の小数点以下の桁数は、xとyの桁数の大きい方です。
+	 * @param x xの整数部分
+	 * @param xScale xの小数点以下の桁数
+	 * @param y yの整数部分
+	 * @param yScale yの小数点以下の桁数
+	 * @return 計算結果の整数部分。オーバーフローした場合は{@link #OVERFLOW}
+	 */
+	public long minus(long x, int xScale, long y, int yScale) {
+		int scale = Math.max(xScale, yScale);
+		try {
+			return checkOverflow(Math.subtractExact(align(x, scale - xScale), align(y, scale - yScale)));
+		} catch (ArithmeticException e) {
+			return OVERFLOW;
+		}
+	}
+
+	/**
+	 * 固定小数点数どうしを掛けます。計算結果の小数点以下の桁数は、xとyの桁数の合計です。
+	 * @param x xの整数部分
+	 * @param xScale xの小数点以下の桁数
+	 * @param y yの整数部分
+	 * @param yScale yの小数点以下の桁数
+	 * @return 計算結果の整数部分。オーバーフローした場合や、桁数の合計が18を超える場合は{@link #OVERFLOW}
+	 */
+	public long multiply(long x, int xScale, long y, int yScale) {
+		if (xScale + yScale >= POWERS_OF_TEN.length) {
+			return OVERFLOW;
+		}
+		try {
+			return checkOverflow(Math.multiplyExact(x, y));
+		} catch (ArithmeticException e) {
+			return OVERFLOW;
+		}
+	}
+
+	/**
+	 * 固定小数点数どうしを割ります。計算結果の小数点以下の桁数は、{@link #getScale()}です。
+	 * @param x xの整数部分
+	 * @param xScale xの小数点以下の桁数
+	 * @param y yの整数部分
+	 * @param yScale yの小数点以下の桁数
+	 * @return 計算結果の整数部分。オーバーフローした場合や、丸め方がHALF_UP以外の場合は{@link #OVERFLOW}
+	 * @throws ArithmeticException 0で割ろうとした場合
+	 */
+	public long divide(long x, int xScale, long y, int yScale) {
+		if (y == 0) {
+			throw new ArithmeticException("0で割ることは出来ません");
+		}
+		// x / y * 10^SCALE = (xの整数部分 * 10^(SCALE + yの桁数 - xの桁数)) / yの整数部分
+		int exponent = this.SCALE + yScale - xScale;
+		if ((this.ROUNDING_MODE != RoundingMode.HALF_UP) || (Math.abs(exponent) >= POWERS_OF_TEN.length)) {
+			return OVERFLOW;
+		}
+		if ((x == Long.MIN_VALUE) || (y == Long.MIN_VALUE)) {
+			// 絶対値がオーバーフローします
+			return OVERFLOW;
+		}
+		try {
+			long multiplier = (exponent >= 0) ? POWERS_OF_TEN[exponent] : 1;
+			long divisor = (exponent >= 0) ? Math.abs(y) : Math.multiplyExact(Math.abs(y), POWERS_OF_TEN[-exponent]);
+			// 割られる数は128ビットで計算するため、小数点以下15桁で割る場合もほとんどの金額はBigDecimalで計算し直さずに済みます
+			long absX = Math.abs(x);
+			long high = Math.multiplyHigh(absX, multiplier);
+			long low = absX * multiplier;
+			if (high >= divisor) {
+				// 商が64ビットに収まりません
+				return OVERFLOW;
+			}
+			long quotient = (high == 0) ? Long.divideUnsigned(low, divisor) : divideUnsigned(high, low, divisor);
+			// 余りはdivisorより小さいため、下位64ビットだけで求めることができます
+			long remainder = low - (quotient * divisor);
+			if (remainder >= divisor - remainder) {
+				// 0から遠い方に丸めます
+				quotient++;
+			}
+			if (quotient < 0) {
+				return OVERFLOW;
+			}
+			return ((x < 0) != (y < 0)) ? -quotient : quotient;
+		} catch (ArithmeticException e) {
+			return OVERFLOW;
+		}
+	}
+
+	/**
+	 * 割り算の結果の小数点以下の桁数を返します。
+	 * @return 割り算の結果の小数点以下の桁数
+	 */
+	public int getScale() {
+		return this.SCALE;
+	}
+
+	@Override
+	public CalcResult toResult(Value value) {
+		return new CalcResult(value.toBigDecimal());
+	}
+
+	/**
+	 * 固定小数点数の小数点以下の桁数を増やした場合の、整数部分を返します。
+	 * @param unscaled 整数部分
+	 * @param shift 増やす桁数
+	 * @return 整数部分
+	 * @throws ArithmeticException オーバーフローした場合
+	 */
+	private static long align(long unscaled, int shift) {
+		if (shift >= POWERS_OF_TEN.length) {
+			throw new ArithmeticException();
+		}
+		return Math.multiplyExact(unscaled, POWERS_OF_TEN[shift]);
+	}
+
+	/**
+	 * 128ビットの符号なし整数を64ビットの符号なし整数で割った商を返します(Hacker's Delightのdivluと同じ方法です)。
+	 * @param high 割られる数の上位64ビット。divisorより小さい必要があります
+	 * @param low 割られる数の下位64ビット
+	 * @param divisor 割る数。正の数である必要があります
+	 * @return 商(符号なし64ビット)
+	 */
+	private static long divideUnsigned(long high, long low, long divisor) {
+		final long base = 1L << 32;
+		// 割る数の最上位ビットが1になるように、割られる数と割る数を左にずらします
+		int shift = Long.numberOfLeadingZeros(divisor);
+		divisor <<= shift;
+		long numerator = (high << shift) | (low >>> (64 - shift));
+		low <<= shift;
+		long divisorHigh = divisor >>> 32;
+		long divisorLow = divisor & 0xFFFFFFFFL;
+		long lowHigh = low >>> 32;
+		long lowLow = low & 0xFFFFFFFFL;
+
+		// 商の上位32ビットを求めます
+		long quotientHigh = Long.divideUnsigned(numerator, divisorHigh);
+		long rest = numerator - (quotientHigh * divisorHigh);
+		while ((quotientHigh >= base) || (Long.compareUnsigned(quotientHigh * divisorLow, (rest << 32) | lowHigh) > 0)) {
+			quotientHigh--;
+			rest += divisorHigh;
+			if (rest >= base) {
+				break;
+			}
+		}
+		numerator = (numerator << 32) + lowHigh - (quotientHigh * divisor);
+
+		// 商の下位32ビットを求めます
+		long quotientLow = Long.divideUnsigned(numerator, divisorHigh);
+		rest = numerator - (quotientLow * divisorHigh);
+		while ((quotientLow >= base) || (Long.compareUnsigned(quotientLow * divisorLow, (rest << 32) | lowLow) > 0)) {
+			quotientLow--;
+			rest += divisorHigh;
+			if (rest >= base) {
+				break;
+			}
+		}
+		return (quotientHigh << 32) | quotientLow;
+	}
+
+	/**
+	 * 計算結果が{@link #OVERFLOW}と同じ値の場合に、オーバーフローとして扱います。
+	 * @param unscaled 計算結果の整数部分
+	 * @return 計算結果の整数部分
+	 * @throws ArithmeticException 計算結果が{@link #OVERFLOW}と同じ値の場合
+	 */
+	private static long checkOverflow(long unscaled) {
+		if (unscaled == OVERFLOW) {
+			throw new ArithmeticException();
+		}
+		return unscaled;
+	}
+
+	@Override
+	public String toString() {
+		return "FixedPointArithmetic [SCALE=" + SCALE + ", ROUNDING_MODE=" + ROUNDING_MODE + "]";
+	}
+
+}
@@ -0,0 +1,250 @@
+package calc;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import item.FormulaItem;
+import parse.ParseException;
+import parse.Parser;
+import parse.SimpleFormulaParser;
+
+/**
+ * 1行に1つの数式を書いたファイルを、まとめて計算するクラスです。<br>
+ * <code>nogui --file 入力ファイル [出力ファイル]</code>を指定して起動した場合に使用します。<br>
+ * 入力ファイルは{@link FileChannel#map(FileChannel.MapMode, long, long)}でメモリにマップし、
+ * 改行の位置で約{@link #CHUNK_SIZE}バイトずつの範囲に分けて、複数のスレッドで同時に計算します。
+ * 各スレッドは担当する範囲のみを読み込み、数式の文字列は1行ずつ計算する直前に作成します。
+ * 計算結果は範囲の順番に{@link FileChannel}で出力ファイル(指定しない場合は標準出力)に書き込み、
+ * 同時に計算中または書き込み待ちの範囲の数を制限するため、ファイルの大きさに関係なく使用するメモリは一定です。<br>
+ * 出力される内容は、CUI電卓のスクリプトモードで同じ行を入力した場合と同じです(空行は出力せず、エラーが発生した行は<code>"ERROR"</code>を出力し、
+ * 標準エラー出力に行番号とエラーの内容を出力します)。数式は{@link SimpleFormulaParser}で左から順に計算し、
+ * <code>change-mode</code>などのコマンドには対応していません。<br>
+ * 入力ファイルはシステムの既定の文字コードで、改行コードはLFかCRLFである必要があります。
+ * 計算するスレッドの数はシステムプロパティ<code>calc.FormulaFileEvaluator.workers</code>で指定できます。既定値は使用できるプロセッサの数です。
+ */
+public final class FormulaFileEvaluator {
+
+	/**
+	 * 1つのスレッドがまとめて計算する範囲の大きさの目安(バイト数)
+	 */
+	private static final int CHUNK_SIZE = 4 << 20;
+
+	/**
+	 * 計算するスレッドの数
+	 */
+	private static final int WORKERS = Math.max(1, Integer.getInteger("calc.FormulaFileEvaluator.workers", Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * このクラスはインスタンス化できません
+	 * @throws UnsupportedOperationException 常に
+	 */
+	private FormulaFileEvaluator() {
+		throw new UnsupportedOperationException(this.getClass().getName() + "はインスタンス化できません");
+	}
+
+	/**
+	 * ファイルに書かれた数式を全て計算し、計算結果を出力します。
+	 * @param input 入力ファイル
+	 * @param output 出力ファイル(既にある場合は上書きします)。nullの場合は標準出力に出力します
+	 * @throws IOException ファイルの読み込みや書き込み中にエラーが発生した場合
+	 */
+	public static void evaluate(Path input, Path output) throws IOException {
+		if (output == null) {
+			System.out.flush();
+			// 標準出力のFileDescriptorを閉じないように、チャネルは閉じません
+			evaluate(input, new FileOutputStream(FileDescriptor.out).getChannel());
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			evaluate(input, channel);
+		}
+	}
+
+	/**
+	 * ファイルに書かれた数式を全て計算し、計算結果をチャネルに書き込みます。
+	 * @param input 入力ファイル
+	 * @param output 計算結果を書き込むチャネル
+	 * @throws IOException ファイルの読み込みや書き込み中にエラーが発生した場合
+	 */
+	static void evaluate(Path input, FileChannel output) throws IOException {
+		ExecutorService workers = Executors.newFixedThreadPool(WORKERS, runnable -> {
+			Thread thread = new Thread(runnable, "FormulaFileEvaluator-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+			Deque<CompletableFuture<Chunk>> pending = new ArrayDeque<>();
+			long size = channel.size();
+			long start = 0;
+			long line = 1;
+			while (start < size) {
+				long end = endOf(channel, Math.min(start + CHUNK_SIZE, size), size);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				Chunk chunk = new Chunk(buffer);
+				pending.add(CompletableFuture.supplyAsync(chunk::evaluate, workers));
+				start = end;
+				// 使用するメモリを一定にするため、計算中または書き込み待ちの範囲がスレッドの数の2倍を超えたら、先頭の範囲を書き込みます
+				if (pending.size() > WORKERS * 2) {
+					line = write(pending.poll(), output, line);
+				}
+			}
+			while (!pending.isEmpty()) {
+				line = write(pending.poll(), output, line);
+			}
+		} finally {
+			workers.shutdown();
+		}
+	}
+
+	/**
+	 * 範囲の終わり(改行の次の位置)を探します。
+	 * @param channel 入力ファイル
+	 * @param position 探し始める位置
+	 * @param size ファイルの大きさ
+	 * @return 範囲の終わり。改行がない場合はファイルの終わり
+	 * @throws IOException ファイルの読み込み中にエラーが発生した場合
+	 */
+	private static long endOf(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * 計算が終わった範囲の計算結果を書き込み、エラーの内容を標準エラー出力に出力します。
+	 * @param future 計算中の範囲
+	 * @param output 計算結果を書き込むチャネル
+	 * @param line 範囲の最初の行番号
+	 * @return 次の範囲の最初の行番号
+	 * @throws IOException 書き込み中にエラーが発生した場合
+	 */
+	private static long write(CompletableFuture<Chunk> future, FileChannel output, long line) throws IOException {
+		Chunk chunk;
+		try {
+			chunk = future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+		ByteBuffer result = ByteBuffer.wrap(chunk.output.toString().getBytes(Charset.defaultCharset()));
+		while (result.hasRemaining()) {
+			output.write(result);
+		}
+		for (int i = 0; i < chunk.errorLines.size(); i++) {
+			System.err.println((line + chunk.errorLines.get(i)) + "行目: " + chunk.errorMessages.get(i));
+		}
+		return line + chunk.lines;
+	}
+
+	/**
+	 * 改行の位置で分けたファイルの範囲です。
+	 */
+	private static final class Chunk {
+
+		/**
+		 * メモリにマップした範囲
+		 */
+		private final MappedByteBuffer BUFFER;
+
+		/**
+		 * 計算結果
+		 */
+		private final StringBuilder output = new StringBuilder();
+
+		/**
+		 * エラーが発生した行の、範囲内での位置(0から)
+		 */
+		private final List<Long> errorLines = new ArrayList<>();
+
+		/**
+		 * エラーの内容(errorLinesと同じ順番)
+		 */
+		private final List<String> errorMessages = new ArrayList<>();
+
+		/**
+		 * 範囲内の行数
+		 */
+		private long lines;
+
+		/**
+		 * 範囲を作成します。
+		 * @param buffer メモリにマップした範囲
+		 */
+		private Chunk(MappedByteBuffer buffer) {
+			this.BUFFER = buffer;
+		}
+
+		/**
+		 * 範囲内の全ての行を計算します。
+		 * @return この範囲
+		 */
+		private Chunk evaluate() {
+			Parser parser = SimpleFormulaParser.getParser();
+			ArithmeticKernel calc = ArithmeticKernel.getKernel();
+			Charset charset = Charset.defaultCharset();
+			String separator = System.lineSeparator();
+			byte[] bytes = new byte[256];
+			int limit = this.BUFFER.limit();
+			int start = 0;
+			while (start < limit) {
+				int end = start;
+				while (end < limit && this.BUFFER.get(end) != '\n') {
+					end++;
+				}
+				int length = end - start;
+				if (length > 0 && this.BUFFER.get(end - 1) == '\r') {
+					length--;
+				}
+				if (bytes.length < length) {
+					bytes = new byte[Math.max(length, bytes.length * 2)];
+				}
+				this.BUFFER.get(start, bytes, 0, length);
+				String formula = new String(bytes, 0, length, charset).trim();
+				if (!formula.isEmpty()) {
+					try {
+						this.output.append(parser.parseAndCalc(new FormulaItem(formula), calc).get().doubleValue());
+					} catch (ParseException e) {
+						this.output.append("ERROR");
+						this.errorLines.add(this.lines);
+						this.errorMessages.add(e.getCause().getLocalizedMessage());
+					}
+					this.output.append(separator);
+				}
+				this.lines++;
+				start = end + 1;
+			}
+			return this;
+		}
+
+	}
+
+}
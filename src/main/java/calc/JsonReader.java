@@ -0,0 +1,235 @@
+package calc;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * JSONを先頭から順に読み込むクラスです。<br>
+ * 値をまとめて木構造に変換せず、呼び出し側が期待する構造に沿って1つずつ読み込むため、大きな配列でも使用するメモリは一定です。
+ * 形式が不正な場合は{@link IllegalArgumentException}をスローします。
+ */
+class JsonReader {
+
+	/**
+	 * 読み飛ばす値の、配列とオブジェクトの入れ子の深さの上限。深く入れ子になった値でスタックが溢れないように制限します。
+	 */
+	static final int MAX_DEPTH = 512;
+
+	/**
+	 * 読み込むReader
+	 */
+	private final Reader READER;
+
+	/**
+	 * 先読みした文字。先読みしていない場合は-2
+	 */
+	private int peeked = -2;
+
+	/**
+	 * JSONを読み込むインスタンスを作成します。
+	 * @param reader 読み込むReader(バッファリングされている必要があります)
+	 */
+	JsonReader(Reader reader) {
+		this.READER = reader;
+	}
+
+	/**
+	 * 空白を読み飛ばし、次の文字を読み込まずに返します。
+	 * @return 次の文字。終わりに達した場合は-1
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 */
+	int peek() throws IOException {
+		while (true) {
+			if (this.peeked == -2) {
+				this.peeked = this.READER.read();
+			}
+			if (this.peeked != ' ' && this.peeked != '\t' && this.peeked != '\n' && this.peeked != '\r') {
+				return this.peeked;
+			}
+			this.peeked = -2;
+		}
+	}
+
+	/**
+	 * 空白を読み飛ばし、次の文字が指定された文字であることを確認して読み込みます。
+	 * @param c 期待する文字
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws IllegalArgumentException 次の文字が指定された文字ではない場合
+	 */
+	void expect(char c) throws IOException {
+		if (this.peek() != c) {
+			throw new IllegalArgumentException("JSONの形式が不正です('" + c + "'がありません)");
+		}
+		this.peeked = -2;
+	}
+
+	/**
+	 * 配列かオブジェクトに次の要素があるか判定します。要素の間の','は読み込みます。
+	 * @param close 配列の場合は']'、オブジェクトの場合は'}'
+	 * @param first 最初の要素か
+	 * @return 次の要素がある場合はtrue、終わりの文字を読み込んだ場合はfalse
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws IllegalArgumentException 要素の間に','がない場合
+	 */
+	boolean hasNext(char close, boolean first) throws IOException {
+		if (this.peek() == close) {
+			this.peeked = -2;
+			return false;
+		}
+		if (!first) {
+			this.expect(',');
+		}
+		return true;
+	}
+
+	/**
+	 * 文字列を読み込みます。
+	 * @return 読み込んだ文字列
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws IllegalArgumentException 次の値が文字列ではない場合
+	 */
+	String readString() throws IOException {
+		this.expect('"');
+		StringBuilder builder = new StringBuilder();
+		while (true) {
+			int c = this.READER.read();
+			switch (c) {
+				case -1:
+					throw new IllegalArgumentException("JSONの形式が不正です(文字列が終わっていません)");
+
+				case '"':
+					return builder.toString();
+
+				case '\\':
+					builder.append(this.readEscape());
+					break;
+
+				default:
+					builder.append((char) c);
+			}
+		}
+	}
+
+	/**
+	 * 文字列中の'\'に続くエスケープシーケンスを読み込みます。
+	 * @return エスケープシーケンスが表す文字
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws IllegalArgumentException エスケープシーケンスが不正な場合
+	 */
+	private char readEscape() throws IOException {
+		int c = this.READER.read();
+		switch (c) {
+			case '"': case '\\': case '/':
+				return (char) c;
+			case 'b':
+				return '\b';
+			case 'f':
+				return '\f';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 't':
+				return '\t';
+			case 'u':
+				int code = 0;
+				for (int i = 0; i < 4; i++) {
+					int digit = Character.digit(this.READER.read(), 16);
+					if (digit < 0) {
+						throw new IllegalArgumentException("JSONの形式が不正です(\\uの後に16進数が4桁ありません)");
+					}
+					code = code * 16 + digit;
+				}
+				return (char) code;
+			default:
+				throw new IllegalArgumentException("JSONの形式が不正です(不明なエスケープシーケンスです)");
+		}
+	}
+
+	/**
+	 * 次の値を読み飛ばします。
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws IllegalArgumentException 値の形式が不正な場合や、入れ子の深さが{@link #MAX_DEPTH}を超える場合
+	 */
+	void skipValue() throws IOException {
+		this.skipValue(0);
+	}
+
+	/**
+	 * 次の値を読み飛ばします。
+	 * @param depth 値を囲んでいる配列とオブジェクトの数
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws IllegalArgumentException 値の形式が不正な場合や、入れ子の深さが{@link #MAX_DEPTH}を超える場合
+	 */
+	private void skipValue(int depth) throws IOException {
+		int c = this.peek();
+		if (((c == '[') || (c == '{')) && (depth == MAX_DEPTH)) {
+			throw new IllegalArgumentException("JSONの形式が不正です(入れ子の深さが上限(" + MAX_DEPTH + ")を超えています)");
+		}
+		switch (c) {
+			case '"':
+				this.readString();
+				break;
+
+			case '[':
+				this.peeked = -2;
+				for (boolean first = true; this.hasNext(']', first); first = false) {
+					this.skipValue(depth + 1);
+				}
+				break;
+
+			case '{':
+				this.peeked = -2;
+				for (boolean first = true; this.hasNext('}', first); first = false) {
+					this.readString();
+					this.expect(':');
+					this.skipValue(depth + 1);
+				}
+				break;
+
+			default:
+				// 数値、true、false、null
+				boolean read = false;
+				while (this.peeked != -1 && (Character.isLetterOrDigit(this.peeked) || "+-.".indexOf(this.peeked) >= 0)) {
+					this.peeked = this.READER.read();
+					read = true;
+				}
+				if (!read) {
+					throw new IllegalArgumentException("JSONの形式が不正です(値がありません)");
+				}
+		}
+	}
+
+	/**
+	 * JSONの終わりに達していることを確認します。
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws IllegalArgumentException 終わりの後に文字がある場合
+	 */
+	void end() throws IOException {
+		if (this.peek() != -1) {
+			throw new IllegalArgumentException("JSONの形式が不正です(終わりの後に文字があります)");
+		}
+	}
+
+	/**
+	 * 文字列をJSONの文字列として出力します。
+	 * @param builder 出力先
+	 * @param value 文字列
+	 * @return 出力先
+	 */
+	static StringBuilder appendString(StringBuilder builder, String value) {
+		builder.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\').append(c);
+			} else if (c < 0x20) {
+				builder.append(String.format("\\u%04x", (int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.append('"');
+	}
+
+}
@@ -0,0 +1,333 @@
+package calc;
+
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+
+import item.CalcResult;
+import item.FormulaItem;
+import parse.ColumnFormula;
+import parse.ParseException;
+import parse.Parser;
+
+/**
+ * CUI電卓の<code>sweep</code>コマンドを表すクラスです。<br>
+ * <code>sweep x=0..1e7 step 1 : x*x/3</code>のように、1つの変数を含む数式と、変数の範囲(両端を含む)と刻み幅を指定すると、
+ * 数式を1回だけ解析して、範囲内の全ての値について計算します。<br>
+ * 範囲は{@link #BLOCK_SIZE}個ずつのブロックに分け、並列ストリームで複数のスレッドに分担させます。
+ * ブロックごとに{@link ColumnFormula}でまとめて計算するため、1行ずつ数式を入力する場合と比べて、解析と出力の回数が少なくなります。<br>
+ * 範囲の後に<code>summary</code>を指定しない場合は、計算結果を変数の値の順番に1行ずつ出力します(エラーが発生した値は<code>"ERROR"</code>)。
+ * 指定した場合は、計算結果の個数、エラーの個数、最小値、最大値、合計(誤差なく足した値)のみを1行で出力します。<br>
+ * 変数の値と計算結果は、1行ずつ数式を入力した場合と同じく、誤差なく計算した値です。精度モードは使用しません。
+ */
+final class RangeSweep {
+
+	/**
+	 * sweepコマンドの先頭の文字列
+	 */
+	static final String PREFIX = "sweep ";
+
+	/**
+	 * sweepコマンドの書式
+	 */
+	private static final Pattern COMMAND = Pattern.compile("sweep\\s+([^=\\s]+)\\s*=\\s*(\\S+?)\\s*\\.\\.\\s*(\\S+)\\s+step\\s+(\\S+)(\\s+summary)?\\s*:(.*)");
+
+	/**
+	 * 1つのスレッドがまとめて計算する値の数
+	 */
+	private static final int BLOCK_SIZE = 4096;
+
+	/**
+	 * 解析済みの数式
+	 */
+	private final ColumnFormula FORMULA;
+
+	/**
+	 * 変数名
+	 */
+	private final String VARIABLE;
+
+	/**
+	 * 範囲の最初の値
+	 */
+	private final double FROM;
+
+	/**
+	 * 刻み幅
+	 */
+	private final double STEP;
+
+	/**
+	 * 範囲内の値の数
+	 */
+	private final long COUNT;
+
+	/**
+	 * 集計結果のみを出力するか
+	 */
+	private final boolean SUMMARY;
+
+	/**
+	 * sweepコマンドを作成します。
+	 * @param formula 解析済みの数式
+	 * @param variable 変数名
+	 * @param from 範囲の最初の値
+	 * @param step 刻み幅
+	 * @param count 範囲内の値の数
+	 * @param summary 集計結果のみを出力するか
+	 */
+	private RangeSweep(ColumnFormula formula, String variable, double from, double step, long count, boolean summary) {
+		this.FORMULA = formula;
+		this.VARIABLE = variable;
+		this.FROM = from;
+		this.STEP = step;
+		this.COUNT = count;
+		this.SUMMARY = summary;
+	}
+
+	/**
+	 * 入力された行をsweepコマンドとして解析します。
+	 * @param line 入力された行
+	 * @param parser 数式の解析に使用するパーサ
+	 * @return sweepコマンド
+	 * @throws ParseException コマンドの書式や数式が不正な場合
+	 */
+	static RangeSweep parse(String line, Parser parser) throws ParseException {
+		try {
+			Matcher matcher = COMMAND.matcher(line.strip());
+			if (!matcher.matches()) {
+				throw new IllegalArgumentException("sweepコマンドの書式が不正です(例: sweep x=0..10 step 0.5 : x*x/3)");
+			}
+			double from = number(matcher.group(2));
+			double to = number(matcher.group(3));
+			double step = number(matcher.group(4));
+			if (step == 0) {
+				throw new IllegalArgumentException("刻み幅に0は指定できません");
+			}
+			BigDecimal steps = BigDecimal.valueOf(to).subtract(BigDecimal.valueOf(from)).divide(BigDecimal.valueOf(step), 0, RoundingMode.FLOOR);
+			if (steps.signum() < 0) {
+				throw new IllegalArgumentException("範囲と刻み幅の向きが異なります");
+			}
+			if (steps.compareTo(BigDecimal.valueOf(Long.MAX_VALUE - 1)) >= 0) {
+				throw new IllegalArgumentException("範囲内の値が多すぎます");
+			}
+			ColumnFormula formula = parser.compileColumns(new FormulaItem(matcher.group(6).strip()), matcher.group(1));
+			return new RangeSweep(formula, matcher.group(1), from, step, steps.longValue() + 1, matcher.group(5) != null);
+		} catch (RuntimeException e) {
+			throw new ParseException("解析中にエラーが発生しました", e);
+		}
+	}
+
+	/**
+	 * 範囲や刻み幅に指定された数字を解析します。
+	 * @param text 数字
+	 * @return 数字の値
+	 * @throws IllegalArgumentException 有限の数字ではない場合
+	 */
+	private static double number(String text) {
+		try {
+			double value = Double.parseDouble(text);
+			if (Double.isFinite(value)) {
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			// 下で例外をスローします
+		}
+		throw new IllegalArgumentException(text + "は数字ではありません");
+	}
+
+	/**
+	 * 範囲内の全ての値について計算し、計算結果を出力します。
+	 * @param calc 計算に使用する計算機(複数のスレッドから同時に使用されます)
+	 * @param out 出力先
+	 */
+	void run(ArithmeticKernel calc, PrintStream out) {
+		long blocks = (this.COUNT + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		if (!this.SUMMARY) {
+			LongStream.range(0, blocks).parallel()
+				.mapToObj(block -> this.lines(block, calc))
+				.forEachOrdered(out::print);
+			out.flush();
+			return;
+		}
+		// 合計は誤差なく計算するため、ブロックをまとめる順番に関係なく同じ値になります
+		Summary summary = LongStream.range(0, blocks).parallel()
+			.mapToObj(block -> this.summarize(block, calc))
+			.reduce(new Summary(), Summary::add);
+		out.println(summary);
+		out.flush();
+	}
+
+	/**
+	 * 1つのブロックを計算し、計算結果を出力する文字列に変換します。
+	 * @param block ブロックの位置
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果を1行ずつ並べた文字列
+	 */
+	private String lines(long block, ArithmeticKernel calc) {
+		CalcResult[] results = this.evaluate(block, calc);
+		StringBuilder builder = new StringBuilder(results.length * 12);
+		for (CalcResult result : results) {
+			if (result == null) {
+				builder.append("ERROR");
+			} else {
+				builder.append(result.get().doubleValue());
+			}
+			builder.append(System.lineSeparator());
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 1つのブロックを計算し、集計します。
+	 * @param block ブロックの位置
+	 * @param calc 計算に使用する計算機
+	 * @return ブロックの集計結果
+	 */
+	private Summary summarize(long block, ArithmeticKernel calc) {
+		Summary summary = new Summary();
+		for (CalcResult result : this.evaluate(block, calc)) {
+			summary.add(result);
+		}
+		return summary;
+	}
+
+	/**
+	 * 1つのブロックを計算します。
+	 * @param block ブロックの位置
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果。エラーが発生した値はnull
+	 */
+	private CalcResult[] evaluate(long block, ArithmeticKernel calc) {
+		long start = block * BLOCK_SIZE;
+		double[] values = this.values(start, (int) Math.min(BLOCK_SIZE, this.COUNT - start));
+		try {
+			return this.FORMULA.evaluate(Map.of(this.VARIABLE, values), calc);
+		} catch (ParseException e) {
+			// エラーが発生した値があるブロックは、値を1つずつ計算し直します
+			CalcResult[] results = new CalcResult[values.length];
+			for (int i = 0; i < values.length; i++) {
+				try {
+					results[i] = this.FORMULA.evaluate(Map.of(this.VARIABLE, new double[] { values[i] }), calc)[0];
+				} catch (ParseException e1) {
+					results[i] = null;
+				}
+			}
+			return results;
+		}
+	}
+
+	/**
+	 * 変数の値(範囲の最初の値に、刻み幅と値の位置を掛けた値を足した値)を求めます。
+	 * @param start 最初の値の位置
+	 * @param length 値の数
+	 * @return 変数の値
+	 */
+	private double[] values(long start, int length) {
+		double[] values = new double[length];
+		double[] steps = new double[length];
+		double[] from = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = start + i;
+			steps[i] = this.STEP;
+			from[i] = this.FROM;
+		}
+		DecimalColumns.multiply(values, 0, steps, 0, values, 0, length);
+		DecimalColumns.plus(values, 0, from, 0, values, 0, length);
+		for (int i = 0; i < length; i++) {
+			// 誤差なく計算できることを保証できなかった値は、BigDecimalで計算し直します
+			if (Double.isNaN(values[i])) {
+				values[i] = BigDecimal.valueOf(this.STEP).multiply(BigDecimal.valueOf(start + i)).add(BigDecimal.valueOf(this.FROM)).doubleValue();
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * 計算結果の集計です。
+	 */
+	private static final class Summary {
+
+		/**
+		 * 計算結果の個数
+		 */
+		private long count;
+
+		/**
+		 * エラーの個数
+		 */
+		private long errors;
+
+		/**
+		 * 最小値
+		 */
+		private double min = Double.POSITIVE_INFINITY;
+
+		/**
+		 * 最大値
+		 */
+		private double max = Double.NEGATIVE_INFINITY;
+
+		/**
+		 * 合計のうち、{@link DecimalArithmetic}で誤差なく足せた部分
+		 */
+		private double partial;
+
+		/**
+		 * 合計のうち、DecimalArithmeticで誤差なく足せなくなった部分
+		 */
+		private BigDecimal sum = BigDecimal.ZERO;
+
+		/**
+		 * 計算結果を1つ追加します。
+		 * 合計は、値が大きくなってDecimalArithmeticで誤差なく足せなくなるまではdoubleのまま足し、足せなくなった場合のみBigDecimalに移します。
+		 * @param result 計算結果。エラーが発生した場合はnull
+		 */
+		private void add(CalcResult result) {
+			if (result == null) {
+				this.errors++;
+				return;
+			}
+			double value = result.get().doubleValue();
+			this.count++;
+			this.min = Math.min(this.min, value);
+			this.max = Math.max(this.max, value);
+			double partial = DecimalArithmetic.plus(this.partial, value);
+			if (Double.isNaN(partial)) {
+				this.sum = this.sum.add(BigDecimal.valueOf(this.partial));
+				this.partial = value;
+			} else {
+				this.partial = partial;
+			}
+		}
+
+		/**
+		 * 2つの集計結果をまとめます。
+		 * @param other まとめる集計結果
+		 * @return まとめた集計結果
+		 */
+		private Summary add(Summary other) {
+			Summary summary = new Summary();
+			summary.count = this.count + other.count;
+			summary.errors = this.errors + other.errors;
+			summary.min = Math.min(this.min, other.min);
+			summary.max = Math.max(this.max, other.max);
+			summary.sum = this.sum.add(BigDecimal.valueOf(this.partial)).add(other.sum).add(BigDecimal.valueOf(other.partial));
+			return summary;
+		}
+
+		@Override
+		public String toString() {
+			if (this.count == 0) {
+				return "count=0 errors=" + this.errors;
+			}
+			return "count=" + this.count + " errors=" + this.errors + " min=" + this.min + " max=" + this.max + " sum=" + this.sum.add(BigDecimal.valueOf(this.partial)).doubleValue();
+		}
+
+	}
+
+}
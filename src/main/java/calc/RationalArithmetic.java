@@ -0,0 +1,264 @@
+package calc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import item.CalcResult;
+
+/**
+ * 値を分子と分母(分数)で表し、割り算も含めて誤差なく計算するクラスです。<br>
+ * 分数は常に約分され、分母は正の数です。分子と分母は通常longで計算し、
+ * longでオーバーフローする場合のみ、{@link Math#multiplyExact(long, long)}等で検出してBigIntegerで計算し直します。<br>
+ * そのため、1/3*3のような計算も丸められずに1になります。
+ */
+public final class RationalArithmetic implements Arithmetic<RationalArithmetic.Fraction> {
+
+	/**
+	 * 約分された分数です。
+	 * @param numerator 分子(bigNumeratorがnullの場合のみ有効)
+	 * @param denominator 分母(bigNumeratorがnullの場合のみ有効)
+	 * @param bigNumerator オーバーフローしたためBigIntegerで表した分子。longで表せる場合はnull
+	 * @param bigDenominator オーバーフローしたためBigIntegerで表した分母。longで表せる場合はnull
+	 */
+	public record Fraction(long numerator, long denominator, BigInteger bigNumerator, BigInteger bigDenominator) {
+
+		/**
+		 * 分子をBigIntegerで返します。
+		 * @return 分子
+		 */
+		public BigInteger toBigNumerator() {
+			return (this.bigNumerator != null) ? this.bigNumerator : BigInteger.valueOf(this.numerator);
+		}
+
+		/**
+		 * 分母をBigIntegerで返します。
+		 * @return 分母
+		 */
+		public BigInteger toBigDenominator() {
+			return (this.bigNumerator != null) ? this.bigDenominator : BigInteger.valueOf(this.denominator);
+		}
+
+	}
+
+	/**
+	 * RationalArithmeticインスタンス
+	 */
+	private static final RationalArithmetic arithmetic = new RationalArithmetic();
+
+	/**
+	 * RationalArithmeticインスタンスを取得します。
+	 * @return RationalArithmeticインスタンス
+	 */
+	public static RationalArithmetic getArithmetic() {
+		return arithmetic;
+	}
+
+	/**
+	 * 外部からインスタンス化できません。
+	 */
+	private RationalArithmetic() {}
+
+	@Override
+	public Fraction valueOf(BigDecimal number) {
+		BigInteger unscaled = number.unscaledValue();
+		if (number.scale() <= 0) {
+			return of(unscaled.multiply(BigInteger.TEN.pow(-number.scale())), BigInteger.ONE);
+		}
+		return of(unscaled, BigInteger.TEN.pow(number.scale()));
+	}
+
+	@Override
+	public Fraction plus(Fraction x, Fraction y) {
+		if ((x.bigNumerator() == null) && (y.bigNumerator() == null)) {
+			try {
+				return add(x.numerator(), x.denominator(), y.numerator(), y.denominator());
+			} catch (ArithmeticException e) {
+				// オーバーフローした場合はBigIntegerで計算し直します
+			}
+		}
+		return of(x.toBigNumerator().multiply(y.toBigDenominator()).add(y.toBigNumerator().multiply(x.toBigDenominator())),
+				x.toBigDenominator().multiply(y.toBigDenominator()));
+	}
+
+	@Override
+	public Fraction minus(Fraction x, Fraction y) {
+		if ((x.bigNumerator() == null) && (y.bigNumerator() == null)) {
+			try {
+				return add(x.numerator(), x.denominator(), Math.negateExact(y.numerator()), y.denominator());
+			} catch (ArithmeticException e) {
+				// オーバーフローした場合はBigIntegerで計算し直します
+			}
+		}
+		return of(x.toBigNumerator().multiply(y.toBigDenominator()).subtract(y.toBigNumerator().multiply(x.toBigDenominator())),
+				x.toBigDenominator().multiply(y.toBigDenominator()));
+	}
+
+	@Override
+	public Fraction multiply(Fraction x, Fraction y) {
+		if ((x.bigNumerator() == null) && (y.bigNumerator() == null)) {
+			try {
+				return multiply(x.numerator(), x.denominator(), y.numerator(), y.denominator());
+			} catch (ArithmeticException e) {
+				// オーバーフローした場合はBigIntegerで計算し直します
+			}
+		}
+		return of(x.toBigNumerator().multiply(y.toBigNumerator()), x.toBigDenominator().multiply(y.toBigDenominator()));
+	}
+
+	/**
+	 * {@inheritDoc}<br>
+	 * 計算結果は丸められません。
+	 */
+	@Override
+	public Fraction divide(Fraction x, Fraction y) {
+		if ((y.bigNumerator() == null) && (y.numerator() == 0)) {
+			throw new ArithmeticException("0で割ることは出来ません");
+		}
+		if ((x.bigNumerator() == null) && (y.bigNumerator() == null)) {
+			try {
+				// 逆数の分母が正の数になるよう、符号を分子に移します
+				return (y.numerator() > 0)
+						? multiply(x.numerator(), x.denominator(), y.denominator(), y.numerator())
+						: multiply(x.numerator(), x.denominator(), Math.negateExact(y.denominator()), Math.negateExact(y.numerator()));
+			} catch (ArithmeticException e) {
+				// オーバーフローした場合はBigIntegerで計算し直します
+			}
+		}
+		return of(x.toBigNumerator().multiply(y.toBigDenominator()), x.toBigDenominator().multiply(y.toBigNumerator()));
+	}
+
+	@Override
+	public CalcResult toResult(Fraction value) {
+		return CalcResult.ofFraction(value.toBigNumerator(), value.toBigDenominator());
+	}
+
+	/**
+	 * {@inheritDoc}<br>
+	 * 分数の場合は「分子/分母」、整数の場合は分子のみを返します。
+	 */
+	@Override
+	public String format(CalcResult result) {
+		if (BigInteger.ONE.equals(result.getDenominator())) {
+			return result.getNumerator().toString();
+		}
+		return result.getNumerator() + "/" + result.getDenominator();
+	}
+
+	/**
+	 * 約分された分数どうしを、longのまま足します。<br>
+	 * 分母の最大公約数で先に割っておくことで、オーバーフローしにくくしています。
+	 * @param a xの分子
+	 * @param b xの分母
+	 * @param c yの分子
+	 * @param d yの分母
+	 * @return 計算結果
+	 * @throws ArithmeticException longでオーバーフローした場合
+	 */
+	private static Fraction add(long a, long b, long c, long d) {
+		long g = gcd(b, d);
+		if (g == 1) {
+			return new Fraction(checkOverflow(Math.addExact(Math.multiplyExact(a, d), Math.multiplyExact(c, b))),
+					Math.multiplyExact(b, d), null, null);
+		}
+		long t = checkOverflow(Math.addExact(Math.multiplyExact(a, d / g), Math.multiplyExact(c, b / g)));
+		long h = gcd(Math.abs(t), g);
+		return new Fraction(t / h, Math.multiplyExact(b / g, d / h), null, null);
+	}
+
+	/**
+	 * 約分された分数どうしを、longのまま掛けます。<br>
+	 * 分子と分母の最大公約数で先に割っておくことで、オーバーフローしにくくしています。
+	 * @param a xの分子
+	 * @param b xの分母
+	 * @param c yの分子
+	 * @param d yの分母(正の数)
+	 * @return 計算結果
+	 * @throws ArithmeticException longでオーバーフローした場合
+	 */
+	private static Fraction multiply(long a, long b, long c, long d) {
+		long g1 = gcd(Math.abs(a), d);
+		long g2 = gcd(Math.abs(c), b);
+		return new Fraction(checkOverflow(Math.multiplyExact(a / g1, c / g2)), Math.multiplyExact(b / g2, d / g1), null, null);
+	}
+
+	/**
+	 * 分子と分母を約分した分数を返します。longで表せる場合はlongの分数にします。
+	 * @param numerator 分子
+	 * @param denominator 分母(0以外)
+	 * @return 約分した分数
+	 */
+	private static Fraction of(BigInteger numerator, BigInteger denominator) {
+		if (denominator.signum() < 0) {
+			numerator = numerator.negate();
+			denominator = denominator.negate();
+		}
+		BigInteger gcd = numerator.gcd(denominator);
+		if (!gcd.equals(BigInteger.ONE) && (gcd.signum() != 0)) {
+			numerator = numerator.divide(gcd);
+			denominator = denominator.divide(gcd);
+		}
+		if ((numerator.bitLength() < Long.SIZE) && (denominator.bitLength() < Long.SIZE) && (numerator.longValue() != Long.MIN_VALUE)) {
+			return new Fraction(numerator.longValue(), denominator.longValue(), null, null);
+		}
+		return new Fraction(0, 1, numerator, denominator);
+	}
+
+	/**
+	 * 0以上の整数の最大公約数を求めます。<br>
+	 * 両方intで表せる場合は、longより高速なintの割り算でユークリッドの互除法を使用し、
+	 * それ以外の場合は、割り算を使用しない2進数の互除法を使用します。
+	 * @param x 0以上の整数
+	 * @param y 0以上の整数
+	 * @return 最大公約数。両方0の場合は1
+	 */
+	static long gcd(long x, long y) {
+		if (((x | y) >>> (Integer.SIZE - 1)) == 0) {
+			int a = (int) x;
+			int b = (int) y;
+			while (b != 0) {
+				int t = a % b;
+				a = b;
+				b = t;
+			}
+			return (a == 0) ? 1 : a;
+		}
+		if (x == 0) {
+			return y;
+		}
+		if (y == 0) {
+			return x;
+		}
+		int shift = Long.numberOfTrailingZeros(x | y);
+		x >>>= Long.numberOfTrailingZeros(x);
+		while (y != 0) {
+			y >>>= Long.numberOfTrailingZeros(y);
+			if (x > y) {
+				long t = x;
+				x = y;
+				y = t;
+			}
+			y -= x;
+		}
+		return x << shift;
+	}
+
+	/**
+	 * 分子がLong.MIN_VALUEの場合に、オーバーフローとして扱います。<br>
+	 * Long.MIN_VALUEは絶対値や符号の反転がオーバーフローするため、longの分数の分子には使用しません。
+	 * @param numerator 分子
+	 * @return 分子
+	 * @throws ArithmeticException 分子がLong.MIN_VALUEの場合
+	 */
+	private static long checkOverflow(long numerator) {
+		if (numerator == Long.MIN_VALUE) {
+			throw new ArithmeticException();
+		}
+		return numerator;
+	}
+
+	@Override
+	public String toString() {
+		return "RationalArithmetic";
+	}
+
+}
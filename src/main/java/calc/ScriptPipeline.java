@@ -0,0 +1,378 @@
+package calc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import input.CUIInputer;
+import item.FormulaItem;
+import parse.ParseException;
+import parse.Parser;
+
+/**
+ * CUI電卓のスクリプトモードで、大量の行を高速に計算するためのクラスです。<br>
+ * 入力を読み込むスレッド、計算するスレッド(複数)、計算結果を出力するスレッドの3段階に分けて、各段階を同時に進めます。
+ * <ol>
+ * <li>読み込み: {@link CUIInputer#getReader(int)}で入力をまとめて読み込み、{@link #BATCH_SIZE}行ずつのバッチにして計算するスレッドに渡します。
+ * <code>change-mode</code>と<code>change-precision</code>はこの段階で処理し、それ以降のバッチにのみ反映します。</li>
+ * <li>計算: バッチごとに、全ての行の出力をまとめた文字列を作成します。</li>
+ * <li>出力: バッチを入力された順番に、大きなバッファにまとめてから書き込みます。
+ * <code>sweep</code>コマンドは、それまでの出力を書き込んだ後にこのスレッドで実行します。</li>
+ * </ol>
+ * 出力される内容と順番は、1行ずつ計算する通常のスクリプトモードと同じです。<br>
+ * 出力をフラッシュする間隔は、システムプロパティ<code>calc.ScriptPipeline.flushLines</code>で指定できます。
+ * 既定値の-1は、出力するスレッドが入力に追いついた(次のバッチの計算が終わっていない)場合、
+ * 0は全ての入力を処理し終えた場合のみ、正の値はその行数を出力するごとにフラッシュします。<br>
+ * 計算するスレッドの数はシステムプロパティ<code>calc.ScriptPipeline.workers</code>で指定できます。既定値は使用できるプロセッサの数です。
+ */
+final class ScriptPipeline {
+
+	/**
+	 * 1つのバッチにまとめる行数
+	 */
+	private static final int BATCH_SIZE = 4096;
+
+	/**
+	 * 入力と出力のバッファのサイズ(文字数)
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * 出力をフラッシュする行数の間隔。-1の場合は出力が入力に追いついた場合、0の場合は最後のみフラッシュします。
+	 */
+	private static final long FLUSH_LINES = Long.getLong("calc.ScriptPipeline.flushLines", -1);
+
+	/**
+	 * 計算するスレッドの数
+	 */
+	private static final int WORKERS = Math.max(1, Integer.getInteger("calc.ScriptPipeline.workers", Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * 入力の終わりを表すバッチ
+	 */
+	private static final CompletableFuture<Batch> END = CompletableFuture.completedFuture(null);
+
+	/**
+	 * 計算に使用する計算機。パーサと精度モードの状態も保持します
+	 */
+	private final CUICalculator CALC;
+
+	/**
+	 * 出力するスレッドに渡す、計算中または計算済みのバッチ(入力された順番)
+	 */
+	private final BlockingQueue<CompletableFuture<Batch>> QUEUE = new ArrayBlockingQueue<>(WORKERS * 4);
+
+	/**
+	 * 出力するスレッドで発生した例外
+	 */
+	private volatile Throwable failure;
+
+	/**
+	 * スクリプトモードの処理を作成します。
+	 * @param calc 計算に使用する計算機
+	 */
+	ScriptPipeline(CUICalculator calc) {
+		this.CALC = calc;
+	}
+
+	/**
+	 * 入力が終わるか<code>exit</code>が入力されるまで、入力された行を計算して出力します。
+	 * @throws UncheckedIOException 入出力中にエラーが発生した場合
+	 */
+	void run() {
+		ExecutorService workers = Executors.newFixedThreadPool(WORKERS, runnable -> {
+			Thread thread = new Thread(runnable, "ScriptPipeline-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		Thread writer = new Thread(this::write, "ScriptPipeline-writer");
+		writer.start();
+		try (BufferedReader reader = new CUIInputer().getReader(BUFFER_SIZE)) {
+			this.read(reader, workers);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			this.put(END);
+			this.join(writer);
+			workers.shutdown();
+		}
+		if (this.failure instanceof RuntimeException e) {
+			throw e;
+		}
+		if (this.failure instanceof Error e) {
+			throw e;
+		}
+	}
+
+	/**
+	 * 入力された行をバッチにまとめて、計算するスレッドに渡します。
+	 * @param reader 入力
+	 * @param workers 計算するスレッド
+	 * @throws IOException 入力中にエラーが発生した場合
+	 */
+	private void read(BufferedReader reader, ExecutorService workers) throws IOException {
+		Batch batch = new Batch(this.CALC.parser, this.CALC.arithmetic);
+		String line;
+		while ((line = reader.readLine()) != null && this.failure == null) {
+			line = line.trim();
+			switch (line) {
+				case "exit":
+					this.submit(batch, workers);
+					return;
+
+				case "change-mode":
+					this.submit(batch, workers);
+					this.CALC.changeParser();
+					batch = new Batch(this.CALC.parser, this.CALC.arithmetic);
+					break;
+
+				case "change-precision":
+					this.submit(batch, workers);
+					this.CALC.changePrecision();
+					batch = new Batch(this.CALC.parser, this.CALC.arithmetic);
+					break;
+
+				case "":
+					break;
+
+				default:
+					if (line.startsWith(RangeSweep.PREFIX)) {
+						this.submit(batch, workers);
+						this.put(CompletableFuture.completedFuture(new Batch(this.CALC.parser, line)));
+						batch = new Batch(this.CALC.parser, this.CALC.arithmetic);
+					} else if (batch.add(line) == BATCH_SIZE) {
+						this.submit(batch, workers);
+						batch = new Batch(this.CALC.parser, this.CALC.arithmetic);
+					}
+					break;
+			}
+		}
+		this.submit(batch, workers);
+	}
+
+	/**
+	 * バッチの計算を開始し、出力するスレッドに渡します。行がないバッチは何もしません。
+	 * @param batch バッチ
+	 * @param workers 計算するスレッド
+	 */
+	private void submit(Batch batch, ExecutorService workers) {
+		if (batch.size() > 0) {
+			this.put(CompletableFuture.supplyAsync(() -> batch.evaluate(ArithmeticKernel.getKernel()), workers));
+		}
+	}
+
+	/**
+	 * 出力するスレッドにバッチを渡します。出力が追いついていない場合は待機します。
+	 * @param batch バッチ
+	 */
+	private void put(CompletableFuture<Batch> batch) {
+		try {
+			this.QUEUE.put(batch);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("入力の処理中に割り込まれました", e);
+		}
+	}
+
+	/**
+	 * スレッドの終了を待機します。
+	 * @param thread 待機するスレッド
+	 */
+	private void join(Thread thread) {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("出力の終了を待機中に割り込まれました", e);
+		}
+	}
+
+	/**
+	 * 出力するスレッドの処理です。バッチを入力された順番に出力します。<br>
+	 * 出力は{@link #BUFFER_SIZE}文字までまとめてから、1回の{@link PrintStream#print(String)}で書き込みます。
+	 * 例外が発生した場合は記録し、読み込むスレッドが待機し続けないように、残りのバッチを出力せずに受け取り続けます。
+	 */
+	private void write() {
+		PrintStream out = System.out;
+		StringBuilder buffer = new StringBuilder(BUFFER_SIZE);
+		long unflushed = 0;
+		try {
+			while (true) {
+				CompletableFuture<Batch> future = this.QUEUE.take();
+				if (future == END) {
+					break;
+				}
+				if (this.failure != null) {
+					continue;
+				}
+				try {
+					Batch batch = future.join();
+					if (batch.sweep != null) {
+						flush(buffer, out);
+						this.sweep(batch, out);
+						continue;
+					}
+					buffer.append(batch.output);
+					if (batch.errors.length() > 0) {
+						flush(buffer, out);
+						System.err.print(batch.errors);
+					}
+					unflushed += batch.size();
+					if ((FLUSH_LINES < 0 && this.QUEUE.isEmpty()) || (FLUSH_LINES > 0 && unflushed >= FLUSH_LINES)) {
+						flush(buffer, out);
+						unflushed = 0;
+					} else if (buffer.length() >= BUFFER_SIZE) {
+						out.print(buffer.toString());
+						buffer.setLength(0);
+					}
+				} catch (Throwable e) {
+					this.failure = e;
+				}
+			}
+			flush(buffer, out);
+		} catch (InterruptedException e) {
+			this.failure = new IllegalStateException("出力中に割り込まれました", e);
+		}
+	}
+
+	/**
+	 * まとめた出力を書き込み、フラッシュします。
+	 * @param buffer まとめた出力
+	 * @param out 出力先
+	 */
+	private static void flush(StringBuilder buffer, PrintStream out) {
+		if (buffer.length() > 0) {
+			out.print(buffer.toString());
+			buffer.setLength(0);
+		}
+		out.flush();
+	}
+
+	/**
+	 * sweepコマンドを実行します。
+	 * @param batch sweepコマンドを表すバッチ
+	 * @param out 出力先
+	 */
+	private void sweep(Batch batch, PrintStream out) {
+		try {
+			RangeSweep.parse(batch.sweep, batch.PARSER).run(ArithmeticKernel.getKernel(), out);
+		} catch (ParseException e) {
+			out.println("ERROR");
+			System.err.println(e.getCause().getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * 連続して入力された数式のまとまりです。
+	 */
+	private static final class Batch {
+
+		/**
+		 * 計算に使用するパーサ
+		 */
+		private final Parser PARSER;
+
+		/**
+		 * 精度モードで計算に使用する数の種類。doubleで計算する場合はnull
+		 */
+		private final Arithmetic<?> ARITHMETIC;
+
+		/**
+		 * 入力された数式
+		 */
+		private final String[] lines = new String[BATCH_SIZE];
+
+		/**
+		 * 入力された数式の数
+		 */
+		private int size;
+
+		/**
+		 * sweepコマンド。数式のまとまりの場合はnull
+		 */
+		private final String sweep;
+
+		/**
+		 * 標準出力に出力する内容
+		 */
+		private final StringBuilder output = new StringBuilder();
+
+		/**
+		 * 標準エラー出力に出力する内容
+		 */
+		private final StringBuilder errors = new StringBuilder();
+
+		/**
+		 * 数式のまとまりを作成します。
+		 * @param parser 計算に使用するパーサ
+		 * @param arithmetic 精度モードで計算に使用する数の種類
+		 */
+		private Batch(Parser parser, Arithmetic<?> arithmetic) {
+			this.PARSER = parser;
+			this.ARITHMETIC = arithmetic;
+			this.sweep = null;
+		}
+
+		/**
+		 * sweepコマンドを表すバッチを作成します。
+		 * @param parser 数式の解析に使用するパーサ
+		 * @param sweep sweepコマンド
+		 */
+		private Batch(Parser parser, String sweep) {
+			this.PARSER = parser;
+			this.ARITHMETIC = null;
+			this.sweep = sweep;
+		}
+
+		/**
+		 * 数式を追加します。
+		 * @param line 数式
+		 * @return 追加後の数式の数
+		 */
+		private int add(String line) {
+			this.lines[this.size] = line;
+			return ++this.size;
+		}
+
+		/**
+		 * 入力された数式の数を返します。
+		 * @return 数式の数
+		 */
+		private int size() {
+			return this.size;
+		}
+
+		/**
+		 * 全ての数式を計算し、出力する内容を作成します。
+		 * @param calc 計算に使用する計算機
+		 * @return このバッチ
+		 */
+		private Batch evaluate(ArithmeticKernel calc) {
+			String separator = System.lineSeparator();
+			for (int i = 0; i < this.size; i++) {
+				FormulaItem item = new FormulaItem(this.lines[i]);
+				try {
+					if (this.ARITHMETIC == null) {
+						this.output.append(this.PARSER.parseAndCalc(item, calc).get().doubleValue());
+					} else {
+						this.output.append(this.ARITHMETIC.format(this.PARSER.parseAndCalc(item, this.ARITHMETIC)));
+					}
+				} catch (ParseException e) {
+					this.output.append("ERROR");
+					this.errors.append(e.getCause().getLocalizedMessage()).append(separator);
+				}
+				this.output.append(separator);
+				this.lines[i] = null;
+			}
+			return this;
+		}
+
+	}
+
+}
@@ -9,6 +9,7 @@ import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.PlainDocument;
 
+import calc.ArithmeticKernel;
 import calc.Calculator;
 import gui.view.InputPanel;
 import history.HistoryDAO;
@@ -171,9 +172,8 @@ public final class InputTextFieldDocument extends PlainDocument {
 		PANEL.getTextField().setText("");
 		FormulaItem item = new FormulaItem(formulaString);
 		Parser parser = PANEL.getWindowFrame().getCalcMode().getParser();
-		Calculator calculator = Calculator.getGUICalc();
 		try {
-			CalcResult result = parser.parseAndCalc(item, calculator);
+			CalcResult result = parser.parseAndCalc(item, ArithmeticKernel.getKernel());
 			PANEL.getTextField().setText(BigDecimal.valueOf(result.get()).toPlainString());
 			try {
 				HistoryDAO.saveHistory(new History(-1, item, result, parser));
@@ -1,5 +1,7 @@
 package item;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Objects;
 
 import annotation.Unsupported;
@@ -14,6 +16,21 @@ public class CalcResult extends AbstractItem<Double> {
      */
     private final Double RESULT;
 
+    /**
+     * 計算の途中の値をBigDecimalのまま計算した場合に、その計算結果を格納しています。doubleで計算した場合はnullです。
+     */
+    private final BigDecimal DECIMAL;
+
+    /**
+     * 計算の途中の値を分数のまま計算した場合に、その計算結果の分子を格納しています。分数で計算していない場合はnullです。
+     */
+    private final BigInteger NUMERATOR;
+
+    /**
+     * 計算の途中の値を分数のまま計算した場合に、その計算結果の分母(正の数)を格納しています。分数で計算していない場合はnullです。
+     */
+    private final BigInteger DENOMINATOR;
+
     @Override
     public int hashCode() {
         return Objects.hash(RESULT);
@@ -34,7 +51,12 @@ public class CalcResult extends AbstractItem<Double> {
                 return false;
         } else if (!RESULT.equals(other.RESULT))
             return false;
-        return true;
+        if (!Objects.equals(NUMERATOR, other.NUMERATOR) || !Objects.equals(DENOMINATOR, other.DENOMINATOR))
+            return false;
+        if (DECIMAL == null) {
+            return other.DECIMAL == null;
+        }
+        return (other.DECIMAL != null) && (DECIMAL.compareTo(other.DECIMAL) == 0);
     }
 
     /**
@@ -45,6 +67,59 @@ public class CalcResult extends AbstractItem<Double> {
     public CalcResult(double result) {
     	this.checkNull(result);
         this.RESULT = result;
+        this.DECIMAL = null;
+        this.NUMERATOR = null;
+        this.DENOMINATOR = null;
+    }
+
+    /**
+     * BigDecimalで計算した計算結果を保存します。<br>
+     * {@link #get()}はこの値をdoubleに変換した値を返し、{@link #getDecimal()}はこの値をそのまま返します。
+     * @param result 計算結果
+     * @throws IllegalArgumentException 計算結果がnullの場合
+     */
+    public CalcResult(BigDecimal result) {
+    	this.checkNull(result);
+        this.RESULT = result.doubleValue();
+        this.DECIMAL = result;
+        this.NUMERATOR = null;
+        this.DENOMINATOR = null;
+    }
+
+    /**
+     * 分数で計算した計算結果を保存します。<br>
+     * {@link #get()}は分数に最も近いdoubleを返し、{@link #getNumerator()}と{@link #getDenominator()}は約分された分子と分母を返します。
+     * @param numerator 計算結果の分子
+     * @param denominator 計算結果の分母(正の数)
+     * @return 計算結果
+     * @throws IllegalArgumentException 分子か分母がnullの場合、または分母が正の数でない場合
+     */
+    public static CalcResult ofFraction(BigInteger numerator, BigInteger denominator) {
+    	if ((numerator == null) || (denominator == null) || (denominator.signum() <= 0)) {
+    		throw new IllegalArgumentException("分母は正の数である必要があります");
+    	}
+    	if ((numerator.bitLength() < Long.SIZE - 1) && (denominator.bitLength() < Long.SIZE - 1)) {
+    		// longで表せる場合は、BigIntegerより高速なlongで最大公約数を求めます
+    		long gcd = gcd(Math.abs(numerator.longValue()), denominator.longValue());
+    		if (gcd == 1) {
+    			return new CalcResult(numerator, denominator);
+    		}
+    		return new CalcResult(BigInteger.valueOf(numerator.longValue() / gcd), BigInteger.valueOf(denominator.longValue() / gcd));
+    	}
+    	BigInteger gcd = numerator.gcd(denominator);
+    	return new CalcResult(numerator.divide(gcd), denominator.divide(gcd));
+    }
+
+    /**
+     * 約分された分数の計算結果を保存します。
+     * @param numerator 計算結果の分子
+     * @param denominator 計算結果の分母(正の数)
+     */
+    private CalcResult(BigInteger numerator, BigInteger denominator) {
+        this.NUMERATOR = numerator;
+        this.DENOMINATOR = denominator;
+        this.RESULT = toDouble(numerator, denominator);
+        this.DECIMAL = null;
     }
 
     /**
@@ -56,6 +131,86 @@ public class CalcResult extends AbstractItem<Double> {
         return this.RESULT;
     }
 
+    /**
+     * 計算結果をBigDecimalで返します。<br>
+     * BigDecimalで計算した場合はその計算結果を、doubleや分数で計算した場合は{@link #get()}の値を10進数に変換した値を返します。
+     * @return 計算結果
+     */
+    public BigDecimal getDecimal() {
+        return (this.DECIMAL != null) ? this.DECIMAL : BigDecimal.valueOf(this.RESULT);
+    }
+
+    /**
+     * 計算結果を約分した分数で表した場合の分子を返します。<br>
+     * 分数で計算した場合はその分子を、それ以外の場合は{@link #getDecimal()}を分数に変換した分子を返します。
+     * @return 計算結果の分子
+     */
+    public BigInteger getNumerator() {
+        if (this.NUMERATOR != null) {
+            return this.NUMERATOR;
+        }
+        BigDecimal decimal = this.getDecimal();
+        if (decimal.scale() <= 0) {
+            return decimal.toBigIntegerExact();
+        }
+        return decimal.unscaledValue().divide(decimal.unscaledValue().gcd(BigInteger.TEN.pow(decimal.scale())));
+    }
+
+    /**
+     * 計算結果を約分した分数で表した場合の分母(正の数)を返します。<br>
+     * 分数で計算した場合はその分母を、それ以外の場合は{@link #getDecimal()}を分数に変換した分母を返します。
+     * @return 計算結果の分母
+     */
+    public BigInteger getDenominator() {
+        if (this.DENOMINATOR != null) {
+            return this.DENOMINATOR;
+        }
+        BigDecimal decimal = this.getDecimal();
+        if (decimal.scale() <= 0) {
+            return BigInteger.ONE;
+        }
+        BigInteger power = BigInteger.TEN.pow(decimal.scale());
+        return power.divide(decimal.unscaledValue().gcd(power));
+    }
+
+    /**
+     * 分数を最も近いdoubleに丸めます。<br>
+     * 商が55ビット以上になるよう分子をずらして割り、割り切れない場合は最下位ビットを1にすることで、
+     * {@link BigInteger#doubleValue()}の1回の丸めで正しく丸められるようにしています(非正規化数になる場合を除きます)。
+     * @param numerator 分子
+     * @param denominator 分母(正の数)
+     * @return 分数に最も近いdouble
+     */
+    private static double toDouble(BigInteger numerator, BigInteger denominator) {
+        if (numerator.bitLength() < 54 && denominator.bitLength() < 54) {
+            // 分子と分母がどちらもdoubleで誤差なく表せる場合、doubleの割り算は正しく丸められます
+            return numerator.doubleValue() / denominator.doubleValue();
+        }
+        int shift = Math.max(0, 55 + denominator.bitLength() - numerator.bitLength());
+        BigInteger[] quotient = numerator.abs().shiftLeft(shift).divideAndRemainder(denominator);
+        BigInteger scaled = quotient[0].shiftLeft(1);
+        if (quotient[1].signum() != 0) {
+            scaled = scaled.setBit(0);
+        }
+        double result = Math.scalb(scaled.doubleValue(), -shift - 1);
+        return (numerator.signum() < 0) ? -result : result;
+    }
+
+    /**
+     * ユークリッドの互除法で、0以上の整数と正の整数の最大公約数を求めます。
+     * @param x 0以上の整数
+     * @param y 正の整数
+     * @return 最大公約数
+     */
+    private static long gcd(long x, long y) {
+        while (x != 0) {
+            long t = y % x;
+            y = x;
+            x = t;
+        }
+        return y;
+    }
+
     /**
      * 保存されている結果データを書き換えることは出来ません。<br />
      * そのため、常にUnsupportedOperationExceptionをスローします。
@@ -70,6 +225,12 @@ public class CalcResult extends AbstractItem<Double> {
 
     @Override
     public String toString() {
+        if (DECIMAL != null) {
+            return "CalcResult [RESULT=" + RESULT + ", DECIMAL=" + DECIMAL + "]";
+        }
+        if (NUMERATOR != null) {
+            return "CalcResult [RESULT=" + RESULT + ", NUMERATOR=" + NUMERATOR + ", DENOMINATOR=" + DENOMINATOR + "]";
+        }
         return "CalcResult [RESULT=" + RESULT + "]";
     }
 
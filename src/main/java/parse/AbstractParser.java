@@ -1,11 +1,11 @@
 package parse;
 
-import java.io.StringReader;
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.function.DoubleBinaryOperator;
 
-import calc.Calculator;
+import calc.ArithmeticKernel;
 import item.CalcResult;
 import item.FormulaItem;
 
@@ -59,6 +59,22 @@ public abstract class AbstractParser implements Parser {
     	PARENTHESES;
     }
 
+    /**
+     * 演算子をどの順番で計算するかを指定するのに使用します。
+     */
+    protected enum EvaluationOrder {
+
+    	/**
+    	 * 掛け算や割り算に関係なく、左から右に計算します。
+    	 */
+    	LEFT_TO_RIGHT,
+
+    	/**
+    	 * 掛け算や割り算を先に計算し、足し算や引き算を後に計算します。
+    	 */
+    	OPERATOR_PRECEDENCE;
+    }
+
 	/**
 	 * 計算式を解析して、計算機を使用して計算します。<br>
 	 * modesには足し算引き算掛け算割り算の中から何を計算するかを指定します。<br>
@@ -71,110 +87,109 @@ public abstract class AbstractParser implements Parser {
 	 * @return 計算された数式
 	 * @throws ParseException 計算中にエラーが発生した場合
 	 */
-    protected FormulaItem parseAndCalc(FormulaItem item, Calculator calc, ParseMode... modes) throws ParseException {
+    protected FormulaItem parseAndCalc(FormulaItem item, ArithmeticKernel calc, ParseMode... modes) throws ParseException {
         FormulaItem.Builder returnItem = new FormulaItem.Builder();
-		StringReader reader = new StringReader(item.get());
-		boolean parentheses = Arrays.asList(modes).contains(ParseMode.PARENTHESES);
-		if (parentheses && (Arrays.asList(modes).size() != 1)) {
+		EnumSet<ParseMode> modeSet = EnumSet.noneOf(ParseMode.class);
+		modeSet.addAll(Arrays.asList(modes));
+		boolean parentheses = modeSet.contains(ParseMode.PARENTHESES);
+		if (parentheses && (modes.length != 1)) {
 			throw new IllegalArgumentException("ParseMode... modesにParseMode.PARENTHESESを指定する場合、それ以外は指定できません。");
 		}
 		try {
-			int read = reader.read();
-			StringBuilder doubleBuilder = new StringBuilder();
+			FormulaLexer lexer = new FormulaLexer(item.get());
 			DoubleBinaryOperator calcOperator = null;
 			double previusDouble = 0;
-			boolean firstInput = true;
 			boolean parenthesesClosed = false;
-			LOOP: while (read != -1) {
-				char text = (char) read;
-                try {
-                    if ((!(firstInput == true && (text == '+' || text == '-'))) && text != '.') {
-                        Integer.parseInt(String.valueOf(text));
-                    }
-                    if (parenthesesClosed) {
+			double closedNumber = 0;
+			Cancellation cancellation = Cancellation.current();
+			LOOP: while (lexer.hasNext()) {
+				cancellation.checkpoint();
+				double inputNumber;
+				boolean validNumber;
+				if (parenthesesClosed) {
+					if (FormulaLexer.isNumberChar(lexer.peek())) {
 						throw new IllegalArgumentException("括弧の終わりの後に数字が入力されました。");
 					}
-                    doubleBuilder.append(text);
-                    firstInput = false;
-                } catch (NumberFormatException e) {
-                	parenthesesClosed = false;
-                	firstInput = true;
-					double inputNumber;
-					try {
-						inputNumber = Double.parseDouble(doubleBuilder.toString());
-					} catch (NumberFormatException e1) {
-						if ((parentheses) && (text == '(')) {
-							inputNumber = 1;
+					parenthesesClosed = false;
+					inputNumber = closedNumber;
+					validNumber = true;
+				} else {
+					validNumber = lexer.scanNumber();
+					inputNumber = lexer.number();
+					if (!lexer.hasNext()) {
+						break;
+					}
+				}
+				char text = lexer.next();
+				if (!validNumber) {
+					if ((parentheses) && (text == '(')) {
+						inputNumber = 1;
+					} else {
+						throw new IllegalArgumentException("入力された計算式が不正です。");
+					}
+				}
+				if (calcOperator != null) {
+					double calcResult = calcOperator.applyAsDouble(previusDouble, inputNumber);
+					inputNumber = calcResult;
+                }
+				calcOperator = null;
+				switch (text) {
+					case '+':
+						if (modeSet.contains(ParseMode.PLUS)) {
+							previusDouble = inputNumber;
+							calcOperator = calc::plus;
 						} else {
-							throw new IllegalArgumentException("入力された計算式が不正です。");
+							returnItem.add(BigDecimal.valueOf(inputNumber).toPlainString() + "+");
 						}
-					}
-					doubleBuilder = new StringBuilder();
-					if (calcOperator != null) {
-						double calcResult = calcOperator.applyAsDouble(previusDouble, inputNumber);
-						inputNumber = calcResult;
-                    }
-					calcOperator = null;
-					switch (text) {
-						case '+':
-							if (Arrays.asList(modes).contains(ParseMode.PLUS)) {
-								previusDouble = inputNumber;
-								calcOperator = calc::plus;
-							} else {
-								returnItem.add(BigDecimal.valueOf(inputNumber).toPlainString() + "+");
-							}
-                            break;
+                        break;
 
-                        case '-':
-							if (Arrays.asList(modes).contains(ParseMode.MINUS)) {
-								previusDouble = inputNumber;
-								calcOperator = calc::minus;
-							} else {
-								returnItem.add(BigDecimal.valueOf(inputNumber).toPlainString() + "-");
-							}
-                            break;
-                        
-                        case '*':
-							if (Arrays.asList(modes).contains(ParseMode.MULTIPLY)) {
-								previusDouble = inputNumber;
-                            	calcOperator = calc::multiply;
-							} else {
-								returnItem.add(BigDecimal.valueOf(inputNumber).toPlainString() + "*");
-							}
-                            break;
-                        
-                        case '/':
-							if (Arrays.asList(modes).contains(ParseMode.DIVIDE)) {
-								previusDouble = inputNumber;
-								calcOperator = calc::divide;
-							} else {
-								returnItem.add(BigDecimal.valueOf(inputNumber).toPlainString() + "/");
-							}
-                            break;
-                            
-                        case '(':
-                        	if (parentheses) {
-								double result = this.parseParenthesesAndCalc(reader, calc).get();
-								parenthesesClosed = true;
-								doubleBuilder.append(calc.multiply(result, inputNumber));
-								firstInput = false;
-								break;
-							}
+                    case '-':
+						if (modeSet.contains(ParseMode.MINUS)) {
+							previusDouble = inputNumber;
+							calcOperator = calc::minus;
+						} else {
+							returnItem.add(BigDecimal.valueOf(inputNumber).toPlainString() + "-");
+						}
+                        break;
+                    
+                    case '*':
+						if (modeSet.contains(ParseMode.MULTIPLY)) {
+							previusDouble = inputNumber;
+                        	calcOperator = calc::multiply;
+						} else {
+							returnItem.add(BigDecimal.valueOf(inputNumber).toPlainString() + "*");
+						}
+                        break;
+                    
+                    case '/':
+						if (modeSet.contains(ParseMode.DIVIDE)) {
+							previusDouble = inputNumber;
+							calcOperator = calc::divide;
+						} else {
+							returnItem.add(BigDecimal.valueOf(inputNumber).toPlainString() + "/");
+						}
+                        break;
                         
-                        case ')':
-                        	if (parentheses) {
-                        		throw new IllegalArgumentException("括弧の始まりが来る前に括弧の終わりが来ました");
-                        	}
-
-                        case '=':
-							returnItem.add(BigDecimal.valueOf(inputNumber).toPlainString() + "=");
-                            break LOOP;
+                    case '(':
+                    	if (parentheses) {
+							double result = this.parseParenthesesAndCalc(lexer, calc).get();
+							parenthesesClosed = true;
+							closedNumber = calc.multiply(result, inputNumber);
+							break;
+						}
                     
-                        default:
-                            throw new IllegalArgumentException("使用できない文字が含まれています");
-                    }
-				}
-				read = reader.read();
+                    case ')':
+                    	if (parentheses) {
+                    		throw new IllegalArgumentException("括弧の始まりが来る前に括弧の終わりが来ました");
+                    	}
+
+                    case '=':
+						returnItem.add(BigDecimal.valueOf(inputNumber).toPlainString() + "=");
+                        break LOOP;
+                
+                    default:
+                        throw new IllegalArgumentException("使用できない文字が含まれています");
+                }
 			}
 			return returnItem.toFormula();
 		} catch (Exception e) {
@@ -183,36 +198,27 @@ public abstract class AbstractParser implements Parser {
     }
     
     /**
-     * 括弧を解析し、計算します。
-     * @param reader 現在解析処理に使用しているStringReader
+     * 括弧を解析し、計算します。<br>
+     * 括弧の中の数式は、最初の'='までを使用します。
+     * @param lexer 現在解析処理に使用している字句解析クラス
      * @param calc 計算に使用する計算機クラス
      * @return 計算結果
      * @throws ParseException 解析中にエラーが発生した場合
      */
-    private CalcResult parseParenthesesAndCalc(StringReader reader, Calculator calc) throws ParseException {
+    private CalcResult parseParenthesesAndCalc(FormulaLexer lexer, ArithmeticKernel calc) throws ParseException {
     	try {
-			FormulaItem.Builder itemBuilder = new FormulaItem.Builder();
-			int read = reader.read();
-			long parenthesesCount = 1;
-			while (read != -1) {
-				char text = (char) read;
-				switch (text) {
-					case '(':
-						parenthesesCount++;
-					break;
-					
-					case ')':
-						parenthesesCount--;
-						if (parenthesesCount == 0) {
-							FormulaItem item = itemBuilder.toFormula();
-							return this.parseAndCalc(item, calc);
-						}
-					break;
-				}
-				itemBuilder.add(String.valueOf(text));
-				read = reader.read();
+			int start = lexer.position();
+			int groupEnd = lexer.findGroupEnd();
+			if (groupEnd == -1) {
+				throw new IllegalArgumentException("括弧の終わりが来る前に数式の終わりが来ました");
+			}
+			String group = lexer.text().subSequence(start, groupEnd).toString();
+			int equals = group.indexOf('=');
+			if (equals != -1) {
+				group = group.substring(0, equals + 1);
 			}
-			throw new IllegalArgumentException("括弧の終わりが来る前に数式の終わりが来ました");
+			lexer.moveTo(groupEnd + 1);
+			return this.parseAndCalc(new FormulaItem(group), calc);
 		} catch (Exception e) {
 			if (e instanceof ParseException) {
 				throw (ParseException)e;
@@ -222,7 +228,7 @@ public abstract class AbstractParser implements Parser {
     }
     
     /* 予備のため残しています
-    private FormulaItem parseParentheses(FormulaItem item, Calculator calc) throws ParseException {
+    private FormulaItem parseParentheses(FormulaItem item, ArithmeticKernel calc) throws ParseException {
     	FormulaItem.Builder returnItem = new FormulaItem.Builder();
 		StringReader reader = new StringReader(item.get());
 		try {
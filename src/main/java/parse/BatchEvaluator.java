@@ -0,0 +1,218 @@
+package parse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import calc.ArithmeticKernel;
+import item.FormulaItem;
+
+/**
+ * 複数の数式を、複数のスレッドで分担して計算するクラスです。<br>
+ * 数式の計算にかかる時間は数式の長さにほぼ比例するため、数式の長さの合計が同じくらいになるように分割します。
+ * 分割した1つの作業の大きさ(数式の長さの合計)の目安は、システムプロパティ
+ * <code>parse.BatchEvaluator.splitCost</code>(既定値は8192)で変更できます。
+ */
+final class BatchEvaluator {
+
+	/**
+	 * これより小さい作業は分割せずに1つのスレッドで計算します
+	 */
+	private static final long SPLIT_COST = Math.max(1, Integer.getInteger("parse.BatchEvaluator.splitCost", 8192));
+
+	/**
+	 * 数式の長さとは別に、数式1つごとにかかる計算の手間(キャッシュの検索や計算結果の作成)
+	 */
+	private static final int ITEM_COST = 32;
+
+	/**
+	 * 計算に使用するパーサ
+	 */
+	private final Parser PARSER;
+
+	/**
+	 * 計算に使用する計算機
+	 */
+	private final ArithmeticKernel CALC;
+
+	/**
+	 * 計算する数式
+	 */
+	private final FormulaItem[] ITEMS;
+
+	/**
+	 * 先頭から各数式の直前までの、計算の手間の合計。要素数は数式の数+1です。
+	 */
+	private final long[] COST_PREFIX;
+
+	/**
+	 * 計算結果。数式と同じ順番で格納します。
+	 */
+	private final BatchResult[] RESULTS;
+
+	/**
+	 * 数式をまとめて計算する準備をします。
+	 * @param parser 計算に使用するパーサ
+	 * @param items 計算する数式
+	 * @param calc 計算に使用する計算機
+	 * @throws IllegalArgumentException 数式にnullが含まれている場合
+	 */
+	private BatchEvaluator(Parser parser, List<FormulaItem> items, ArithmeticKernel calc) {
+		this.PARSER = parser;
+		this.CALC = calc;
+		this.ITEMS = items.toArray(new FormulaItem[0]);
+		this.COST_PREFIX = new long[this.ITEMS.length + 1];
+		for (int i = 0; i < this.ITEMS.length; i++) {
+			if (this.ITEMS[i] == null) {
+				throw new IllegalArgumentException((i + 1) + "番目の数式がnullです");
+			}
+			this.COST_PREFIX[i + 1] = this.COST_PREFIX[i] + this.ITEMS[i].get().length() + ITEM_COST;
+		}
+		this.RESULTS = new BatchResult[this.ITEMS.length];
+	}
+
+	/**
+	 * 複数の数式を計算し、数式と同じ順番で計算結果を返します。<br>
+	 * ForkJoinPoolが指定された場合は、作業を再帰的に分割して空いているスレッドに分担させます。
+	 * それ以外の場合は、スレッドの数に合わせてあらかじめ作業を分割して渡します。
+	 * @param parser 計算に使用するパーサ
+	 * @param items 計算する数式
+	 * @param calc 計算に使用する計算機
+	 * @param executor 計算に使用するスレッド
+	 * @return 計算結果
+	 * @throws IllegalArgumentException 数式にnullが含まれている場合
+	 */
+	static List<BatchResult> evaluate(Parser parser, List<FormulaItem> items, ArithmeticKernel calc, Executor executor) {
+		BatchEvaluator evaluator = new BatchEvaluator(parser, items, calc);
+		if (executor instanceof ForkJoinPool pool) {
+			pool.invoke(evaluator.new Task(0, evaluator.ITEMS.length));
+		} else {
+			evaluator.runChunks(executor);
+		}
+		return List.of(evaluator.RESULTS);
+	}
+
+	/**
+	 * ForkJoinPoolで計算する場合の作業です。計算の手間が大きい場合は、手間が半分になる位置で2つに分割します。
+	 */
+	private final class Task extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * 計算する最初の数式の位置
+		 */
+		private final int START;
+
+		/**
+		 * 計算する最後の数式の次の位置
+		 */
+		private final int END;
+
+		/**
+		 * 指定された範囲の数式を計算する作業を作成します。
+		 * @param start 計算する最初の数式の位置
+		 * @param end 計算する最後の数式の次の位置
+		 */
+		private Task(int start, int end) {
+			this.START = start;
+			this.END = end;
+		}
+
+		@Override
+		protected void compute() {
+			if ((this.END - this.START < 2) || (costOf(this.START, this.END) <= SPLIT_COST)) {
+				evaluateRange(this.START, this.END);
+				return;
+			}
+			int middle = splitPoint(this.START, this.END);
+			invokeAll(new Task(this.START, middle), new Task(middle, this.END));
+		}
+
+	}
+
+	/**
+	 * ForkJoinPool以外で計算する場合に、計算の手間がほぼ同じになるように作業を分割して渡し、全て終わるまで待ちます。
+	 * @param executor 計算に使用するスレッド
+	 */
+	private void runChunks(Executor executor) {
+		int length = this.ITEMS.length;
+		long chunkCost = Math.max(SPLIT_COST, costOf(0, length) / (Runtime.getRuntime().availableProcessors() * 4L));
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		int start = 0;
+		while (start < length) {
+			int end = start + 1;
+			while ((end < length) && (costOf(start, end + 1) <= chunkCost)) {
+				end++;
+			}
+			int chunkStart = start;
+			int chunkEnd = end;
+			futures.add(CompletableFuture.runAsync(() -> this.evaluateRange(chunkStart, chunkEnd), executor));
+			start = end;
+		}
+		try {
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		} catch (CompletionException e) {
+			// 計算中の例外は結果に格納しているため、ここに来るのは想定外の例外やエラーの場合のみです
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			if (e.getCause() instanceof Error cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * 指定された範囲の数式を順に計算し、計算結果を格納します。
+	 * @param start 計算する最初の数式の位置
+	 * @param end 計算する最後の数式の次の位置
+	 */
+	private void evaluateRange(int start, int end) {
+		for (int i = start; i < end; i++) {
+			FormulaItem item = this.ITEMS[i];
+			try {
+				this.RESULTS[i] = new BatchResult(item, this.PARSER.parseAndCalc(item, this.CALC), null);
+			} catch (ParseException e) {
+				this.RESULTS[i] = new BatchResult(item, null, e);
+			}
+		}
+	}
+
+	/**
+	 * 指定された範囲の数式の、計算の手間の合計を返します。
+	 * @param start 最初の数式の位置
+	 * @param end 最後の数式の次の位置
+	 * @return 計算の手間の合計
+	 */
+	private long costOf(int start, int end) {
+		return this.COST_PREFIX[end] - this.COST_PREFIX[start];
+	}
+
+	/**
+	 * 指定された範囲を、計算の手間がほぼ半分になる位置で分割します。
+	 * @param start 最初の数式の位置
+	 * @param end 最後の数式の次の位置(startより2以上大きい値)
+	 * @return 分割する位置(startより大きく、endより小さい値)
+	 */
+	private int splitPoint(int start, int end) {
+		long half = (this.COST_PREFIX[start] + this.COST_PREFIX[end]) / 2;
+		int low = start + 1;
+		int high = end - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.COST_PREFIX[middle] < half) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+}
@@ -0,0 +1,23 @@
+package parse;
+
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * 複数の数式をまとめて計算した場合の、1つの数式の計算結果です。<br>
+ * 計算中にエラーが発生した数式は、計算結果の代わりに発生した例外を保持します。
+ * @param item 計算した数式
+ * @param result 計算結果。エラーが発生した場合はnull
+ * @param exception 計算中に発生した例外。エラーが発生しなかった場合はnull
+ */
+public record BatchResult(FormulaItem item, CalcResult result, ParseException exception) {
+
+	/**
+	 * エラーが発生せずに計算できたかを返します。
+	 * @return 計算できた場合はtrue
+	 */
+	public boolean isSuccess() {
+		return this.exception == null;
+	}
+
+}
@@ -0,0 +1,159 @@
+package parse;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import calc.ArithmeticKernel;
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * {@link Parser#parseAndCalcAsync(FormulaItem, ArithmeticKernel, Duration, Executor)}や{@link EvaluationExecutor}で開始した計算を、
+ * 期限切れや取り消しの後に途中で止めるためのクラスです。<br>
+ * 計算を始めたスレッドに計算結果のCompletableFutureを関連付け、{@link FormulaCompiler}、{@link StreamingEvaluator}、
+ * {@link CompiledFormula}の命令列の実行、{@link AbstractParser}の各ループは、{@value #INTERVAL}トークン(命令)ごとに
+ * {@link #checkpoint()}でCompletableFutureが完了していないか確認します。
+ * 完了していた場合はCancellationExceptionをスローして計算を止めます。スレッドの割り込みは使用しません。<br>
+ * 計算結果は呼び出し元に返されないため、止めた計算の例外は破棄されます。
+ * バイトコードに変換した数式や、複数のスレッドで分担して計算する数式は、計算の前後でのみ確認します。<br>
+ * このクラスのインスタンスは、作成したスレッドからのみ使用できます。
+ */
+final class Cancellation {
+
+	/**
+	 * 完了を確認する間隔(トークンまたは命令の数)。2の累乗です
+	 */
+	static final int INTERVAL = 1024;
+
+	/**
+	 * 取り消すことができない計算で使用するインスタンス
+	 */
+	private static final Cancellation NONE = new Cancellation(null);
+
+	/**
+	 * スレッドで実行中の計算のインスタンス
+	 */
+	private static final ThreadLocal<Cancellation> CURRENT = ThreadLocal.withInitial(() -> NONE);
+
+	/**
+	 * 既定で計算に使用するスレッド。計算ごとに仮想スレッドを作成します
+	 */
+	static final Executor VIRTUAL_THREADS = command -> Thread.ofVirtual().name("Parser-async").start(command);
+
+	/**
+	 * 計算結果。取り消すことができない場合はnull
+	 */
+	private final CompletableFuture<?> FUTURE;
+
+	/**
+	 * checkpoint()を呼び出した回数
+	 */
+	private int count = 0;
+
+	/**
+	 * インスタンスを作成します。
+	 * @param future 計算結果。取り消すことができない場合はnull
+	 */
+	private Cancellation(CompletableFuture<?> future) {
+		this.FUTURE = future;
+	}
+
+	/**
+	 * 現在のスレッドで実行中の計算のインスタンスを返します。
+	 * @return 実行中の計算のインスタンス。parseAndCalcAsync以外から呼び出された場合は、確認を何もしないインスタンス
+	 */
+	static Cancellation current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * 計算を続けてよいか確認します。{@value #INTERVAL}回に1回だけ、計算結果が完了していないか確認します。
+	 * @throws CancellationException 期限切れや取り消しによって、計算結果が既に完了している場合
+	 */
+	void checkpoint() {
+		if ((this.FUTURE != null) && ((this.count++ & (INTERVAL - 1)) == 0)) {
+			this.check();
+		}
+	}
+
+	/**
+	 * 計算結果が完了していないか、すぐに確認します。
+	 * @throws CancellationException 期限切れや取り消しによって、計算結果が既に完了している場合
+	 */
+	void check() {
+		if ((this.FUTURE != null) && this.FUTURE.isDone()) {
+			throw new CancellationException("計算が取り消されました");
+		}
+	}
+
+	/**
+	 * 指定されたスレッドで数式を解析し、計算します。
+	 * @param parser 計算に使用するパーサ
+	 * @param item 解析する数式
+	 * @param calc 計算に使用する計算機
+	 * @param deadline 計算の期限。期限がない場合はnull
+	 * @param executor 計算に使用するスレッド
+	 * @return 計算結果
+	 * @throws IllegalArgumentException 期限が負の場合
+	 */
+	static CompletableFuture<CalcResult> submit(Parser parser, FormulaItem item, ArithmeticKernel calc, Duration deadline, Executor executor) {
+		if ((deadline != null) && deadline.isNegative()) {
+			throw new IllegalArgumentException("期限を負の時間にすることはできません");
+		}
+		CompletableFuture<CalcResult> future = new CompletableFuture<>();
+		if (deadline != null) {
+			future.orTimeout(deadline.toNanos(), TimeUnit.NANOSECONDS);
+		}
+		try {
+			executor.execute(() -> run(parser, item, calc, future));
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * 現在のスレッドに計算結果を関連付けて、数式を解析し計算します。
+	 * 計算を始める前に期限切れや取り消しによって完了していた場合は、計算しません。
+	 * @param parser 計算に使用するパーサ
+	 * @param item 解析する数式
+	 * @param calc 計算に使用する計算機
+	 * @param future 計算結果
+	 */
+	private static void run(Parser parser, FormulaItem item, ArithmeticKernel calc, CompletableFuture<CalcResult> future) {
+		if (future.isDone()) {
+			return;
+		}
+		try {
+			future.complete(parseAndCalc(parser, item, calc, future));
+		} catch (ParseException | RuntimeException | StackOverflowError e) {
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * 現在のスレッドに計算結果を関連付けて、数式を解析し計算します。
+	 * 計算結果が期限切れや取り消しによって完了した場合は、次の確認で計算を止めます。
+	 * @param parser 計算に使用するパーサ
+	 * @param item 解析する数式
+	 * @param calc 計算に使用する計算機
+	 * @param future 計算結果。計算結果はこのメソッドでは設定しません
+	 * @return 計算結果
+	 * @throws ParseException 数式が不正な場合か、計算を止めた場合
+	 * @throws CancellationException 計算を止めた場合
+	 */
+	static CalcResult parseAndCalc(Parser parser, FormulaItem item, ArithmeticKernel calc, CompletableFuture<?> future) throws ParseException {
+		Cancellation previous = CURRENT.get();
+		CURRENT.set(new Cancellation(future));
+		try {
+			return parser.parseAndCalc(item, calc);
+		} finally {
+			CURRENT.set(previous);
+		}
+	}
+
+}
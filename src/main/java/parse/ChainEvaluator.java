@@ -0,0 +1,272 @@
+package parse;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.stream.IntStream;
+
+import calc.ArithmeticKernel;
+import calc.FixedPointArithmetic;
+
+/**
+ * 括弧を含まず、左から右に計算する非常に長い数式(数字と演算子が交互に並んだ数式)を、複数のスレッドで分担して計算するクラスです。<br>
+ * 「演算子 数字」の1つ1つは計算途中の値xに対する1次関数(x+c、x-c、x*c、x/c)で、1次関数の合成は結合法則を満たすため、
+ * 数式を区間に分割して、区間ごとの合成関数を並列に求めることができます。<br>
+ * ただし{@link ArithmeticKernel}は演算ごとに計算結果をdoubleに丸めるため、合成関数から求めた値は、左から右に計算した値と一致するとは限りません。
+ * そのため合成関数(数式に入力された数字から、足し算、引き算、掛け算は{@link FixedPointArithmetic}の固定小数点数で誤差なく、
+ * 桁数が多すぎる場合や割り算はBigDecimalで34桁に丸めて求めます)は各区間の計算開始時の値を予測するためだけに使用し、各区間は予測した値から{@link ArithmeticKernel}で並列に計算し直します。
+ * 最後に、各区間の計算結果が次の区間の予測値と一致するかを先頭から順に確認し、一致しない区間だけを正しい値から計算し直すため、
+ * 計算結果は常に左から右に1つずつ計算した場合と同じになります。<br>
+ * 並列に計算する数式の長さ(演算子の数)の下限は、システムプロパティ<code>parse.ChainEvaluator.minLength</code>
+ * (既定値は65536、負の数の場合は並列に計算しない)で変更できます。
+ */
+final class ChainEvaluator {
+
+	/**
+	 * 並列に計算する数式の、演算子の数の下限
+	 */
+	private static final int MIN_LENGTH = Integer.getInteger("parse.ChainEvaluator.minLength", 65536);
+
+	/**
+	 * 1つの区間に含める演算子の数の下限
+	 */
+	private static final int MIN_CHUNK_LENGTH = 4096;
+
+	/**
+	 * 合成関数を計算する際の有効桁数。小数点以下2桁程度の数字を100万回足しても丸められない桁数です。
+	 */
+	private static final MathContext MATH_CONTEXT = MathContext.DECIMAL128;
+
+	/**
+	 * 1次関数 x → a * x + b です。
+	 * @param a xの係数
+	 * @param b 定数項
+	 */
+	private record AffineMap(BigDecimal a, BigDecimal b) {
+
+		/**
+		 * 恒等関数
+		 */
+		private static final AffineMap IDENTITY = new AffineMap(BigDecimal.ONE, BigDecimal.ZERO);
+
+		/**
+		 * この関数の後にnextを適用する合成関数を返します。
+		 * @param next 後に適用する関数
+		 * @return 合成関数。指数が大きすぎるなどの理由で求められない場合はnull
+		 */
+		private AffineMap andThen(AffineMap next) {
+			try {
+				return new AffineMap(next.a.multiply(this.a, MATH_CONTEXT), next.a.multiply(this.b, MATH_CONTEXT).add(next.b, MATH_CONTEXT));
+			} catch (ArithmeticException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * xにこの関数を適用した値を、doubleに丸めて返します。
+		 * @param x 関数に渡す値
+		 * @return 関数の値。求められない場合は{@link Double#NaN}
+		 */
+		private double apply(double x) {
+			try {
+				return this.a.multiply(BigDecimal.valueOf(x), MATH_CONTEXT).add(this.b, MATH_CONTEXT).doubleValue();
+			} catch (ArithmeticException e) {
+				return Double.NaN;
+			}
+		}
+
+	}
+
+	/**
+	 * 区間を計算した結果です。
+	 * @param value 計算結果(exceptionがnullの場合のみ有効)
+	 * @param exception 計算中に発生した例外。発生しなかった場合はnull
+	 */
+	private record Outcome(double value, RuntimeException exception) {}
+
+	/**
+	 * このクラスはインスタンス化できません
+	 * @throws UnsupportedOperationException 常に
+	 */
+	private ChainEvaluator() {
+		throw new UnsupportedOperationException(this.getClass().getName() + "はインスタンス化できません");
+	}
+
+	/**
+	 * 命令列が、並列に計算できる十分に長い数式かを返します。<br>
+	 * 括弧を含まず数字と演算子が交互に並んだ数式は、最初の数字の後に「数字 演算子」の命令が繰り返される命令列になります。
+	 * @param code 逆ポーランド記法の命令列
+	 * @param constants PUSH命令で順番にスタックに積む数字
+	 * @return 並列に計算できる場合はtrue
+	 */
+	static boolean isParallelizable(byte[] code, double[] constants) {
+		if ((MIN_LENGTH < 0) || (constants.length <= MIN_LENGTH) || (code.length != constants.length * 2 - 1)) {
+			return false;
+		}
+		for (int i = 1; i < constants.length; i++) {
+			byte operationCode = code[i * 2];
+			if ((code[i * 2 - 1] != CompiledFormula.PUSH) || (operationCode < CompiledFormula.PLUS) || (operationCode > CompiledFormula.DIVIDE)) {
+				return false;
+			}
+			if ((operationCode == CompiledFormula.DIVIDE) && (constants[i] == 0)) {
+				// 0で割る数式は、エラーになる位置まで左から右に計算します
+				return false;
+			}
+		}
+		return code[0] == CompiledFormula.PUSH;
+	}
+
+	/**
+	 * {@link #isParallelizable(byte[], double[])}がtrueを返す命令列を、共通のForkJoinPoolで分担して計算します。
+	 * @param code 逆ポーランド記法の命令列
+	 * @param constants PUSH命令で順番にスタックに積む数字
+	 * @param arithmetic 合成関数を求めるのに使用する固定小数点数の種類
+	 * @param values 数式に入力された数字を、arithmeticで変換した値
+	 * @param calc 計算に使用する計算機(複数のスレッドから同時に使用されます)
+	 * @return 左から右に1つずつ計算した場合と同じ計算結果
+	 * @throws RuntimeException 左から右に1つずつ計算した場合に発生する例外
+	 */
+	static double evaluate(byte[] code, double[] constants, FixedPointArithmetic arithmetic, Object[] values, ArithmeticKernel calc) {
+		int length = constants.length - 1;
+		int chunkLength = Math.max(MIN_CHUNK_LENGTH, length / (Runtime.getRuntime().availableProcessors() * 4));
+		int chunkCount = (length + chunkLength - 1) / chunkLength;
+
+		// 区間ごとの合成関数を並列に求め、各区間の計算開始時の値を予測します
+		AffineMap[] maps = IntStream.range(0, chunkCount).parallel()
+				.mapToObj(chunk -> compose(code, arithmetic, values, chunk * chunkLength + 1, Math.min((chunk + 1) * chunkLength, length) + 1))
+				.toArray(AffineMap[]::new);
+		double[] starts = new double[chunkCount];
+		starts[0] = constants[0];
+		AffineMap prefix = AffineMap.IDENTITY;
+		for (int chunk = 1; chunk < chunkCount; chunk++) {
+			prefix = ((prefix != null) && (maps[chunk - 1] != null)) ? prefix.andThen(maps[chunk - 1]) : null;
+			// 予測できない区間は、前の区間の計算が終わってから計算し直します
+			starts[chunk] = (prefix != null) ? prefix.apply(constants[0]) : Double.NaN;
+		}
+
+		// 予測した値から、各区間を並列に計算します
+		Outcome[] outcomes = IntStream.range(0, chunkCount).parallel()
+				.mapToObj(chunk -> run(code, constants, calc, starts[chunk], chunk * chunkLength + 1, Math.min((chunk + 1) * chunkLength, length) + 1))
+				.toArray(Outcome[]::new);
+
+		// 先頭から順に、予測が正しかったかを確認します
+		double value = constants[0];
+		for (int chunk = 0; chunk < chunkCount; chunk++) {
+			Outcome outcome = outcomes[chunk];
+			if (starts[chunk] != value) {
+				outcome = run(code, constants, calc, value, chunk * chunkLength + 1, Math.min((chunk + 1) * chunkLength, length) + 1);
+			}
+			if (outcome.exception() != null) {
+				throw outcome.exception();
+			}
+			value = outcome.value();
+		}
+		return value;
+	}
+
+	/**
+	 * 指定された範囲の「演算子 数字」を合成した1次関数を求めます。<br>
+	 * 足し算、引き算、掛け算は固定小数点数で計算し、オーバーフローした場合や割り算がある場合は、
+	 * それ以降をBigDecimalで計算します。
+	 * @param code 逆ポーランド記法の命令列
+	 * @param arithmetic 固定小数点数の種類
+	 * @param values 数式に入力された数字を、arithmeticで変換した値
+	 * @param start 最初の数字の位置
+	 * @param end 最後の数字の次の位置
+	 * @return 合成関数。指数が大きすぎるなどの理由で求められない場合はnull
+	 */
+	private static AffineMap compose(byte[] code, FixedPointArithmetic arithmetic, Object[] values, int start, int end) {
+		long a = 1;
+		int aScale = 0;
+		long b = 0;
+		int bScale = 0;
+		int i = start;
+		for (; i < end; i++) {
+			FixedPointArithmetic.Value c = (FixedPointArithmetic.Value) values[i];
+			byte operationCode = code[i * 2];
+			if ((c.decimal() != null) || (operationCode == CompiledFormula.DIVIDE)) {
+				break;
+			}
+			if (operationCode == CompiledFormula.MULTIPLY) {
+				long nextA = arithmetic.multiply(a, aScale, c.unscaled(), c.scale());
+				long nextB = arithmetic.multiply(b, bScale, c.unscaled(), c.scale());
+				if ((nextA == FixedPointArithmetic.OVERFLOW) || (nextB == FixedPointArithmetic.OVERFLOW)) {
+					break;
+				}
+				a = nextA;
+				aScale += c.scale();
+				b = nextB;
+				bScale += c.scale();
+				continue;
+			}
+			long nextB = (operationCode == CompiledFormula.PLUS)
+					? arithmetic.plus(b, bScale, c.unscaled(), c.scale())
+					: arithmetic.minus(b, bScale, c.unscaled(), c.scale());
+			if (nextB == FixedPointArithmetic.OVERFLOW) {
+				break;
+			}
+			b = nextB;
+			bScale = Math.max(bScale, c.scale());
+		}
+		BigDecimal decimalA = BigDecimal.valueOf(a, aScale);
+		BigDecimal decimalB = BigDecimal.valueOf(b, bScale);
+		try {
+			for (; i < end; i++) {
+				BigDecimal c = ((FixedPointArithmetic.Value) values[i]).toBigDecimal();
+				switch (code[i * 2]) {
+					case CompiledFormula.PLUS:
+						decimalB = decimalB.add(c, MATH_CONTEXT);
+						break;
+					case CompiledFormula.MINUS:
+						decimalB = decimalB.subtract(c, MATH_CONTEXT);
+						break;
+					case CompiledFormula.MULTIPLY:
+						decimalA = decimalA.multiply(c, MATH_CONTEXT);
+						decimalB = decimalB.multiply(c, MATH_CONTEXT);
+						break;
+					default:
+						decimalA = decimalA.divide(c, MATH_CONTEXT);
+						decimalB = decimalB.divide(c, MATH_CONTEXT);
+						break;
+				}
+			}
+		} catch (ArithmeticException e) {
+			return null;
+		}
+		return new AffineMap(decimalA, decimalB);
+	}
+
+	/**
+	 * 指定された範囲の「演算子 数字」を、計算機を使用して左から右に計算します。
+	 * @param code 逆ポーランド記法の命令列
+	 * @param constants PUSH命令で順番にスタックに積む数字
+	 * @param calc 計算に使用する計算機
+	 * @param value 計算開始時の値
+	 * @param start 最初の数字の位置
+	 * @param end 最後の数字の次の位置
+	 * @return 計算結果、または計算中に発生した例外
+	 */
+	private static Outcome run(byte[] code, double[] constants, ArithmeticKernel calc, double value, int start, int end) {
+		try {
+			for (int i = start; i < end; i++) {
+				switch (code[i * 2]) {
+					case CompiledFormula.PLUS:
+						value = calc.plus(value, constants[i]);
+						break;
+					case CompiledFormula.MINUS:
+						value = calc.minus(value, constants[i]);
+						break;
+					case CompiledFormula.MULTIPLY:
+						value = calc.multiply(value, constants[i]);
+						break;
+					default:
+						value = calc.divide(value, constants[i]);
+						break;
+				}
+			}
+			return new Outcome(value, null);
+		} catch (RuntimeException e) {
+			return new Outcome(Double.NaN, e);
+		}
+	}
+
+}
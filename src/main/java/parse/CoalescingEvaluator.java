@@ -0,0 +1,139 @@
+package parse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import calc.ArithmeticKernel;
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * 同じ数式が複数のスレッドから同時に計算される場合に、計算を1回にまとめるクラスです。<br>
+ * 最初に計算を始めたスレッドのみが{@link Parser#parseAndCalc(FormulaItem, ArithmeticKernel)}を呼び出し、
+ * その計算が終わる前に同じ数式、パーサ、計算機で呼び出したスレッドは、同じ{@link CompletableFuture}で計算結果を待ちます。
+ * 数式は{@link FormulaItem}の形式("="で終わる文字列)で比較するため、"1+2"と"1+2="は同じ数式として扱います。
+ * 計算機はインスタンスごとに異なる計算をする場合があるため、同じインスタンスの場合のみまとめます。
+ * 計算をまとめるには、{@link ArithmeticKernel#getKernel()}のように共通のインスタンスを使用してください。<br>
+ * 計算結果は計算が終わった時点で破棄し、保存しません(解析済みの数式は{@link FormulaCache}に保存されます)。<br>
+ * 計算中の数式は{@link ConcurrentHashMap}で管理し、計算中にロックを保持しないため、仮想スレッドからも使用できます。
+ * このクラスのメソッドは、複数のスレッドから同時に呼び出すことができます。
+ */
+public final class CoalescingEvaluator {
+
+	/**
+	 * 計算中の数式のキーです。
+	 * @param formula 数式
+	 * @param parser 計算に使用するパーサ
+	 * @param calc 計算に使用する計算機
+	 */
+	private record Key(FormulaItem formula, Parser parser, ArithmeticKernel calc) {}
+
+	/**
+	 * 共通で使用するCoalescingEvaluatorインスタンス
+	 */
+	private static final CoalescingEvaluator evaluator = new CoalescingEvaluator();
+
+	/**
+	 * 共通で使用するCoalescingEvaluatorインスタンスを取得します。
+	 * @return 共通で使用するCoalescingEvaluatorインスタンス
+	 */
+	public static CoalescingEvaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * 計算中の数式と、その計算結果
+	 */
+	private final ConcurrentHashMap<Key, CompletableFuture<CalcResult>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+	/**
+	 * 計算した回数
+	 */
+	private final LongAdder computedCount = new LongAdder();
+
+	/**
+	 * 他のスレッドの計算結果を使用した回数
+	 */
+	private final LongAdder coalescedCount = new LongAdder();
+
+	/**
+	 * インスタンスを作成します。
+	 */
+	CoalescingEvaluator() {
+	}
+
+	/**
+	 * 数式を解析し、計算します。同じ数式を他のスレッドが計算中の場合は、その計算結果を待って返します。
+	 * @param parser 計算に使用するパーサ
+	 * @param item 解析する数式
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 * @throws ParseException 処理中にエラーが発生した場合(他のスレッドの計算でエラーが発生した場合を含む)
+	 */
+	public CalcResult parseAndCalc(Parser parser, FormulaItem item, ArithmeticKernel calc) throws ParseException {
+		Key key = new Key(item, parser, calc);
+		CompletableFuture<CalcResult> created = new CompletableFuture<>();
+		CompletableFuture<CalcResult> running = this.IN_FLIGHT.putIfAbsent(key, created);
+		if (running == null) {
+			this.computedCount.increment();
+			try {
+				CalcResult result = parser.parseAndCalc(item, calc);
+				created.complete(result);
+				return result;
+			} catch (ParseException | RuntimeException | Error e) {
+				created.completeExceptionally(e);
+				throw e;
+			} finally {
+				this.IN_FLIGHT.remove(key, created);
+			}
+		}
+		this.coalescedCount.increment();
+		try {
+			return running.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof ParseException cause) {
+				// 呼び出したスレッドのスタックトレースを残すため、原因の例外のみ共有します
+				throw new ParseException(cause.getMessage(), cause.getCause());
+			}
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			if (e.getCause() instanceof Error cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * 実際に計算した回数を返します。
+	 * @return 計算した回数
+	 */
+	public long getComputedCount() {
+		return this.computedCount.sum();
+	}
+
+	/**
+	 * 他のスレッドの計算結果を使用し、計算を省略した回数を返します。
+	 * @return 計算を省略した回数
+	 */
+	public long getCoalescedCount() {
+		return this.coalescedCount.sum();
+	}
+
+	/**
+	 * 現在計算中の数式の数を返します。
+	 * @return 計算中の数式の数
+	 */
+	public int size() {
+		return this.IN_FLIGHT.size();
+	}
+
+	@Override
+	public String toString() {
+		return "CoalescingEvaluator [size=" + IN_FLIGHT.size() + ", computedCount=" + computedCount.sum() + ", coalescedCount=" + coalescedCount.sum() + "]";
+	}
+
+}
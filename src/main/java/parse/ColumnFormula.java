@@ -0,0 +1,299 @@
+package parse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import calc.ArithmeticKernel;
+import calc.DecimalColumns;
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * 変数を含む解析済みの数式を表すクラスです。<br>
+ * 「a*1.08+b」のような数式を1回だけ解析し、変数ごとの値の列(double[])に対して、行ごとの計算結果の列を求めます。<br>
+ * 計算機の四則演算が既定の計算方法のままの場合は、命令ごとに{@link #BLOCK_SIZE}行ずつまとめて{@link DecimalColumns}で計算し
+ * (jdk.incubator.vectorモジュールがある場合はVector APIで複数の行を同時に計算します)、
+ * 誤差なく計算できることを保証できなかった行だけを計算機で1行ずつ計算し直します。
+ * それ以外の計算機の場合は、全ての行を1行ずつ計算します。<br>
+ * どちらの場合も、各行の計算結果は、変数をその行の値に置き換えた数式を{@link CompiledFormula}で計算した場合と同じです。
+ * このクラスは計算結果に影響する状態を持たないため、複数のスレッドから同時に使用できます。
+ */
+public final class ColumnFormula {
+
+	/**
+	 * まとめて計算する行数
+	 */
+	private static final int BLOCK_SIZE = 1024;
+
+	/**
+	 * 変換元の数式
+	 */
+	private final FormulaItem FORMULA;
+
+	/**
+	 * 数式で使用できる変数名
+	 */
+	private final List<String> VARIABLES;
+
+	/**
+	 * 逆ポーランド記法の命令列
+	 */
+	private final byte[] CODE;
+
+	/**
+	 * PUSH命令で順番にスタックに積む数字
+	 */
+	private final double[] CONSTANTS;
+
+	/**
+	 * VARIABLE命令で順番にスタックに積む変数の、変数名の一覧での位置。符号を反転する場合はビット反転した値です。
+	 */
+	private final int[] VARIABLE_SLOTS;
+
+	/**
+	 * 計算中にスタックに積まれる値の最大数
+	 */
+	private final int MAX_STACK_SIZE;
+
+	/**
+	 * 変数を含む解析済みの数式を作成します。
+	 * @param formula 変換元の数式
+	 * @param variables 数式で使用できる変数名
+	 * @param code 逆ポーランド記法の命令列
+	 * @param constants PUSH命令で順番にスタックに積む数字
+	 * @param variableSlots VARIABLE命令で順番にスタックに積む変数の、変数名の一覧での位置
+	 * @param maxStackSize 計算中にスタックに積まれる値の最大数
+	 */
+	ColumnFormula(FormulaItem formula, List<String> variables, byte[] code, double[] constants, int[] variableSlots, int maxStackSize) {
+		this.FORMULA = formula;
+		this.VARIABLES = List.copyOf(variables);
+		this.CODE = code;
+		this.CONSTANTS = constants;
+		this.VARIABLE_SLOTS = variableSlots;
+		this.MAX_STACK_SIZE = maxStackSize;
+	}
+
+	/**
+	 * 変数ごとの値の列に対して、行ごとに計算します。
+	 * @param columns 変数名と、その変数の値の列。全ての変数の列が同じ行数である必要があります
+	 * @param calc 計算に使用する計算機
+	 * @return 行ごとの計算結果
+	 * @throws ParseException いずれかの行の計算中にエラーが発生した場合(最初にエラーが発生した行)
+	 * @throws IllegalArgumentException 変数の列がない場合や、列の行数が異なる場合
+	 */
+	public CalcResult[] evaluate(Map<String, double[]> columns, ArithmeticKernel calc) throws ParseException {
+		double[][] inputs = this.inputsOf(columns);
+		int rows = inputs[0].length;
+		CalcResult[] results = new CalcResult[rows];
+		double[] stack = new double[this.MAX_STACK_SIZE];
+		if (!CompiledFormula.hasDefaultArithmetic(calc)) {
+			for (int row = 0; row < rows; row++) {
+				results[row] = this.evaluateRow(inputs, row, calc, stack);
+			}
+			return results;
+		}
+		Block block = new Block();
+		for (int start = 0; start < rows; start += BLOCK_SIZE) {
+			int length = Math.min(BLOCK_SIZE, rows - start);
+			double[] values = block.evaluate(inputs, start, length);
+			for (int i = 0; i < length; i++) {
+				double value = values[i];
+				// 誤差なく計算できることを保証できなかった行(変数だけの数式で、変数の値が有限ではない行を含む)は、計算機で計算し直します
+				results[start + i] = Double.isFinite(value) ? new CalcResult(value + 0.0) : this.evaluateRow(inputs, start + i, calc, stack);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * 変数名の順番に、値の列を取り出します。
+	 * @param columns 変数名と、その変数の値の列
+	 * @return 変数名の順番に並べた値の列
+	 * @throws IllegalArgumentException 変数の列がない場合や、列の行数が異なる場合
+	 */
+	private double[][] inputsOf(Map<String, double[]> columns) {
+		double[][] inputs = new double[this.VARIABLES.size()][];
+		for (int i = 0; i < inputs.length; i++) {
+			String variable = this.VARIABLES.get(i);
+			inputs[i] = columns.get(variable);
+			if (inputs[i] == null) {
+				throw new IllegalArgumentException("変数" + variable + "の値がありません");
+			}
+			if (inputs[i].length != inputs[0].length) {
+				throw new IllegalArgumentException("変数" + variable + "の行数が他の変数と異なります");
+			}
+		}
+		return inputs;
+	}
+
+	/**
+	 * 1行分を、計算機を使用して計算します。
+	 * @param inputs 変数名の順番に並べた値の列
+	 * @param row 計算する行
+	 * @param calc 計算に使用する計算機
+	 * @param stack 計算に使用するスタック
+	 * @return 計算結果
+	 * @throws ParseException 計算中にエラーが発生した場合
+	 */
+	private CalcResult evaluateRow(double[][] inputs, int row, ArithmeticKernel calc, double[] stack) throws ParseException {
+		try {
+			int top = -1;
+			int constant = 0;
+			int variable = 0;
+			for (byte operationCode : this.CODE) {
+				if (operationCode == CompiledFormula.PUSH) {
+					stack[++top] = this.CONSTANTS[constant++];
+					continue;
+				}
+				if (operationCode == CompiledFormula.VARIABLE) {
+					int slot = this.VARIABLE_SLOTS[variable++];
+					stack[++top] = (slot >= 0) ? inputs[slot][row] : -inputs[~slot][row];
+					continue;
+				}
+				double y = stack[top--];
+				double x = stack[top];
+				switch (operationCode) {
+					case CompiledFormula.PLUS:
+						stack[top] = calc.plus(x, y);
+						break;
+					case CompiledFormula.MINUS:
+						stack[top] = calc.minus(x, y);
+						break;
+					case CompiledFormula.MULTIPLY:
+						stack[top] = calc.multiply(x, y);
+						break;
+					case CompiledFormula.DIVIDE:
+						stack[top] = calc.divide(x, y);
+						break;
+					default:
+						stack[top] = calc.multiply(y, x);
+						break;
+				}
+			}
+			return new CalcResult(CompiledFormula.checkFinite(stack[0]));
+		} catch (RuntimeException e) {
+			throw new ParseException((row + 1) + "行目の計算中にエラーが発生しました", e);
+		}
+	}
+
+	/**
+	 * 複数の行をまとめて計算するための作業領域です。<br>
+	 * スタックの各位置には値の列を積みます。変数の列はコピーせずにそのまま参照し、数字と計算結果は作業用の列に格納します。
+	 */
+	private final class Block {
+
+		/**
+		 * スタックの位置ごとの作業用の列
+		 */
+		private final double[][] buffers = new double[ColumnFormula.this.MAX_STACK_SIZE][BLOCK_SIZE];
+
+		/**
+		 * スタックに積まれている列
+		 */
+		private final double[][] arrays = new double[ColumnFormula.this.MAX_STACK_SIZE][];
+
+		/**
+		 * スタックに積まれている列の、最初の行の位置
+		 */
+		private final int[] offsets = new int[ColumnFormula.this.MAX_STACK_SIZE];
+
+		/**
+		 * 指定された範囲の行を、命令ごとにまとめて計算します。
+		 * @param inputs 変数名の順番に並べた値の列
+		 * @param start 最初の行
+		 * @param length 行数
+		 * @return 計算結果(最初の行は位置0)。誤差なく計算できることを保証できなかった行は{@link Double#NaN}
+		 */
+		private double[] evaluate(double[][] inputs, int start, int length) {
+			int top = -1;
+			int constant = 0;
+			int variable = 0;
+			for (byte operationCode : ColumnFormula.this.CODE) {
+				if (operationCode == CompiledFormula.PUSH) {
+					top++;
+					Arrays.fill(this.buffers[top], 0, length, ColumnFormula.this.CONSTANTS[constant++]);
+					this.push(top, this.buffers[top], 0);
+					continue;
+				}
+				if (operationCode == CompiledFormula.VARIABLE) {
+					top++;
+					int slot = ColumnFormula.this.VARIABLE_SLOTS[variable++];
+					if (slot >= 0) {
+						this.push(top, inputs[slot], start);
+					} else {
+						double[] buffer = this.buffers[top];
+						for (int i = 0; i < length; i++) {
+							buffer[i] = -inputs[~slot][start + i];
+						}
+						this.push(top, buffer, 0);
+					}
+					continue;
+				}
+				top--;
+				double[] x = this.arrays[top];
+				int xOffset = this.offsets[top];
+				double[] y = this.arrays[top + 1];
+				int yOffset = this.offsets[top + 1];
+				double[] result = this.buffers[top];
+				switch (operationCode) {
+					case CompiledFormula.PLUS:
+						DecimalColumns.plus(x, xOffset, y, yOffset, result, 0, length);
+						break;
+					case CompiledFormula.MINUS:
+						DecimalColumns.minus(x, xOffset, y, yOffset, result, 0, length);
+						break;
+					case CompiledFormula.MULTIPLY:
+						DecimalColumns.multiply(x, xOffset, y, yOffset, result, 0, length);
+						break;
+					case CompiledFormula.DIVIDE:
+						DecimalColumns.divide(x, xOffset, y, yOffset, result, 0, length);
+						break;
+					default:
+						DecimalColumns.multiply(y, yOffset, x, xOffset, result, 0, length);
+						break;
+				}
+				this.push(top, result, 0);
+			}
+			if (this.arrays[0] != this.buffers[0]) {
+				// 変数1つだけの数式の場合は、変数の列をそのまま返さずに作業用の列にコピーします
+				System.arraycopy(this.arrays[0], this.offsets[0], this.buffers[0], 0, length);
+			}
+			return this.buffers[0];
+		}
+
+		/**
+		 * スタックに列を積みます。
+		 * @param top スタックの位置
+		 * @param array 積む列
+		 * @param offset 列の最初の行の位置
+		 */
+		private void push(int top, double[] array, int offset) {
+			this.arrays[top] = array;
+			this.offsets[top] = offset;
+		}
+
+	}
+
+	/**
+	 * 数式で使用できる変数名を返します。
+	 * @return 変数名の一覧(変更できません)
+	 */
+	public List<String> getVariables() {
+		return this.VARIABLES;
+	}
+
+	/**
+	 * 変換元の数式を返します。
+	 * @return 変換元の数式
+	 */
+	public FormulaItem getFormula() {
+		return this.FORMULA;
+	}
+
+	@Override
+	public String toString() {
+		return "ColumnFormula [formula=" + this.FORMULA.get() + ", variables=" + this.VARIABLES + "]";
+	}
+
+}
@@ -0,0 +1,684 @@
+package parse;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+
+import calc.Arithmetic;
+import calc.ArithmeticKernel;
+import calc.FixedPointArithmetic;
+import item.CalcResult;
+import item.FormulaItem;
+import parse.AbstractParser.EvaluationOrder;
+
+/**
+ * 解析済みの数式を表すクラスです。<br>
+ * 数式は逆ポーランド記法の命令列に変換されているため、解析し直さずに何度でも計算できます。<br>
+ * 最初は命令列を順に実行して計算しますが、計算した回数がシステムプロパティ
+ * <code>parse.CompiledFormula.compileThreshold</code>(既定値は1000、負の数の場合は変換しない)を超えると、
+ * 命令列をJVMのバイトコードに変換した隠しクラスを作成し、以降はそのクラスで計算します。<br>
+ * ただし、整数と足し算、引き算、掛け算だけでできている数式は、解析した時に判定し、途中の値がdoubleで誤差なく表せる間は
+ * {@link ArithmeticKernel}を使用せずにlongだけで計算します。
+ * 括弧を含まない非常に長い数式は{@link ChainEvaluator}で、それ以外の非常に長い数式は{@link TermEvaluator}で、
+ * 複数のスレッドで分担して計算します(共通のForkJoinPoolが2つ以上のスレッドを使用できる場合のみ)。<br>
+ * 計算結果はどの方法で計算しても同じです。
+ * このクラスは計算結果に影響する状態を持たないため、複数のスレッドから同時に使用できます。
+ */
+public final class CompiledFormula {
+
+	/**
+	 * 命令列をバイトコードに変換したクラスが実装するインターフェースです。
+	 */
+	interface Code {
+
+		/**
+		 * 計算機を使用して計算します。
+		 * @param calc 計算に使用する計算機
+		 * @return 計算結果
+		 */
+		double run(ArithmeticKernel calc);
+
+	}
+
+	/**
+	 * バイトコードに変換するまでに命令列を実行する回数
+	 */
+	private static final int COMPILE_THRESHOLD = Integer.getInteger("parse.CompiledFormula.compileThreshold", 1000);
+
+	/**
+	 * 共通のForkJoinPoolが2つ以上のスレッドを使用できるか。
+	 * 1つのスレッドしか使用できない場合は、分担するための処理の分だけ1つずつ計算するより遅くなるため、分担して計算しません。
+	 */
+	static final boolean PARALLEL = ForkJoinPool.getCommonPoolParallelism() > 1;
+
+	/**
+	 * doubleで誤差なく表すことができる整数の絶対値の上限(2の53乗)
+	 */
+	private static final long MAX_EXACT_LONG = 1L << 53;
+
+	/**
+	 * {@link ArithmeticKernel}の実装クラスごとに、四則演算が既定の計算方法のままかどうかを保持します。
+	 * ArithmeticKernelを継承したインターフェースのdefaultメソッドで上書きした場合も、既定の計算方法ではないものとします。
+	 */
+	private static final ClassValue<Boolean> DEFAULT_ARITHMETIC = new ClassValue<>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			try {
+				return (type.getMethod("plus", double.class, double.class).getDeclaringClass() == ArithmeticKernel.class)
+						&& (type.getMethod("minus", double.class, double.class).getDeclaringClass() == ArithmeticKernel.class)
+						&& (type.getMethod("multiply", double.class, double.class).getDeclaringClass() == ArithmeticKernel.class)
+						&& (type.getMethod("divide", double.class, double.class).getDeclaringClass() == ArithmeticKernel.class);
+			} catch (NoSuchMethodException e) {
+				return false;
+			}
+		}
+	};
+
+	/**
+	 * 次の数字をスタックに積む命令
+	 */
+	static final byte PUSH = 0;
+
+	/**
+	 * 足し算の命令
+	 */
+	static final byte PLUS = 1;
+
+	/**
+	 * 引き算の命令
+	 */
+	static final byte MINUS = 2;
+
+	/**
+	 * 掛け算の命令
+	 */
+	static final byte MULTIPLY = 3;
+
+	/**
+	 * 割り算の命令
+	 */
+	static final byte DIVIDE = 4;
+
+	/**
+	 * 括弧の計算結果に、括弧の直前の数字を掛ける命令
+	 */
+	static final byte SCALE = 5;
+
+	/**
+	 * 次の変数の値をスタックに積む命令。{@link ColumnFormula}でのみ使用します。
+	 */
+	static final byte VARIABLE = 6;
+
+	/**
+	 * 変換元の数式
+	 */
+	private final FormulaItem FORMULA;
+
+	/**
+	 * 演算子を計算する順番
+	 */
+	private final EvaluationOrder ORDER;
+
+	/**
+	 * 逆ポーランド記法の命令列
+	 */
+	private final byte[] CODE;
+
+	/**
+	 * PUSH命令で順番にスタックに積む数字
+	 */
+	private final double[] CONSTANTS;
+
+	/**
+	 * 数式が整数と足し算、引き算、掛け算だけでできている場合に、PUSH命令で順番にスタックに積む数字をlongに変換した値。
+	 * 割り算や小数を含む場合はnullです。
+	 */
+	private final long[] LONG_CONSTANTS;
+
+	/**
+	 * 数式が非常に長く、{@link ChainEvaluator}で複数のスレッドで分担して計算するか
+	 */
+	private final boolean PARALLEL_CHAIN;
+
+	/**
+	 * 数式が非常に長く、{@link TermEvaluator}で項ごとに複数のスレッドで分担して計算するか
+	 */
+	private final boolean PARALLEL_TERMS;
+
+	/**
+	 * PUSH命令でスタックに積む数字の、数式の中での始まりと終わりの位置
+	 */
+	private final int[] LITERAL_BOUNDS;
+
+	/**
+	 * PUSH命令でスタックに積む数字を、入力された桁数のまま10進数に変換した値。
+	 * {@link #evaluate(Arithmetic)}で初めて使用する時に作成します。
+	 */
+	private volatile BigDecimal[] decimalConstants = null;
+
+	/**
+	 * 最後に{@link #evaluate(Arithmetic)}で使用した数の種類と、その種類に変換した数字です。
+	 * @param arithmetic 数の種類
+	 * @param values 変換した数字
+	 */
+	private record Constants(Arithmetic<?> arithmetic, Object[] values) {}
+
+	/**
+	 * 最後に{@link #evaluate(Arithmetic)}で使用した数の種類に変換した数字。
+	 * 同じ数の種類で計算する場合は、数字を変換し直しません。
+	 */
+	private volatile Constants convertedConstants = null;
+
+	/**
+	 * 計算中にスタックに積まれる値の最大数
+	 */
+	private final int MAX_STACK_SIZE;
+
+	/**
+	 * 計算に使用するクラス。バイトコードに変換するまではnull、変換できなかった場合は命令列を実行するクラスです。
+	 */
+	private volatile Code code = null;
+
+	/**
+	 * 命令列を実行して計算した回数。複数のスレッドから同時に更新された場合は正確ではありませんが、
+	 * 変換する時期が多少ずれるだけのため、同期はしていません。
+	 */
+	private int evaluationCount = 0;
+
+	/**
+	 * 解析済みの数式を作成します。
+	 * @param formula 変換元の数式
+	 * @param order 演算子を計算する順番
+	 * @param code 逆ポーランド記法の命令列
+	 * @param constants PUSH命令で順番にスタックに積む数字
+	 * @param literalBounds 数字の、数式の中での始まりと終わりの位置
+	 * @param maxStackSize 計算中にスタックに積まれる値の最大数
+	 */
+	CompiledFormula(FormulaItem formula, EvaluationOrder order, byte[] code, double[] constants, int[] literalBounds, int maxStackSize) {
+		this.FORMULA = formula;
+		this.ORDER = order;
+		this.CODE = code;
+		this.CONSTANTS = constants;
+		this.LONG_CONSTANTS = longConstantsOf(code, constants);
+		this.PARALLEL_CHAIN = PARALLEL && ChainEvaluator.isParallelizable(code, constants);
+		this.PARALLEL_TERMS = PARALLEL && !this.PARALLEL_CHAIN && TermEvaluator.isParallelizable(code);
+		this.LITERAL_BOUNDS = literalBounds;
+		this.MAX_STACK_SIZE = maxStackSize;
+	}
+
+	/**
+	 * 数式が整数と足し算、引き算、掛け算だけでできている場合に、数字をlongに変換した値を返します。
+	 * @param code 逆ポーランド記法の命令列
+	 * @param constants PUSH命令で順番にスタックに積む数字
+	 * @return longに変換した数字。割り算や小数、doubleで誤差なく表せない大きさの整数を含む場合はnull
+	 */
+	private static long[] longConstantsOf(byte[] code, double[] constants) {
+		for (byte operationCode : code) {
+			if (operationCode == DIVIDE) {
+				return null;
+			}
+		}
+		long[] longConstants = new long[constants.length];
+		for (int i = 0; i < constants.length; i++) {
+			if ((Math.rint(constants[i]) != constants[i]) || !(Math.abs(constants[i]) <= MAX_EXACT_LONG)) {
+				return null;
+			}
+			longConstants[i] = (long) constants[i];
+		}
+		return longConstants;
+	}
+
+	/**
+	 * 演算子に対応する命令を返します。
+	 * @param operator 演算子
+	 * @return 命令
+	 * @throws IllegalArgumentException 四則演算の演算子ではない場合
+	 */
+	static byte operatorCode(char operator) {
+		switch (operator) {
+			case '+':
+				return PLUS;
+			case '-':
+				return MINUS;
+			case '*':
+				return MULTIPLY;
+			case '/':
+				return DIVIDE;
+			default:
+				throw new IllegalArgumentException("使用できない文字が含まれています");
+		}
+	}
+
+	/**
+	 * 計算機を使用して計算します。
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 * @throws ParseException 計算中にエラーが発生した場合
+	 */
+	public CalcResult evaluate(ArithmeticKernel calc) throws ParseException {
+		try {
+			if ((this.LONG_CONSTANTS != null) && DEFAULT_ARITHMETIC.get(calc.getClass())) {
+				double result = this.runLong();
+				if (!Double.isNaN(result)) {
+					return new CalcResult(result);
+				}
+			}
+			// 複数のスレッドで分担する計算とバイトコードに変換した数式は途中で止められないため、始める前に確認します
+			Cancellation.current().check();
+			if (this.PARALLEL_CHAIN && DEFAULT_ARITHMETIC.get(calc.getClass())) {
+				FixedPointArithmetic arithmetic = FixedPointArithmetic.getArithmetic();
+				return new CalcResult(checkFinite(
+						ChainEvaluator.evaluate(this.CODE, this.CONSTANTS, arithmetic, this.constantsOf(arithmetic), calc)));
+			}
+			if (this.PARALLEL_TERMS && DEFAULT_ARITHMETIC.get(calc.getClass())) {
+				return new CalcResult(checkFinite(TermEvaluator.evaluate(this.CODE, this.CONSTANTS, this.MAX_STACK_SIZE, calc)));
+			}
+			Code code = this.code;
+			return new CalcResult(checkFinite((code != null) ? code.run(calc) : this.interpret(calc)));
+		} catch (RuntimeException e) {
+			throw new ParseException("解析中にエラーが発生しました", e);
+		}
+	}
+
+	/**
+	 * 命令列を実行して計算します。計算した回数が一定の回数を超えた場合は、バイトコードに変換して計算します。
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 */
+	private double interpret(ArithmeticKernel calc) {
+		if ((COMPILE_THRESHOLD >= 0) && (++this.evaluationCount > COMPILE_THRESHOLD)) {
+			return this.compileCode().run(calc);
+		}
+		return this.run(calc);
+	}
+
+	/**
+	 * 命令列をバイトコードに変換したクラスを作成します。<br>
+	 * 数式が長すぎる場合やクラスの作成に失敗した場合は、以降も命令列を実行して計算します。
+	 * @return 計算に使用するクラス
+	 */
+	private synchronized Code compileCode() {
+		if (this.code == null) {
+			try {
+				this.code = FormulaClassGenerator.generate(this.CODE, this.CONSTANTS, this.MAX_STACK_SIZE);
+			} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+				this.code = this::run;
+			}
+		}
+		return this.code;
+	}
+
+	/**
+	 * 計算機の四則演算が、既定の計算方法のままかどうかを返します。
+	 * @param calc 計算機
+	 * @return 四則演算を1つも上書きしていない場合はtrue
+	 */
+	static boolean hasDefaultArithmetic(ArithmeticKernel calc) {
+		return DEFAULT_ARITHMETIC.get(calc.getClass());
+	}
+
+	/**
+	 * 数式が整数と足し算、引き算、掛け算だけでできているため、longで計算するかを返します。
+	 * @return longで計算する場合はtrue
+	 */
+	boolean isLongArithmetic() {
+		return this.LONG_CONSTANTS != null;
+	}
+
+	/**
+	 * 数式が非常に長いため、複数のスレッドで分担して計算するかを返します。
+	 * @return 複数のスレッドで分担して計算する場合はtrue
+	 */
+	boolean isParallelChain() {
+		return this.PARALLEL_CHAIN;
+	}
+
+	/**
+	 * 数式が非常に長いため、項ごとに複数のスレッドで分担して計算するかを返します。
+	 * @return 項ごとに複数のスレッドで分担して計算する場合はtrue
+	 */
+	boolean isParallelTerms() {
+		return this.PARALLEL_TERMS;
+	}
+
+	/**
+	 * バイトコードに変換したクラスで計算しているかを返します。
+	 * @return バイトコードに変換したクラスで計算している場合はtrue
+	 */
+	boolean isBytecodeCompiled() {
+		Code code = this.code;
+		// 命令列を実行するクラス(this::run)はこのクラスのネストに属します
+		return (code != null) && (code.getClass().getNestHost() != CompiledFormula.class);
+	}
+
+	/**
+	 * 命令列を先頭から順に実行します。
+	 * @param calc 計算に使用する計算機
+	 * @return スタックに最後に残った値
+	 */
+	private double run(ArithmeticKernel calc) {
+		double[] stack = new double[this.MAX_STACK_SIZE];
+		int top = -1;
+		int constant = 0;
+		Cancellation cancellation = Cancellation.current();
+		for (byte operationCode : this.CODE) {
+			cancellation.checkpoint();
+			if (operationCode == PUSH) {
+				stack[++top] = this.CONSTANTS[constant++];
+				continue;
+			}
+			double y = stack[top--];
+			double x = stack[top];
+			switch (operationCode) {
+				case PLUS:
+					stack[top] = calc.plus(x, y);
+					break;
+				case MINUS:
+					stack[top] = calc.minus(x, y);
+					break;
+				case MULTIPLY:
+					stack[top] = calc.multiply(x, y);
+					break;
+				case DIVIDE:
+					stack[top] = calc.divide(x, y);
+					break;
+				default:
+					stack[top] = calc.multiply(y, x);
+					break;
+			}
+		}
+		return stack[0];
+	}
+
+	/**
+	 * 整数と足し算、引き算、掛け算だけでできている数式を、longだけで計算します。<br>
+	 * 途中の値が全てdoubleで誤差なく表せる範囲にある場合は、{@link ArithmeticKernel}の既定の計算方法で計算した場合と同じ結果になります。
+	 * オーバーフローの検出で例外を使用すると、JITコンパイラの最適化が解除されて遅くなるため、例外は使用しません。
+	 * @return 計算結果。途中の値がdoubleで誤差なく表せる範囲を超えた場合は{@link Double#NaN}
+	 */
+	private double runLong() {
+		long[] stack = new long[this.MAX_STACK_SIZE];
+		int top = -1;
+		int constant = 0;
+		Cancellation cancellation = Cancellation.current();
+		for (byte operationCode : this.CODE) {
+			cancellation.checkpoint();
+			if (operationCode == PUSH) {
+				stack[++top] = this.LONG_CONSTANTS[constant++];
+				continue;
+			}
+			long y = stack[top--];
+			long x = stack[top];
+			long result;
+			switch (operationCode) {
+				case PLUS:
+					result = x + y;
+					break;
+				case MINUS:
+					result = x - y;
+					break;
+				default:
+					// 途中の値は2の53乗以下のため、掛け算以外はオーバーフローしません
+					result = x * y;
+					if (Math.multiplyHigh(x, y) != (result >> 63)) {
+						return Double.NaN;
+					}
+					break;
+			}
+			if (Math.abs(result) > MAX_EXACT_LONG) {
+				return Double.NaN;
+			}
+			stack[top] = result;
+		}
+		return stack[0];
+	}
+
+	/**
+	 * 計算の途中の値をdoubleに戻さず、指定された種類の数のまま計算します。<br>
+	 * 数式に入力された数字は、入力された桁数のまま{@link Arithmetic#valueOf(BigDecimal)}で変換されます。
+	 * @param <T> 計算に使用する数の型
+	 * @param arithmetic 計算に使用する数の種類
+	 * @return 計算結果
+	 * @throws ParseException 計算中にエラーが発生した場合
+	 */
+	public <T> CalcResult evaluate(Arithmetic<T> arithmetic) throws ParseException {
+		try {
+			if (arithmetic instanceof FixedPointArithmetic fixedPoint) {
+				CalcResult result = this.runFixedPoint(fixedPoint);
+				if (result != null) {
+					return result;
+				}
+			}
+			return arithmetic.toResult(this.run(arithmetic));
+		} catch (RuntimeException e) {
+			throw new ParseException("解析中にエラーが発生しました", e);
+		}
+	}
+
+	/**
+	 * 命令列を先頭から順に、指定された種類の数で実行します。
+	 * @param <T> 計算に使用する数の型
+	 * @param arithmetic 計算に使用する数の種類
+	 * @return スタックに最後に残った値
+	 */
+	private <T> T run(Arithmetic<T> arithmetic) {
+		Object[] constants = this.constantsOf(arithmetic);
+		@SuppressWarnings("unchecked")
+		T[] stack = (T[]) new Object[this.MAX_STACK_SIZE];
+		int top = -1;
+		int constant = 0;
+		Cancellation cancellation = Cancellation.current();
+		for (byte operationCode : this.CODE) {
+			cancellation.checkpoint();
+			if (operationCode == PUSH) {
+				@SuppressWarnings("unchecked")
+				T value = (T) constants[constant++];
+				stack[++top] = value;
+				continue;
+			}
+			T y = stack[top];
+			stack[top--] = null;
+			T x = stack[top];
+			switch (operationCode) {
+				case PLUS:
+					stack[top] = arithmetic.plus(x, y);
+					break;
+				case MINUS:
+					stack[top] = arithmetic.minus(x, y);
+					break;
+				case MULTIPLY:
+					stack[top] = arithmetic.multiply(x, y);
+					break;
+				case DIVIDE:
+					stack[top] = arithmetic.divide(x, y);
+					break;
+				default:
+					stack[top] = arithmetic.multiply(y, x);
+					break;
+			}
+		}
+		return stack[0];
+	}
+
+	/**
+	 * 命令列を先頭から順に、固定小数点数の整数部分と小数点以下の桁数の配列で実行します。<br>
+	 * 演算ごとにオブジェクトを作成しないため、{@link #run(Arithmetic)}より高速です。
+	 * @param arithmetic 計算に使用する固定小数点数の種類
+	 * @return 計算結果。longでオーバーフローした場合はnull(呼び出し元は{@link #run(Arithmetic)}で計算し直してください)
+	 */
+	private CalcResult runFixedPoint(FixedPointArithmetic arithmetic) {
+		Object[] constants = this.constantsOf(arithmetic);
+		long[] stack = new long[this.MAX_STACK_SIZE];
+		int[] scales = new int[this.MAX_STACK_SIZE];
+		int top = -1;
+		int constant = 0;
+		Cancellation cancellation = Cancellation.current();
+		for (byte operationCode : this.CODE) {
+			cancellation.checkpoint();
+			if (operationCode == PUSH) {
+				FixedPointArithmetic.Value value = (FixedPointArithmetic.Value) constants[constant++];
+				if (value.decimal() != null) {
+					return null;
+				}
+				stack[++top] = value.unscaled();
+				scales[top] = value.scale();
+				continue;
+			}
+			long y = stack[top];
+			int yScale = scales[top--];
+			long x = stack[top];
+			int xScale = scales[top];
+			switch (operationCode) {
+				case PLUS:
+					stack[top] = arithmetic.plus(x, xScale, y, yScale);
+					scales[top] = Math.max(xScale, yScale);
+					break;
+				case MINUS:
+					stack[top] = arithmetic.minus(x, xScale, y, yScale);
+					scales[top] = Math.max(xScale, yScale);
+					break;
+				case DIVIDE:
+					stack[top] = arithmetic.divide(x, xScale, y, yScale);
+					scales[top] = arithmetic.getScale();
+					break;
+				default:
+					// 掛け算と、括弧の前の係数の掛け算は同じ結果になります
+					stack[top] = arithmetic.multiply(x, xScale, y, yScale);
+					scales[top] = xScale + yScale;
+					break;
+			}
+			if (stack[top] == FixedPointArithmetic.OVERFLOW) {
+				return null;
+			}
+		}
+		return new CalcResult(BigDecimal.valueOf(stack[0], scales[0]));
+	}
+
+	/**
+	 * 数式に入力された数字を、指定された種類の数に変換した値を返します。<br>
+	 * 最後に使用した数の種類と同じ場合は、前回変換した値を返します。
+	 * @param arithmetic 数の種類
+	 * @return 変換した数字
+	 */
+	private Object[] constantsOf(Arithmetic<?> arithmetic) {
+		Constants constants = this.convertedConstants;
+		if ((constants == null) || (constants.arithmetic() != arithmetic)) {
+			BigDecimal[] decimals = this.decimalConstants();
+			Object[] values = new Object[decimals.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = arithmetic.valueOf(decimals[i]);
+			}
+			constants = new Constants(arithmetic, values);
+			this.convertedConstants = constants;
+		}
+		return constants.values();
+	}
+
+	/**
+	 * 数式に入力された数字を、入力された桁数のまま10進数に変換した値を返します。<br>
+	 * 複数のスレッドから同時に呼び出された場合は複数回作成されることがありますが、結果は同じです。
+	 * @return 数式に入力された数字
+	 */
+	private BigDecimal[] decimalConstants() {
+		BigDecimal[] decimals = this.decimalConstants;
+		if (decimals == null) {
+			String text = this.FORMULA.get();
+			decimals = new BigDecimal[this.CONSTANTS.length];
+			for (int i = 0; i < decimals.length; i++) {
+				decimals[i] = new BigDecimal(text.substring(this.LITERAL_BOUNDS[i * 2], this.LITERAL_BOUNDS[i * 2 + 1]));
+			}
+			this.decimalConstants = decimals;
+		}
+		return decimals;
+	}
+
+	/**
+	 * バイトコードに変換したクラスから呼び出す足し算です。
+	 * @param x 足される数
+	 * @param y 足す数
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 */
+	static double plus(double x, double y, ArithmeticKernel calc) {
+		return calc.plus(x, y);
+	}
+
+	/**
+	 * バイトコードに変換したクラスから呼び出す引き算です。
+	 * @param x 引かれる数
+	 * @param y 引く数
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 */
+	static double minus(double x, double y, ArithmeticKernel calc) {
+		return calc.minus(x, y);
+	}
+
+	/**
+	 * バイトコードに変換したクラスから呼び出す掛け算です。
+	 * @param x 掛けられる数
+	 * @param y 掛ける数
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 */
+	static double multiply(double x, double y, ArithmeticKernel calc) {
+		return calc.multiply(x, y);
+	}
+
+	/**
+	 * バイトコードに変換したクラスから呼び出す割り算です。
+	 * @param x 割られる数
+	 * @param y 割る数
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 */
+	static double divide(double x, double y, ArithmeticKernel calc) {
+		return calc.divide(x, y);
+	}
+
+	/**
+	 * バイトコードに変換したクラスから呼び出す、括弧の計算結果に括弧の直前の数字を掛ける計算です。
+	 * @param coefficient 括弧の直前の数字
+	 * @param group 括弧の計算結果
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 */
+	static double scale(double coefficient, double group, ArithmeticKernel calc) {
+		return calc.multiply(group, coefficient);
+	}
+
+	/**
+	 * 計算結果が有限の値であることを確認し、-0.0を0.0にそろえて返します。<br>
+	 * 従来の計算結果は一度文字列に変換されていたため、-0.0になることはありません。
+	 * @param value 確認する値
+	 * @return 確認した値
+	 * @throws ArithmeticException 値が無限大か非数の場合
+	 */
+	static double checkFinite(double value) {
+		if (!Double.isFinite(value)) {
+			throw new ArithmeticException("計算結果が大きすぎるため計算できません");
+		}
+		return value + 0.0;
+	}
+
+	/**
+	 * 変換元の数式を返します。
+	 * @return 変換元の数式
+	 */
+	public FormulaItem getFormula() {
+		return this.FORMULA;
+	}
+
+	/**
+	 * 演算子を計算する順番を返します。
+	 * @return 演算子を計算する順番
+	 */
+	EvaluationOrder getOrder() {
+		return this.ORDER;
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledFormula [FORMULA=" + FORMULA + ", ORDER=" + ORDER + "]";
+	}
+
+}
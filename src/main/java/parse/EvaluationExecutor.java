@@ -0,0 +1,748 @@
+package parse;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import calc.ArithmeticKernel;
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * 同時に計算する数式の数を制限し、制限を超えた数式を長さに上限がある待ち行列で待たせて計算するクラスです。<br>
+ * 計算はパーサごと(計算モードごと)に分けて管理し、それぞれ同時に計算する数式の数を指定できます。
+ * 指定された長さ以上の数式は、パーサに関係なく別に管理し、長い数式が他の数式の計算を妨げないようにすることもできます。<br>
+ * 待ち行列がいっぱいの場合の動作は{@link OverloadPolicy}で指定します。また、数式ごとに期限を指定でき、
+ * 期限までに計算が終わらなかった場合は{@link TimeoutException}で終了します。計算を始めていない数式は待ち行列から取り除き、
+ * 計算中の数式は{@link Cancellation}の確認で途中で止めて、次の数式の計算を始めます。<br>
+ * 計算は数式ごとに仮想スレッドで行います。インスタンスは{@link Builder}で作成し、使い終わったら{@link #close()}を呼び出してください。
+ * このクラスのメソッドは、複数のスレッドから同時に呼び出すことができます。
+ */
+public final class EvaluationExecutor implements AutoCloseable {
+
+	/**
+	 * 待ち行列がいっぱいの場合の動作です。
+	 */
+	public static enum OverloadPolicy {
+		/**
+		 * 新しい数式を{@link RejectedExecutionException}で拒否します。
+		 */
+		REJECT,
+
+		/**
+		 * 待ち行列に空きができるまで(期限がある場合は期限まで)、呼び出したスレッドを待たせます。
+		 */
+		BLOCK,
+
+		/**
+		 * 待ち行列の最も古い数式を{@link RejectedExecutionException}で終了し、新しい数式を待ち行列に追加します。
+		 */
+		SHED_OLDEST;
+	}
+
+	/**
+	 * EvaluationExecutorを作成するためのクラスです。
+	 */
+	public static final class Builder {
+
+		/**
+		 * パーサごとの待ち行列の長さの上限
+		 */
+		private int queueCapacity = 1024;
+
+		/**
+		 * 個別に指定していないパーサで、同時に計算する数式の数
+		 */
+		private int concurrency = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * パーサごとに指定された、同時に計算する数式の数
+		 */
+		private final Map<Parser, Integer> concurrencies = new HashMap<>();
+
+		/**
+		 * 待ち行列がいっぱいの場合の動作
+		 */
+		private OverloadPolicy policy = OverloadPolicy.REJECT;
+
+		/**
+		 * 期限を指定せずに追加された数式の期限。nullの場合は期限なし
+		 */
+		private Duration deadline = null;
+
+		/**
+		 * 受け付ける数式の長さの上限
+		 */
+		private int maxFormulaLength = Integer.MAX_VALUE;
+
+		/**
+		 * 長い数式として別に管理する数式の長さ。0の場合は別に管理しない
+		 */
+		private int largeFormulaLength = 0;
+
+		/**
+		 * 長い数式を同時に計算する数
+		 */
+		private int largeConcurrency = 1;
+
+		/**
+		 * クラスを初期化します
+		 */
+		public Builder() {
+		}
+
+		/**
+		 * パーサごとの待ち行列の長さの上限を指定します。既定値は1024です。
+		 * @param capacity 待ち行列の長さの上限
+		 * @return このインスタンス
+		 * @throws IllegalArgumentException capacityが負の場合
+		 */
+		public Builder queueCapacity(int capacity) {
+			if (capacity < 0) {
+				throw new IllegalArgumentException("待ち行列の長さを負の数にすることはできません");
+			}
+			this.queueCapacity = capacity;
+			return this;
+		}
+
+		/**
+		 * 個別に指定していないパーサで、同時に計算する数式の数を指定します。既定値は使用できるプロセッサの数です。
+		 * @param concurrency 同時に計算する数式の数
+		 * @return このインスタンス
+		 * @throws IllegalArgumentException concurrencyが1未満の場合
+		 */
+		public Builder concurrency(int concurrency) {
+			this.concurrency = checkConcurrency(concurrency);
+			return this;
+		}
+
+		/**
+		 * 指定されたパーサで、同時に計算する数式の数を指定します。
+		 * @param parser パーサ
+		 * @param concurrency 同時に計算する数式の数
+		 * @return このインスタンス
+		 * @throws IllegalArgumentException parserがnullの場合か、concurrencyが1未満の場合
+		 */
+		public Builder concurrency(Parser parser, int concurrency) {
+			if (parser == null) {
+				throw new IllegalArgumentException("パーサがnullです");
+			}
+			this.concurrencies.put(parser, checkConcurrency(concurrency));
+			return this;
+		}
+
+		/**
+		 * 待ち行列がいっぱいの場合の動作を指定します。既定値は{@link OverloadPolicy#REJECT}です。
+		 * @param policy 待ち行列がいっぱいの場合の動作
+		 * @return このインスタンス
+		 * @throws IllegalArgumentException policyがnullの場合
+		 */
+		public Builder overloadPolicy(OverloadPolicy policy) {
+			if (policy == null) {
+				throw new IllegalArgumentException("待ち行列がいっぱいの場合の動作がnullです");
+			}
+			this.policy = policy;
+			return this;
+		}
+
+		/**
+		 * 期限を指定せずに追加された数式の期限(追加してから計算が終わるまでの時間)を指定します。既定値は期限なしです。
+		 * @param deadline 期限。nullの場合は期限なし
+		 * @return このインスタンス
+		 * @throws IllegalArgumentException deadlineが0以下の場合
+		 */
+		public Builder deadline(Duration deadline) {
+			this.deadline = checkDeadline(deadline);
+			return this;
+		}
+
+		/**
+		 * 受け付ける数式の長さの上限を指定します。これより長い数式は{@link RejectedExecutionException}で拒否します。既定値は上限なしです。
+		 * @param length 数式の長さの上限
+		 * @return このインスタンス
+		 * @throws IllegalArgumentException lengthが1未満の場合
+		 */
+		public Builder maxFormulaLength(int length) {
+			if (length < 1) {
+				throw new IllegalArgumentException("数式の長さの上限は1以上にしてください");
+			}
+			this.maxFormulaLength = length;
+			return this;
+		}
+
+		/**
+		 * 指定された長さ以上の数式を、パーサに関係なく別に管理し、同時に計算する数を制限します。既定値は別に管理しません。
+		 * @param length 別に管理する数式の長さ
+		 * @param concurrency 長い数式を同時に計算する数
+		 * @return このインスタンス
+		 * @throws IllegalArgumentException lengthかconcurrencyが1未満の場合
+		 */
+		public Builder largeFormula(int length, int concurrency) {
+			if (length < 1) {
+				throw new IllegalArgumentException("長い数式の長さは1以上にしてください");
+			}
+			this.largeFormulaLength = length;
+			this.largeConcurrency = checkConcurrency(concurrency);
+			return this;
+		}
+
+		/**
+		 * 指定された設定でEvaluationExecutorを作成します。
+		 * @return 作成したEvaluationExecutor
+		 */
+		public EvaluationExecutor build() {
+			return new EvaluationExecutor(this);
+		}
+
+		/**
+		 * 同時に計算する数式の数が正しいか確認します。
+		 * @param concurrency 同時に計算する数式の数
+		 * @return concurrency
+		 * @throws IllegalArgumentException concurrencyが1未満の場合
+		 */
+		private static int checkConcurrency(int concurrency) {
+			if (concurrency < 1) {
+				throw new IllegalArgumentException("同時に計算する数式の数は1以上にしてください");
+			}
+			return concurrency;
+		}
+
+	}
+
+	/**
+	 * 同時に計算する数式の数を制限する単位(パーサごと、または長い数式)です。
+	 */
+	private static final class Lane {
+
+		/**
+		 * 同時に計算する数式の数
+		 */
+		private final int CONCURRENCY;
+
+		/**
+		 * 計算を待っている数式
+		 */
+		private final ArrayDeque<Task> queue = new ArrayDeque<>();
+
+		/**
+		 * 計算中の数式の数
+		 */
+		private int running = 0;
+
+		/**
+		 * 単位を作成します。
+		 * @param concurrency 同時に計算する数式の数
+		 */
+		private Lane(int concurrency) {
+			this.CONCURRENCY = concurrency;
+		}
+
+	}
+
+	/**
+	 * 追加された数式です。待ち行列から取り除く場合に数式の文字列を比較しないよう、recordではなくクラスにしています。
+	 */
+	private static final class Task {
+
+		/**
+		 * 計算に使用するパーサ
+		 */
+		private final Parser PARSER;
+
+		/**
+		 * 数式
+		 */
+		private final FormulaItem ITEM;
+
+		/**
+		 * 計算に使用する計算機
+		 */
+		private final ArithmeticKernel CALC;
+
+		/**
+		 * 同時に計算する数を制限する単位
+		 */
+		private final Lane LANE;
+
+		/**
+		 * 計算結果
+		 */
+		private final CompletableFuture<CalcResult> FUTURE;
+
+		/**
+		 * 追加された数式を作成します。
+		 * @param parser 計算に使用するパーサ
+		 * @param item 数式
+		 * @param calc 計算に使用する計算機
+		 * @param lane 同時に計算する数を制限する単位
+		 * @param future 計算結果
+		 */
+		private Task(Parser parser, FormulaItem item, ArithmeticKernel calc, Lane lane, CompletableFuture<CalcResult> future) {
+			this.PARSER = parser;
+			this.ITEM = item;
+			this.CALC = calc;
+			this.LANE = lane;
+			this.FUTURE = future;
+		}
+
+	}
+
+	/**
+	 * パーサごとの待ち行列の長さの上限
+	 */
+	private final int QUEUE_CAPACITY;
+
+	/**
+	 * 個別に指定していないパーサで、同時に計算する数式の数
+	 */
+	private final int CONCURRENCY;
+
+	/**
+	 * 待ち行列がいっぱいの場合の動作
+	 */
+	private final OverloadPolicy POLICY;
+
+	/**
+	 * 期限を指定せずに追加された数式の期限。nullの場合は期限なし
+	 */
+	private final Duration DEADLINE;
+
+	/**
+	 * 受け付ける数式の長さの上限
+	 */
+	private final int MAX_FORMULA_LENGTH;
+
+	/**
+	 * 長い数式として別に管理する数式の長さ。0の場合は別に管理しない
+	 */
+	private final int LARGE_FORMULA_LENGTH;
+
+	/**
+	 * 長い数式を管理する単位。別に管理しない場合はnull
+	 */
+	private final Lane LARGE;
+
+	/**
+	 * パーサごとの単位
+	 */
+	private final Map<Parser, Lane> LANES = new HashMap<>();
+
+	/**
+	 * 数式を計算するExecutor
+	 */
+	private final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+	/**
+	 * 期限切れを確認するタイマー。計算が終わった数式のタイマーは取り消して待ち行列から取り除き、期限まで数式を保持しないようにします
+	 */
+	private final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+		Thread thread = new Thread(runnable, "EvaluationExecutor-deadline");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * 状態を変更する場合に取得するロック
+	 */
+	private final ReentrantLock LOCK = new ReentrantLock();
+
+	/**
+	 * 待ち行列に空きができたことの通知
+	 */
+	private final Condition NOT_FULL = this.LOCK.newCondition();
+
+	/**
+	 * 計算中と計算待ちの数式がなくなったことの通知
+	 */
+	private final Condition IDLE = this.LOCK.newCondition();
+
+	/**
+	 * 計算を待っている数式の数
+	 */
+	private int queued = 0;
+
+	/**
+	 * 計算中の数式の数
+	 */
+	private int running = 0;
+
+	/**
+	 * {@link #close()}が呼び出されたか
+	 */
+	private boolean closed = false;
+
+	/**
+	 * 計算が終わった数式の数(エラーが発生した数式を含みます)
+	 */
+	private final LongAdder completedCount = new LongAdder();
+
+	/**
+	 * 待ち行列がいっぱいか、長すぎるか、終了後に追加されたため拒否した数式の数
+	 */
+	private final LongAdder rejectedCount = new LongAdder();
+
+	/**
+	 * {@link OverloadPolicy#SHED_OLDEST}で待ち行列から取り除いた数式の数
+	 */
+	private final LongAdder shedCount = new LongAdder();
+
+	/**
+	 * 期限までに計算が終わらなかった数式の数
+	 */
+	private final LongAdder expiredCount = new LongAdder();
+
+	/**
+	 * 指定された設定でインスタンスを作成します。
+	 * @param builder 設定
+	 */
+	private EvaluationExecutor(Builder builder) {
+		this.QUEUE_CAPACITY = builder.queueCapacity;
+		this.CONCURRENCY = builder.concurrency;
+		this.POLICY = builder.policy;
+		this.DEADLINE = builder.deadline;
+		this.MAX_FORMULA_LENGTH = builder.maxFormulaLength;
+		this.LARGE_FORMULA_LENGTH = builder.largeFormulaLength;
+		this.LARGE = (builder.largeFormulaLength == 0) ? null : new Lane(builder.largeConcurrency);
+		builder.concurrencies.forEach((parser, concurrency) -> this.LANES.put(parser, new Lane(concurrency)));
+		this.TIMER.setRemoveOnCancelPolicy(true);
+		// close()の後も期限付きの数式を拒否できるよう、タイマーは終了せず、使用されていない間はスレッドのみ終了します
+		this.TIMER.setKeepAliveTime(1, TimeUnit.SECONDS);
+		this.TIMER.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * 数式を追加し、既定の期限で計算します。
+	 * @param parser 計算に使用するパーサ
+	 * @param item 数式
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果。エラーが発生した場合は{@link ParseException}、拒否した場合は{@link RejectedExecutionException}、
+	 * 期限までに計算が終わらなかった場合は{@link TimeoutException}で終了します
+	 * @throws IllegalArgumentException 引数にnullが含まれている場合
+	 * @see #submit(Parser, FormulaItem, ArithmeticKernel, Duration)
+	 */
+	public CompletableFuture<CalcResult> submit(Parser parser, FormulaItem item, ArithmeticKernel calc) {
+		return this.submit(parser, item, calc, this.DEADLINE);
+	}
+
+	/**
+	 * 数式を追加し、指定された期限で計算します。<br>
+	 * すぐに計算できない場合は待ち行列に追加し、待ち行列がいっぱいの場合は{@link OverloadPolicy}に従います。
+	 * 返されたCompletableFutureを取り消した場合、計算を始めていない数式は待ち行列から取り除きます。
+	 * @param parser 計算に使用するパーサ
+	 * @param item 数式
+	 * @param calc 計算に使用する計算機
+	 * @param deadline 追加してから計算が終わるまでの期限。nullの場合は期限なし
+	 * @return 計算結果。エラーが発生した場合は{@link ParseException}、拒否した場合は{@link RejectedExecutionException}、
+	 * 期限までに計算が終わらなかった場合は{@link TimeoutException}で終了します
+	 * @throws IllegalArgumentException 引数にnullが含まれている場合か、deadlineが0以下の場合
+	 */
+	public CompletableFuture<CalcResult> submit(Parser parser, FormulaItem item, ArithmeticKernel calc, Duration deadline) {
+		if (parser == null || item == null || calc == null) {
+			throw new IllegalArgumentException("パーサ、数式、計算機のいずれかがnullです");
+		}
+		long deadlineNanos = (checkDeadline(deadline) == null) ? Long.MAX_VALUE : System.nanoTime() + deadline.toNanos();
+		CompletableFuture<CalcResult> future = new CompletableFuture<>();
+		if (item.get().length() > this.MAX_FORMULA_LENGTH) {
+			this.rejectedCount.increment();
+			future.completeExceptionally(new RejectedExecutionException("数式が長すぎます"));
+			return future;
+		}
+		Task task = new Task(parser, item, calc, this.laneOf(parser, item), future);
+		ScheduledFuture<?> timeout = (deadline == null) ? null : this.TIMER.schedule(() -> this.expire(task), deadline.toNanos(), TimeUnit.NANOSECONDS);
+		future.whenComplete((result, e) -> {
+			if (timeout != null) {
+				timeout.cancel(false);
+			}
+			if (e instanceof CancellationException) {
+				this.dequeue(task);
+			}
+		});
+		this.LOCK.lock();
+		try {
+			while (true) {
+				if (this.closed) {
+					this.rejectedCount.increment();
+					future.completeExceptionally(new RejectedExecutionException("終了したため計算できません"));
+					return future;
+				}
+				if (future.isDone()) {
+					return future;
+				}
+				Lane lane = task.LANE;
+				if (lane.running < lane.CONCURRENCY) {
+					this.start(task);
+					return future;
+				}
+				if (lane.queue.size() < this.QUEUE_CAPACITY) {
+					lane.queue.add(task);
+					this.queued++;
+					return future;
+				}
+				switch (this.POLICY) {
+					case REJECT:
+						this.rejectedCount.increment();
+						future.completeExceptionally(new RejectedExecutionException("待ち行列がいっぱいです"));
+						return future;
+
+					case SHED_OLDEST:
+						if (this.QUEUE_CAPACITY == 0) {
+							this.rejectedCount.increment();
+							future.completeExceptionally(new RejectedExecutionException("待ち行列がいっぱいです"));
+							return future;
+						}
+						Task oldest = lane.queue.poll();
+						this.queued--;
+						this.shedCount.increment();
+						oldest.FUTURE.completeExceptionally(new RejectedExecutionException("新しい数式を追加するため取り除かれました"));
+						break;
+
+					case BLOCK:
+						try {
+							if (deadline == null) {
+								this.NOT_FULL.await();
+							} else {
+								this.NOT_FULL.awaitNanos(deadlineNanos - System.nanoTime());
+							}
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							future.completeExceptionally(new RejectedExecutionException("待ち行列に空きができるのを待つ間に割り込まれました", e));
+							return future;
+						}
+						if (System.nanoTime() - deadlineNanos >= 0) {
+							this.expire(task);
+						}
+						break;
+				}
+			}
+		} finally {
+			this.LOCK.unlock();
+		}
+	}
+
+	/**
+	 * 数式を管理する単位を返します。
+	 * @param parser 計算に使用するパーサ
+	 * @param item 数式
+	 * @return 数式を管理する単位
+	 */
+	private Lane laneOf(Parser parser, FormulaItem item) {
+		if (this.LARGE != null && item.get().length() >= this.LARGE_FORMULA_LENGTH) {
+			return this.LARGE;
+		}
+		this.LOCK.lock();
+		try {
+			return this.LANES.computeIfAbsent(parser, key -> new Lane(this.CONCURRENCY));
+		} finally {
+			this.LOCK.unlock();
+		}
+	}
+
+	/**
+	 * 数式の計算を始めます。ロックを取得した状態で呼び出してください。
+	 * @param task 数式
+	 */
+	private void start(Task task) {
+		task.LANE.running++;
+		this.running++;
+		this.EXECUTOR.execute(() -> this.run(task));
+	}
+
+	/**
+	 * 数式を計算し、同じ単位で計算を待っている次の数式の計算を始めます。
+	 * @param task 数式
+	 */
+	private void run(Task task) {
+		try {
+			// 待っている間に期限を過ぎたか、取り消された場合は計算しません
+			if (!task.FUTURE.isDone()) {
+				CalcResult result = Cancellation.parseAndCalc(task.PARSER, task.ITEM, task.CALC, task.FUTURE);
+				this.completedCount.increment();
+				task.FUTURE.complete(result);
+			}
+		} catch (ParseException | RuntimeException e) {
+			this.completedCount.increment();
+			if (!task.FUTURE.completeExceptionally(e)) {
+				// 期限切れや取り消しによって途中で止めた計算は、計算が終わった数に含めません
+				this.completedCount.decrement();
+			}
+		} catch (Error e) {
+			// 期限のない呼び出し側が待ち続けないよう、OutOfMemoryErrorなどの場合も終了してからスローします
+			this.completedCount.increment();
+			task.FUTURE.completeExceptionally(e);
+			throw e;
+		} finally {
+			this.finish(task.LANE);
+		}
+	}
+
+	/**
+	 * 計算が終わった後に、同じ単位で計算を待っている次の数式の計算を始めます。
+	 * @param lane 計算が終わった数式の単位
+	 */
+	private void finish(Lane lane) {
+		this.LOCK.lock();
+		try {
+			lane.running--;
+			this.running--;
+			Task next;
+			while ((next = lane.queue.poll()) != null) {
+				this.queued--;
+				if (!next.FUTURE.isDone()) {
+					this.start(next);
+					break;
+				}
+			}
+			this.NOT_FULL.signalAll();
+			if (this.running == 0 && this.queued == 0) {
+				this.IDLE.signalAll();
+			}
+		} finally {
+			this.LOCK.unlock();
+		}
+	}
+
+	/**
+	 * 期限までに計算が終わらなかった数式を、待ち行列から取り除いて{@link TimeoutException}で終了します。
+	 * 呼び出し側が終了を確認した時点で回数の記録が終わっているように、終了する前に記録します。
+	 * @param task 数式
+	 */
+	private void expire(Task task) {
+		if (task.FUTURE.isDone()) {
+			return;
+		}
+		this.dequeue(task);
+		this.expiredCount.increment();
+		if (!task.FUTURE.completeExceptionally(new TimeoutException("期限までに計算が終わりませんでした"))) {
+			// 同時に計算が終わった場合は、期限切れとして記録しません
+			this.expiredCount.decrement();
+		}
+	}
+
+	/**
+	 * 計算を始めていない数式を待ち行列から取り除きます。
+	 * @param task 数式
+	 */
+	private void dequeue(Task task) {
+		this.LOCK.lock();
+		try {
+			if (task.LANE.queue.remove(task)) {
+				this.queued--;
+				this.NOT_FULL.signalAll();
+				if (this.running == 0 && this.queued == 0) {
+					this.IDLE.signalAll();
+				}
+			}
+		} finally {
+			this.LOCK.unlock();
+		}
+	}
+
+	/**
+	 * 計算を待っている数式の数を返します。
+	 * @return 計算を待っている数式の数
+	 */
+	public int getQueueDepth() {
+		this.LOCK.lock();
+		try {
+			return this.queued;
+		} finally {
+			this.LOCK.unlock();
+		}
+	}
+
+	/**
+	 * 計算中の数式の数を返します。
+	 * @return 計算中の数式の数
+	 */
+	public int getRunningCount() {
+		this.LOCK.lock();
+		try {
+			return this.running;
+		} finally {
+			this.LOCK.unlock();
+		}
+	}
+
+	/**
+	 * 計算が終わった数式の数(エラーが発生した数式を含みます)を返します。
+	 * @return 計算が終わった数式の数
+	 */
+	public long getCompletedCount() {
+		return this.completedCount.sum();
+	}
+
+	/**
+	 * 待ち行列がいっぱいか、長すぎるか、終了後に追加されたため拒否した数式の数を返します。
+	 * @return 拒否した数式の数
+	 */
+	public long getRejectedCount() {
+		return this.rejectedCount.sum();
+	}
+
+	/**
+	 * {@link OverloadPolicy#SHED_OLDEST}で待ち行列から取り除いた数式の数を返します。
+	 * @return 取り除いた数式の数
+	 */
+	public long getShedCount() {
+		return this.shedCount.sum();
+	}
+
+	/**
+	 * 期限までに計算が終わらなかった数式の数を返します。
+	 * @return 期限までに計算が終わらなかった数式の数
+	 */
+	public long getExpiredCount() {
+		return this.expiredCount.sum();
+	}
+
+	/**
+	 * 新しい数式の追加を拒否し、計算中と計算待ちの数式が全て終わるまで待ってから終了します。
+	 */
+	@Override
+	public void close() {
+		this.LOCK.lock();
+		try {
+			this.closed = true;
+			this.NOT_FULL.signalAll();
+			while (this.running > 0 || this.queued > 0) {
+				this.IDLE.awaitUninterruptibly();
+			}
+		} finally {
+			this.LOCK.unlock();
+		}
+		this.EXECUTOR.close();
+	}
+
+	@Override
+	public String toString() {
+		return "EvaluationExecutor [queueDepth=" + this.getQueueDepth() + ", running=" + this.getRunningCount() + ", completedCount=" + completedCount.sum()
+				+ ", rejectedCount=" + rejectedCount.sum() + ", shedCount=" + shedCount.sum() + ", expiredCount=" + expiredCount.sum() + "]";
+	}
+
+	/**
+	 * 期限が正しいか確認します。
+	 * @param deadline 期限
+	 * @return deadline
+	 * @throws IllegalArgumentException deadlineが0以下の場合
+	 */
+	private static Duration checkDeadline(Duration deadline) {
+		if (deadline != null && (deadline.isNegative() || deadline.isZero())) {
+			throw new IllegalArgumentException("期限は0より長くしてください");
+		}
+		return deadline;
+	}
+
+}
@@ -0,0 +1,188 @@
+package parse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import item.FormulaItem;
+import parse.AbstractParser.EvaluationOrder;
+
+/**
+ * 解析済みの数式({@link CompiledFormula})を、数式と計算順ごとに保存しておくキャッシュです。<br>
+ * 同じ数式が何度も計算される場合に、解析を1回で済ませるために使用します。<br>
+ * 保存できる数式の数には上限があり、上限を超えた場合は最も長い間使用されていない数式から削除されます。<br>
+ * このクラスのメソッドは、複数のスレッドから同時に呼び出すことができます。<br>
+ * 仮想スレッドから呼び出された場合にキャリアスレッドを固定しないよう、synchronizedではなく{@link ReentrantLock}で排他制御します。
+ */
+public final class FormulaCache {
+
+	/**
+	 * キャッシュのキーです。
+	 * @param formula 数式
+	 * @param order 演算子を計算する順番
+	 */
+	private record Key(FormulaItem formula, EvaluationOrder order) {}
+
+	/**
+	 * パーサが使用するFormulaCacheインスタンス
+	 */
+	private static final FormulaCache cache = new FormulaCache(
+			Integer.getInteger("parse.FormulaCache.capacity", 1024),
+			Integer.getInteger("parse.FormulaCache.maxFormulaLength", 4096));
+
+	/**
+	 * パーサが使用するFormulaCacheインスタンスを取得します。<br>
+	 * 保存できる数式の数の上限はシステムプロパティ<code>parse.FormulaCache.capacity</code>(既定値は1024)、
+	 * 保存する数式の最大の長さは<code>parse.FormulaCache.maxFormulaLength</code>(既定値は4096)で変更できます。
+	 * @return パーサが使用するFormulaCacheインスタンス
+	 */
+	public static FormulaCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * 保存できる数式の数の上限
+	 */
+	private final int CAPACITY;
+
+	/**
+	 * 保存する数式の最大の長さ。これより長い数式は毎回解析します。
+	 */
+	private final int MAX_FORMULA_LENGTH;
+
+	/**
+	 * 解析済みの数式を使用された順に保存しています。
+	 */
+	private final LinkedHashMap<Key, CompiledFormula> ENTRIES;
+
+	/**
+	 * ENTRIESを操作する間に取得するロック。使用された順を更新するため、取得するだけでもこのロックが必要です。
+	 */
+	private final ReentrantLock LOCK = new ReentrantLock();
+
+	/**
+	 * キャッシュに保存されていた回数
+	 */
+	private final LongAdder hitCount = new LongAdder();
+
+	/**
+	 * キャッシュに保存されていなかった回数
+	 */
+	private final LongAdder missCount = new LongAdder();
+
+	/**
+	 * キャッシュを初期化します。
+	 * @param capacity 保存できる数式の数の上限。0の場合は保存しません
+	 * @param maxFormulaLength 保存する数式の最大の長さ
+	 * @throws IllegalArgumentException capacityかmaxFormulaLengthが負の場合
+	 */
+	FormulaCache(int capacity, int maxFormulaLength) {
+		if ((capacity < 0) || (maxFormulaLength < 0)) {
+			throw new IllegalArgumentException("キャッシュの大きさを負の数にすることはできません");
+		}
+		this.CAPACITY = capacity;
+		this.MAX_FORMULA_LENGTH = maxFormulaLength;
+		this.ENTRIES = new LinkedHashMap<>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CompiledFormula> eldest) {
+				return this.size() > CAPACITY;
+			}
+
+		};
+	}
+
+	/**
+	 * 解析済みの数式を取得します。キャッシュに保存されていない場合は解析して保存します。
+	 * @param formula 数式
+	 * @param order 演算子を計算する順番
+	 * @return 解析済みの数式
+	 * @throws ParseException 数式が不正な場合
+	 */
+	CompiledFormula get(FormulaItem formula, EvaluationOrder order) throws ParseException {
+		if ((this.CAPACITY == 0) || (formula.get().length() > this.MAX_FORMULA_LENGTH)) {
+			this.missCount.increment();
+			return FormulaCompiler.compile(formula, order);
+		}
+		Key key = new Key(formula, order);
+		CompiledFormula compiled;
+		this.LOCK.lock();
+		try {
+			compiled = this.ENTRIES.get(key);
+		} finally {
+			this.LOCK.unlock();
+		}
+		if (compiled != null) {
+			this.hitCount.increment();
+			return compiled;
+		}
+		this.missCount.increment();
+		// 解析中は他のスレッドを待たせないよう、ロックの外で解析します
+		compiled = FormulaCompiler.compile(formula, order);
+		this.LOCK.lock();
+		try {
+			this.ENTRIES.putIfAbsent(key, compiled);
+		} finally {
+			this.LOCK.unlock();
+		}
+		return compiled;
+	}
+
+	/**
+	 * キャッシュに保存されていた回数を返します。
+	 * @return キャッシュに保存されていた回数
+	 */
+	public long getHitCount() {
+		return this.hitCount.sum();
+	}
+
+	/**
+	 * キャッシュに保存されておらず、数式を解析した回数を返します。
+	 * @return キャッシュに保存されていなかった回数
+	 */
+	public long getMissCount() {
+		return this.missCount.sum();
+	}
+
+	/**
+	 * 現在保存されている数式の数を返します。
+	 * @return 現在保存されている数式の数
+	 */
+	public int size() {
+		this.LOCK.lock();
+		try {
+			return this.ENTRIES.size();
+		} finally {
+			this.LOCK.unlock();
+		}
+	}
+
+	/**
+	 * 保存できる数式の数の上限を返します。
+	 * @return 保存できる数式の数の上限
+	 */
+	public int getCapacity() {
+		return this.CAPACITY;
+	}
+
+	/**
+	 * 保存されている数式と、回数の記録を全て削除します。
+	 */
+	public void clear() {
+		this.LOCK.lock();
+		try {
+			this.ENTRIES.clear();
+		} finally {
+			this.LOCK.unlock();
+		}
+		this.hitCount.reset();
+		this.missCount.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "FormulaCache [CAPACITY=" + CAPACITY + ", size=" + size() + ", hitCount=" + getHitCount() + ", missCount=" + getMissCount() + "]";
+	}
+
+}
@@ -0,0 +1,304 @@
+package parse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link CompiledFormula}の命令列をJVMのバイトコードに変換し、隠しクラスとして定義するクラスです。<br>
+ * 生成するクラスは{@link CompiledFormula.Code}を実装し、数字はクラスの定数として埋め込まれ、
+ * 演算子は{@link CompiledFormula}の静的メソッドの呼び出しに変換されます。<br>
+ * 分岐のない命令列になるため、StackMapTable属性は必要ありません。
+ */
+final class FormulaClassGenerator {
+
+	/**
+	 * 生成できるメソッドの最大のバイトコード長です。<br>
+	 * HotSpotはこれより長いメソッドをJITコンパイルしないため(DontCompileHugeMethods)、それより長い数式は変換しません。
+	 */
+	static final int MAX_CODE_LENGTH = 8000;
+
+	/**
+	 * 生成するクラスのクラスファイルのバージョン(Java 17)
+	 */
+	private static final int CLASS_FILE_VERSION = 61;
+
+	/**
+	 * 生成するクラスの名前。隠しクラスのため、実際にはこの後ろに識別用の文字列が付きます。
+	 */
+	private static final String CLASS_NAME = "parse/GeneratedFormula";
+
+	/**
+	 * 演算子の静的メソッドのメソッド記述子
+	 */
+	private static final String OPERATOR_DESCRIPTOR = "(DDLcalc/ArithmeticKernel;)D";
+
+	/**
+	 * 命令に対応する{@link CompiledFormula}の静的メソッドの名前
+	 */
+	private static final String[] OPERATOR_METHODS = { null, "plus", "minus", "multiply", "divide", "scale" };
+
+	/**
+	 * このクラスはインスタンス化できません
+	 * @throws UnsupportedOperationException 常に
+	 */
+	private FormulaClassGenerator() {
+		throw new UnsupportedOperationException(this.getClass().getName() + "はインスタンス化できません");
+	}
+
+	/**
+	 * 命令列をバイトコードに変換した場合のメソッドの長さを返します。
+	 * @param code 逆ポーランド記法の命令列
+	 * @return バイトコードの長さ
+	 */
+	static int codeLength(byte[] code) {
+		int length = 1; // dreturn
+		for (byte operationCode : code) {
+			// ldc2_w(3バイト)、またはaload_1とinvokestatic(合わせて4バイト)
+			length += (operationCode == CompiledFormula.PUSH) ? 3 : 4;
+		}
+		return length;
+	}
+
+	/**
+	 * 命令列をバイトコードに変換し、隠しクラスとして定義してインスタンスを作成します。
+	 * @param code 逆ポーランド記法の命令列
+	 * @param constants PUSH命令で順番にスタックに積む数字
+	 * @param maxStackSize 計算中にスタックに積まれる値の最大数
+	 * @return 生成したクラスのインスタンス
+	 * @throws IllegalArgumentException 命令列が長すぎる場合
+	 * @throws ReflectiveOperationException クラスの定義やインスタンスの作成に失敗した場合
+	 */
+	static CompiledFormula.Code generate(byte[] code, double[] constants, int maxStackSize) throws ReflectiveOperationException {
+		if (codeLength(code) > MAX_CODE_LENGTH) {
+			throw new IllegalArgumentException("数式が長すぎるためバイトコードに変換できません");
+		}
+		byte[] classFile = new ClassWriter().write(code, constants, maxStackSize);
+		MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+		try {
+			return (CompiledFormula.Code) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+		} catch (ReflectiveOperationException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new ReflectiveOperationException(e);
+		}
+	}
+
+	/**
+	 * クラスファイルを書き出すクラスです。
+	 */
+	private static final class ClassWriter {
+
+		/**
+		 * コンスタントプールの内容
+		 */
+		private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+
+		/**
+		 * コンスタントプールに書き込むストリーム
+		 */
+		private final DataOutputStream pool = new DataOutputStream(this.poolBytes);
+
+		/**
+		 * 次に追加するコンスタントプールのエントリの番号
+		 */
+		private int poolCount = 1;
+
+		/**
+		 * 追加済みのエントリの番号。同じ内容のエントリを何度も追加しないために使用します。
+		 */
+		private final Map<String, Integer> entries = new HashMap<>();
+
+		/**
+		 * クラスを初期化します
+		 */
+		ClassWriter() {
+		}
+
+		/**
+		 * クラスファイルを書き出します。
+		 * @param code 逆ポーランド記法の命令列
+		 * @param constants PUSH命令で順番にスタックに積む数字
+		 * @param maxStackSize 計算中にスタックに積まれる値の最大数
+		 * @return クラスファイル
+		 */
+		byte[] write(byte[] code, double[] constants, int maxStackSize) {
+			try {
+				int thisClass = this.classEntry(CLASS_NAME);
+				int superClass = this.classEntry("java/lang/Object");
+				int codeInterface = this.classEntry("parse/CompiledFormula$Code");
+				int codeAttribute = this.utf8("Code");
+				int objectInit = this.methodEntry(10, superClass, "<init>", "()V");
+				int init = this.utf8("<init>");
+				int initDescriptor = this.utf8("()V");
+				int run = this.utf8("run");
+				int runDescriptor = this.utf8("(Lcalc/ArithmeticKernel;)D");
+
+				ByteArrayOutputStream runBytes = new ByteArrayOutputStream();
+				DataOutputStream runCode = new DataOutputStream(runBytes);
+				int constant = 0;
+				for (byte operationCode : code) {
+					if (operationCode == CompiledFormula.PUSH) {
+						runCode.writeByte(0x14); // ldc2_w
+						runCode.writeShort(this.doubleEntry(constants[constant++]));
+					} else {
+						runCode.writeByte(0x2b); // aload_1
+						runCode.writeByte(0xb8); // invokestatic
+						runCode.writeShort(this.methodEntry(10, this.classEntry("parse/CompiledFormula"),
+								OPERATOR_METHODS[operationCode], OPERATOR_DESCRIPTOR));
+					}
+				}
+				runCode.writeByte(0xaf); // dreturn
+
+				ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(classBytes);
+				out.writeInt(0xCAFEBABE);
+				out.writeShort(0);
+				out.writeShort(CLASS_FILE_VERSION);
+				out.writeShort(this.poolCount);
+				this.poolBytes.writeTo(out);
+				out.writeShort(0x0001 | 0x0010 | 0x0020); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+				out.writeShort(thisClass);
+				out.writeShort(superClass);
+				out.writeShort(1);
+				out.writeShort(codeInterface);
+				out.writeShort(0); // フィールドなし
+				out.writeShort(2);
+				// public <init>() { super(); }
+				byte[] initCode = { 0x2a, (byte) 0xb7, (byte) (objectInit >> 8), (byte) objectInit, (byte) 0xb1 };
+				this.writeMethod(out, init, initDescriptor, codeAttribute, 1, 1, initCode);
+				// public double run(ArithmeticKernel calc)
+				this.writeMethod(out, run, runDescriptor, codeAttribute, maxStackSize * 2 + 1, 2, runBytes.toByteArray());
+				out.writeShort(0); // 属性なし
+				return classBytes.toByteArray();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Code属性を持つpublicメソッドを書き出します。
+		 * @param out 書き込み先
+		 * @param name メソッド名のエントリ
+		 * @param descriptor メソッド記述子のエントリ
+		 * @param codeAttribute "Code"のエントリ
+		 * @param maxStack オペランドスタックの最大の深さ
+		 * @param maxLocals ローカル変数の数
+		 * @param code バイトコード
+		 * @throws IOException 書き込みに失敗した場合
+		 */
+		private void writeMethod(DataOutputStream out, int name, int descriptor, int codeAttribute,
+				int maxStack, int maxLocals, byte[] code) throws IOException {
+			out.writeShort(0x0001); // ACC_PUBLIC
+			out.writeShort(name);
+			out.writeShort(descriptor);
+			out.writeShort(1);
+			out.writeShort(codeAttribute);
+			out.writeInt(12 + code.length);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(code.length);
+			out.write(code);
+			out.writeShort(0); // 例外テーブルなし
+			out.writeShort(0); // 属性なし
+		}
+
+		/**
+		 * CONSTANT_Utf8エントリを追加します。
+		 * @param value 文字列
+		 * @return エントリの番号
+		 * @throws IOException 書き込みに失敗した場合
+		 */
+		private int utf8(String value) throws IOException {
+			Integer index = this.entries.get("U" + value);
+			if (index != null) {
+				return index;
+			}
+			this.pool.writeByte(1);
+			this.pool.writeUTF(value);
+			return this.register("U" + value, 1);
+		}
+
+		/**
+		 * CONSTANT_Classエントリを追加します。
+		 * @param name 内部形式のクラス名
+		 * @return エントリの番号
+		 * @throws IOException 書き込みに失敗した場合
+		 */
+		private int classEntry(String name) throws IOException {
+			Integer index = this.entries.get("C" + name);
+			if (index != null) {
+				return index;
+			}
+			int nameIndex = this.utf8(name);
+			this.pool.writeByte(7);
+			this.pool.writeShort(nameIndex);
+			return this.register("C" + name, 1);
+		}
+
+		/**
+		 * CONSTANT_Methodrefエントリ(tagが10)を追加します。
+		 * @param tag エントリの種類
+		 * @param classIndex メソッドを持つクラスのエントリ
+		 * @param name メソッド名
+		 * @param descriptor メソッド記述子
+		 * @return エントリの番号
+		 * @throws IOException 書き込みに失敗した場合
+		 */
+		private int methodEntry(int tag, int classIndex, String name, String descriptor) throws IOException {
+			String key = "M" + classIndex + "." + name + descriptor;
+			Integer index = this.entries.get(key);
+			if (index != null) {
+				return index;
+			}
+			int nameIndex = this.utf8(name);
+			int descriptorIndex = this.utf8(descriptor);
+			this.pool.writeByte(12); // CONSTANT_NameAndType
+			this.pool.writeShort(nameIndex);
+			this.pool.writeShort(descriptorIndex);
+			int nameAndType = this.poolCount++;
+			this.pool.writeByte(tag);
+			this.pool.writeShort(classIndex);
+			this.pool.writeShort(nameAndType);
+			return this.register(key, 1);
+		}
+
+		/**
+		 * CONSTANT_Doubleエントリを追加します。
+		 * @param value 数値
+		 * @return エントリの番号
+		 * @throws IOException 書き込みに失敗した場合
+		 */
+		private int doubleEntry(double value) throws IOException {
+			String key = "D" + Double.doubleToRawLongBits(value);
+			Integer index = this.entries.get(key);
+			if (index != null) {
+				return index;
+			}
+			this.pool.writeByte(6);
+			this.pool.writeDouble(value);
+			// CONSTANT_Doubleはコンスタントプールの番号を2つ使用します
+			return this.register(key, 2);
+		}
+
+		/**
+		 * 追加したエントリを記録し、その番号を返します。
+		 * @param key エントリの内容を表すキー
+		 * @param size エントリが使用する番号の数
+		 * @return エントリの番号
+		 */
+		private int register(String key, int size) {
+			int index = this.poolCount;
+			this.poolCount += size;
+			this.entries.put(key, index);
+			return index;
+		}
+
+	}
+
+}
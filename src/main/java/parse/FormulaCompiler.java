@@ -0,0 +1,415 @@
+package parse;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import item.FormulaItem;
+import parse.AbstractParser.EvaluationOrder;
+
+/**
+ * 数式を先頭から1回だけ読み取り、演算子と括弧をスタックで管理しながら(操車場アルゴリズム)、
+ * 繰り返し計算できる{@link CompiledFormula}に変換するクラスです。<br>
+ * {@link AbstractParser#parseAndCalc(FormulaItem, calc.ArithmeticKernel, AbstractParser.ParseMode...)}のように、
+ * 途中の計算結果を文字列に戻して何度も解析し直すことはありません。<br>
+ * 括弧の中を再帰呼び出しで変換しないため、括弧が深く入れ子になっていても数式の長さに比例した時間で変換でき、
+ * StackOverflowErrorも発生しません。括弧の深さの上限はシステムプロパティ
+ * <code>parse.FormulaCompiler.maxDepth</code>(既定値は1024)で変更できます。<br>
+ * {@link #compileColumns(FormulaItem, EvaluationOrder, List)}で変換する場合のみ、数字の代わりに変数を使用できます。<br>
+ * 計算結果はSimpleFormulaParserとLogicFormulaParserの従来の計算結果と同じになります。
+ */
+final class FormulaCompiler {
+
+	/**
+	 * 数式の終わりを表す文字
+	 */
+	private static final char END = FormulaLexer.END;
+
+	/**
+	 * 括弧の深さの上限
+	 */
+	static final int MAX_DEPTH = Integer.getInteger("parse.FormulaCompiler.maxDepth", 1024);
+
+	/**
+	 * 数式を読み取る字句解析クラス
+	 */
+	private final FormulaLexer lexer;
+
+	/**
+	 * 演算子を計算する順番
+	 */
+	private final EvaluationOrder order;
+
+	/**
+	 * 括弧の深さの上限
+	 */
+	private final int maxDepth;
+
+	/**
+	 * 数式で使用できる変数名。変数を使用できない場合はnull
+	 */
+	private final List<String> variables;
+
+	/**
+	 * 現在読み取っている括弧の深さ
+	 */
+	private int depth = 0;
+
+	/**
+	 * まだ命令に変換していない演算子
+	 */
+	private char[] operators = new char[8];
+
+	/**
+	 * まだ命令に変換していない演算子の数
+	 */
+	private int operatorCount = 0;
+
+	/**
+	 * 括弧ごとの、括弧の始まりの時点でのoperatorCount
+	 */
+	private int[] groupOperatorBases = new int[8];
+
+	/**
+	 * 括弧ごとの、括弧の直前に数字が入力されていたか
+	 */
+	private boolean[] groupCoefficients = new boolean[8];
+
+	/**
+	 * 変換した命令列
+	 */
+	private byte[] code = new byte[16];
+
+	/**
+	 * 変換した命令の数
+	 */
+	private int codeLength = 0;
+
+	/**
+	 * 数式に含まれていた数字
+	 */
+	private double[] constants = new double[8];
+
+	/**
+	 * 数式に含まれていた数字の数
+	 */
+	private int constantCount = 0;
+
+	/**
+	 * 数式に含まれていた数字の、数式の中での始まりと終わりの位置
+	 */
+	private int[] literalBounds = new int[16];
+
+	/**
+	 * VARIABLE命令で順番にスタックに積む変数の、変数名の一覧での位置。符号を反転する場合はビット反転した値です。
+	 */
+	private int[] variableSlots = new int[8];
+
+	/**
+	 * 数式に含まれていた変数の数
+	 */
+	private int variableCount = 0;
+
+	/**
+	 * 計算中にスタックに積まれる値の数
+	 */
+	private int stackSize = 0;
+
+	/**
+	 * 計算中にスタックに積まれる値の最大数
+	 */
+	private int maxStackSize = 0;
+
+	/**
+	 * 期限切れや取り消しの確認
+	 */
+	private final Cancellation cancellation = Cancellation.current();
+
+	/**
+	 * クラスを初期化します
+	 * @param text 変換する数式
+	 * @param order 演算子を計算する順番
+	 * @param maxDepth 括弧の深さの上限
+	 * @param variables 数式で使用できる変数名。変数を使用できない場合はnull
+	 */
+	private FormulaCompiler(String text, EvaluationOrder order, int maxDepth, List<String> variables) {
+		this.lexer = new FormulaLexer(text);
+		this.order = order;
+		this.maxDepth = maxDepth;
+		this.variables = variables;
+	}
+
+	/**
+	 * 数式を解析して、繰り返し計算できる形式に変換します。
+	 * @param item 計算式
+	 * @param order 演算子を計算する順番
+	 * @return 変換した数式
+	 * @throws ParseException 数式が不正な場合
+	 */
+	static CompiledFormula compile(FormulaItem item, EvaluationOrder order) throws ParseException {
+		return compile(item, order, MAX_DEPTH);
+	}
+
+	/**
+	 * 括弧の深さの上限を指定して、数式を解析して繰り返し計算できる形式に変換します。
+	 * @param item 計算式
+	 * @param order 演算子を計算する順番
+	 * @param maxDepth 括弧の深さの上限
+	 * @return 変換した数式
+	 * @throws ParseException 数式が不正な場合
+	 */
+	static CompiledFormula compile(FormulaItem item, EvaluationOrder order, int maxDepth) throws ParseException {
+		try {
+			FormulaCompiler compiler = new FormulaCompiler(item.get(), order, maxDepth, null);
+			compiler.parse();
+			return new CompiledFormula(item, order,
+					Arrays.copyOf(compiler.code, compiler.codeLength),
+					Arrays.copyOf(compiler.constants, compiler.constantCount),
+					Arrays.copyOf(compiler.literalBounds, compiler.constantCount * 2),
+					compiler.maxStackSize);
+		} catch (RuntimeException e) {
+			throw new ParseException("解析中にエラーが発生しました", e);
+		}
+	}
+
+	/**
+	 * 変数を含む数式を解析して、変数ごとの列に対して繰り返し計算できる形式に変換します。
+	 * @param item 計算式
+	 * @param order 演算子を計算する順番
+	 * @param variables 数式で使用できる変数名
+	 * @return 変換した数式
+	 * @throws ParseException 数式が不正な場合や、定義されていない変数が使用された場合
+	 * @throws IllegalArgumentException 変数名が1つもない場合や、変数名が不正か重複している場合
+	 */
+	static ColumnFormula compileColumns(FormulaItem item, EvaluationOrder order, List<String> variables) throws ParseException {
+		if (variables.isEmpty()) {
+			throw new IllegalArgumentException("変数が指定されていません");
+		}
+		for (String variable : variables) {
+			if ((variable == null) || variable.isEmpty() || !FormulaLexer.isIdentifierStart(variable.charAt(0))
+					|| !variable.chars().allMatch(c -> FormulaLexer.isIdentifierPart((char) c))) {
+				throw new IllegalArgumentException("変数名が不正です: " + variable);
+			}
+		}
+		if (new HashSet<>(variables).size() != variables.size()) {
+			throw new IllegalArgumentException("変数名が重複しています");
+		}
+		try {
+			FormulaCompiler compiler = new FormulaCompiler(item.get(), order, MAX_DEPTH, variables);
+			compiler.parse();
+			return new ColumnFormula(item, variables,
+					Arrays.copyOf(compiler.code, compiler.codeLength),
+					Arrays.copyOf(compiler.constants, compiler.constantCount),
+					Arrays.copyOf(compiler.variableSlots, compiler.variableCount),
+					compiler.maxStackSize);
+		} catch (RuntimeException e) {
+			throw new ParseException("解析中にエラーが発生しました", e);
+		}
+	}
+
+	/**
+	 * 数式の終わりまでを変換します。<br>
+	 * 数字1つか括弧の始まりを読み取る処理と、その後の演算子か括弧の終わりを読み取る処理を交互に繰り返します。<br>
+	 * 括弧の直前に符号のみが入力されている場合、その符号は無視されます。
+	 */
+	private void parse() {
+		while (true) {
+			this.cancellation.checkpoint();
+			// 数字1つか、括弧の始まりを読み取ります
+			boolean hasCoefficient = this.lexer.scanNumber();
+			if (hasCoefficient) {
+				this.emitNumber(this.lexer.number(), this.lexer.numberStart(), this.lexer.position());
+			} else if (this.scanVariable()) {
+				hasCoefficient = true;
+			} else if (this.lexer.peek() != '(') {
+				throw new IllegalArgumentException("入力された計算式が不正です。");
+			}
+			if (this.lexer.peek() == '(') {
+				this.openGroup(hasCoefficient);
+				continue;
+			}
+			// 演算子か、括弧の終わりを読み取ります
+			while (true) {
+				char c = this.lexer.peek();
+				if (FormulaLexer.isOperator(c)) {
+					this.lexer.next();
+					this.pushOperator(c);
+					break;
+				}
+				if ((c != END) && (c != ')')) {
+					throw new IllegalArgumentException("使用できない文字が含まれています");
+				}
+				this.emitOperators(this.groupOperatorBase());
+				if (this.depth == 0) {
+					if (c == ')') {
+						throw new IllegalArgumentException("括弧の始まりが来る前に括弧の終わりが来ました");
+					}
+					return;
+				}
+				this.closeGroup();
+				if (FormulaLexer.isNumberChar(this.lexer.peek())) {
+					throw new IllegalArgumentException("括弧の終わりの後に数字が入力されました。");
+				}
+				if (this.lexer.peek() == '(') {
+					// 括弧が続く場合は、前の括弧の計算結果を括弧の直前の数字として扱います
+					this.openGroup(true);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 数字の代わりに、符号(先頭の1文字のみ)と変数名を読み取ります。<br>
+	 * 符号は{@link FormulaLexer#scanNumber()}で読み飛ばされているため、数字の始まりの位置から確認します。
+	 * @return 変数を読み取った場合はtrue。変数を使用できない場合や、次の文字が変数名の最初の文字ではない場合はfalse
+	 * @throws IllegalArgumentException 定義されていない変数が使用された場合
+	 */
+	private boolean scanVariable() {
+		if (this.variables == null) {
+			return false;
+		}
+		int signLength = this.lexer.position() - this.lexer.numberStart();
+		char sign = (signLength == 1) ? this.lexer.text().charAt(this.lexer.numberStart()) : '+';
+		if ((signLength > 1) || ((sign != '+') && (sign != '-'))) {
+			return false;
+		}
+		String name = this.lexer.scanIdentifier();
+		if (name == null) {
+			return false;
+		}
+		int index = this.variables.indexOf(name);
+		if (index == -1) {
+			throw new IllegalArgumentException("変数" + name + "は定義されていません");
+		}
+		if (this.variableCount == this.variableSlots.length) {
+			this.variableSlots = Arrays.copyOf(this.variableSlots, this.variableCount * 2);
+		}
+		this.variableSlots[this.variableCount++] = (sign == '-') ? ~index : index;
+		this.emit(CompiledFormula.VARIABLE);
+		this.maxStackSize = Math.max(this.maxStackSize, ++this.stackSize);
+		return true;
+	}
+
+	/**
+	 * 括弧の始まりを読み取ります。
+	 * @param hasCoefficient 括弧の直前に数字が入力されていたか
+	 * @throws IllegalArgumentException 括弧の深さが上限を超えた場合
+	 */
+	private void openGroup(boolean hasCoefficient) {
+		if (this.depth == this.maxDepth) {
+			throw new IllegalArgumentException("括弧の深さが上限(" + this.maxDepth + ")を超えています");
+		}
+		this.lexer.next();
+		if (this.depth == this.groupOperatorBases.length) {
+			this.groupOperatorBases = Arrays.copyOf(this.groupOperatorBases, this.depth * 2);
+			this.groupCoefficients = Arrays.copyOf(this.groupCoefficients, this.depth * 2);
+		}
+		this.groupOperatorBases[this.depth] = this.operatorCount;
+		this.groupCoefficients[this.depth] = hasCoefficient;
+		this.depth++;
+	}
+
+	/**
+	 * 括弧の終わりの次の位置まで読み進め、括弧の直前に数字があった場合はその数字を掛ける命令を追加します。<br>
+	 * 括弧の中に'='がある場合、従来通りそこから括弧の終わりまでは計算に使用しません。<br>
+	 * ただし、従来は括弧の中の数式を'='までで切り取っていたため、括弧の中の括弧に'='がある場合はエラーになります。
+	 * @throws IllegalArgumentException 括弧の終わりが来る前に数式の終わりが来た場合
+	 */
+	private void closeGroup() {
+		int groupEnd = this.lexer.findGroupEnd();
+		if ((groupEnd == -1) || ((this.depth > 1) && (this.lexer.peek() != ')'))) {
+			throw new IllegalArgumentException("括弧の終わりが来る前に数式の終わりが来ました");
+		}
+		this.lexer.moveTo(groupEnd + 1);
+		this.depth--;
+		if (this.groupCoefficients[this.depth]) {
+			this.emitOperator(CompiledFormula.SCALE);
+		}
+	}
+
+	/**
+	 * 現在読み取っている括弧の始まりの時点での、変換していない演算子の数を返します。
+	 * @return 括弧の中の演算子より前に積まれていた演算子の数
+	 */
+	private int groupOperatorBase() {
+		return (this.depth == 0) ? 0 : this.groupOperatorBases[this.depth - 1];
+	}
+
+	/**
+	 * 演算子を積みます。先に積まれている同じ括弧の中の演算子のうち、優先順位が同じか高いものは先に命令に変換します。
+	 * @param operator 演算子
+	 */
+	private void pushOperator(char operator) {
+		int base = this.groupOperatorBase();
+		int precedence = this.precedence(operator);
+		while ((this.operatorCount > base) && (this.precedence(this.operators[this.operatorCount - 1]) >= precedence)) {
+			this.emitOperator(CompiledFormula.operatorCode(this.operators[--this.operatorCount]));
+		}
+		if (this.operatorCount == this.operators.length) {
+			this.operators = Arrays.copyOf(this.operators, this.operatorCount * 2);
+		}
+		this.operators[this.operatorCount++] = operator;
+	}
+
+	/**
+	 * 積まれている演算子のうち、指定の数より後に積まれたものを全て命令に変換します。
+	 * @param base 残しておく演算子の数
+	 */
+	private void emitOperators(int base) {
+		while (this.operatorCount > base) {
+			this.emitOperator(CompiledFormula.operatorCode(this.operators[--this.operatorCount]));
+		}
+	}
+
+	/**
+	 * 数字をスタックに積む命令を追加します。
+	 * @param number 数字
+	 * @param start 数式の中での数字の始まりの位置
+	 * @param end 数式の中での数字の終わりの位置
+	 */
+	private void emitNumber(double number, int start, int end) {
+		if (this.constantCount == this.constants.length) {
+			this.constants = Arrays.copyOf(this.constants, this.constants.length * 2);
+			this.literalBounds = Arrays.copyOf(this.literalBounds, this.literalBounds.length * 2);
+		}
+		this.literalBounds[this.constantCount * 2] = start;
+		this.literalBounds[this.constantCount * 2 + 1] = end;
+		this.constants[this.constantCount++] = number;
+		this.emit(CompiledFormula.PUSH);
+		this.maxStackSize = Math.max(this.maxStackSize, ++this.stackSize);
+	}
+
+	/**
+	 * スタックから値を2つ取り出して計算し、結果をスタックに積む命令を追加します。
+	 * @param operatorCode 命令
+	 */
+	private void emitOperator(byte operatorCode) {
+		this.emit(operatorCode);
+		this.stackSize--;
+	}
+
+	/**
+	 * 命令を追加します。
+	 * @param operationCode 命令
+	 */
+	private void emit(byte operationCode) {
+		if (this.codeLength == this.code.length) {
+			this.code = Arrays.copyOf(this.code, this.code.length * 2);
+		}
+		this.code[this.codeLength++] = operationCode;
+	}
+
+	/**
+	 * 演算子の優先順位を返します。数値が大きいほど先に計算します。
+	 * @param operator 演算子
+	 * @return 優先順位
+	 */
+	private int precedence(char operator) {
+		if ((this.order == EvaluationOrder.OPERATOR_PRECEDENCE) && ((operator == '*') || (operator == '/'))) {
+			return 1;
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,353 @@
+package parse;
+
+/**
+ * 数式の文字列を先頭から順に読み取る字句解析クラスです。<br>
+ * 文字の種類は表を使用して判定し、数字は文字列や例外を作成せずに数値へ変換します。<br>
+ * このクラスはスレッドセーフではありません。数式ごとにインスタンスを作成してください。
+ */
+final class FormulaLexer {
+
+	/**
+	 * 数式の終わりを表す文字。文字列の終わりに達した場合もこの文字として扱います。
+	 */
+	static final char END = '=';
+
+	/**
+	 * 数式に使用できない文字の種類
+	 */
+	static final byte OTHER = 0;
+
+	/**
+	 * 数字(0～9)の種類
+	 */
+	static final byte DIGIT = 1;
+
+	/**
+	 * 小数点の種類
+	 */
+	static final byte POINT = 2;
+
+	/**
+	 * 四則演算の演算子(+-*\/)の種類
+	 */
+	static final byte OPERATOR = 3;
+
+	/**
+	 * 括弧の始まりの種類
+	 */
+	static final byte OPEN = 4;
+
+	/**
+	 * 括弧の終わりの種類
+	 */
+	static final byte CLOSE = 5;
+
+	/**
+	 * 数式の終わり('=')の種類
+	 */
+	static final byte EQUALS = 6;
+
+	/**
+	 * ASCII以外の数字の種類。数字の一部として読み取りますが、数値には変換できません。
+	 */
+	static final byte FOREIGN_DIGIT = 7;
+
+	/**
+	 * ASCII文字の種類の表
+	 */
+	private static final byte[] CHAR_TYPES = new byte[128];
+
+	static {
+		for (char c = '0'; c <= '9'; c++) {
+			CHAR_TYPES[c] = DIGIT;
+		}
+		CHAR_TYPES['.'] = POINT;
+		CHAR_TYPES['+'] = OPERATOR;
+		CHAR_TYPES['-'] = OPERATOR;
+		CHAR_TYPES['*'] = OPERATOR;
+		CHAR_TYPES['/'] = OPERATOR;
+		CHAR_TYPES['('] = OPEN;
+		CHAR_TYPES[')'] = CLOSE;
+		CHAR_TYPES['='] = EQUALS;
+	}
+
+	/**
+	 * 誤差なしでdoubleに変換できる10の累乗の表
+	 */
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * 誤差なしでdoubleに変換できる整数の最大値(2の53乗)
+	 */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/**
+	 * 読み取る数式
+	 */
+	private final CharSequence text;
+
+	/**
+	 * 読み取りを終了する位置
+	 */
+	private final int end;
+
+	/**
+	 * 次に読み取る文字の位置
+	 */
+	private int position;
+
+	/**
+	 * 最後に読み取った数字の値
+	 */
+	private double number;
+
+	/**
+	 * 最後に読み取った数字の始まりの位置
+	 */
+	private int numberStart;
+
+	/**
+	 * 数式全体を読み取るクラスを初期化します。
+	 * @param text 読み取る数式
+	 */
+	FormulaLexer(CharSequence text) {
+		this(text, 0, text.length());
+	}
+
+	/**
+	 * 数式の指定の範囲を読み取るクラスを初期化します。
+	 * @param text 読み取る数式
+	 * @param start 読み取りを開始する位置
+	 * @param end 読み取りを終了する位置
+	 */
+	FormulaLexer(CharSequence text, int start, int end) {
+		this.text = text;
+		this.position = start;
+		this.end = end;
+	}
+
+	/**
+	 * 文字の種類を返します。
+	 * @param c 文字
+	 * @return 文字の種類
+	 */
+	static byte typeOf(char c) {
+		if (c < CHAR_TYPES.length) {
+			return CHAR_TYPES[c];
+		}
+		return Character.isDigit(c) ? FOREIGN_DIGIT : OTHER;
+	}
+
+	/**
+	 * 四則演算の演算子かどうかを返します。
+	 * @param c 確認する文字
+	 * @return 四則演算の演算子の場合はtrue
+	 */
+	static boolean isOperator(char c) {
+		return typeOf(c) == OPERATOR;
+	}
+
+	/**
+	 * 数字の一部として読み取る文字(数字と小数点)かどうかを返します。
+	 * @param c 確認する文字
+	 * @return 数字の一部として読み取る文字の場合はtrue
+	 */
+	static boolean isNumberChar(char c) {
+		byte type = typeOf(c);
+		return (type == DIGIT) || (type == POINT) || (type == FOREIGN_DIGIT);
+	}
+
+	/**
+	 * 変数名の最初の文字(文字か'_')かどうかを返します。
+	 * @param c 確認する文字
+	 * @return 変数名の最初の文字の場合はtrue
+	 */
+	static boolean isIdentifierStart(char c) {
+		return (c == '_') || Character.isLetter(c);
+	}
+
+	/**
+	 * 変数名の2文字目以降の文字(文字、数字か'_')かどうかを返します。
+	 * @param c 確認する文字
+	 * @return 変数名の2文字目以降の文字の場合はtrue
+	 */
+	static boolean isIdentifierPart(char c) {
+		return (c == '_') || Character.isLetterOrDigit(c);
+	}
+
+	/**
+	 * 次に読み取る文字を返します。読み取り位置は変わりません。<br>
+	 * 数式の終わりに達している場合は'='を返します。
+	 * @return 次に読み取る文字
+	 */
+	char peek() {
+		if (this.position >= this.end) {
+			return END;
+		}
+		return this.text.charAt(this.position);
+	}
+
+	/**
+	 * 次の文字を読み取り、読み取り位置を1文字進めます。<br>
+	 * 数式の終わりに達している場合は'='を返し、読み取り位置は変わりません。
+	 * @return 読み取った文字
+	 */
+	char next() {
+		if (this.position >= this.end) {
+			return END;
+		}
+		return this.text.charAt(this.position++);
+	}
+
+	/**
+	 * 読み取っていない文字が残っているかどうかを返します。
+	 * @return 読み取っていない文字が残っている場合はtrue
+	 */
+	boolean hasNext() {
+		return this.position < this.end;
+	}
+
+	/**
+	 * 次に読み取る文字の位置を返します。
+	 * @return 次に読み取る文字の位置
+	 */
+	int position() {
+		return this.position;
+	}
+
+	/**
+	 * 読み取っている数式を返します。
+	 * @return 読み取っている数式
+	 */
+	CharSequence text() {
+		return this.text;
+	}
+
+	/**
+	 * 符号(先頭の1文字のみ)と、それに続く数字と小数点を読み取ります。<br>
+	 * 読み取った文字列が数値として正しい場合はtrueを返し、その値は{@link #number()}で取得できます。<br>
+	 * 正しくない場合(数字が1つもない、小数点が複数ある等)でも、読み取った文字は読み飛ばされます。
+	 * @return 読み取った文字列が数値として正しい場合はtrue
+	 */
+	boolean scanNumber() {
+		int start = this.position;
+		this.numberStart = start;
+		boolean negative = false;
+		char sign = this.peek();
+		if ((sign == '+') || (sign == '-')) {
+			negative = (sign == '-');
+			this.position++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean point = false;
+		boolean valid = true;
+		boolean exact = true;
+		LOOP: while (this.position < this.end) {
+			char c = this.text.charAt(this.position);
+			switch (typeOf(c)) {
+				case DIGIT:
+					digits++;
+					if (point) {
+						fractionDigits++;
+					}
+					if (mantissa <= MAX_EXACT_MANTISSA) {
+						mantissa = mantissa * 10 + (c - '0');
+					} else {
+						exact = false;
+					}
+					break;
+
+				case POINT:
+					if (point) {
+						valid = false;
+					}
+					point = true;
+					break;
+
+				case FOREIGN_DIGIT:
+					valid = false;
+					break;
+
+				default:
+					break LOOP;
+			}
+			this.position++;
+		}
+		if ((!valid) || (digits == 0)) {
+			return false;
+		}
+		if (exact && (mantissa <= MAX_EXACT_MANTISSA) && (fractionDigits < POWERS_OF_TEN.length)) {
+			// 仮数と10の累乗がどちらも誤差なく表せるため、1回の割り算で正しく丸められた値になります
+			double value = mantissa / POWERS_OF_TEN[fractionDigits];
+			this.number = negative ? -value : value;
+		} else {
+			this.number = Double.parseDouble(this.text.subSequence(start, this.position).toString());
+		}
+		return true;
+	}
+
+	/**
+	 * 変数名を読み取ります。
+	 * @return 読み取った変数名。次の文字が変数名の最初の文字ではない場合はnull
+	 */
+	String scanIdentifier() {
+		int start = this.position;
+		if (!isIdentifierStart(this.peek())) {
+			return null;
+		}
+		this.position++;
+		while ((this.position < this.end) && isIdentifierPart(this.text.charAt(this.position))) {
+			this.position++;
+		}
+		return this.text.subSequence(start, this.position).toString();
+	}
+
+	/**
+	 * 最後に{@link #scanNumber()}で読み取った数字の値を返します。
+	 * @return 最後に読み取った数字の値
+	 */
+	double number() {
+		return this.number;
+	}
+
+	/**
+	 * 最後に{@link #scanNumber()}で読み取った数字の始まりの位置(符号を含む)を返します。<br>
+	 * 数字の終わりの位置は、読み取った直後の{@link #position()}です。
+	 * @return 最後に読み取った数字の始まりの位置
+	 */
+	int numberStart() {
+		return this.numberStart;
+	}
+
+	/**
+	 * 括弧の始まりの次の位置から読み取っているものとして、対応する括弧の終わりの位置を探します。<br>
+	 * 読み取り位置は変わりません。
+	 * @return 対応する括弧の終わりの位置。見つからない場合は-1
+	 */
+	int findGroupEnd() {
+		int depth = 1;
+		for (int i = this.position; i < this.end; i++) {
+			char c = this.text.charAt(i);
+			if (c == '(') {
+				depth++;
+			} else if ((c == ')') && (--depth == 0)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 読み取り位置を指定の位置に移動します。
+	 * @param position 次に読み取る文字の位置
+	 */
+	void moveTo(int position) {
+		this.position = position;
+	}
+
+}
@@ -0,0 +1,639 @@
+package parse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import calc.ArithmeticKernel;
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * 受け取った数式を計算し、計算結果を送信する{@link Flow.Processor}です。<br>
+ * 受け取った数式はまとめて{@link Executor}で計算します。計算中の数式がない場合はすぐに計算を始め、
+ * 計算中に受け取った数式は最大{@link Builder#batchSize(int)}個ずつまとめて計算します。
+ * 同時に計算する数式のまとまりの数は{@link Builder#maxBatches(int)}で制限します。<br>
+ * 上流には、受け取ってまだ送信していない数式の数が一定(まとまりの大きさ×(同時に計算するまとまりの数+1))を超えないように要求するため、
+ * 下流の要求が少ない場合でも、計算結果を保持するメモリは一定です。<br>
+ * 計算結果は既定では数式を受け取った順番に送信します。{@link Builder#ordered(boolean)}でfalseを指定すると、
+ * 計算が終わったまとまりから送信します(まとまりの中の順番は保たれます)。<br>
+ * 数式の計算中にエラーが発生した場合は、それより前の数式の計算結果を送信した後に、下流に{@link ParseException}を通知し、上流の購読を取り消します。
+ * 計算が終わったまとまりから送信する場合は、新しいまとまりの計算を始めずに、その時点で計算中のまとまりの計算が終わるまで待ち、
+ * それらの計算結果も送信してから通知します。<br>
+ * 上流から通知されたエラーは、それまでに受け取った数式の計算結果を送信した後に下流に通知します。<br>
+ * 下流の購読者は1つのみです。
+ */
+public final class FormulaProcessor implements Flow.Processor<FormulaItem, CalcResult> {
+
+	/**
+	 * FormulaProcessorを作成するためのクラスです。
+	 */
+	public static final class Builder {
+
+		/**
+		 * 計算に使用するパーサ
+		 */
+		private final Parser parser;
+
+		/**
+		 * 計算に使用する計算機
+		 */
+		private final ArithmeticKernel calc;
+
+		/**
+		 * 計算に使用するスレッド
+		 */
+		private Executor executor = ForkJoinPool.commonPool();
+
+		/**
+		 * まとめて計算する数式の最大の数
+		 */
+		private int batchSize = 256;
+
+		/**
+		 * 同時に計算するまとまりの数
+		 */
+		private int maxBatches = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * 受け取った順番に計算結果を送信するか
+		 */
+		private boolean ordered = true;
+
+		/**
+		 * 指定されたパーサと計算機で計算する設定を作成します。
+		 * @param parser 計算に使用するパーサ
+		 * @param calc 計算に使用する計算機(複数のスレッドから同時に使用されます)
+		 * @throws IllegalArgumentException parserかcalcがnullの場合
+		 */
+		public Builder(Parser parser, ArithmeticKernel calc) {
+			if (parser == null || calc == null) {
+				throw new IllegalArgumentException("パーサか計算機がnullです");
+			}
+			this.parser = parser;
+			this.calc = calc;
+		}
+
+		/**
+		 * 計算に使用するスレッドを指定します。既定値は{@link ForkJoinPool#commonPool()}です。
+		 * @param executor 計算に使用するスレッド
+		 * @return このインスタンス
+		 * @throws IllegalArgumentException executorがnullの場合
+		 */
+		public Builder executor(Executor executor) {
+			if (executor == null) {
+				throw new IllegalArgumentException("計算に使用するスレッドがnullです");
+			}
+			this.executor = executor;
+			return this;
+		}
+
+		/**
+		 * まとめて計算する数式の最大の数を指定します。既定値は256です。
+		 * @param batchSize まとめて計算する数式の最大の数
+		 * @return このインスタンス
+		 * @throws IllegalArgumentException batchSizeが1未満の場合
+		 */
+		public Builder batchSize(int batchSize) {
+			if (batchSize < 1) {
+				throw new IllegalArgumentException("まとめて計算する数式の数は1以上にしてください");
+			}
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		/**
+		 * 同時に計算するまとまりの数を指定します。既定値は使用できるプロセッサの数です。
+		 * @param maxBatches 同時に計算するまとまりの数
+		 * @return このインスタンス
+		 * @throws IllegalArgumentException maxBatchesが1未満の場合
+		 */
+		public Builder maxBatches(int maxBatches) {
+			if (maxBatches < 1) {
+				throw new IllegalArgumentException("同時に計算するまとまりの数は1以上にしてください");
+			}
+			this.maxBatches = maxBatches;
+			return this;
+		}
+
+		/**
+		 * 計算結果を数式を受け取った順番に送信するかを指定します。既定値はtrueです。
+		 * @param ordered 受け取った順番に送信する場合はtrue、計算が終わったまとまりから送信する場合はfalse
+		 * @return このインスタンス
+		 */
+		public Builder ordered(boolean ordered) {
+			this.ordered = ordered;
+			return this;
+		}
+
+		/**
+		 * 指定された設定でFormulaProcessorを作成します。
+		 * @return 作成したFormulaProcessor
+		 */
+		public FormulaProcessor build() {
+			return new FormulaProcessor(this);
+		}
+
+	}
+
+	/**
+	 * まとめて計算する数式です。
+	 */
+	private static final class Batch {
+
+		/**
+		 * 数式
+		 */
+		private final FormulaItem[] ITEMS;
+
+		/**
+		 * 計算結果
+		 */
+		private final CalcResult[] RESULTS;
+
+		/**
+		 * 計算できた数式の数。エラーが発生した場合は、エラーが発生した数式の位置
+		 */
+		private int count = 0;
+
+		/**
+		 * 発生したエラー。エラーが発生していない場合はnull
+		 */
+		private Throwable error = null;
+
+		/**
+		 * 計算が終わったか
+		 */
+		private boolean done = false;
+
+		/**
+		 * 送信した計算結果の数
+		 */
+		private int sent = 0;
+
+		/**
+		 * まとめて計算する数式を作成します。
+		 * @param items 数式
+		 */
+		private Batch(List<FormulaItem> items) {
+			this.ITEMS = items.toArray(FormulaItem[]::new);
+			this.RESULTS = new CalcResult[this.ITEMS.length];
+		}
+
+	}
+
+	/**
+	 * 計算に使用するパーサ
+	 */
+	private final Parser PARSER;
+
+	/**
+	 * 計算に使用する計算機
+	 */
+	private final ArithmeticKernel CALC;
+
+	/**
+	 * 計算に使用するスレッド
+	 */
+	private final Executor EXECUTOR;
+
+	/**
+	 * まとめて計算する数式の最大の数
+	 */
+	private final int BATCH_SIZE;
+
+	/**
+	 * 同時に計算するまとまりの数
+	 */
+	private final int MAX_BATCHES;
+
+	/**
+	 * 受け取ってまだ送信していない数式の数の上限
+	 */
+	private final long CAPACITY;
+
+	/**
+	 * 受け取った順番に計算結果を送信するか
+	 */
+	private final boolean ORDERED;
+
+	/**
+	 * 状態を変更する場合に取得するロック
+	 */
+	private final ReentrantLock LOCK = new ReentrantLock();
+
+	/**
+	 * 送信処理を1つのスレッドで行うための、送信処理が必要になった回数
+	 */
+	private final AtomicInteger wip = new AtomicInteger();
+
+	/**
+	 * 上流の購読
+	 */
+	private Flow.Subscription upstream;
+
+	/**
+	 * 下流の購読者
+	 */
+	private Flow.Subscriber<? super CalcResult> downstream;
+
+	/**
+	 * 下流の{@link Flow.Subscriber#onSubscribe(Flow.Subscription)}が終わったか
+	 */
+	private boolean subscribed = false;
+
+	/**
+	 * まだ計算を始めていない数式
+	 */
+	private List<FormulaItem> pending = new ArrayList<>();
+
+	/**
+	 * 計算中または送信待ちのまとまり。受け取った順番に送信する場合は計算を始めた順番、そうでない場合は計算が終わった順番に並びます
+	 */
+	private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+
+	/**
+	 * 計算中のまとまりの数
+	 */
+	private int running = 0;
+
+	/**
+	 * 上流に要求して、まだ受け取っていない数式の数
+	 */
+	private long requested = 0;
+
+	/**
+	 * 受け取って、まだ送信していない数式の数
+	 */
+	private long buffered = 0;
+
+	/**
+	 * 下流から要求されて、まだ送信していない計算結果の数
+	 */
+	private long demand = 0;
+
+	/**
+	 * 上流が終了したか
+	 */
+	private boolean upstreamDone = false;
+
+	/**
+	 * 上流から通知されたエラー
+	 */
+	private Throwable upstreamError = null;
+
+	/**
+	 * 順番を保たない場合に、計算中のまとまりの計算結果を送信するまで通知を遅らせている、数式の計算中に発生したエラー
+	 */
+	private Throwable batchError = null;
+
+	/**
+	 * 下流から不正な数を要求された場合のエラー
+	 */
+	private Throwable requestError = null;
+
+	/**
+	 * 下流に終了を通知したか、購読が取り消されたか
+	 */
+	private boolean terminated = false;
+
+	/**
+	 * 指定された設定でインスタンスを作成します。
+	 * @param builder 設定
+	 */
+	private FormulaProcessor(Builder builder) {
+		this.PARSER = builder.parser;
+		this.CALC = builder.calc;
+		this.EXECUTOR = builder.executor;
+		this.BATCH_SIZE = builder.batchSize;
+		this.MAX_BATCHES = builder.maxBatches;
+		this.CAPACITY = (long) builder.batchSize * (builder.maxBatches + 1);
+		this.ORDERED = builder.ordered;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super CalcResult> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("購読者がnullです");
+		}
+		this.LOCK.lock();
+		try {
+			if (this.downstream == null) {
+				this.downstream = subscriber;
+				subscriber = null;
+			}
+		} finally {
+			this.LOCK.unlock();
+		}
+		if (subscriber != null) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override public void request(long n) {}
+				@Override public void cancel() {}
+			});
+			subscriber.onError(new IllegalStateException("購読者は1つのみです"));
+			return;
+		}
+		this.downstream.onSubscribe(new Flow.Subscription() {
+
+			@Override
+			public void request(long n) {
+				FormulaProcessor.this.request(n);
+			}
+
+			@Override
+			public void cancel() {
+				FormulaProcessor.this.cancel();
+			}
+
+		});
+		this.LOCK.lock();
+		try {
+			this.subscribed = true;
+		} finally {
+			this.LOCK.unlock();
+		}
+		this.drain();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		boolean cancel;
+		this.LOCK.lock();
+		try {
+			cancel = (this.upstream != null) || this.terminated;
+			if (!cancel) {
+				this.upstream = subscription;
+			}
+		} finally {
+			this.LOCK.unlock();
+		}
+		if (cancel) {
+			subscription.cancel();
+			return;
+		}
+		this.drain();
+	}
+
+	@Override
+	public void onNext(FormulaItem item) {
+		this.LOCK.lock();
+		try {
+			if (this.terminated) {
+				return;
+			}
+			this.requested--;
+			this.buffered++;
+			this.pending.add(item);
+		} finally {
+			this.LOCK.unlock();
+		}
+		this.drain();
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		this.LOCK.lock();
+		try {
+			this.upstreamDone = true;
+			this.upstreamError = throwable;
+		} finally {
+			this.LOCK.unlock();
+		}
+		this.drain();
+	}
+
+	@Override
+	public void onComplete() {
+		this.LOCK.lock();
+		try {
+			this.upstreamDone = true;
+		} finally {
+			this.LOCK.unlock();
+		}
+		this.drain();
+	}
+
+	/**
+	 * 下流からの要求を記録します。
+	 * @param n 要求された計算結果の数
+	 */
+	private void request(long n) {
+		this.LOCK.lock();
+		try {
+			if (n <= 0) {
+				this.requestError = new IllegalArgumentException("要求する数は1以上にしてください: " + n);
+			} else {
+				this.demand = (this.demand + n < 0) ? Long.MAX_VALUE : this.demand + n;
+			}
+		} finally {
+			this.LOCK.unlock();
+		}
+		this.drain();
+	}
+
+	/**
+	 * 下流からの購読の取り消しを記録し、上流の購読を取り消します。
+	 */
+	private void cancel() {
+		Flow.Subscription subscription;
+		this.LOCK.lock();
+		try {
+			if (this.terminated) {
+				return;
+			}
+			this.terminated = true;
+			this.pending.clear();
+			this.batches.clear();
+			subscription = this.upstream;
+		} finally {
+			this.LOCK.unlock();
+		}
+		if (subscription != null) {
+			subscription.cancel();
+		}
+	}
+
+	/**
+	 * まとめた数式を計算します。
+	 * @param batch まとめた数式
+	 */
+	private void evaluate(Batch batch) {
+		int count = 0;
+		Throwable error = null;
+		try {
+			for (; count < batch.ITEMS.length; count++) {
+				batch.RESULTS[count] = this.PARSER.parseAndCalc(batch.ITEMS[count], this.CALC);
+			}
+		} catch (ParseException | RuntimeException e) {
+			error = e;
+		}
+		this.LOCK.lock();
+		try {
+			batch.count = count;
+			batch.error = error;
+			batch.done = true;
+			this.running--;
+			if (!this.ORDERED && !this.terminated) {
+				this.batches.add(batch);
+			}
+		} finally {
+			this.LOCK.unlock();
+		}
+		this.drain();
+	}
+
+	/**
+	 * 計算結果の送信、数式の計算の開始、上流への要求、終了の通知を、状態が変わらなくなるまで行います。
+	 * 複数のスレッドから同時に呼び出された場合は、1つのスレッドがまとめて行います。
+	 */
+	private void drain() {
+		if (this.wip.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		do {
+			this.emit();
+			this.schedule();
+			missed = this.wip.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
+	/**
+	 * 要求されている数だけ計算結果を送信し、全て送信した場合は終了を通知します。
+	 */
+	private void emit() {
+		while (true) {
+			CalcResult next = null;
+			Throwable error = null;
+			boolean complete = false;
+			Flow.Subscription subscription = null;
+			this.LOCK.lock();
+			try {
+				if (this.terminated || !this.subscribed) {
+					return;
+				}
+				Batch head = this.batches.peek();
+				if (this.requestError != null) {
+					error = this.requestError;
+					subscription = this.upstream;
+				} else if (head != null && head.done && head.sent < head.count) {
+					if (this.demand == 0) {
+						return;
+					}
+					next = head.RESULTS[head.sent++];
+					this.demand--;
+					this.buffered--;
+				} else if (head != null && head.done && head.error != null && this.ORDERED) {
+					error = head.error;
+					subscription = this.upstream;
+				} else if (head != null && head.done) {
+					if (head.error != null && this.batchError == null) {
+						// 順番を保たない場合は、計算中のまとまりの計算結果を送信してから通知します
+						this.batchError = head.error;
+					}
+					this.batches.poll();
+					continue;
+				} else if (head == null && this.running == 0 && this.batchError != null) {
+					error = this.batchError;
+					subscription = this.upstream;
+				} else if (head == null && this.pending.isEmpty() && this.running == 0 && this.upstreamDone) {
+					error = this.upstreamError;
+					complete = (error == null);
+				} else {
+					return;
+				}
+				if (next == null) {
+					this.terminated = true;
+					this.pending.clear();
+					this.batches.clear();
+				}
+			} finally {
+				this.LOCK.unlock();
+			}
+			if (next != null) {
+				this.downstream.onNext(next);
+			} else if (complete) {
+				this.downstream.onComplete();
+				return;
+			} else {
+				if (subscription != null) {
+					subscription.cancel();
+				}
+				this.downstream.onError(error);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 受け取った数式の計算を始め、上流に次の数式を要求します。
+	 */
+	private void schedule() {
+		List<Batch> start = new ArrayList<>();
+		long request = 0;
+		Flow.Subscription subscription;
+		this.LOCK.lock();
+		try {
+			if (this.terminated || this.batchError != null) {
+				return;
+			}
+			// 計算中の数式がない場合や、これ以上受け取る予定がない場合は、まとまりが小さくても計算を始めます
+			while (!this.pending.isEmpty() && this.running < this.MAX_BATCHES
+					&& (this.pending.size() >= this.BATCH_SIZE || this.running == 0 || this.requested == 0 || this.upstreamDone)) {
+				List<FormulaItem> items = this.pending;
+				if (items.size() > this.BATCH_SIZE) {
+					items = new ArrayList<>(this.pending.subList(0, this.BATCH_SIZE));
+					this.pending.subList(0, this.BATCH_SIZE).clear();
+				} else {
+					this.pending = new ArrayList<>();
+				}
+				Batch batch = new Batch(items);
+				this.running++;
+				if (this.ORDERED) {
+					this.batches.add(batch);
+				}
+				start.add(batch);
+			}
+			subscription = this.upstream;
+			if (subscription != null && this.subscribed && !this.upstreamDone) {
+				request = this.CAPACITY - this.requested - this.buffered;
+				// 要求の回数を減らすため、まとまり1つ分以上空いた場合に要求します
+				if (request >= Math.min(this.BATCH_SIZE, this.CAPACITY)) {
+					this.requested += request;
+				} else {
+					request = 0;
+				}
+			}
+		} finally {
+			this.LOCK.unlock();
+		}
+		for (Batch batch : start) {
+			try {
+				this.EXECUTOR.execute(() -> this.evaluate(batch));
+			} catch (RejectedExecutionException e) {
+				this.LOCK.lock();
+				try {
+					batch.error = e;
+					batch.done = true;
+					this.running--;
+					if (!this.ORDERED) {
+						this.batches.add(batch);
+					}
+				} finally {
+					this.LOCK.unlock();
+				}
+				this.wip.incrementAndGet();
+			}
+		}
+		if (request > 0) {
+			subscription.request(request);
+		}
+	}
+
+}
@@ -1,6 +1,11 @@
 package parse;
 
-import calc.Calculator;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import calc.Arithmetic;
+import calc.ArithmeticKernel;
 import item.CalcResult;
 import item.FormulaItem;
 
@@ -30,15 +35,51 @@ public class LogicFormulaParser extends AbstractParser {
 	protected LogicFormulaParser() {}
 
 	@Override
-	public CalcResult parseAndCalc(FormulaItem item, Calculator calc) throws ParseException {
-		item = this.parseAndCalc(item, calc, ParseMode.PARENTHESES);
-		item = this.parseAndCalc(item, calc, ParseMode.MULTIPLY, ParseMode.DIVIDE);
-		item = this.parseAndCalc(item, calc, ParseMode.PLUS, ParseMode.MINUS);
-		try {
-			return new CalcResult(Double.parseDouble(item.get().replace('=', (char)0)));
-		} catch (NullPointerException | NumberFormatException e) {
-			throw new ParserError("CalcResult生成中にエラーが発生しました。itemの値が不正である可能性があります: " + item, e);
-		}
+	public CalcResult parseAndCalc(FormulaItem item, ArithmeticKernel calc) throws ParseException {
+		return this.compile(item).evaluate(calc);
+	}
+
+	/**
+	 * {@inheritDoc}<br>
+	 * 解析済みの数式は{@link FormulaCache}に保存され、同じ数式は2回目以降解析されません。
+	 */
+	@Override
+	public <T> CalcResult parseAndCalc(FormulaItem item, Arithmetic<T> arithmetic) throws ParseException {
+		return this.compile(item).evaluate(arithmetic);
+	}
+
+	/**
+	 * 数式を解析して、繰り返し計算できる形式に変換します。<br>
+	 * 解析済みの数式は{@link FormulaCache}に保存され、同じ数式は2回目以降解析されません。
+	 * @param item 解析する数式
+	 * @return 解析済みの数式
+	 * @throws ParseException 数式が不正な場合
+	 */
+	public CompiledFormula compile(FormulaItem item) throws ParseException {
+		return FormulaCache.getCache().get(item, EvaluationOrder.OPERATOR_PRECEDENCE);
+	}
+
+	/**
+	 * 変数を含む数式を解析して、変数ごとの値の列に対して繰り返し計算できる形式に変換します。<br>
+	 * 変数名は文字か'_'で始まり、文字、数字、'_'が続く文字列で、数式の中では数字の代わりに使用できます。
+	 * @param item 解析する数式
+	 * @param variables 数式で使用する変数名
+	 * @return 解析済みの数式
+	 * @throws ParseException 数式が不正な場合や、定義されていない変数が使用された場合
+	 * @throws IllegalArgumentException 変数名が1つもない場合や、変数名が不正か重複している場合
+	 */
+	@Override
+	public ColumnFormula compileColumns(FormulaItem item, String... variables) throws ParseException {
+		return FormulaCompiler.compileColumns(item, EvaluationOrder.OPERATOR_PRECEDENCE, Arrays.asList(variables));
+	}
+
+	/**
+	 * {@inheritDoc}<br>
+	 * 使用するメモリは数式の長さに関係なく、括弧の深さに比例します。
+	 */
+	@Override
+	public CalcResult parseAndCalc(Reader reader, ArithmeticKernel calc) throws ParseException, IOException {
+		return StreamingEvaluator.evaluate(reader, EvaluationOrder.OPERATOR_PRECEDENCE, calc);
 	}
 
 	@Override
@@ -1,6 +1,18 @@
 package parse;
 
-import calc.Calculator;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import calc.Arithmetic;
+import calc.ArithmeticKernel;
 import item.CalcResult;
 import item.FormulaItem;
 
@@ -16,6 +28,135 @@ public interface Parser {
 	 * @return 計算結果
 	 * @throws ParseException 処理中にエラーが発生した場合
 	 */
-	CalcResult parseAndCalc(FormulaItem item, Calculator calc) throws ParseException;
+	CalcResult parseAndCalc(FormulaItem item, ArithmeticKernel calc) throws ParseException;
+
+	/**
+	 * 複数の数式を、共通のForkJoinPool({@link ForkJoinPool#commonPool()})で分担して解析し、計算します。
+	 * @param items 解析する数式
+	 * @param calc 計算に使用する計算機(複数のスレッドから同時に使用されます)
+	 * @return 数式と同じ順番の計算結果。エラーが発生した数式は、計算結果の代わりに発生した例外を保持します
+	 * @throws IllegalArgumentException 数式にnullが含まれている場合
+	 * @see #parseAndCalcAll(List, ArithmeticKernel, Executor)
+	 */
+	default List<BatchResult> parseAndCalcAll(List<FormulaItem> items, ArithmeticKernel calc) {
+		return this.parseAndCalcAll(items, calc, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * 複数の数式を、指定されたスレッドで分担して解析し、計算します。<br>
+	 * 1つの数式でエラーが発生しても、他の数式の計算は続けます。
+	 * 数式は長さの合計が同じくらいになるように分割して、スレッドに分担させます。
+	 * @param items 解析する数式
+	 * @param calc 計算に使用する計算機(複数のスレッドから同時に使用されます)
+	 * @param executor 計算に使用するスレッド
+	 * @return 数式と同じ順番の計算結果。エラーが発生した数式は、計算結果の代わりに発生した例外を保持します
+	 * @throws IllegalArgumentException 数式にnullが含まれている場合
+	 */
+	default List<BatchResult> parseAndCalcAll(List<FormulaItem> items, ArithmeticKernel calc, Executor executor) {
+		return BatchEvaluator.evaluate(this, items, calc, executor);
+	}
+
+	/**
+	 * 入力された数式を、数式ごとに作成する仮想スレッドで解析し、計算します。
+	 * @param item 解析する数式
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果。エラーが発生した場合はParseExceptionで完了します
+	 * @see #parseAndCalcAsync(FormulaItem, ArithmeticKernel, Duration, Executor)
+	 */
+	default CompletableFuture<CalcResult> parseAndCalcAsync(FormulaItem item, ArithmeticKernel calc) {
+		return this.parseAndCalcAsync(item, calc, null);
+	}
+
+	/**
+	 * 入力された数式を、数式ごとに作成する仮想スレッドで、期限を指定して解析し、計算します。
+	 * @param item 解析する数式
+	 * @param calc 計算に使用する計算機
+	 * @param deadline 計算の期限。期限がない場合はnull
+	 * @return 計算結果。エラーが発生した場合はParseException、期限切れの場合はTimeoutExceptionで完了します
+	 * @throws IllegalArgumentException 期限が負の場合
+	 * @see #parseAndCalcAsync(FormulaItem, ArithmeticKernel, Duration, Executor)
+	 */
+	default CompletableFuture<CalcResult> parseAndCalcAsync(FormulaItem item, ArithmeticKernel calc, Duration deadline) {
+		return this.parseAndCalcAsync(item, calc, deadline, Cancellation.VIRTUAL_THREADS);
+	}
+
+	/**
+	 * 入力された数式を、指定されたスレッドで期限を指定して解析し、計算します。<br>
+	 * 期限切れになった場合や、返したCompletableFutureが取り消された場合(完了させた場合を含む)、
+	 * このパッケージのパーサは数式のトークンの区切りで計算を止め、スレッドを解放します。スレッドへの割り込みは行いません。
+	 * 計算を始める前に期限切れや取り消しになった場合は、計算しません。
+	 * @param item 解析する数式
+	 * @param calc 計算に使用する計算機
+	 * @param deadline 計算の期限。期限がない場合はnull
+	 * @param executor 計算に使用するスレッド
+	 * @return 計算結果。エラーが発生した場合はParseException、期限切れの場合はTimeoutException、
+	 * スレッドが計算を受け付けなかった場合はRejectedExecutionExceptionで完了します
+	 * @throws IllegalArgumentException 期限が負の場合
+	 */
+	default CompletableFuture<CalcResult> parseAndCalcAsync(FormulaItem item, ArithmeticKernel calc, Duration deadline, Executor executor) {
+		return Cancellation.submit(this, item, calc, deadline, executor);
+	}
+
+	/**
+	 * 入力された数式を解析し、計算の途中の値をdoubleに戻さずに、指定された種類の数のまま計算します。<br>
+	 * 例えば{@link calc.BigDecimalArithmetic}を指定すると、全ての計算をBigDecimalで行います。<br>
+	 * 既定の実装は常にUnsupportedOperationExceptionをスローします。
+	 * @param <T> 計算に使用する数の型
+	 * @param item 解析する数式
+	 * @param arithmetic 計算に使用する数の種類
+	 * @return 計算結果
+	 * @throws ParseException 処理中にエラーが発生した場合
+	 * @throws UnsupportedOperationException このパーサが対応していない場合
+	 */
+	default <T> CalcResult parseAndCalc(FormulaItem item, Arithmetic<T> arithmetic) throws ParseException {
+		throw new UnsupportedOperationException(this.getClass().getName() + "は指定された種類の数での計算に対応していません");
+	}
+
+	/**
+	 * 変数を含む数式を解析して、変数ごとの値の列に対して繰り返し計算できる形式に変換します。<br>
+	 * 既定の実装は常にUnsupportedOperationExceptionをスローします。
+	 * @param item 解析する数式
+	 * @param variables 数式で使用する変数名
+	 * @return 解析済みの数式
+	 * @throws ParseException 数式が不正な場合や、定義されていない変数が使用された場合
+	 * @throws IllegalArgumentException 変数名が1つもない場合や、変数名が不正か重複している場合
+	 * @throws UnsupportedOperationException このパーサが対応していない場合
+	 */
+	default ColumnFormula compileColumns(FormulaItem item, String... variables) throws ParseException {
+		throw new UnsupportedOperationException(this.getClass().getName() + "は変数を含む数式に対応していません");
+	}
+
+	/**
+	 * Readerから数式を少しずつ読み込みながら解析し、計算します。<br>
+	 * 数式全体を文字列として保持しないため、メモリに収まらない長さの数式も計算できます。
+	 * 計算結果は、同じ数式を{@link #parseAndCalc(FormulaItem, ArithmeticKernel)}で計算した場合と同じです。
+	 * 計算中のエラーと数式の誤りの両方がある数式も、文字列から計算した場合と同じく数式の誤りのエラーになります。
+	 * '='が入力された場合は数式の終わりとして扱い、それ以降は読み込みません。Readerは閉じません。<br>
+	 * 既定の実装は常にUnsupportedOperationExceptionをスローします。
+	 * @param reader 数式を読み込むReader
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 * @throws ParseException 数式が不正な場合や、計算中にエラーが発生した場合
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws UnsupportedOperationException このパーサが対応していない場合
+	 */
+	default CalcResult parseAndCalc(Reader reader, ArithmeticKernel calc) throws ParseException, IOException {
+		throw new UnsupportedOperationException(this.getClass().getName() + "はReaderからの読み込みに対応していません");
+	}
+
+	/**
+	 * チャネルから数式を少しずつ読み込みながら解析し、計算します。<br>
+	 * 指定された文字コードで文字に変換し、{@link #parseAndCalc(Reader, ArithmeticKernel)}で計算します。チャネルは閉じません。
+	 * @param channel 数式を読み込むチャネル
+	 * @param charset 数式の文字コード
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 * @throws ParseException 数式が不正な場合や、計算中にエラーが発生した場合
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws UnsupportedOperationException このパーサが対応していない場合
+	 */
+	default CalcResult parseAndCalc(ReadableByteChannel channel, Charset charset, ArithmeticKernel calc) throws ParseException, IOException {
+		return this.parseAndCalc(Channels.newReader(channel, charset), calc);
+	}
 
 }
@@ -0,0 +1,437 @@
+package parse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import calc.ArithmeticKernel;
+import item.CalcResult;
+import parse.AbstractParser.EvaluationOrder;
+
+/**
+ * {@link Reader}から数式を少しずつ読み込みながら計算するクラスです。<br>
+ * {@link FormulaCompiler}と同じ方法(操車場アルゴリズム)で数式を読み取りますが、命令列を作成せずに、
+ * 命令に変換する時点でその計算を行います。計算する順番と値は命令列を実行した場合と同じため、計算結果も同じになります。<br>
+ * 数式全体を文字列として保持しないため、使用するメモリは数式の長さに関係なく、括弧の深さに比例します
+ * (左から順に計算する場合、括弧ごとに値を2つと演算子を1つ、掛け算と割り算を先に計算する場合は値を3つと演算子を2つまで保持します)。
+ * 括弧の深さの上限はFormulaCompilerと同じです。<br>
+ * 数式の誤りが見つかった場合は、それ以降を読み込まずに例外をスローします。
+ * 計算中のエラー(0で割った場合など)が発生した場合は、それ以降の計算をせずに数式の終わりまで読み取り、数式の誤りがなければ計算中のエラーをスローします。
+ * そのため、計算中のエラーと数式の誤りの両方がある数式では、文字列から計算した場合と同じく数式の誤りのエラーになります。<br>
+ * このクラスはスレッドセーフではありません。数式ごとにインスタンスを作成してください。
+ */
+final class StreamingEvaluator {
+
+	/**
+	 * 数式の終わりを表す文字
+	 */
+	private static final char END = FormulaLexer.END;
+
+	/**
+	 * 一度に読み込む文字数
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * 数式を読み込むReader
+	 */
+	private final Reader reader;
+
+	/**
+	 * 演算子を計算する順番
+	 */
+	private final EvaluationOrder order;
+
+	/**
+	 * 計算に使用する計算機
+	 */
+	private final ArithmeticKernel calc;
+
+	/**
+	 * 読み込んだ文字
+	 */
+	private final char[] buffer = new char[BUFFER_SIZE];
+
+	/**
+	 * 次に読み取る文字のbufferでの位置
+	 */
+	private int position = 0;
+
+	/**
+	 * bufferに読み込んだ文字数
+	 */
+	private int limit = 0;
+
+	/**
+	 * 数式の最後まで読み込んだか
+	 */
+	private boolean eof = false;
+
+	/**
+	 * 読み取っている数字の文字列(誤差なく変換できない数字を変換する場合に使用します)
+	 */
+	private final StringBuilder token = new StringBuilder();
+
+	/**
+	 * 最後に読み取った数字の値
+	 */
+	private double number;
+
+	/**
+	 * 現在読み取っている括弧の深さ
+	 */
+	private int depth = 0;
+
+	/**
+	 * まだ計算していない演算子
+	 */
+	private char[] operators = new char[8];
+
+	/**
+	 * まだ計算していない演算子の数
+	 */
+	private int operatorCount = 0;
+
+	/**
+	 * 括弧ごとの、括弧の始まりの時点でのoperatorCount
+	 */
+	private int[] groupOperatorBases = new int[8];
+
+	/**
+	 * 括弧ごとの、括弧の直前に数字が入力されていたか
+	 */
+	private boolean[] groupCoefficients = new boolean[8];
+
+	/**
+	 * 計算中の値
+	 */
+	private double[] values = new double[8];
+
+	/**
+	 * 計算中の値の数
+	 */
+	private int valueCount = 0;
+
+	/**
+	 * 計算中に最初に発生したエラー。発生していない場合はnull
+	 */
+	private RuntimeException error = null;
+
+	/**
+	 * 期限切れや取り消しの確認
+	 */
+	private final Cancellation cancellation = Cancellation.current();
+
+	/**
+	 * クラスを初期化します
+	 * @param reader 数式を読み込むReader
+	 * @param order 演算子を計算する順番
+	 * @param calc 計算に使用する計算機
+	 */
+	private StreamingEvaluator(Reader reader, EvaluationOrder order, ArithmeticKernel calc) {
+		this.reader = reader;
+		this.order = order;
+		this.calc = calc;
+	}
+
+	/**
+	 * Readerから数式を読み込みながら計算します。<br>
+	 * '='が入力された場合は数式の終わりとして扱い、それ以降は読み込みません。Readerは閉じません。
+	 * @param reader 数式を読み込むReader
+	 * @param order 演算子を計算する順番
+	 * @param calc 計算に使用する計算機
+	 * @return 計算結果
+	 * @throws ParseException 数式が不正な場合や、計算中にエラーが発生した場合
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 */
+	static CalcResult evaluate(Reader reader, EvaluationOrder order, ArithmeticKernel calc) throws ParseException, IOException {
+		try {
+			StreamingEvaluator evaluator = new StreamingEvaluator(reader, order, calc);
+			evaluator.parse();
+			if (evaluator.error != null) {
+				// 数式の誤りを優先するため、数式の終わりまで読み取ってからスローします
+				throw evaluator.error;
+			}
+			return new CalcResult(CompiledFormula.checkFinite(evaluator.values[0]));
+		} catch (RuntimeException e) {
+			throw new ParseException("解析中にエラーが発生しました", e);
+		}
+	}
+
+	/**
+	 * 数式の終わりまでを読み取って計算します。{@link FormulaCompiler}と同じ順番で読み取ります。
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 */
+	private void parse() throws IOException {
+		while (true) {
+			this.cancellation.checkpoint();
+			// 数字1つか、括弧の始まりを読み取ります
+			boolean hasCoefficient = this.scanNumber();
+			if (hasCoefficient) {
+				this.push(this.number);
+			} else if (this.peek() != '(') {
+				throw new IllegalArgumentException("入力された計算式が不正です。");
+			}
+			if (this.peek() == '(') {
+				this.openGroup(hasCoefficient);
+				continue;
+			}
+			// 演算子か、括弧の終わりを読み取ります
+			while (true) {
+				char c = this.peek();
+				if (FormulaLexer.isOperator(c)) {
+					this.position++;
+					this.pushOperator(c);
+					break;
+				}
+				if ((c != END) && (c != ')')) {
+					throw new IllegalArgumentException("使用できない文字が含まれています");
+				}
+				this.applyOperators(this.groupOperatorBase());
+				if (this.depth == 0) {
+					if (c == ')') {
+						throw new IllegalArgumentException("括弧の始まりが来る前に括弧の終わりが来ました");
+					}
+					return;
+				}
+				this.closeGroup(c);
+				if (FormulaLexer.isNumberChar(this.peek())) {
+					throw new IllegalArgumentException("括弧の終わりの後に数字が入力されました。");
+				}
+				if (this.peek() == '(') {
+					// 括弧が続く場合は、前の括弧の計算結果を括弧の直前の数字として扱います
+					this.openGroup(true);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 次に読み取る文字を返します。必要な場合はReaderから読み込みます。<br>
+	 * 数式の終わりに達している場合は'='を返します。
+	 * @return 次に読み取る文字
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 */
+	private char peek() throws IOException {
+		while (this.position == this.limit) {
+			if (this.eof) {
+				return END;
+			}
+			int read = this.reader.read(this.buffer, 0, this.buffer.length);
+			if (read < 0) {
+				this.eof = true;
+			} else {
+				this.position = 0;
+				this.limit = read;
+			}
+		}
+		return this.buffer[this.position];
+	}
+
+	/**
+	 * {@link FormulaLexer#scanNumber()}と同じく、符号(先頭の1文字のみ)と、それに続く数字と小数点を読み取ります。
+	 * @return 読み取った文字列が数値として正しい場合はtrue。値は{@link #number}に格納します
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 */
+	private boolean scanNumber() throws IOException {
+		this.token.setLength(0);
+		char c = this.peek();
+		if ((c == '+') || (c == '-')) {
+			this.token.append(c);
+			this.position++;
+		}
+		boolean valid = true;
+		boolean digits = false;
+		boolean point = false;
+		LOOP: while (true) {
+			c = this.peek();
+			switch (FormulaLexer.typeOf(c)) {
+				case FormulaLexer.DIGIT:
+					digits = true;
+					break;
+
+				case FormulaLexer.POINT:
+					valid &= !point;
+					point = true;
+					break;
+
+				case FormulaLexer.FOREIGN_DIGIT:
+					valid = false;
+					break;
+
+				default:
+					break LOOP;
+			}
+			this.token.append(c);
+			this.position++;
+		}
+		if (!valid || !digits) {
+			return false;
+		}
+		// 数字の部分だけを同じ方法で変換するため、FormulaLexerで読み取ります
+		FormulaLexer lexer = new FormulaLexer(this.token);
+		lexer.scanNumber();
+		this.number = lexer.number();
+		return true;
+	}
+
+	/**
+	 * 括弧の始まりを読み取ります。
+	 * @param hasCoefficient 括弧の直前に数字が入力されていたか
+	 * @throws IllegalArgumentException 括弧の深さが上限を超えた場合
+	 */
+	private void openGroup(boolean hasCoefficient) {
+		if (this.depth == FormulaCompiler.MAX_DEPTH) {
+			throw new IllegalArgumentException("括弧の深さが上限(" + FormulaCompiler.MAX_DEPTH + ")を超えています");
+		}
+		this.position++;
+		if (this.depth == this.groupOperatorBases.length) {
+			this.groupOperatorBases = Arrays.copyOf(this.groupOperatorBases, this.depth * 2);
+			this.groupCoefficients = Arrays.copyOf(this.groupCoefficients, this.depth * 2);
+		}
+		this.groupOperatorBases[this.depth] = this.operatorCount;
+		this.groupCoefficients[this.depth] = hasCoefficient;
+		this.depth++;
+	}
+
+	/**
+	 * 括弧の終わりの次の位置まで読み進め、括弧の直前に数字があった場合はその数字を掛けます。<br>
+	 * 括弧の中に'='がある場合は、{@link FormulaCompiler}と同じく、そこから括弧の終わりまでは計算に使用しません。
+	 * @param c 括弧の終わりか'='
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws IllegalArgumentException 括弧の終わりが来る前に数式の終わりが来た場合
+	 */
+	private void closeGroup(char c) throws IOException {
+		if (c != ')') {
+			if (this.depth > 1) {
+				throw new IllegalArgumentException("括弧の終わりが来る前に数式の終わりが来ました");
+			}
+			this.skipGroup();
+		}
+		this.position++;
+		this.depth--;
+		if (this.groupCoefficients[this.depth]) {
+			this.apply(CompiledFormula.SCALE);
+		}
+	}
+
+	/**
+	 * 対応する括弧の終わりの直前まで読み飛ばします。
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws IllegalArgumentException 括弧の終わりが来る前に数式の終わりが来た場合
+	 */
+	private void skipGroup() throws IOException {
+		int nesting = 1;
+		while (true) {
+			if (this.position == this.limit) {
+				this.peek();
+				if (this.eof) {
+					throw new IllegalArgumentException("括弧の終わりが来る前に数式の終わりが来ました");
+				}
+			}
+			char c = this.buffer[this.position];
+			if (c == '(') {
+				nesting++;
+			} else if ((c == ')') && (--nesting == 0)) {
+				return;
+			}
+			this.position++;
+		}
+	}
+
+	/**
+	 * 現在読み取っている括弧の始まりの時点での、計算していない演算子の数を返します。
+	 * @return 括弧の中の演算子より前に積まれていた演算子の数
+	 */
+	private int groupOperatorBase() {
+		return (this.depth == 0) ? 0 : this.groupOperatorBases[this.depth - 1];
+	}
+
+	/**
+	 * 演算子を積みます。先に積まれている同じ括弧の中の演算子のうち、優先順位が同じか高いものは先に計算します。
+	 * @param operator 演算子
+	 */
+	private void pushOperator(char operator) {
+		int base = this.groupOperatorBase();
+		int precedence = this.precedence(operator);
+		while ((this.operatorCount > base) && (this.precedence(this.operators[this.operatorCount - 1]) >= precedence)) {
+			this.apply(CompiledFormula.operatorCode(this.operators[--this.operatorCount]));
+		}
+		if (this.operatorCount == this.operators.length) {
+			this.operators = Arrays.copyOf(this.operators, this.operatorCount * 2);
+		}
+		this.operators[this.operatorCount++] = operator;
+	}
+
+	/**
+	 * 積まれている演算子のうち、指定の数より後に積まれたものを全て計算します。
+	 * @param base 残しておく演算子の数
+	 */
+	private void applyOperators(int base) {
+		while (this.operatorCount > base) {
+			this.apply(CompiledFormula.operatorCode(this.operators[--this.operatorCount]));
+		}
+	}
+
+	/**
+	 * 値を積みます。
+	 * @param value 値
+	 */
+	private void push(double value) {
+		if (this.valueCount == this.values.length) {
+			this.values = Arrays.copyOf(this.values, this.valueCount * 2);
+		}
+		this.values[this.valueCount++] = value;
+	}
+
+	/**
+	 * 値を2つ取り出して計算し、結果を積みます。{@link CompiledFormula}で命令を実行した場合と同じ計算を行います。<br>
+	 * 計算中にエラーが発生した場合は{@link #error}に保存し、それ以降は計算せずに値の数だけを合わせます。
+	 * @param operatorCode 命令
+	 */
+	private void apply(byte operatorCode) {
+		double y = this.values[--this.valueCount];
+		if (this.error != null) {
+			return;
+		}
+		double x = this.values[this.valueCount - 1];
+		double result;
+		try {
+			switch (operatorCode) {
+				case CompiledFormula.PLUS:
+					result = this.calc.plus(x, y);
+					break;
+				case CompiledFormula.MINUS:
+					result = this.calc.minus(x, y);
+					break;
+				case CompiledFormula.MULTIPLY:
+					result = this.calc.multiply(x, y);
+					break;
+				case CompiledFormula.DIVIDE:
+					result = this.calc.divide(x, y);
+					break;
+				default:
+					result = this.calc.multiply(y, x);
+					break;
+			}
+		} catch (RuntimeException e) {
+			this.error = e;
+			return;
+		}
+		this.values[this.valueCount - 1] = result;
+	}
+
+	/**
+	 * 演算子の優先順位を返します。数値が大きいほど先に計算します。
+	 * @param operator 演算子
+	 * @return 優先順位
+	 */
+	private int precedence(char operator) {
+		if ((this.order == EvaluationOrder.OPERATOR_PRECEDENCE) && ((operator == '*') || (operator == '/'))) {
+			return 1;
+		}
+		return 0;
+	}
+
+}
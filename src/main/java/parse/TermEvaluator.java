@@ -0,0 +1,415 @@
+package parse;
+
+import java.util.concurrent.RecursiveAction;
+
+import calc.ArithmeticKernel;
+
+/**
+ * 非常に長い数式を、足し算や引き算でつながった項などの互いに独立した部分に分けて、複数のスレッドで分担して計算するクラスです。<br>
+ * 逆ポーランド記法の命令列を、スタックに値が1つだけ残る位置で区切ると、範囲全体は「最初の値 (値 演算子) (値 演算子) ...」の形になります。
+ * 例えばLogicFormulaParserで解析した「a*b+c*d+e*f」は「a (b *) (c d * +) (e f * +)」に分かれ、c*dとe*fは互いに独立して計算できます。<br>
+ * 区切る位置は範囲ごとに1回の走査で求め、各値は共通のForkJoinPoolで並列に計算し、演算子は元の順番で左から適用するため、
+ * 計算結果とスローされる例外は、命令列を先頭から順に実行した場合と常に同じです。
+ * 値の中に十分に長い括弧がある場合は、その中も同じように分けて計算します。<br>
+ * 分担して計算する数式の長さ(命令の数)の下限は、システムプロパティ<code>parse.TermEvaluator.minLength</code>
+ * (既定値は65536、負の数の場合は分担しない)で変更できます。
+ */
+final class TermEvaluator {
+
+	/**
+	 * 分担して計算する範囲の、命令の数の下限
+	 */
+	private static final int MIN_LENGTH = Integer.getInteger("parse.TermEvaluator.minLength", 65536);
+
+	/**
+	 * これより命令の数が少ない作業は分割せずに1つのスレッドで計算します
+	 */
+	private static final int SPLIT_LENGTH = 8192;
+
+	/**
+	 * 分担できない範囲の中の長い値(括弧)を、続けて調べる回数の上限。
+	 * 「1*(1*(1*(...)))」のように、何度調べても分担できない数式で走査を繰り返さないようにします。
+	 */
+	private static final int MAX_DESCENT = 8;
+
+	/**
+	 * 逆ポーランド記法の命令列
+	 */
+	private final byte[] CODE;
+
+	/**
+	 * PUSH命令で順番にスタックに積む数字
+	 */
+	private final double[] CONSTANTS;
+
+	/**
+	 * 計算中にスタックに積まれる値の最大数
+	 */
+	private final int MAX_STACK_SIZE;
+
+	/**
+	 * 計算に使用する計算機
+	 */
+	private final ArithmeticKernel CALC;
+
+	/**
+	 * 命令列を分担して計算する準備をします。
+	 * @param code 逆ポーランド記法の命令列
+	 * @param constants PUSH命令で順番にスタックに積む数字
+	 * @param maxStackSize 計算中にスタックに積まれる値の最大数
+	 * @param calc 計算に使用する計算機
+	 */
+	private TermEvaluator(byte[] code, double[] constants, int maxStackSize, ArithmeticKernel calc) {
+		this.CODE = code;
+		this.CONSTANTS = constants;
+		this.MAX_STACK_SIZE = maxStackSize;
+		this.CALC = calc;
+	}
+
+	/**
+	 * 命令列が、分担して計算する十分に長い数式かを返します。
+	 * @param code 逆ポーランド記法の命令列
+	 * @return 分担して計算する場合はtrue
+	 */
+	static boolean isParallelizable(byte[] code) {
+		return (MIN_LENGTH >= 0) && (code.length > MIN_LENGTH);
+	}
+
+	/**
+	 * 命令列を、独立した部分ごとに共通のForkJoinPoolで分担して計算します。
+	 * @param code 逆ポーランド記法の命令列
+	 * @param constants PUSH命令で順番にスタックに積む数字
+	 * @param maxStackSize 計算中にスタックに積まれる値の最大数
+	 * @param calc 計算に使用する計算機(複数のスレッドから同時に使用されます)
+	 * @return 命令列を先頭から順に実行した場合と同じ計算結果
+	 * @throws RuntimeException 命令列を先頭から順に実行した場合に発生する例外
+	 */
+	static double evaluate(byte[] code, double[] constants, int maxStackSize, ArithmeticKernel calc) {
+		return new TermEvaluator(code, constants, maxStackSize, calc).evaluate(0, code.length, 0, MAX_DESCENT);
+	}
+
+	/**
+	 * 命令列の範囲を、スタックに値が1つだけ残る位置で区切った値です。<br>
+	 * 最初の値は範囲の最初のPUSH命令で、2番目以降の値には、直前までの計算結果と組み合わせる演算子が続きます。
+	 */
+	private static final class Operands {
+
+		/**
+		 * 値の数
+		 */
+		private final int COUNT;
+
+		/**
+		 * 範囲の最初の命令の位置
+		 */
+		private final int START;
+
+		/**
+		 * 各値の、最後の命令の次の位置。2番目以降の値では演算子の位置です。
+		 */
+		private final int[] ENDS;
+
+		/**
+		 * 各値の計算を始める時点で、スタックに積んだ数字の数
+		 */
+		private final int[] CONSTANTS;
+
+		/**
+		 * 区切った値を格納する配列を作成します。
+		 * @param start 範囲の最初の命令の位置
+		 * @param count 値の数
+		 */
+		private Operands(int start, int count) {
+			this.COUNT = count;
+			this.START = start;
+			this.ENDS = new int[count];
+			this.CONSTANTS = new int[count];
+		}
+
+		/**
+		 * 値の最初の命令の位置を返します。2番目以降の値は、直前の値の演算子の次から始まります。
+		 * @param index 値の位置
+		 * @return 最初の命令の位置
+		 */
+		private int startOf(int index) {
+			if (index == 0) {
+				return this.START;
+			}
+			return (index == 1) ? this.ENDS[0] : this.ENDS[index - 1] + 1;
+		}
+
+		/**
+		 * 値の命令の数を返します。
+		 * @param index 値の位置
+		 * @return 命令の数
+		 */
+		private int lengthOf(int index) {
+			return this.ENDS[index] - this.startOf(index);
+		}
+
+	}
+
+	/**
+	 * 命令列の範囲を計算します。<br>
+	 * 区切った値を並列に計算する価値がある場合は分担して計算し、そうでない場合でも、特に長い値(括弧)があればその中を調べます。
+	 * @param start 最初の命令の位置
+	 * @param end 最後の命令の次の位置
+	 * @param constant 計算を始める時点で、スタックに積んだ数字の数
+	 * @param descent 分担できない範囲の中を、続けて調べてよい回数
+	 * @return 計算結果
+	 */
+	private double evaluate(int start, int end, int constant, int descent) {
+		int length = end - start;
+		double[] stack = new double[this.MAX_STACK_SIZE];
+		if (length <= MIN_LENGTH) {
+			return this.interpret(start, end, constant, stack);
+		}
+		Operands operands = this.split(start, end, constant);
+		int largest = 0;
+		for (int i = 1; i < operands.COUNT; i++) {
+			if (operands.lengthOf(i) > operands.lengthOf(largest)) {
+				largest = i;
+			}
+		}
+		// 値がほとんど数字1つだけの場合(演算子を適用する手間が大部分の場合)や、1つの値が大部分を占める場合は、並列に計算しません
+		if ((operands.COUNT * 2 <= length) && (length - operands.lengthOf(largest) >= length / 8)) {
+			double[] values = new double[operands.COUNT];
+			RuntimeException[] exceptions = new RuntimeException[operands.COUNT];
+			new Task(operands, prefixLengths(operands), values, exceptions, 0, operands.COUNT).invoke();
+			double value = valueOf(values, exceptions, 0);
+			for (int i = 1; i < operands.COUNT; i++) {
+				value = this.apply(this.CODE[operands.ENDS[i]], value, valueOf(values, exceptions, i));
+			}
+			return value;
+		}
+		if ((descent <= 0) || (operands.lengthOf(largest) <= MIN_LENGTH)) {
+			return this.interpret(start, end, constant, stack);
+		}
+		double value = this.evaluate(operands, 0, descent - 1, stack);
+		for (int i = 1; i < operands.COUNT; i++) {
+			value = this.apply(this.CODE[operands.ENDS[i]], value, this.evaluate(operands, i, descent - 1, stack));
+		}
+		return value;
+	}
+
+	/**
+	 * 区切った値を計算します。長い値は、さらに区切って計算します。
+	 * @param operands 区切った値
+	 * @param index 値の位置
+	 * @param descent 分担できない範囲の中を、続けて調べてよい回数
+	 * @param stack 短い値の計算に使用するスタック
+	 * @return 計算結果
+	 */
+	private double evaluate(Operands operands, int index, int descent, double[] stack) {
+		int start = operands.startOf(index);
+		if (operands.ENDS[index] - start > MIN_LENGTH) {
+			return this.evaluate(start, operands.ENDS[index], operands.CONSTANTS[index], descent);
+		}
+		return this.interpret(start, operands.ENDS[index], operands.CONSTANTS[index], stack);
+	}
+
+	/**
+	 * 命令列の範囲を、スタックに値が1つだけ残る位置で区切ります。
+	 * @param start 最初の命令の位置
+	 * @param end 最後の命令の次の位置
+	 * @param constant 計算を始める時点で、スタックに積んだ数字の数
+	 * @return 区切った値
+	 */
+	private Operands split(int start, int end, int constant) {
+		// 1回目の走査で値の数を数え、2回目の走査で区切る位置を格納します
+		int count = 0;
+		int depth = 0;
+		for (int i = start; i < end; i++) {
+			depth += (this.CODE[i] == CompiledFormula.PUSH) ? 1 : -1;
+			if (depth == 1) {
+				count++;
+			}
+		}
+		Operands operands = new Operands(start, count);
+		int index = 0;
+		depth = 0;
+		operands.CONSTANTS[0] = constant;
+		for (int i = start; i < end; i++) {
+			if (this.CODE[i] == CompiledFormula.PUSH) {
+				depth++;
+				constant++;
+			} else {
+				depth--;
+			}
+			if (depth == 1) {
+				// 最初の値以外は、最後の命令が直前までの計算結果と組み合わせる演算子です
+				operands.ENDS[index] = (index == 0) ? i + 1 : i;
+				if (++index < count) {
+					operands.CONSTANTS[index] = constant;
+				}
+			}
+		}
+		return operands;
+	}
+
+	/**
+	 * 先頭から各値の直前までの、命令の数の合計を返します。
+	 * @param operands 区切った値
+	 * @return 命令の数の合計。要素数は値の数+1です。
+	 */
+	private static int[] prefixLengths(Operands operands) {
+		int[] prefix = new int[operands.COUNT + 1];
+		for (int i = 0; i < operands.COUNT; i++) {
+			prefix[i + 1] = prefix[i] + operands.lengthOf(i);
+		}
+		return prefix;
+	}
+
+	/**
+	 * 並列に計算した値を返します。計算中に例外が発生していた場合は、その例外をスローします。
+	 * @param values 計算結果
+	 * @param exceptions 計算中に発生した例外
+	 * @param index 値の位置
+	 * @return 計算結果
+	 */
+	private static double valueOf(double[] values, RuntimeException[] exceptions, int index) {
+		if (exceptions[index] != null) {
+			throw exceptions[index];
+		}
+		return values[index];
+	}
+
+	/**
+	 * 区切った値を計算する作業です。命令の数が多い場合は、命令の数が半分になる位置で2つに分割します。
+	 */
+	private final class Task extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * 区切った値(シリアライズできないため、シリアライズの対象外にします)
+		 */
+		private final transient Operands OPERANDS;
+
+		/**
+		 * 先頭から各値の直前までの、命令の数の合計
+		 */
+		private final int[] PREFIX;
+
+		/**
+		 * 計算結果を格納する配列
+		 */
+		private final double[] VALUES;
+
+		/**
+		 * 計算中に発生した例外を格納する配列
+		 */
+		private final RuntimeException[] EXCEPTIONS;
+
+		/**
+		 * 計算する最初の値の位置
+		 */
+		private final int START;
+
+		/**
+		 * 計算する最後の値の次の位置
+		 */
+		private final int END;
+
+		/**
+		 * 指定された範囲の値を計算する作業を作成します。
+		 * @param operands 区切った値
+		 * @param prefix 先頭から各値の直前までの、命令の数の合計
+		 * @param values 計算結果を格納する配列
+		 * @param exceptions 計算中に発生した例外を格納する配列
+		 * @param start 計算する最初の値の位置
+		 * @param end 計算する最後の値の次の位置
+		 */
+		private Task(Operands operands, int[] prefix, double[] values, RuntimeException[] exceptions, int start, int end) {
+			this.OPERANDS = operands;
+			this.PREFIX = prefix;
+			this.VALUES = values;
+			this.EXCEPTIONS = exceptions;
+			this.START = start;
+			this.END = end;
+		}
+
+		@Override
+		protected void compute() {
+			if ((this.END - this.START < 2) || (this.PREFIX[this.END] - this.PREFIX[this.START] <= SPLIT_LENGTH)) {
+				double[] stack = new double[TermEvaluator.this.MAX_STACK_SIZE];
+				for (int i = this.START; i < this.END; i++) {
+					try {
+						this.VALUES[i] = TermEvaluator.this.evaluate(this.OPERANDS, i, MAX_DESCENT, stack);
+					} catch (RuntimeException e) {
+						this.EXCEPTIONS[i] = e;
+					}
+				}
+				return;
+			}
+			int middle = this.splitPoint();
+			invokeAll(new Task(this.OPERANDS, this.PREFIX, this.VALUES, this.EXCEPTIONS, this.START, middle),
+					new Task(this.OPERANDS, this.PREFIX, this.VALUES, this.EXCEPTIONS, middle, this.END));
+		}
+
+		/**
+		 * 命令の数がほぼ半分になる位置を返します。
+		 * @return 分割する位置(STARTより大きく、ENDより小さい値)
+		 */
+		private int splitPoint() {
+			int half = (int) (((long) this.PREFIX[this.START] + this.PREFIX[this.END]) / 2);
+			int low = this.START + 1;
+			int high = this.END - 1;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (this.PREFIX[middle] < half) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+	}
+
+	/**
+	 * 演算子を適用します。
+	 * @param operationCode 演算子の命令
+	 * @param x 直前までの計算結果
+	 * @param y 演算子の直前の値
+	 * @return 計算結果
+	 */
+	private double apply(byte operationCode, double x, double y) {
+		switch (operationCode) {
+			case CompiledFormula.PLUS:
+				return this.CALC.plus(x, y);
+			case CompiledFormula.MINUS:
+				return this.CALC.minus(x, y);
+			case CompiledFormula.MULTIPLY:
+				return this.CALC.multiply(x, y);
+			case CompiledFormula.DIVIDE:
+				return this.CALC.divide(x, y);
+			default:
+				return this.CALC.multiply(y, x);
+		}
+	}
+
+	/**
+	 * 命令列の範囲を先頭から順に実行します。
+	 * @param start 最初の命令の位置
+	 * @param end 最後の命令の次の位置
+	 * @param constant 計算を始める時点で、スタックに積んだ数字の数
+	 * @param stack 計算に使用するスタック
+	 * @return スタックに最後に残った値
+	 */
+	private double interpret(int start, int end, int constant, double[] stack) {
+		int top = -1;
+		for (int i = start; i < end; i++) {
+			byte operationCode = this.CODE[i];
+			if (operationCode == CompiledFormula.PUSH) {
+				stack[++top] = this.CONSTANTS[constant++];
+				continue;
+			}
+			double y = stack[top--];
+			stack[top] = this.apply(operationCode, stack[top], y);
+		}
+		return stack[0];
+	}
+
+}
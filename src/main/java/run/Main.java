@@ -1,6 +1,12 @@
 package run;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 import calc.Calculator;
+import calc.CalculatorHttpServer;
+import calc.CalculatorServer;
+import calc.FormulaFileEvaluator;
 
 /**
  * Javaで実行された時の初期化処理にのみ使うクラスです
@@ -17,10 +23,53 @@ class Main {
 
 	/**
 	 * Javaで実行されたときに電卓を開始するためのメソッドです。
-	 * 引数に"nogui"を渡すとCUIモードで開始します。
+	 * 引数に"nogui"を渡すとCUIモードで開始します。<br>
+	 * "nogui --file 入力ファイル [出力ファイル]"を渡すと、入力ファイルの各行の数式を計算して出力ファイル(指定しない場合は標準出力)に出力し、終了します。<br>
+	 * "nogui --server アドレス"を渡すと、アドレス(ポート番号かUnixドメインソケットのファイルのパス)で計算の要求を受け付けます。<br>
+	 * "nogui --http ポート番号"を渡すと、localhostのポートでHTTPによる計算の要求を受け付けます。
 	 * @param args 引数
 	 */
 	public static void main(String[] args) {
+		if ((args.length == 3 || args.length == 4) && args[0].equals("nogui") && args[1].equals("--file")) {
+			try {
+				FormulaFileEvaluator.evaluate(Path.of(args[2]), (args.length == 4) ? Path.of(args[3]) : null);
+			} catch (IOException e) {
+				System.err.println("ファイルの読み書き中にエラーが発生しました: " + e.getLocalizedMessage());
+				System.exit(1);
+			}
+			System.exit(0);
+		}
+		if (args.length == 3 && args[0].equals("nogui") && args[1].equals("--server")) {
+			try {
+				// 終了時はシャットダウンフックでのみ閉じます
+				CalculatorServer server = CalculatorServer.open(args[2]);
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+					try {
+						server.close();
+					} catch (IOException e) {
+						Calculator.printStackTrace(e);
+					}
+				}));
+				System.out.println("計算の要求を受け付けています: " + server.getAddress());
+				server.serve();
+			} catch (IOException e) {
+				System.err.println("サーバーの実行中にエラーが発生しました: " + e.getLocalizedMessage());
+				System.exit(1);
+			}
+			System.exit(0);
+		}
+		if (args.length == 3 && args[0].equals("nogui") && args[1].equals("--http")) {
+			try {
+				CalculatorHttpServer server = CalculatorHttpServer.start(Integer.parseInt(args[2]));
+				Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+				System.out.println("計算の要求を受け付けています: http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + CalculatorHttpServer.PATH);
+			} catch (IOException | NumberFormatException e) {
+				System.err.println("サーバーを開始できませんでした: " + e.getLocalizedMessage());
+				System.exit(1);
+			}
+			return;
+		}
+
 		// 動作をGUIにするか決めます
 		boolean gui = true;
 		if((args.length != 0) && (args[0].equals("nogui"))) {
@@ -0,0 +1,122 @@
+package calc;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import item.FormulaItem;
+import parse.ParseException;
+import parse.Parser;
+import parse.SimpleFormulaParser;
+
+/**
+ * 1つの{@link ArithmeticKernel}を複数のスレッドで共有した場合の計算速度を、スレッドの数を変えて測定します。<br>
+ * 比較のため、計算のたびに{@link Calculator#getCUICalc()}で電卓を作成した場合も測定します。
+ * JUnitのテストではないため、mainメソッドから実行してください。
+ * 測定時間(秒)はシステムプロパティ<code>calc.ArithmeticKernelBenchmark.seconds</code>(既定値は2)で変更できます。
+ */
+public final class ArithmeticKernelBenchmark {
+
+	/**
+	 * スレッドの数ごとの測定時間(秒)
+	 */
+	private static final int SECONDS = Integer.getInteger("calc.ArithmeticKernelBenchmark.seconds", 2);
+
+	/**
+	 * 計算する数式
+	 */
+	private static final FormulaItem[] ITEMS = new FormulaItem[64];
+
+	static {
+		Random random = new Random(0);
+		for (int i = 0; i < ITEMS.length; i++) {
+			StringBuilder builder = new StringBuilder().append(1 + random.nextInt(999));
+			for (int j = 0; j < 16; j++) {
+				builder.append("+-*/".charAt(random.nextInt(4))).append(1 + random.nextInt(999)).append('.').append(random.nextInt(10));
+			}
+			ITEMS[i] = new FormulaItem(builder.toString());
+		}
+	}
+
+	/**
+	 * インスタンスは作成できません。
+	 */
+	private ArithmeticKernelBenchmark() {
+	}
+
+	/**
+	 * スレッドの数を1からCPUの数の2倍まで2倍ずつ増やしながら、1秒あたりの計算回数を測定して表示します。
+	 * @param args 使用しません
+	 * @throws Exception 測定中にエラーが発生した場合
+	 */
+	public static void main(String[] args) throws Exception {
+		int processors = Runtime.getRuntime().availableProcessors();
+		System.out.println("CPUの数: " + processors + ", 測定時間: " + SECONDS + "秒");
+		System.out.println("スレッド数\t共有(回/秒)\t倍率\t毎回作成(回/秒)\t倍率");
+		// JITコンパイラの最適化が終わるまで計算します
+		measure(processors, ArithmeticKernel::getKernel);
+		double sharedBase = 0;
+		double createdBase = 0;
+		for (int threads = 1; threads <= processors * 2; threads *= 2) {
+			double shared = measure(threads, ArithmeticKernel::getKernel);
+			double created = measure(threads, Calculator::getCUICalc);
+			if (threads == 1) {
+				sharedBase = shared;
+				createdBase = created;
+			}
+			System.out.printf("%d\t%.0f\t%.2f\t%.0f\t%.2f%n", threads, shared, shared / sharedBase, created, created / createdBase);
+		}
+	}
+
+	/**
+	 * 指定された数のスレッドで同時に数式を計算し、全てのスレッドの1秒あたりの計算回数の合計を返します。
+	 * @param threads スレッドの数
+	 * @param kernels 計算ごとに使用する四則演算を返すサプライヤ
+	 * @return 1秒あたりの計算回数
+	 * @throws Exception 計算中にエラーが発生した場合
+	 */
+	private static double measure(int threads, Supplier<? extends ArithmeticKernel> kernels) throws Exception {
+		Parser parser = SimpleFormulaParser.getParser();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			long end = System.nanoTime() + SECONDS * 1_000_000_000L;
+			Future<?>[] futures = new Future<?>[threads];
+			long[] counts = new long[threads];
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures[t] = executor.submit(() -> {
+					start.await();
+					long count = 0;
+					double sum = 0;
+					while (System.nanoTime() < end) {
+						for (FormulaItem item : ITEMS) {
+							try {
+								sum += parser.parseAndCalc(item, kernels.get()).get().doubleValue();
+							} catch (ParseException e) {
+								sum--;
+							}
+						}
+						count += ITEMS.length;
+					}
+					counts[thread] = count;
+					// 計算結果を使用して、計算が最適化で取り除かれないようにします
+					return sum;
+				});
+			}
+			start.countDown();
+			long total = 0;
+			for (int t = 0; t < threads; t++) {
+				futures[t].get();
+				total += counts[t];
+			}
+			return total / (double) SECONDS;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package calc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import item.CalcResult;
+import item.FormulaItem;
+import parse.LogicFormulaParser;
+import parse.ParseException;
+import parse.Parser;
+import parse.SimpleFormulaParser;
+
+/**
+ * 状態を持たない四則演算{@link ArithmeticKernel}をテストするクラスです。
+ */
+public class ArithmeticKernelTest {
+
+	/**
+	 * 同時に計算するスレッドの数
+	 */
+	private static final int THREADS = 256;
+
+	/**
+	 * 既定のインスタンスが常に同じで、doubleをBigDecimalに変換して計算した場合と同じ計算結果になるかテストします。
+	 * 桁数が少なくlongとdoubleで計算する数と、桁数が多くBigDecimalで計算する数の両方でテストします。
+	 */
+	@Test void BigDecimalとの比較テスト() {
+		ArithmeticKernel kernel = ArithmeticKernel.getKernel();
+		assertSame(kernel, ArithmeticKernel.getKernel());
+		Random random = new Random(0);
+		for (int i = 0; i < 10000; i++) {
+			double x = (i % 4 == 3) ? random.nextDouble() * 1000 : this.number(random);
+			double y = (i % 4 == 2) ? random.nextDouble() * 1000 : this.number(random);
+			BigDecimal bigX = BigDecimal.valueOf(x);
+			BigDecimal bigY = BigDecimal.valueOf(y);
+			assertEquals(bigX.add(bigY).doubleValue(), kernel.plus(x, y), x + "+" + y);
+			assertEquals(bigX.subtract(bigY).doubleValue(), kernel.minus(x, y), x + "-" + y);
+			assertEquals(bigX.multiply(bigY).doubleValue(), kernel.multiply(x, y), x + "*" + y);
+			if (y != 0) {
+				assertEquals(bigX.divide(bigY, 15, RoundingMode.HALF_UP).doubleValue(), kernel.divide(x, y), x + "/" + y);
+			}
+		}
+		assertEquals(0.3, kernel.plus(0.1, 0.2));
+		assertEquals("0で割ることは出来ません", assertThrows(ArithmeticException.class, () -> kernel.divide(1, 0)).getMessage());
+	}
+
+	/**
+	 * 1つのインスタンスを多数の仮想スレッドと通常のスレッドで同時に使用して、
+	 * 1つのスレッドで計算した場合と同じ計算結果になるかテストします。
+	 * 同じ数式を何度も計算してバイトコードに変換される数式や、キャッシュされない長い数式も含めてテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 同時計算のテスト() throws Exception {
+		Random random = new Random(1);
+		List<FormulaItem> items = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			items.add(new FormulaItem(this.formula(random, 1 + random.nextInt(20))));
+		}
+		items.add(new FormulaItem(this.formula(random, 1000)));
+		items.add(new FormulaItem("1+2/(3-3)"));
+		Parser[] parsers = { SimpleFormulaParser.getParser(), LogicFormulaParser.getParser() };
+		List<List<String>> expected = new ArrayList<>();
+		for (Parser parser : parsers) {
+			List<String> results = new ArrayList<>();
+			for (FormulaItem item : items) {
+				results.add(this.evaluate(parser, item));
+			}
+			expected.add(results);
+		}
+
+		ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService platform = Executors.newFixedThreadPool(4);
+		try (ExecutorService virtual = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int t = 0; t < THREADS; t++) {
+				int offset = t;
+				// 仮想スレッドとスレッドプールのスレッドで、数式を計算する順番をずらして計算します
+				(t % 8 == 0 ? platform : virtual).execute(() -> {
+					try {
+						start.await();
+						for (int i = 0; i < items.size(); i++) {
+							int index = (i + offset) % items.size();
+							for (int p = 0; p < parsers.length; p++) {
+								String result = this.evaluate(parsers[p], items.get(index));
+								if (!result.equals(expected.get(p).get(index))) {
+									failures.add(items.get(index).get() + " " + result);
+								}
+							}
+						}
+					} catch (InterruptedException e) {
+						failures.add(e.toString());
+					}
+				});
+			}
+			start.countDown();
+		} finally {
+			platform.shutdown();
+		}
+		assertTrue(platform.awaitTermination(1, TimeUnit.MINUTES));
+		assertTrue(failures.isEmpty(), () -> failures.peek());
+	}
+
+	/**
+	 * 共通のインスタンスを使用して数式を計算し、計算結果かエラーのメッセージを返します。
+	 * @param parser 計算に使用するパーサ
+	 * @param item 計算する数式
+	 * @return 計算結果か、エラーのメッセージ
+	 */
+	private String evaluate(Parser parser, FormulaItem item) {
+		try {
+			CalcResult result = parser.parseAndCalc(item, ArithmeticKernel.getKernel());
+			return result.toString();
+		} catch (ParseException e) {
+			return e.getCause().getMessage();
+		}
+	}
+
+	/**
+	 * 整数か、小数点以下が最大3桁の数をランダムに作成します。
+	 * @param random 乱数
+	 * @return 作成した数
+	 */
+	private double number(Random random) {
+		return (random.nextInt(2000000) - 1000000) / Math.pow(10, random.nextInt(4));
+	}
+
+	/**
+	 * 数字と四則演算、括弧を含む数式をランダムに作成します。
+	 * @param random 乱数
+	 * @param terms 数字の数
+	 * @return 作成した数式
+	 */
+	private String formula(Random random, int terms) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < terms; i++) {
+			if (i > 0) {
+				builder.append("+-*/".charAt(random.nextInt(4)));
+			}
+			if (random.nextInt(5) == 0) {
+				builder.append('(').append(1 + random.nextInt(99)).append('+').append(random.nextInt(100) / 10.0).append(')');
+			} else {
+				builder.append(1 + random.nextInt(999));
+			}
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,57 @@
+package calc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import org.junit.jupiter.api.Test;
+
+import item.CalcResult;
+import item.FormulaItem;
+import parse.LogicFormulaParser;
+import parse.ParseException;
+import parse.SimpleFormulaParser;
+
+/**
+ * BigDecimalArithmeticをテストするクラスです。
+ */
+public class BigDecimalArithmeticTest {
+
+	/**
+	 * 計算の途中の値がdoubleに戻されず、誤差なく計算されるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 誤差のない計算のテスト() throws ParseException {
+		Arithmetic<BigDecimal> arithmetic = BigDecimalArithmetic.getArithmetic();
+		CalcResult result = LogicFormulaParser.getParser().parseAndCalc(new FormulaItem("0.1+0.2*3-0.7"), arithmetic);
+		assertEquals(new BigDecimal("0.0"), result.getDecimal());
+		assertEquals(0.0, result.get());
+		result = SimpleFormulaParser.getParser().parseAndCalc(new FormulaItem("12345678901234567890+1"), arithmetic);
+		assertEquals(new BigDecimal("12345678901234567891"), result.getDecimal());
+		result = LogicFormulaParser.getParser().parseAndCalc(new FormulaItem("2(1.5+0.25)-(3)"), arithmetic);
+		assertEquals(new BigDecimal("0.50"), result.getDecimal());
+		assertEquals(new CalcResult(new BigDecimal("0.5")), result);
+		assertNotEquals(new CalcResult(0.5), result);
+	}
+
+	/**
+	 * 割り算の結果が、指定した桁数と丸め方で丸められるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 割り算のテスト() throws ParseException {
+		FormulaItem item = new FormulaItem("2/3");
+		assertEquals(new BigDecimal("0.666666666666667"),
+				LogicFormulaParser.getParser().parseAndCalc(item, BigDecimalArithmetic.getArithmetic()).getDecimal());
+		assertEquals(new BigDecimal("0.66"),
+				LogicFormulaParser.getParser().parseAndCalc(item, new BigDecimalArithmetic(2, RoundingMode.DOWN)).getDecimal());
+		assertEquals(new BigDecimal("0.6666666666666666666666666666666667"),
+				LogicFormulaParser.getParser().parseAndCalc(item, new BigDecimalArithmetic(MathContext.DECIMAL128)).getDecimal());
+		ParseException e = assertThrows(ParseException.class,
+				() -> LogicFormulaParser.getParser().parseAndCalc(new FormulaItem("1/(2-2)"), BigDecimalArithmetic.getArithmetic()));
+		assertEquals("0で割ることは出来ません", e.getCause().getMessage());
+		assertThrows(IllegalArgumentException.class, () -> new BigDecimalArithmetic(MathContext.UNLIMITED));
+	}
+
+}
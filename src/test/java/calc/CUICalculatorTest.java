@@ -85,6 +85,84 @@ public class CUICalculatorTest extends CalculatorTest {
     			}
     }
     
+    /**
+     * 読み込み、計算、出力を別々のスレッドで行うスクリプトモードの出力が、1行ずつ処理する場合と同じになるかテストします。
+     */
+    @Test
+    void パイプライン処理のスクリプトモードのテスト() {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			input.append(i).append("*1.5+").append(i % 7).append("/3").append(System.lineSeparator());
+			if (i % 3001 == 0) {
+				input.append("change-mode").append(System.lineSeparator()).append(i).append("/0").append(System.lineSeparator());
+			}
+			if (i % 4999 == 0) {
+				input.append("change-precision").append(System.lineSeparator()).append(System.lineSeparator());
+			}
+		}
+		input.append("sweep x=0..3 step 0.5 : 1/x").append(System.lineSeparator()).append("12t").append(System.lineSeparator()).append("exit").append(System.lineSeparator());
+		String[] expected = this.runScript(input.toString(), false);
+		String[] actual = this.runScript(input.toString(), true);
+		assertEquals(expected[0], actual[0]);
+		assertEquals(expected[1], actual[1]);
+		assertEquals(10012, actual[0].split(System.lineSeparator()).length);
+    }
+
+    /**
+     * スクリプトモードで電卓を実行し、出力された内容を返します。
+     * @param input 入力する内容
+     * @param pipelined 読み込み、計算、出力を別々のスレッドで行うか
+     * @return 標準出力と標準エラー出力に出力された内容
+     */
+    private String[] runScript(String input, boolean pipelined) {
+		ReflectionUtility.setFieldValue(CUICalculator.class, null, "pipelined", pipelined);
+		try (
+				TestModeChanger changer = new TestModeChanger();
+				SystemOutErrWrapper outWrapper = new SystemOutErrWrapper(SystemOutErrWrapper.WrapperEnum.SYSTEM_OUT);
+				SystemOutErrWrapper errWrapper = new SystemOutErrWrapper(SystemOutErrWrapper.WrapperEnum.SYSTEM_ERR);
+		) {
+			setScannerIsFieldUsingReflection(new ByteArrayInputStream(input.getBytes()));
+			new CUICalculator().display();
+			return new String[] { outWrapper.getBuffer().toString(), errWrapper.getBuffer().toString() };
+		} finally {
+			ReflectionUtility.setFieldValue(CUICalculator.class, null, "pipelined", false);
+		}
+    }
+
+    /**
+     * 精度モードでは、計算結果がBigDecimalのまま出力されるかテストします。
+     */
+    @Test
+    void 精度モードのテスト() {
+		try (
+				TestModeChanger changer = new TestModeChanger();
+				SystemOutErrWrapper outWrapper = new SystemOutErrWrapper(SystemOutErrWrapper.WrapperEnum.SYSTEM_OUT);
+				SystemOutErrWrapper errWrapper = new SystemOutErrWrapper(SystemOutErrWrapper.WrapperEnum.SYSTEM_ERR);
+		) {
+			ByteArrayInputStream newIs = new ByteArrayInputStream((
+					"1.10*3" + System.lineSeparator() +
+					"change-precision" + System.lineSeparator() +
+					"1.10*3" + System.lineSeparator() +
+					"10/4" + System.lineSeparator() +
+					"9/0" + System.lineSeparator() +
+					"change-precision" + System.lineSeparator() +
+					"10/4" + System.lineSeparator() +
+					"exit" + System.lineSeparator()
+			).getBytes());
+			setScannerIsFieldUsingReflection(newIs);
+			new CUICalculator().display();
+
+			assertEquals(
+					"3.3" + System.lineSeparator() +
+					"3.30" + System.lineSeparator() +
+					"2.500000000000000" + System.lineSeparator() +
+					"ERROR" + System.lineSeparator() +
+					"2.5" + System.lineSeparator()
+			, outWrapper.getBuffer().toString());
+			assertEquals("0で割ることは出来ません" + System.lineSeparator(), errWrapper.getBuffer().toString());
+		}
+    }
+
     /**
      * 計算機クラスの電卓画面の表示メソッドをテストします。
      */
@@ -112,6 +190,8 @@ public class CUICalculatorTest extends CalculatorTest {
             		"数字(少数も含む)とこれらの記号+-*/を入力してEnterを押すと計算します。" + System.lineSeparator() +
             		"現在通常モードで動作しています。(掛け算や割り算に関係なく左から右に計算します)" + System.lineSeparator() +
             		"モードを変更する場合は\"change-mode\"と入力してください。" + System.lineSeparator() +
+            		"\"change-precision\"と入力すると、小数を誤差なく計算する精度モードに切り替わります。" + System.lineSeparator() +
+            		"\"sweep x=0..10 step 0.5 : x*x/3\"のように入力すると、xを範囲内の値に置き換えて全て計算します。(\"step 0.5 summary :\"とすると集計結果のみ表示します)" + System.lineSeparator() +
             		"\"exit\"と入力すると電卓プログラムを終了します。" + System.lineSeparator() +
             		"> " + "56.0" + System.lineSeparator() +
             		"> " + "現在四則計算モードで動作しています。(掛け算や割り算を先に計算します)" + System.lineSeparator() +
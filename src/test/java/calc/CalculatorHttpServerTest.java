@@ -0,0 +1,158 @@
+package calc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import item.FormulaItem;
+import parse.LogicFormulaParser;
+
+/**
+ * 複数の数式をHTTPで受け付ける{@link CalculatorHttpServer}をテストするクラスです。
+ */
+public class CalculatorHttpServerTest {
+
+	/**
+	 * テスト対象のサーバー
+	 */
+	private CalculatorHttpServer server;
+
+	/**
+	 * 要求を送信するクライアント
+	 */
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	/**
+	 * サーバーを開始します。
+	 * @throws Exception サーバーを開始できなかった場合
+	 */
+	@BeforeEach void start() throws Exception {
+		this.server = CalculatorHttpServer.start(0);
+	}
+
+	/**
+	 * サーバーを終了します。
+	 */
+	@AfterEach void stop() {
+		this.server.close();
+		this.client.close();
+	}
+
+	/**
+	 * 計算モードの指定と、計算結果とエラーの応答をテストします。modeがformulasの後にある場合もテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 計算のテスト() throws Exception {
+		HttpResponse<String> response = this.post("{\"mode\": \"Logic\", \"formulas\": [\"1+2*3\", \"5/0\", \"\\u0031+1\"]}");
+		assertEquals(200, response.statusCode());
+		assertEquals("[{\"result\": 7.0}, {\"error\": \"0で割ることは出来ません\"}, {\"result\": 2.0}]", response.body());
+		response = this.post(" {\"formulas\" : [\"1+2*3\"], \"comment\": {\"a\": [1, true, null]}, \"mode\":\"Simple\"} ");
+		assertEquals("[{\"result\": 9.0}]", response.body());
+		response = this.post("{\"formulas\": []}");
+		assertEquals("[]", response.body());
+	}
+
+	/**
+	 * 不正な要求に、エラーを応答するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 不正な要求のテスト() throws Exception {
+		HttpResponse<String> response = this.post("{\"mode\": \"Other\", \"formulas\": [\"1\"]}");
+		assertEquals(400, response.statusCode());
+		assertEquals("{\"error\": \"modeにはSimpleかLogicを指定してください\"}", response.body());
+		assertEquals(400, this.post("{\"mode\": \"Simple\"}").statusCode());
+		assertEquals(400, this.post("{\"formulas\": [1]}").statusCode());
+		assertEquals(400, this.post("{\"formulas\": [\"1\"]").statusCode());
+		HttpResponse<String> get = this.client.send(HttpRequest.newBuilder(this.uri()).GET().build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(405, get.statusCode());
+	}
+
+	/**
+	 * 計算結果を書き込んだ後に要求の形式が不正であることがわかった場合に、エラーの内容を配列の最後の要素として応答するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 計算結果の後の不正な要求のテスト() throws Exception {
+		HttpResponse<String> response = this.post("{\"mode\":\"Logic\",\"formulas\":[\"1\", 2]}");
+		assertEquals(200, response.statusCode());
+		assertEquals("[{\"result\": 1.0}, {\"requestError\": \"JSONの形式が不正です('\\\"'がありません)\"}]", response.body());
+		response = this.post("{\"mode\":\"Logic\",\"formulas\":[\"1+1\"]} x");
+		assertEquals(200, response.statusCode());
+		assertEquals("[{\"result\": 2.0}, {\"requestError\": \"JSONの形式が不正です(終わりの後に文字があります)\"}]", response.body());
+	}
+
+	/**
+	 * 読み飛ばす値が深く入れ子になっている要求に、スタックを溢れさせずにエラーを応答するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 深く入れ子になった要求のテスト() throws Exception {
+		String nested = "[".repeat(200000) + "]".repeat(200000);
+		HttpResponse<String> response = this.post("{\"comment\": " + nested + ", \"formulas\": [\"1\"]}");
+		assertEquals(400, response.statusCode());
+		assertEquals("{\"error\": \"JSONの形式が不正です(入れ子の深さが上限(" + JsonReader.MAX_DEPTH + ")を超えています)\"}", response.body());
+		String allowed = "[".repeat(JsonReader.MAX_DEPTH) + "]".repeat(JsonReader.MAX_DEPTH);
+		assertEquals("[{\"result\": 1.0}]", this.post("{\"comment\": " + allowed + ", \"formulas\": [\"1\"]}").body());
+	}
+
+	/**
+	 * 多数の要求を同時に送信し、全てに正しく応答するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 同時に多数の要求を送信するテスト() throws Exception {
+		int requests = 500;
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < requests; i++) {
+			StringBuilder body = new StringBuilder("{\"mode\": \"Logic\", \"formulas\": [");
+			StringBuilder result = new StringBuilder("[");
+			for (int j = 0; j < 20; j++) {
+				String formula = i + "+" + j + "*1.5";
+				body.append((j == 0) ? "" : ", ").append('"').append(formula).append('"');
+				result.append((j == 0) ? "" : ", ").append("{\"result\": ")
+						.append(LogicFormulaParser.getParser().parseAndCalc(new FormulaItem(formula), Calculator.getCUICalc()).get()).append('}');
+			}
+			responses.add(this.client.sendAsync(this.request(body.append("]}").toString()), HttpResponse.BodyHandlers.ofString()));
+			expected.add(result.append(']').toString());
+		}
+		for (int i = 0; i < requests; i++) {
+			assertEquals(expected.get(i), responses.get(i).get().body());
+		}
+	}
+
+	/**
+	 * 要求を送信し、応答を受け取ります。
+	 * @param body 要求の本文
+	 * @return 応答
+	 * @throws Exception 送信中にエラーが発生した場合
+	 */
+	private HttpResponse<String> post(String body) throws Exception {
+		return this.client.send(this.request(body), HttpResponse.BodyHandlers.ofString());
+	}
+
+	/**
+	 * POSTの要求を作成します。
+	 * @param body 要求の本文
+	 * @return 要求
+	 */
+	private HttpRequest request(String body) {
+		return HttpRequest.newBuilder(this.uri()).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+	}
+
+	/**
+	 * 要求の送信先を返します。
+	 * @return 送信先
+	 */
+	private URI uri() {
+		return URI.create("http://localhost:" + this.server.getAddress().getPort() + CalculatorHttpServer.PATH);
+	}
+
+}
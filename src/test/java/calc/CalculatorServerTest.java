@@ -0,0 +1,128 @@
+package calc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import item.FormulaItem;
+import parse.ParseException;
+import parse.SimpleFormulaParser;
+
+/**
+ * 計算の要求を受け付ける{@link CalculatorServer}をテストするクラスです。
+ */
+public class CalculatorServerTest {
+
+	/**
+	 * Unixドメインソケットで、応答を待たずに続けて送信した要求に、同じ順番で応答するかテストします。
+	 * @param directory 一時ディレクトリ
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void Unixドメインソケットのテスト(@TempDir Path directory) throws Exception {
+		Path socket = directory.resolve("calc.sock");
+		CalculatorServer server = CalculatorServer.open(socket.toString());
+		Thread thread = Thread.ofPlatform().start(() -> this.serve(server));
+		try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+			channel.connect(UnixDomainSocketAddress.of(socket));
+			BufferedReader reader = this.send(channel, "1+2*3\n\n5/0\nchange-mode\n1+2*3\nchange-precision\n0.1+0.2\nchange-precision\n0.1+0.2\n");
+			assertEquals("9.0", reader.readLine());
+			assertEquals("ERROR\t0で割ることは出来ません", reader.readLine());
+			assertEquals("OK", reader.readLine());
+			assertEquals("7.0", reader.readLine());
+			assertEquals("OK", reader.readLine());
+			assertEquals("0.3", reader.readLine());
+			assertEquals("OK", reader.readLine());
+			assertEquals(this.calc("0.1+0.2"), reader.readLine());
+		} finally {
+			server.close();
+			thread.join();
+		}
+		assertFalse(Files.exists(socket));
+	}
+
+	/**
+	 * localhostのTCPポートで、複数の接続から続けて送信した多数の要求に、正しく応答するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void TCPで多数の要求を続けて送信するテスト() throws Exception {
+		int lines = 20000;
+		StringBuilder request = new StringBuilder();
+		String[] expected = new String[lines];
+		for (int i = 0; i < lines; i++) {
+			String formula = i + "*1.25-" + (i % 13) + "/7";
+			request.append(formula).append('\n');
+			expected[i] = this.calc(formula);
+		}
+		CalculatorServer server = CalculatorServer.open("0");
+		Thread thread = Thread.ofPlatform().start(() -> this.serve(server));
+		try (SocketChannel first = SocketChannel.open(server.getAddress());
+				SocketChannel second = SocketChannel.open(server.getAddress())) {
+			BufferedReader firstReader = this.send(first, request + "exit\n");
+			BufferedReader secondReader = this.send(second, request.toString());
+			for (int i = 0; i < lines; i++) {
+				assertEquals(expected[i], firstReader.readLine());
+				assertEquals(expected[i], secondReader.readLine());
+			}
+			assertNull(firstReader.readLine());
+		} finally {
+			server.close();
+			thread.join();
+		}
+	}
+
+	/**
+	 * 別のスレッドから要求を送信し、応答を読み込むReaderを返します。要求と応答を同時に送受信するため、送信の完了は待ちません。
+	 * @param channel 接続
+	 * @param request 要求
+	 * @return 応答を読み込むReader
+	 */
+	private BufferedReader send(SocketChannel channel, String request) {
+		Thread.ofVirtual().start(() -> {
+			ByteBuffer buffer = ByteBuffer.wrap(request.getBytes(StandardCharsets.UTF_8));
+			try {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} catch (IOException e) {
+				fail(e);
+			}
+		});
+		return new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * 接続を受け付けます。
+	 * @param server サーバー
+	 */
+	private void serve(CalculatorServer server) {
+		try {
+			server.serve();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * 数式を直接計算した結果を返します。
+	 * @param formula 数式
+	 * @return 計算結果
+	 * @throws ParseException 数式が不正な場合
+	 */
+	private String calc(String formula) throws ParseException {
+		return String.valueOf(SimpleFormulaParser.getParser().parseAndCalc(new FormulaItem(formula), Calculator.getCUICalc()).get().doubleValue());
+	}
+
+}
@@ -0,0 +1,71 @@
+package calc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * DecimalArithmeticをテストするクラスです。
+ */
+public class DecimalArithmeticTest {
+
+	/**
+	 * テストに使用する値
+	 */
+	private static final double[] VALUES = {
+		0, -0.0, 1, -1, 0.1, 0.2, 0.3, 2.5, -3.75, 7, 12, 100, 1e-7, 123456.789, 0.333333333333333,
+		99999999999999.0, 1e15, 1e20, 9007199254740993.0, 1.0 / 3, Math.PI, Double.MIN_VALUE, Double.MAX_VALUE
+	};
+
+	/**
+	 * BigDecimalで計算した場合と同じ結果になるかテストします。
+	 * 同じ結果になることを保証できない場合はNaNが返ります。
+	 */
+	@Test void BigDecimalとの比較テスト() {
+		Random random = new Random(0);
+		for (int i = 0; i < 100000; i++) {
+			double x = (i < VALUES.length * VALUES.length) ? VALUES[i / VALUES.length] : random.nextInt(100000) / Math.pow(10, random.nextInt(8));
+			double y = (i < VALUES.length * VALUES.length) ? VALUES[i % VALUES.length] : random.nextInt(100000) / Math.pow(10, random.nextInt(8));
+			BigDecimal bx = BigDecimal.valueOf(x);
+			BigDecimal by = BigDecimal.valueOf(y);
+			assertSame(bx.add(by).doubleValue(), DecimalArithmetic.plus(x, y), x + "+" + y);
+			assertSame(bx.subtract(by).doubleValue(), DecimalArithmetic.minus(x, y), x + "-" + y);
+			assertSame(bx.multiply(by).doubleValue(), DecimalArithmetic.multiply(x, y), x + "*" + y);
+			if (y != 0) {
+				assertSame(bx.divide(by, 15, RoundingMode.HALF_UP).doubleValue(), DecimalArithmetic.divide(x, y), x + "/" + y);
+			}
+		}
+	}
+
+	/**
+	 * 桁数の少ない値はBigDecimalを使用せずに計算されるかテストします。
+	 */
+	@Test void 計算できる値のテスト() {
+		assertEquals(0.3, DecimalArithmetic.plus(0.1, 0.2));
+		assertEquals(0.0, DecimalArithmetic.minus(-0.0, 0.0));
+		assertEquals(Double.doubleToLongBits(0.0), Double.doubleToLongBits(DecimalArithmetic.multiply(-1, 0)));
+		assertEquals(3.333333333333333, DecimalArithmetic.divide(10, 3));
+		assertEquals(0.666666666666667, DecimalArithmetic.divide(2, 3));
+		assertEquals(-0.666666666666667, DecimalArithmetic.divide(-2, 3));
+		assertEquals(25, DecimalArithmetic.divide(100, 4));
+		assertTrue(Double.isNaN(DecimalArithmetic.plus(Math.PI, 1)));
+		assertTrue(Double.isNaN(DecimalArithmetic.multiply(Double.NaN, 1)));
+	}
+
+	/**
+	 * 計算結果を比較します。NaNの場合は、BigDecimalで計算する必要があるため比較しません。
+	 * @param expected BigDecimalで計算した結果
+	 * @param actual DecimalArithmeticで計算した結果
+	 * @param message 失敗した場合のメッセージ
+	 */
+	private static void assertSame(double expected, double actual, String message) {
+		if (!Double.isNaN(actual)) {
+			assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual), message);
+		}
+	}
+
+}
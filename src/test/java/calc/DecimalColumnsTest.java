@@ -0,0 +1,86 @@
+package calc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * DecimalColumnsをテストするクラスです。
+ */
+public class DecimalColumnsTest {
+
+	/**
+	 * テストに使用する特殊な値
+	 */
+	private static final double[] VALUES = {
+		0, -0.0, 1, -1, 0.1, 0.2, 0.3, 2.5, -3.75, 1e-7, 123456.789, 0.333333333333333, 99999999999999.0, 1e15,
+		9007199254740993.0, 1.0 / 3, Math.PI, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY
+	};
+
+	/**
+	 * Vector APIで計算した結果が、NaN(保証できない値)か、1つずつ計算した結果と全く同じ値になるかテストします。
+	 * また、桁数の少ない値はVector APIでも計算できるかテストします。
+	 */
+	@Test void 一つずつ計算した場合との比較テスト() {
+		double[] x = this.values(new Random(0), 100003);
+		double[] y = this.values(new Random(1), 100003);
+		double[][] vector = new double[3][x.length];
+		double[][] scalar = new double[3][x.length];
+		DecimalColumns.plus(x, 0, y, 0, vector[0], 0, x.length, true);
+		DecimalColumns.minus(x, 0, y, 0, vector[1], 0, x.length, true);
+		DecimalColumns.multiply(x, 0, y, 0, vector[2], 0, x.length, true);
+		DecimalColumns.plus(x, 0, y, 0, scalar[0], 0, x.length, false);
+		DecimalColumns.minus(x, 0, y, 0, scalar[1], 0, x.length, false);
+		DecimalColumns.multiply(x, 0, y, 0, scalar[2], 0, x.length, false);
+		String[] operators = { "+", "-", "*" };
+		for (int operator = 0; operator < operators.length; operator++) {
+			int computed = 0;
+			for (int i = 0; i < x.length; i++) {
+				String message = x[i] + operators[operator] + y[i];
+				if (!Double.isNaN(vector[operator][i])) {
+					assertEquals(Double.doubleToLongBits(scalar[operator][i]), Double.doubleToLongBits(vector[operator][i]), message);
+					computed++;
+				}
+			}
+			assertTrue(computed > x.length * 9 / 10, operators[operator] + ": " + computed);
+		}
+	}
+
+	/**
+	 * 位置を指定した計算、計算結果を計算する値と同じ配列に格納する計算、0で割る計算をテストします。
+	 */
+	@Test void 位置と割り算のテスト() {
+		double[] x = { 9, 0.1, 0.2, 1.5, 2, 3, 4, 5, 6, 7, 8 };
+		double[] y = { 0.2, 0.1, 0.7, 1, 0, 2.5, 3, 0.25, 1, 1, 1 };
+		DecimalColumns.plus(x, 1, y, 0, x, 1, 10);
+		assertArrayEquals(new double[] { 9, 0.3, 0.3, 2.2, 3, 3, 6.5, 8, 6.25, 8, 9 }, x);
+		double[] result = new double[5];
+		DecimalColumns.divide(new double[] { 1, 2, 3, 4, 5 }, 0, new double[] { 3, 0, -0.0, 8, 0.1 }, 0, result, 0, 5);
+		assertEquals(0.333333333333333, result[0]);
+		assertTrue(Double.isNaN(result[1]));
+		assertTrue(Double.isNaN(result[2]));
+		assertEquals(0.5, result[3]);
+		assertEquals(50, result[4]);
+	}
+
+	/**
+	 * テストに使用する値を作成します。大部分は桁数の少ない小数で、特殊な値も含みます。
+	 * @param random 乱数
+	 * @param length 値の数
+	 * @return テストに使用する値
+	 */
+	private double[] values(Random random, int length) {
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			if (random.nextInt(50) == 0) {
+				values[i] = VALUES[random.nextInt(VALUES.length)];
+			} else {
+				values[i] = (random.nextInt(2000001) - 1000000) / Math.pow(10, random.nextInt(5));
+			}
+		}
+		return values;
+	}
+
+}
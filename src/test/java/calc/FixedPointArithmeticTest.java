@@ -0,0 +1,115 @@
+package calc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import item.FormulaItem;
+import parse.LogicFormulaParser;
+import parse.ParseException;
+import parse.Parser;
+import parse.SimpleFormulaParser;
+
+/**
+ * FixedPointArithmeticをテストするクラスです。
+ */
+public class FixedPointArithmeticTest {
+
+	/**
+	 * 同じ桁数と丸め方を指定したBigDecimalArithmeticと、小数点以下の桁数も含めて同じ計算結果になるかテストします。
+	 * オーバーフローする桁数の数字も含めてテストします。
+	 */
+	@Test void BigDecimalArithmeticとの比較テスト() {
+		Random random = new Random(0);
+		String[] operators = { "+", "-", "*", "/" };
+		int[] scales = { 15, 2, 0 };
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder formula = new StringBuilder(this.number(random));
+			int count = random.nextInt(6) + 1;
+			for (int j = 0; j < count; j++) {
+				formula.append(operators[random.nextInt(operators.length)]).append(this.number(random));
+			}
+			int scale = scales[i % scales.length];
+			RoundingMode roundingMode = (i % 7 == 0) ? RoundingMode.HALF_EVEN : RoundingMode.HALF_UP;
+			Parser parser = (i % 2 == 0) ? SimpleFormulaParser.getParser() : LogicFormulaParser.getParser();
+			FormulaItem item = new FormulaItem(formula.toString());
+			BigDecimal expected;
+			try {
+				expected = parser.parseAndCalc(item, new BigDecimalArithmetic(scale, roundingMode)).getDecimal();
+			} catch (ParseException e) {
+				assertThrows(ParseException.class, () -> parser.parseAndCalc(item, new FixedPointArithmetic(scale, roundingMode)), item.get());
+				continue;
+			}
+			assertEquals(expected, assertDoesNotThrow(
+					() -> parser.parseAndCalc(item, new FixedPointArithmetic(scale, roundingMode)).getDecimal()), item.get());
+		}
+	}
+
+	/**
+	 * 金額の計算が、小数点以下の桁数を保ったまま誤差なく計算されるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 金額の計算テスト() throws ParseException {
+		Arithmetic<?> arithmetic = Arithmetic.Mode.FixedPoint.getArithmetic();
+		assertEquals(new BigDecimal("3.30"), LogicFormulaParser.getParser().parseAndCalc(new FormulaItem("1.10*3"), arithmetic).getDecimal());
+		assertEquals(new BigDecimal("0.30"), LogicFormulaParser.getParser().parseAndCalc(new FormulaItem("0.10+0.20"), arithmetic).getDecimal());
+		assertEquals(new BigDecimal("99999999999999999999.99"),
+				LogicFormulaParser.getParser().parseAndCalc(new FormulaItem("99999999999999999999.98+0.01"), arithmetic).getDecimal());
+		ParseException e = assertThrows(ParseException.class,
+				() -> LogicFormulaParser.getParser().parseAndCalc(new FormulaItem("1.5/(0.25-0.25)"), arithmetic));
+		assertEquals("0で割ることは出来ません", e.getCause().getMessage());
+	}
+
+	/**
+	 * 小数点以下15桁で割る場合に、割られる数が10^15倍でlongを超える金額(92,233.72以上)でも、
+	 * BigDecimalで計算し直さずにBigDecimalArithmeticと同じ計算結果になるかテストします。
+	 */
+	@Test void 金額の割り算テスト() {
+		FixedPointArithmetic arithmetic = new FixedPointArithmetic(15, RoundingMode.HALF_UP);
+		BigDecimalArithmetic expected = new BigDecimalArithmetic(15, RoundingMode.HALF_UP);
+		Random random = new Random(0);
+		for (int i = 0; i < 20000; i++) {
+			long x = 9223372 + (Math.abs(random.nextLong()) % 1000000000000L);
+			// 商がlongに収まるよう、割る数はx / 9000より大きくします
+			long y = 1 + (x / 9000) + random.nextInt(10000000);
+			if (random.nextBoolean()) {
+				x = -x;
+			}
+			if (random.nextBoolean()) {
+				y = -y;
+			}
+			long quotient = arithmetic.divide(x, 2, y, 2);
+			assertNotEquals(FixedPointArithmetic.OVERFLOW, quotient, x + "/" + y);
+			assertEquals(expected.divide(BigDecimal.valueOf(x, 2), BigDecimal.valueOf(y, 2)), BigDecimal.valueOf(quotient, 15), x + "/" + y);
+		}
+		// 商がlongに収まらない場合はBigDecimalで計算し直します
+		assertEquals(FixedPointArithmetic.OVERFLOW, arithmetic.divide(Long.MAX_VALUE, 2, 1, 2));
+		assertEquals(new BigDecimal("9223372036854775807.000000000000000"),
+				arithmetic.divide(arithmetic.valueOf(BigDecimal.valueOf(Long.MAX_VALUE, 2)), arithmetic.valueOf(new BigDecimal("0.01"))).toBigDecimal());
+	}
+
+	/**
+	 * テストに使用する数字を作成します。
+	 * @param random 乱数
+	 * @return 数字
+	 */
+	private String number(Random random) {
+		switch (random.nextInt(5)) {
+			case 0:
+				return Integer.toString(random.nextInt(1000));
+			case 1:
+				return random.nextInt(100000) + "." + String.format("%02d", random.nextInt(100));
+			case 2:
+				return "0." + random.nextInt(10000);
+			case 3:
+				return Long.toString(Math.abs(random.nextLong()) % 1000000000000000000L) + random.nextInt(100);
+			default:
+				return "(" + (random.nextInt(19) - 9) + ")";
+		}
+	}
+
+}
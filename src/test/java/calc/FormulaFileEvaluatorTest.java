@@ -0,0 +1,68 @@
+package calc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import item.FormulaItem;
+import parse.ParseException;
+import parse.SimpleFormulaParser;
+
+/**
+ * ファイルに書かれた数式をまとめて計算する{@link FormulaFileEvaluator}をテストするクラスです。
+ */
+public class FormulaFileEvaluatorTest {
+
+	/**
+	 * 複数の範囲に分かれる大きさのファイルを計算し、1行ずつ計算した場合と同じ内容が出力されるかテストします。
+	 * 改行コードがCRLFの行、空行、エラーが発生する行、最後に改行がない行を含みます。
+	 * @param directory 一時ディレクトリ
+	 * @throws IOException ファイルの読み書き中にエラーが発生した場合
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 一行ずつ計算した場合との比較テスト(@TempDir Path directory) throws IOException, ParseException {
+		StringBuilder input = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		StringBuilder expectedErrors = new StringBuilder();
+		Calculator calc = Calculator.getCUICalc();
+		int lines = 300000;
+		for (int i = 0; i < lines; i++) {
+			String formula = (i % 1000 == 999) ? i + "/0" : (i % 500 == 3) ? "" : i + "*1.25-" + (i % 13) + "/7+0.1";
+			input.append(formula).append((i == lines - 1) ? "" : (i % 2 == 0) ? "\n" : "\r\n");
+			if (i % 1000 == 999) {
+				expected.append("ERROR").append(System.lineSeparator());
+				expectedErrors.append(i + 1).append("行目: 0で割ることは出来ません").append(System.lineSeparator());
+			} else if (!formula.isEmpty()) {
+				expected.append(SimpleFormulaParser.getParser().parseAndCalc(new FormulaItem(formula), calc).get()).append(System.lineSeparator());
+			}
+		}
+		Path inputFile = directory.resolve("formulas.txt");
+		Path outputFile = directory.resolve("results.txt");
+		Files.writeString(inputFile, input, Charset.defaultCharset());
+		assertTrue(Files.size(inputFile) > (4 << 20));
+		try (SystemOutErrWrapper errWrapper = new SystemOutErrWrapper(SystemOutErrWrapper.WrapperEnum.SYSTEM_ERR)) {
+			FormulaFileEvaluator.evaluate(inputFile, outputFile);
+			assertEquals(expectedErrors.toString(), errWrapper.getBuffer().toString());
+		}
+		assertEquals(expected.toString(), Files.readString(outputFile, Charset.defaultCharset()));
+	}
+
+	/**
+	 * 空のファイルを計算すると、空のファイルが出力されるかテストします。
+	 * @param directory 一時ディレクトリ
+	 * @throws IOException ファイルの読み書き中にエラーが発生した場合
+	 */
+	@Test void 空のファイルのテスト(@TempDir Path directory) throws IOException {
+		Path inputFile = Files.createFile(directory.resolve("empty.txt"));
+		Path outputFile = Files.writeString(directory.resolve("results.txt"), "old");
+		FormulaFileEvaluator.evaluate(inputFile, outputFile);
+		assertEquals(0, Files.size(outputFile));
+	}
+
+}
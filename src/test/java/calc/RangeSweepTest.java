@@ -0,0 +1,81 @@
+package calc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import item.FormulaItem;
+import parse.LogicFormulaParser;
+import parse.ParseException;
+import parse.Parser;
+import parse.SimpleFormulaParser;
+
+/**
+ * CUI電卓のsweepコマンドを表す{@link RangeSweep}をテストするクラスです。
+ */
+public class RangeSweepTest {
+
+	/**
+	 * 1行ずつ出力する計算結果が、変数を値に置き換えた数式を計算した結果と同じになるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 一行ずつ計算した場合との比較テスト() throws ParseException {
+		Calculator calc = Calculator.getCUICalc();
+		Parser[] parsers = { SimpleFormulaParser.getParser(), LogicFormulaParser.getParser() };
+		for (Parser parser : parsers) {
+			String[] lines = this.run("sweep x=-3..1000 step 0.1 : x*x/3+x-0.7", parser).split(System.lineSeparator());
+			assertEquals(10031, lines.length);
+			for (int i = 0; i < lines.length; i++) {
+				String x = BigDecimal.valueOf(-3).add(BigDecimal.valueOf(0.1).multiply(BigDecimal.valueOf(i))).toPlainString();
+				String formula = "(" + x + ")*(" + x + ")/3+(" + x + ")-0.7";
+				assertEquals(String.valueOf(parser.parseAndCalc(new FormulaItem(formula), calc).get()), lines[i], formula);
+			}
+		}
+	}
+
+	/**
+	 * 集計結果のみを出力する場合と、エラーが発生する値がある場合をテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 集計とエラーのテスト() throws ParseException {
+		Parser parser = SimpleFormulaParser.getParser();
+		assertEquals("count=10000 errors=0 min=1.0 max=10000.0 sum=5.0005E7" + System.lineSeparator(), this.run("sweep n=1..10000 step 1 summary : n", parser));
+		assertEquals("count=4 errors=1 min=-1.0 max=1.0 sum=0.0" + System.lineSeparator(), this.run("sweep x=2..-2 step -1 summary : 1/x", parser));
+		assertEquals(String.join(System.lineSeparator(), "-0.5", "-1.0", "ERROR", "1.0", "0.5", ""), this.run("sweep x = -2 .. 2 step 1 : 1/x", parser));
+	}
+
+	/**
+	 * 不正なsweepコマンドを指定した場合に例外がスローされるかテストします。
+	 */
+	@Test void 不正なコマンドのテスト() {
+		Parser parser = SimpleFormulaParser.getParser();
+		String[] commands = {
+			"sweep x=0..1 : x", "sweep x=0..1 step 0 : x", "sweep x=0..1 step -1 : x", "sweep x=0..a step 1 : x",
+			"sweep x=0..1 step 1 : x+y", "sweep 1x=0..1 step 1 : 1", "sweep x=0..1e300 step 1e-300 : x"
+		};
+		for (String command : commands) {
+			assertThrows(ParseException.class, () -> RangeSweep.parse(command, parser), command);
+		}
+	}
+
+	/**
+	 * sweepコマンドを実行し、出力された文字列を返します。
+	 * @param command sweepコマンド
+	 * @param parser 数式の解析に使用するパーサ
+	 * @return 出力された文字列
+	 * @throws ParseException コマンドの書式や数式が不正な場合
+	 */
+	private String run(String command, Parser parser) throws ParseException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (PrintStream out = new PrintStream(buffer, false, StandardCharsets.UTF_8)) {
+			RangeSweep.parse(command, parser).run(Calculator.getCUICalc(), out);
+		}
+		return buffer.toString(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,169 @@
+package calc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import item.CalcResult;
+import item.FormulaItem;
+import parse.LogicFormulaParser;
+import parse.ParseException;
+import parse.Parser;
+import parse.SimpleFormulaParser;
+
+/**
+ * RationalArithmeticをテストするクラスです。
+ */
+public class RationalArithmeticTest {
+
+	/**
+	 * 分子と分母を常にBigIntegerで計算する、比較用の計算方法です。
+	 */
+	private static class BigIntegerArithmetic implements Arithmetic<BigInteger[]> {
+
+		@Override
+		public BigInteger[] valueOf(BigDecimal number) {
+			return (number.scale() <= 0)
+					? new BigInteger[] { number.toBigIntegerExact(), BigInteger.ONE }
+					: new BigInteger[] { number.unscaledValue(), BigInteger.TEN.pow(number.scale()) };
+		}
+
+		@Override
+		public BigInteger[] plus(BigInteger[] x, BigInteger[] y) {
+			return new BigInteger[] { x[0].multiply(y[1]).add(y[0].multiply(x[1])), x[1].multiply(y[1]) };
+		}
+
+		@Override
+		public BigInteger[] minus(BigInteger[] x, BigInteger[] y) {
+			return new BigInteger[] { x[0].multiply(y[1]).subtract(y[0].multiply(x[1])), x[1].multiply(y[1]) };
+		}
+
+		@Override
+		public BigInteger[] multiply(BigInteger[] x, BigInteger[] y) {
+			return new BigInteger[] { x[0].multiply(y[0]), x[1].multiply(y[1]) };
+		}
+
+		@Override
+		public BigInteger[] divide(BigInteger[] x, BigInteger[] y) {
+			if (y[0].signum() == 0) {
+				throw new ArithmeticException("0で割ることは出来ません");
+			}
+			return (y[0].signum() > 0)
+					? new BigInteger[] { x[0].multiply(y[1]), x[1].multiply(y[0]) }
+					: new BigInteger[] { x[0].multiply(y[1]).negate(), x[1].multiply(y[0]).negate() };
+		}
+
+		@Override
+		public CalcResult toResult(BigInteger[] value) {
+			return CalcResult.ofFraction(value[0], value[1]);
+		}
+
+	}
+
+	/**
+	 * 割り算を含む計算が丸められずに計算されるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 分数の計算テスト() throws ParseException {
+		Arithmetic<?> arithmetic = Arithmetic.Mode.Rational.getArithmetic();
+		Parser parser = LogicFormulaParser.getParser();
+		CalcResult result = parser.parseAndCalc(new FormulaItem("1/3*3"), arithmetic);
+		assertEquals(BigInteger.ONE, result.getNumerator());
+		assertEquals(BigInteger.ONE, result.getDenominator());
+		assertEquals(1.0, result.get());
+		assertEquals("1", arithmetic.format(result));
+
+		result = parser.parseAndCalc(new FormulaItem("0.1+0.2-1/3"), arithmetic);
+		assertEquals("-1/30", arithmetic.format(result));
+		assertEquals(-1.0 / 30, result.get());
+
+		result = parser.parseAndCalc(new FormulaItem("9223372036854775807+1"), arithmetic);
+		assertEquals(new BigInteger("9223372036854775808"), result.getNumerator());
+
+		ParseException e = assertThrows(ParseException.class, () -> parser.parseAndCalc(new FormulaItem("1/(1/3-1/3)"), arithmetic));
+		assertEquals("0で割ることは出来ません", e.getCause().getMessage());
+	}
+
+	/**
+	 * longで計算した場合とBigIntegerだけで計算した場合で、同じ分数と最も近いdoubleになるかテストします。
+	 * オーバーフローする桁数の数字も含めてテストします。
+	 */
+	@Test void BigIntegerとの比較テスト() {
+		Random random = new Random(0);
+		String[] operators = { "+", "-", "*", "/" };
+		Arithmetic<?> reference = new BigIntegerArithmetic();
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder formula = new StringBuilder(this.number(random));
+			int count = random.nextInt(8) + 1;
+			for (int j = 0; j < count; j++) {
+				formula.append(operators[random.nextInt(operators.length)]).append(this.number(random));
+			}
+			Parser parser = (i % 2 == 0) ? SimpleFormulaParser.getParser() : LogicFormulaParser.getParser();
+			FormulaItem item = new FormulaItem(formula.toString());
+			CalcResult expected;
+			try {
+				expected = parser.parseAndCalc(item, reference);
+			} catch (ParseException e) {
+				assertThrows(ParseException.class, () -> parser.parseAndCalc(item, RationalArithmetic.getArithmetic()), item.get());
+				continue;
+			}
+			CalcResult actual = assertDoesNotThrow(() -> parser.parseAndCalc(item, RationalArithmetic.getArithmetic()), item.get());
+			assertEquals(expected, actual, item.get());
+			BigDecimal quotient = new BigDecimal(actual.getNumerator()).divide(new BigDecimal(actual.getDenominator()), new MathContext(100));
+			assertEquals(quotient.doubleValue(), actual.get(), item.get());
+		}
+	}
+
+	/**
+	 * 2進数の互除法がBigIntegerの最大公約数と同じ値を返すかテストします。
+	 */
+	@Test void 最大公約数のテスト() {
+		Random random = new Random(0);
+		for (int i = 0; i < 100000; i++) {
+			long common = random.nextInt(1000) + 1;
+			long x = (random.nextLong() >>> (random.nextInt(63) + 1)) / common * common;
+			long y = (random.nextLong() >>> (random.nextInt(63) + 1)) / common * common;
+			long expected = BigInteger.valueOf(x).gcd(BigInteger.valueOf(y)).longValue();
+			assertEquals((expected == 0) ? 1 : expected, RationalArithmetic.gcd(x, y), x + ", " + y);
+		}
+	}
+
+	/**
+	 * 分数で計算していない計算結果も、約分した分数で取得できるかテストします。
+	 */
+	@Test void 小数の計算結果を分数で取得するテスト() {
+		CalcResult decimal = new CalcResult(new BigDecimal("2.50"));
+		assertEquals(BigInteger.valueOf(5), decimal.getNumerator());
+		assertEquals(BigInteger.TWO, decimal.getDenominator());
+		CalcResult integer = new CalcResult(-1200.0);
+		assertEquals(BigInteger.valueOf(-1200), integer.getNumerator());
+		assertEquals(BigInteger.ONE, integer.getDenominator());
+		assertThrows(IllegalArgumentException.class, () -> CalcResult.ofFraction(BigInteger.ONE, BigInteger.ZERO));
+	}
+
+	/**
+	 * テストに使用する数字を作成します。
+	 * @param random 乱数
+	 * @return 数字
+	 */
+	private String number(Random random) {
+		switch (random.nextInt(5)) {
+			case 0:
+				return Integer.toString(random.nextInt(1000));
+			case 1:
+				return random.nextInt(100000) + "." + String.format("%02d", random.nextInt(100));
+			case 2:
+				return "0." + random.nextInt(10000);
+			case 3:
+				return Long.toString(Math.abs(random.nextLong()) % 1000000000000000000L) + random.nextInt(100);
+			default:
+				return "(" + (random.nextInt(19) - 9) + ")";
+		}
+	}
+
+}
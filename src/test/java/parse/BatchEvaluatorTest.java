@@ -0,0 +1,91 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import calc.Calculator;
+import item.FormulaItem;
+
+/**
+ * 複数の数式をまとめて計算する{@link Parser#parseAndCalcAll(List, calc.ArithmeticKernel, java.util.concurrent.Executor)}をテストするクラスです。
+ */
+public class BatchEvaluatorTest {
+
+	/**
+	 * ForkJoinPoolとそれ以外のスレッドの両方で、1つずつ計算した場合と同じ計算結果が同じ順番で返されるかテストします。
+	 * エラーになる数式や、他より極端に長い数式も含めてテストします。
+	 */
+	@Test void 一つずつ計算した場合との比較テスト() {
+		List<FormulaItem> items = this.formulas(20000);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			for (Parser parser : new Parser[] { SimpleFormulaParser.getParser(), LogicFormulaParser.getParser() }) {
+				List<BatchResult> fromPool = parser.parseAndCalcAll(items, Calculator.getCUICalc());
+				List<BatchResult> fromExecutor = parser.parseAndCalcAll(items, Calculator.getCUICalc(), executor);
+				List<BatchResult> fromSmallPool = parser.parseAndCalcAll(items, Calculator.getCUICalc(), pool);
+				assertEquals(items.size(), fromPool.size());
+				for (int i = 0; i < items.size(); i++) {
+					FormulaItem item = items.get(i);
+					for (BatchResult result : new BatchResult[] { fromPool.get(i), fromExecutor.get(i), fromSmallPool.get(i) }) {
+						assertSame(item, result.item());
+						try {
+							assertEquals(parser.parseAndCalc(item, Calculator.getCUICalc()), result.result(), item.get());
+							assertTrue(result.isSuccess());
+						} catch (ParseException e) {
+							assertFalse(result.isSuccess(), item.get());
+							assertNull(result.result());
+							assertEquals(e.getCause().getMessage(), result.exception().getCause().getMessage());
+						}
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * 数式がない場合は空のリストを返し、nullの数式が含まれている場合はIllegalArgumentExceptionをスローするかテストします。
+	 */
+	@Test void 空とnullのテスト() {
+		assertEquals(List.of(), LogicFormulaParser.getParser().parseAndCalcAll(List.of(), Calculator.getCUICalc()));
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> LogicFormulaParser.getParser().parseAndCalcAll(Arrays.asList(new FormulaItem("1+1"), null), Calculator.getCUICalc()));
+		assertEquals("2番目の数式がnullです", e.getMessage());
+	}
+
+	/**
+	 * テストに使用する数式を作成します。
+	 * @param count 数式の数
+	 * @return 数式
+	 */
+	private List<FormulaItem> formulas(int count) {
+		Random random = new Random(0);
+		String[] operators = { "+", "-", "*", "/" };
+		List<FormulaItem> items = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			StringBuilder formula = new StringBuilder(Integer.toString(random.nextInt(100)));
+			int length = (i % 1000 == 0) ? 5000 : random.nextInt(10);
+			for (int j = 0; j < length; j++) {
+				formula.append(operators[random.nextInt(operators.length)]).append(random.nextInt(10));
+			}
+			if (i % 97 == 0) {
+				formula.append("+x");
+			}
+			items.add(new FormulaItem(formula.toString()));
+		}
+		return items;
+	}
+
+}
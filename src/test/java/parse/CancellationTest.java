@@ -0,0 +1,126 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import calc.Calculator;
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * {@link Parser#parseAndCalcAsync(FormulaItem, calc.ArithmeticKernel, Duration, java.util.concurrent.Executor)}と、
+ * 期限切れや取り消しの後に計算を止める{@link Cancellation}をテストするクラスです。
+ */
+public class CancellationTest {
+
+	/**
+	 * 仮想スレッドで計算し、計算結果やエラーで完了するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 非同期計算のテスト() throws Exception {
+		assertEquals(new CalcResult(9), SimpleFormulaParser.getParser().parseAndCalcAsync(new FormulaItem("1+2*3"), Calculator.getCUICalc()).get());
+		assertEquals(new CalcResult(7), LogicFormulaParser.getParser().parseAndCalcAsync(new FormulaItem("1+2*3"), Calculator.getCUICalc(), Duration.ofMinutes(1)).get());
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> SimpleFormulaParser.getParser().parseAndCalcAsync(new FormulaItem("1/0"), Calculator.getCUICalc()).get());
+		assertInstanceOf(ParseException.class, e.getCause());
+		assertThrows(IllegalArgumentException.class,
+				() -> SimpleFormulaParser.getParser().parseAndCalcAsync(new FormulaItem("1"), Calculator.getCUICalc(), Duration.ofMillis(-1)));
+	}
+
+	/**
+	 * 計算中に取り消された場合に、数式の途中で計算を止めるかテストします。
+	 */
+	@Test void 計算中の取り消しのテスト() {
+		int terms = 100000;
+		AtomicReference<CompletableFuture<CalcResult>> future = new AtomicReference<>();
+		AtomicInteger plusCount = new AtomicInteger();
+		Calculator calc = new CountingCalculator(plusCount, () -> future.get().cancel(false));
+		List<Runnable> commands = new ArrayList<>();
+		future.set(SimpleFormulaParser.getParser().parseAndCalcAsync(new FormulaItem("1" + "+1".repeat(terms)), calc, null, commands::add));
+		commands.get(0).run();
+		assertTrue(future.get().isCancelled());
+		assertTrue(plusCount.get() <= Cancellation.INTERVAL, String.valueOf(plusCount.get()));
+
+		// 取り消されなければ最後まで計算します
+		plusCount.set(0);
+		assertEquals(new CalcResult(terms + 1), SimpleFormulaParser.getParser().parseAndCalcAsync(
+				new FormulaItem("1" + "+1".repeat(terms)), new CountingCalculator(plusCount, () -> {}), null, Runnable::run).join());
+		assertEquals(terms, plusCount.get());
+	}
+
+	/**
+	 * 計算を始める前に取り消された場合に、計算しないかテストします。
+	 */
+	@Test void 開始前の取り消しのテスト() {
+		AtomicInteger plusCount = new AtomicInteger();
+		List<Runnable> commands = new ArrayList<>();
+		CompletableFuture<CalcResult> future = SimpleFormulaParser.getParser().parseAndCalcAsync(
+				new FormulaItem("1+1"), new CountingCalculator(plusCount, () -> {}), null, commands::add);
+		future.cancel(false);
+		commands.get(0).run();
+		assertEquals(0, plusCount.get());
+	}
+
+	/**
+	 * 期限切れになった場合に、TimeoutExceptionで完了し、長い数式の解析を途中で止めてスレッドを解放するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 期限のテスト() throws Exception {
+		List<Thread> threads = new ArrayList<>();
+		CompletableFuture<CalcResult> future = LogicFormulaParser.getParser().parseAndCalcAsync(
+				new FormulaItem("1" + "+2*3".repeat(2000000)), Calculator.getCUICalc(), Duration.ofMillis(1),
+				command -> threads.add(Thread.ofVirtual().start(command)));
+		assertInstanceOf(TimeoutException.class, assertThrows(ExecutionException.class, future::get).getCause());
+		assertTrue(threads.get(0).join(Duration.ofMinutes(1)));
+	}
+
+	/**
+	 * 足し算の回数を数え、最初の足し算で指定された処理を行う計算機です。
+	 * 四則演算を上書きしているため、命令列を先頭から順に実行します。
+	 */
+	private static class CountingCalculator implements Calculator {
+
+		/**
+		 * 足し算の回数
+		 */
+		private final AtomicInteger plusCount;
+
+		/**
+		 * 最初の足し算で行う処理
+		 */
+		private final Runnable onFirstPlus;
+
+		/**
+		 * 計算機を作成します。
+		 * @param plusCount 足し算の回数
+		 * @param onFirstPlus 最初の足し算で行う処理
+		 */
+		CountingCalculator(AtomicInteger plusCount, Runnable onFirstPlus) {
+			this.plusCount = plusCount;
+			this.onFirstPlus = onFirstPlus;
+		}
+
+		@Override
+		public double plus(double x, double y) {
+			if (this.plusCount.getAndIncrement() == 0) {
+				this.onFirstPlus.run();
+			}
+			return Calculator.super.plus(x, y);
+		}
+
+		@Override
+		public void display() {}
+
+	}
+
+}
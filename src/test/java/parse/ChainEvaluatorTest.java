@@ -0,0 +1,100 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import calc.Calculator;
+import item.CalcResult;
+import item.FormulaItem;
+import parse.AbstractParser.EvaluationOrder;
+
+/**
+ * 非常に長い数式を複数のスレッドで分担して計算する{@link ChainEvaluator}をテストするクラスです。
+ */
+public class ChainEvaluatorTest {
+
+	/**
+	 * 四則演算を上書きした計算機です。複数のスレッドで分担せずに、左から右に1つずつ計算します。
+	 */
+	private static final Calculator SEQUENTIAL = new Calculator() {
+		@Override
+		public double divide(double x, double y) {
+			return Calculator.super.divide(x, y);
+		}
+
+		@Override
+		public void display() {}
+	};
+
+	/**
+	 * 合成関数で予測した値が正しい数式(小数の足し算と引き算)と、丸めにより予測が外れる数式(掛け算と割り算を含む)のどちらも、
+	 * 左から右に1つずつ計算した場合と同じ結果になるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 左から右に計算した場合との比較テスト() throws ParseException {
+		Random random = new Random(0);
+		String[][] operatorSets = { { "+", "-" }, { "+", "-", "*", "/" }, { "*", "/" } };
+		for (String[] operators : operatorSets) {
+			StringBuilder formula = new StringBuilder("1000");
+			for (int i = 0; i < 200000; i++) {
+				String operator = operators[random.nextInt(operators.length)];
+				formula.append(operator);
+				if (operator.equals("*") || operator.equals("/")) {
+					formula.append(random.nextInt(3) + 1).append('.').append(random.nextInt(10));
+				} else {
+					formula.append(random.nextInt(1000)).append('.').append(String.format("%02d", random.nextInt(100)));
+				}
+			}
+			CompiledFormula compiled = FormulaCompiler.compile(new FormulaItem(formula.toString()), EvaluationOrder.LEFT_TO_RIGHT);
+			assertEquals(CompiledFormula.PARALLEL, compiled.isParallelChain());
+			CalcResult expected;
+			try {
+				expected = compiled.evaluate(SEQUENTIAL);
+			} catch (ParseException e) {
+				ParseException actual = assertThrows(ParseException.class, () -> compiled.evaluate(Calculator.getCUICalc()));
+				assertEquals(e.getCause().getClass(), actual.getCause().getClass());
+				continue;
+			}
+			assertEquals(expected, compiled.evaluate(Calculator.getCUICalc()));
+		}
+	}
+
+	/**
+	 * 途中で計算できなくなる数式は、左から右に1つずつ計算した場合と同じ例外がスローされるかテストします。
+	 */
+	@Test void 途中で計算できなくなる数式のテスト() {
+		StringBuilder formula = new StringBuilder("1");
+		for (int i = 0; i < 100000; i++) {
+			formula.append("*10");
+		}
+		formula.append(".5");
+		CompiledFormula compiled = assertDoesNotThrow(
+				() -> FormulaCompiler.compile(new FormulaItem(formula.toString()), EvaluationOrder.LEFT_TO_RIGHT));
+		assertEquals(CompiledFormula.PARALLEL, compiled.isParallelChain());
+		ParseException expected = assertThrows(ParseException.class, () -> compiled.evaluate(SEQUENTIAL));
+		ParseException actual = assertThrows(ParseException.class, () -> compiled.evaluate(Calculator.getCUICalc()));
+		assertEquals(expected.getCause().getClass(), actual.getCause().getClass());
+		assertEquals(expected.getCause().getMessage(), actual.getCause().getMessage());
+	}
+
+	/**
+	 * 括弧を含む数式や、0で割る数式は、分担して計算しないかテストします。
+	 * 共通のForkJoinPoolが1つのスレッドしか使用できない場合は、どの数式も分担して計算しません。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 分担しない数式のテスト() throws ParseException {
+		StringBuilder formula = new StringBuilder("1");
+		for (int i = 0; i < 70000; i++) {
+			formula.append("+0.5");
+		}
+		assertEquals(CompiledFormula.PARALLEL,
+				FormulaCompiler.compile(new FormulaItem(formula.toString()), EvaluationOrder.LEFT_TO_RIGHT).isParallelChain());
+		assertFalse(FormulaCompiler.compile(new FormulaItem(formula + "*(1+1)"), EvaluationOrder.LEFT_TO_RIGHT).isParallelChain());
+		assertFalse(FormulaCompiler.compile(new FormulaItem(formula + "/0"), EvaluationOrder.LEFT_TO_RIGHT).isParallelChain());
+		assertFalse(FormulaCompiler.compile(new FormulaItem("1+0.5"), EvaluationOrder.LEFT_TO_RIGHT).isParallelChain());
+	}
+
+}
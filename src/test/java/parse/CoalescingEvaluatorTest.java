@@ -0,0 +1,223 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import calc.ArithmeticKernel;
+import calc.Calculator;
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * 同じ数式の同時の計算を1回にまとめる{@link CoalescingEvaluator}をテストするクラスです。
+ */
+public class CoalescingEvaluatorTest {
+
+	/**
+	 * 計算中に同じ数式を計算した仮想スレッドが、計算せずに同じ計算結果を受け取るかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 同時の計算をまとめるテスト() throws Exception {
+		CoalescingEvaluator evaluator = new CoalescingEvaluator();
+		BlockingParser parser = new BlockingParser(SimpleFormulaParser.getParser());
+		int callers = 100;
+		// 仮想スレッドの中で失敗してもテストには通知されないため、結果と例外を集めてからこのスレッドで確認します
+		List<CalcResult> results = new ArrayList<>();
+		List<Throwable> errors = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i <= callers; i++) {
+			// 最初のスレッドが計算を始めてから、残りのスレッドを開始します
+			String formula = (i % 2 == 0) ? "1+2*3" : "1+2*3=";
+			threads.add(Thread.ofVirtual().start(() -> {
+				try {
+					CalcResult result = evaluator.parseAndCalc(parser, new FormulaItem(formula), ArithmeticKernel.getKernel());
+					synchronized (results) {
+						results.add(result);
+					}
+				} catch (ParseException | RuntimeException e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			}));
+			if (i == 0) {
+				parser.entered.await();
+			}
+		}
+		while (evaluator.getCoalescedCount() < callers) {
+			Thread.onSpinWait();
+		}
+		parser.release.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(List.of(), errors);
+		assertEquals(1, parser.calls.get());
+		assertEquals(1, evaluator.getComputedCount());
+		assertEquals(callers + 1, results.size());
+		results.forEach(result -> assertEquals(new CalcResult(9), result));
+		assertEquals(0, evaluator.size());
+	}
+
+	/**
+	 * 計算中に発生したエラーが、待っていたスレッドにも通知されるかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void エラーを共有するテスト() throws Exception {
+		CoalescingEvaluator evaluator = new CoalescingEvaluator();
+		BlockingParser parser = new BlockingParser(SimpleFormulaParser.getParser());
+		// 仮想スレッドの中で失敗してもテストには通知されないため、発生した例外を集めてからこのスレッドで確認します
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		Runnable calculation = () -> {
+			try {
+				evaluator.parseAndCalc(parser, new FormulaItem("1/0"), ArithmeticKernel.getKernel());
+			} catch (ParseException | RuntimeException e) {
+				errors.add(e);
+			}
+		};
+		Thread first = Thread.ofVirtual().start(calculation);
+		parser.entered.await();
+		Thread second = Thread.ofVirtual().start(calculation);
+		while (evaluator.getCoalescedCount() < 1) {
+			Thread.onSpinWait();
+		}
+		parser.release.countDown();
+		first.join();
+		second.join();
+		assertEquals(2, errors.size());
+		for (Throwable error : errors) {
+			assertInstanceOf(ParseException.class, error);
+			assertEquals("0で割ることは出来ません", error.getCause().getLocalizedMessage());
+		}
+		assertEquals(1, parser.calls.get());
+	}
+
+	/**
+	 * 同じクラスでも異なるインスタンスの計算機で同時に計算した場合は、まとめずにそれぞれの計算機で計算するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 計算機のインスタンスが違う場合のテスト() throws Exception {
+		CoalescingEvaluator evaluator = new CoalescingEvaluator();
+		BlockingParser parser = new BlockingParser(SimpleFormulaParser.getParser());
+		List<CalcResult> results = Collections.synchronizedList(new ArrayList<>(List.of(new CalcResult(0), new CalcResult(0))));
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			int index = i;
+			ArithmeticKernel kernel = new ScalingKernel(i + 1);
+			threads.add(Thread.ofVirtual().start(() -> {
+				try {
+					results.set(index, evaluator.parseAndCalc(parser, new FormulaItem("1+2"), kernel));
+				} catch (ParseException | RuntimeException e) {
+					errors.add(e);
+				}
+			}));
+		}
+		// まとめられた場合も止まらないように、どちらかになるまで待ちます
+		while ((parser.calls.get() < 2) && (evaluator.getCoalescedCount() == 0)) {
+			Thread.onSpinWait();
+		}
+		parser.release.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(List.of(), errors);
+		assertEquals(List.of(new CalcResult(3), new CalcResult(6)), results);
+		assertEquals(2, evaluator.getComputedCount());
+		assertEquals(0, evaluator.getCoalescedCount());
+	}
+
+	/**
+	 * 計算が終わった後の呼び出しや、パーサが違う呼び出しは、まとめずに計算するかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void まとめない場合のテスト() throws ParseException {
+		CoalescingEvaluator evaluator = new CoalescingEvaluator();
+		FormulaItem item = new FormulaItem("1+2*3");
+		assertEquals(new CalcResult(9), evaluator.parseAndCalc(SimpleFormulaParser.getParser(), item, Calculator.getCUICalc()));
+		assertEquals(new CalcResult(9), evaluator.parseAndCalc(SimpleFormulaParser.getParser(), item, Calculator.getCUICalc()));
+		assertEquals(new CalcResult(7), evaluator.parseAndCalc(LogicFormulaParser.getParser(), item, Calculator.getCUICalc()));
+		assertEquals(3, evaluator.getComputedCount());
+		assertEquals(0, evaluator.getCoalescedCount());
+	}
+
+	/**
+	 * 足し算の結果を、インスタンスごとに指定された倍率で返す計算機です。
+	 */
+	private static class ScalingKernel implements ArithmeticKernel {
+
+		/**
+		 * 足し算の結果に掛ける倍率
+		 */
+		private final double factor;
+
+		/**
+		 * 計算機を作成します。
+		 * @param factor 足し算の結果に掛ける倍率
+		 */
+		ScalingKernel(double factor) {
+			this.factor = factor;
+		}
+
+		@Override
+		public double plus(double x, double y) {
+			return ArithmeticKernel.super.plus(x, y) * this.factor;
+		}
+
+	}
+
+	/**
+	 * 計算を始めたことを通知し、許可されるまで計算を止めるパーサです。
+	 */
+	private static class BlockingParser implements Parser {
+
+		/**
+		 * 実際に計算するパーサ
+		 */
+		private final Parser parser;
+
+		/**
+		 * 計算を始めたことの通知
+		 */
+		private final CountDownLatch entered = new CountDownLatch(1);
+
+		/**
+		 * 計算を続ける許可
+		 */
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		/**
+		 * 計算した回数
+		 */
+		private final AtomicInteger calls = new AtomicInteger();
+
+		/**
+		 * パーサを作成します。
+		 * @param parser 実際に計算するパーサ
+		 */
+		BlockingParser(Parser parser) {
+			this.parser = parser;
+		}
+
+		@Override
+		public CalcResult parseAndCalc(FormulaItem item, ArithmeticKernel calc) throws ParseException {
+			this.calls.incrementAndGet();
+			this.entered.countDown();
+			try {
+				this.release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return this.parser.parseAndCalc(item, calc);
+		}
+
+	}
+
+}
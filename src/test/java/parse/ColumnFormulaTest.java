@@ -0,0 +1,121 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import calc.Calculator;
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * 変数を含む数式を値の列に対して計算する{@link ColumnFormula}をテストするクラスです。
+ */
+public class ColumnFormulaTest {
+
+	/**
+	 * 四則演算を上書きした計算機です。まとめて計算せずに、全ての行を1行ずつ計算します。
+	 */
+	private static final Calculator SEQUENTIAL = new Calculator() {
+		@Override
+		public double divide(double x, double y) {
+			return Calculator.super.divide(x, y);
+		}
+
+		@Override
+		public void display() {}
+	};
+
+	/**
+	 * テストする数式
+	 */
+	private static final String[] FORMULAS = { "a*1.08+b-c*(a-2.5)/4", "-a+b(c+1)", "a", "-b*-c+0.1", "(a+b+c)/3" };
+
+	/**
+	 * まとめて計算した結果が、1行ずつ計算した結果や、変数を値に置き換えた数式を計算した結果と同じになるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 一行ずつ計算した場合との比較テスト() throws ParseException {
+		Random random = new Random(0);
+		int rows = 5000;
+		double[] a = new double[rows];
+		double[] b = new double[rows];
+		double[] c = new double[rows];
+		for (int row = 0; row < rows; row++) {
+			a[row] = random.nextInt(1000000) / Math.pow(10, random.nextInt(6));
+			b[row] = random.nextInt(1000000) / Math.pow(10, random.nextInt(6));
+			c[row] = (row % 97 == 0) ? 1.0 / 3 : random.nextInt(1000000) / Math.pow(10, random.nextInt(6));
+		}
+		Map<String, double[]> columns = Map.of("a", a, "b", b, "c", c);
+		Parser[] parsers = { SimpleFormulaParser.getParser(), LogicFormulaParser.getParser() };
+		for (Parser parser : parsers) {
+			for (String formula : FORMULAS) {
+				ColumnFormula compiled = this.compileColumns(parser, formula);
+				CalcResult[] expected = compiled.evaluate(columns, SEQUENTIAL);
+				CalcResult[] actual = compiled.evaluate(columns, Calculator.getCUICalc());
+				assertArrayEquals(expected, actual, formula);
+				for (int row = 0; row < rows; row += 37) {
+					String substituted = formula.replace("a", this.toString(a[row])).replace("b", this.toString(b[row])).replace("c", this.toString(c[row]));
+					assertEquals(parser.parseAndCalc(new FormulaItem(substituted), Calculator.getCUICalc()), actual[row], substituted);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 計算できない行がある場合に、その行番号を含む例外がスローされるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 計算できない行のテスト() throws ParseException {
+		ColumnFormula compiled = SimpleFormulaParser.getParser().compileColumns(new FormulaItem("x/y"), "x", "y");
+		Map<String, double[]> columns = Map.of("x", new double[] { 1, 2, 3 }, "y", new double[] { 4, 8, 0 });
+		ParseException e = assertThrows(ParseException.class, () -> compiled.evaluate(columns, Calculator.getCUICalc()));
+		assertEquals("3行目の計算中にエラーが発生しました", e.getMessage());
+		assertArrayEquals(new CalcResult[] { new CalcResult(0.25), new CalcResult(0.25) },
+				compiled.evaluate(Map.of("x", new double[] { 1, 2 }, "y", new double[] { 4, 8 }), Calculator.getCUICalc()));
+	}
+
+	/**
+	 * 不正な数式、変数名、値の列を指定した場合に例外がスローされるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 不正な指定のテスト() throws ParseException {
+		SimpleFormulaParser parser = SimpleFormulaParser.getParser();
+		assertThrows(ParseException.class, () -> parser.compileColumns(new FormulaItem("x+z"), "x", "y"));
+		assertThrows(IllegalArgumentException.class, () -> parser.compileColumns(new FormulaItem("1+2")));
+		assertThrows(IllegalArgumentException.class, () -> parser.compileColumns(new FormulaItem("x+1"), "1x"));
+		assertThrows(IllegalArgumentException.class, () -> parser.compileColumns(new FormulaItem("x+1"), "x", "x"));
+		ColumnFormula compiled = parser.compileColumns(new FormulaItem("x+y"), "x", "y");
+		assertThrows(IllegalArgumentException.class, () -> compiled.evaluate(Map.of("x", new double[1]), Calculator.getCUICalc()));
+		assertThrows(IllegalArgumentException.class, () -> compiled.evaluate(Map.of("x", new double[1], "y", new double[2]), Calculator.getCUICalc()));
+	}
+
+	/**
+	 * 解析器の種類に応じて、変数を含む数式を解析します。
+	 * @param parser 解析器
+	 * @param formula 数式
+	 * @return 解析済みの数式
+	 * @throws ParseException 数式が不正な場合
+	 */
+	private ColumnFormula compileColumns(Parser parser, String formula) throws ParseException {
+		FormulaItem item = new FormulaItem(formula);
+		if (parser instanceof SimpleFormulaParser simple) {
+			return simple.compileColumns(item, "a", "b", "c");
+		}
+		return ((LogicFormulaParser) parser).compileColumns(item, "a", "b", "c");
+	}
+
+	/**
+	 * 値を数式に埋め込む文字列に変換します。
+	 * @param value 値
+	 * @return 指数表記を使用しない文字列
+	 */
+	private String toString(double value) {
+		return BigDecimal.valueOf(value).toPlainString();
+	}
+
+}
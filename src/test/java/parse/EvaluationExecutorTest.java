@@ -0,0 +1,235 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import calc.ArithmeticKernel;
+import calc.Calculator;
+import item.CalcResult;
+import item.FormulaItem;
+import parse.EvaluationExecutor.OverloadPolicy;
+import util.ReflectionUtility;
+
+/**
+ * 同時に計算する数式の数を制限する{@link EvaluationExecutor}をテストするクラスです。
+ */
+public class EvaluationExecutorTest {
+
+	/**
+	 * 多数の数式を追加し、全て正しく計算されるかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 計算のテスト() throws Exception {
+		try (EvaluationExecutor executor = new EvaluationExecutor.Builder().concurrency(2).queueCapacity(10000).build()) {
+			List<CompletableFuture<CalcResult>> futures = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				Parser parser = (i % 2 == 0) ? SimpleFormulaParser.getParser() : LogicFormulaParser.getParser();
+				futures.add(executor.submit(parser, new FormulaItem(i + "+1*2"), Calculator.getCUICalc()));
+			}
+			for (int i = 0; i < 1000; i++) {
+				assertEquals(new CalcResult((i % 2 == 0) ? (i + 1) * 2 : i + 2), futures.get(i).get());
+			}
+			ExecutionException e = assertThrows(ExecutionException.class,
+					() -> executor.submit(SimpleFormulaParser.getParser(), new FormulaItem("1/0"), Calculator.getCUICalc()).get());
+			assertInstanceOf(ParseException.class, e.getCause());
+			assertEquals(1001, executor.getCompletedCount());
+		}
+	}
+
+	/**
+	 * 待ち行列がいっぱいの場合に、新しい数式を拒否するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 拒否のテスト() throws Exception {
+		GateParser parser = new GateParser();
+		try (EvaluationExecutor executor = new EvaluationExecutor.Builder().concurrency(parser, 1).queueCapacity(1).build()) {
+			CompletableFuture<CalcResult> running = executor.submit(parser, new FormulaItem("1"), Calculator.getCUICalc());
+			CompletableFuture<CalcResult> queued = executor.submit(parser, new FormulaItem("2"), Calculator.getCUICalc());
+			CompletableFuture<CalcResult> rejected = executor.submit(parser, new FormulaItem("3"), Calculator.getCUICalc());
+			assertEquals(1, executor.getQueueDepth());
+			assertEquals(1, executor.getRunningCount());
+			assertInstanceOf(RejectedExecutionException.class, assertThrows(ExecutionException.class, rejected::get).getCause());
+			assertEquals(1, executor.getRejectedCount());
+			// 他のパーサは制限されません
+			assertEquals(new CalcResult(4), executor.submit(SimpleFormulaParser.getParser(), new FormulaItem("4"), Calculator.getCUICalc()).get());
+			parser.gate.release(2);
+			assertEquals(new CalcResult(1), running.get());
+			assertEquals(new CalcResult(2), queued.get());
+		}
+	}
+
+	/**
+	 * 待ち行列がいっぱいの場合に、最も古い数式を取り除くかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 古い数式を取り除くテスト() throws Exception {
+		GateParser parser = new GateParser();
+		try (EvaluationExecutor executor = new EvaluationExecutor.Builder().concurrency(1).queueCapacity(2).overloadPolicy(OverloadPolicy.SHED_OLDEST).build()) {
+			CompletableFuture<CalcResult> running = executor.submit(parser, new FormulaItem("1"), Calculator.getCUICalc());
+			CompletableFuture<CalcResult> oldest = executor.submit(parser, new FormulaItem("2"), Calculator.getCUICalc());
+			CompletableFuture<CalcResult> second = executor.submit(parser, new FormulaItem("3"), Calculator.getCUICalc());
+			CompletableFuture<CalcResult> newest = executor.submit(parser, new FormulaItem("4"), Calculator.getCUICalc());
+			assertInstanceOf(RejectedExecutionException.class, assertThrows(ExecutionException.class, oldest::get).getCause());
+			assertEquals(1, executor.getShedCount());
+			assertEquals(2, executor.getQueueDepth());
+			parser.gate.release(3);
+			assertEquals(new CalcResult(1), running.get());
+			assertEquals(new CalcResult(3), second.get());
+			assertEquals(new CalcResult(4), newest.get());
+		}
+	}
+
+	/**
+	 * 待ち行列がいっぱいの場合に、空きができるまで呼び出したスレッドを待たせるかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 空きを待つテスト() throws Exception {
+		GateParser parser = new GateParser();
+		try (EvaluationExecutor executor = new EvaluationExecutor.Builder().concurrency(1).queueCapacity(1).overloadPolicy(OverloadPolicy.BLOCK).build()) {
+			executor.submit(parser, new FormulaItem("1"), Calculator.getCUICalc());
+			executor.submit(parser, new FormulaItem("2"), Calculator.getCUICalc());
+			CountDownLatch submitted = new CountDownLatch(1);
+			List<CompletableFuture<CalcResult>> blocked = new ArrayList<>();
+			Thread thread = Thread.ofVirtual().start(() -> {
+				blocked.add(executor.submit(parser, new FormulaItem("3"), Calculator.getCUICalc()));
+				submitted.countDown();
+			});
+			Thread.sleep(100);
+			assertEquals(1, submitted.getCount());
+			parser.gate.release();
+			submitted.await();
+			thread.join();
+			parser.gate.release(2);
+			assertEquals(new CalcResult(3), blocked.get(0).get());
+			assertEquals(0, executor.getRejectedCount());
+
+			// 期限までに空きができない場合は、期限切れになります
+			executor.submit(parser, new FormulaItem("4"), Calculator.getCUICalc());
+			executor.submit(parser, new FormulaItem("5"), Calculator.getCUICalc());
+			CompletableFuture<CalcResult> expired = executor.submit(parser, new FormulaItem("6"), Calculator.getCUICalc(), Duration.ofMillis(50));
+			assertInstanceOf(TimeoutException.class, assertThrows(ExecutionException.class, expired::get).getCause());
+			parser.gate.release(2);
+		}
+	}
+
+	/**
+	 * 期限までに計算を始められなかった数式が、期限切れになり待ち行列から取り除かれるかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 期限のテスト() throws Exception {
+		GateParser parser = new GateParser();
+		try (EvaluationExecutor executor = new EvaluationExecutor.Builder().concurrency(1).deadline(Duration.ofMillis(50)).build()) {
+			CompletableFuture<CalcResult> running = executor.submit(parser, new FormulaItem("1"), Calculator.getCUICalc(), Duration.ofMinutes(1));
+			CompletableFuture<CalcResult> expired = executor.submit(parser, new FormulaItem("2"), Calculator.getCUICalc());
+			CompletableFuture<CalcResult> cancelled = executor.submit(parser, new FormulaItem("3"), Calculator.getCUICalc(), Duration.ofMinutes(1));
+			assertInstanceOf(TimeoutException.class, assertThrows(ExecutionException.class, expired::get).getCause());
+			cancelled.cancel(false);
+			assertEquals(0, executor.getQueueDepth());
+			assertEquals(1, executor.getExpiredCount());
+			parser.gate.release();
+			assertEquals(new CalcResult(1), running.get());
+		}
+	}
+
+	/**
+	 * 計算中に期限切れになった数式を途中で止めて、待っている次の数式の計算をすぐに始めるかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 計算中の期限切れのテスト() throws Exception {
+		GateParser parser = new GateParser();
+		try (EvaluationExecutor executor = new EvaluationExecutor.Builder().concurrency(1).build()) {
+			CompletableFuture<CalcResult> expired = executor.submit(parser, new FormulaItem("1" + "+1".repeat(1000000)), Calculator.getCUICalc(), Duration.ofMillis(50));
+			CompletableFuture<CalcResult> next = executor.submit(parser, new FormulaItem("1+2"), Calculator.getCUICalc(), Duration.ofMinutes(1));
+			assertInstanceOf(TimeoutException.class, assertThrows(ExecutionException.class, expired::get).getCause());
+			// 期限切れになった後に計算を始めるため、最初の確認で止まります
+			parser.gate.release(2);
+			assertEquals(new CalcResult(3), next.get(10, TimeUnit.SECONDS));
+			assertEquals(1, executor.getCompletedCount());
+		}
+	}
+
+	/**
+	 * 期限より前に計算が終わった数式の、期限切れの予定が取り除かれるかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 期限の予定を取り除くテスト() throws Exception {
+		try (EvaluationExecutor executor = new EvaluationExecutor.Builder().concurrency(1).deadline(Duration.ofMinutes(10)).build()) {
+			ScheduledThreadPoolExecutor timer = (ScheduledThreadPoolExecutor) ReflectionUtility.getFieldValue(EvaluationExecutor.class, executor, "TIMER");
+			for (int i = 0; i < 100; i++) {
+				assertEquals(new CalcResult(i), executor.submit(SimpleFormulaParser.getParser(), new FormulaItem(String.valueOf(i)), Calculator.getCUICalc()).get());
+			}
+			assertEquals(0, timer.getQueue().size());
+		}
+	}
+
+	/**
+	 * 計算中に{@link Error}が発生した場合に、数式が終了し、次の数式を計算できるかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void エラーのテスト() throws Exception {
+		Parser parser = (item, calc) -> {
+			if (item.get().equals("1=")) {
+				throw new AssertionError("計算できません");
+			}
+			return SimpleFormulaParser.getParser().parseAndCalc(item, calc);
+		};
+		try (EvaluationExecutor executor = new EvaluationExecutor.Builder().concurrency(1).build()) {
+			CompletableFuture<CalcResult> failed = executor.submit(parser, new FormulaItem("1"), Calculator.getCUICalc());
+			CompletableFuture<CalcResult> next = executor.submit(parser, new FormulaItem("2"), Calculator.getCUICalc());
+			assertInstanceOf(AssertionError.class, assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.MINUTES)).getCause());
+			assertEquals(new CalcResult(2), next.get(1, TimeUnit.MINUTES));
+		}
+	}
+
+	/**
+	 * 長い数式を別に管理し、長すぎる数式を拒否するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 長い数式のテスト() throws Exception {
+		GateParser parser = new GateParser();
+		try (EvaluationExecutor executor = new EvaluationExecutor.Builder().concurrency(1).largeFormula(10, 1).maxFormulaLength(100).build()) {
+			CompletableFuture<CalcResult> large = executor.submit(parser, new FormulaItem("1+1+1+1+1+1"), Calculator.getCUICalc());
+			CompletableFuture<CalcResult> waiting = executor.submit(SimpleFormulaParser.getParser(), new FormulaItem("1+1+1+1+1+1+1"), Calculator.getCUICalc());
+			// 長い数式の計算中でも、短い数式は計算できます
+			assertEquals(new CalcResult(3), executor.submit(SimpleFormulaParser.getParser(), new FormulaItem("1+2"), Calculator.getCUICalc()).get());
+			assertFalse(waiting.isDone());
+			CompletableFuture<CalcResult> tooLong = executor.submit(SimpleFormulaParser.getParser(), new FormulaItem("1" + "+1".repeat(100)), Calculator.getCUICalc());
+			assertInstanceOf(RejectedExecutionException.class, assertThrows(ExecutionException.class, tooLong::get).getCause());
+			parser.gate.release();
+			assertEquals(new CalcResult(6), large.get());
+			assertEquals(new CalcResult(7), waiting.get());
+		}
+	}
+
+	/**
+	 * 許可されるまで計算を止めるパーサです。
+	 */
+	private static class GateParser implements Parser {
+
+		/**
+		 * 計算の許可
+		 */
+		private final Semaphore gate = new Semaphore(0);
+
+		@Override
+		public CalcResult parseAndCalc(FormulaItem item, ArithmeticKernel calc) throws ParseException {
+			this.gate.acquireUninterruptibly();
+			return SimpleFormulaParser.getParser().parseAndCalc(item, calc);
+		}
+
+	}
+
+}
@@ -0,0 +1,116 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import calc.Calculator;
+import item.CalcResult;
+import item.FormulaItem;
+import parse.AbstractParser.EvaluationOrder;
+
+/**
+ * FormulaCacheとCompiledFormulaをテストするクラスです。
+ */
+public class FormulaCacheTest {
+
+	/**
+	 * 同じ数式は2回目以降キャッシュから取得され、回数が記録されるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void キャッシュの取得テスト() throws ParseException {
+		FormulaCache cache = new FormulaCache(4, 100);
+		CompiledFormula first = cache.get(new FormulaItem("1+2*3"), EvaluationOrder.LEFT_TO_RIGHT);
+		CompiledFormula second = cache.get(new FormulaItem("1+2*3="), EvaluationOrder.LEFT_TO_RIGHT);
+		assertSame(first, second);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.size());
+	}
+
+	/**
+	 * 計算順が違う場合は別の数式として保存されるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 計算順ごとの保存テスト() throws ParseException {
+		FormulaCache cache = new FormulaCache(4, 100);
+		FormulaItem item = new FormulaItem("1+2*3");
+		CompiledFormula simple = cache.get(item, EvaluationOrder.LEFT_TO_RIGHT);
+		CompiledFormula logic = cache.get(item, EvaluationOrder.OPERATOR_PRECEDENCE);
+		assertNotSame(simple, logic);
+		assertEquals(new CalcResult(9), simple.evaluate(Calculator.getCUICalc()));
+		assertEquals(new CalcResult(7), logic.evaluate(Calculator.getCUICalc()));
+		assertEquals(2, cache.getMissCount());
+	}
+
+	/**
+	 * 上限を超えた場合、最も長い間使用されていない数式から削除されるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 上限を超えた場合の削除テスト() throws ParseException {
+		FormulaCache cache = new FormulaCache(2, 100);
+		CompiledFormula one = cache.get(new FormulaItem("1"), EvaluationOrder.LEFT_TO_RIGHT);
+		cache.get(new FormulaItem("2"), EvaluationOrder.LEFT_TO_RIGHT);
+		assertSame(one, cache.get(new FormulaItem("1"), EvaluationOrder.LEFT_TO_RIGHT));
+		cache.get(new FormulaItem("3"), EvaluationOrder.LEFT_TO_RIGHT);
+		assertEquals(2, cache.size());
+		assertSame(one, cache.get(new FormulaItem("1"), EvaluationOrder.LEFT_TO_RIGHT));
+		cache.get(new FormulaItem("2"), EvaluationOrder.LEFT_TO_RIGHT);
+		assertEquals(2, cache.getHitCount());
+		assertEquals(4, cache.getMissCount());
+	}
+
+	/**
+	 * 長すぎる数式や、上限が0の場合は保存されないかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 保存しない場合のテスト() throws ParseException {
+		FormulaCache cache = new FormulaCache(2, 3);
+		cache.get(new FormulaItem("12+34"), EvaluationOrder.LEFT_TO_RIGHT);
+		assertEquals(0, cache.size());
+		cache = new FormulaCache(0, 100);
+		cache.get(new FormulaItem("1"), EvaluationOrder.LEFT_TO_RIGHT);
+		cache.get(new FormulaItem("1"), EvaluationOrder.LEFT_TO_RIGHT);
+		assertEquals(0, cache.size());
+		assertEquals(2, cache.getMissCount());
+		assertThrows(IllegalArgumentException.class, () -> new FormulaCache(-1, 100));
+	}
+
+	/**
+	 * 不正な数式は保存されず、ParseExceptionがスローされるかテストします。
+	 */
+	@Test void 不正な数式のテスト() {
+		FormulaCache cache = new FormulaCache(2, 100);
+		assertThrows(ParseException.class, () -> cache.get(new FormulaItem("1+a"), EvaluationOrder.LEFT_TO_RIGHT));
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * 解析済みの数式を繰り返し計算できるかテストします。
+	 * 0で割る数式は、解析はできても計算時にParseExceptionがスローされます。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 解析済みの数式の計算テスト() throws ParseException {
+		CompiledFormula compiled = LogicFormulaParser.getParser().compile(new FormulaItem("30+11-22*4/2"));
+		for (int i = 0; i < 3; i++) {
+			assertEquals(new CalcResult(-3), compiled.evaluate(Calculator.getCUICalc()));
+		}
+		CompiledFormula divideByZero = SimpleFormulaParser.getParser().compile(new FormulaItem("9/0"));
+		assertThrows(ParseException.class, () -> divideByZero.evaluate(Calculator.getCUICalc()));
+	}
+
+	/**
+	 * キャッシュのクリアをテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void クリアのテスト() throws ParseException {
+		FormulaCache cache = new FormulaCache(2, 100);
+		cache.get(new FormulaItem("1"), EvaluationOrder.LEFT_TO_RIGHT);
+		cache.get(new FormulaItem("1"), EvaluationOrder.LEFT_TO_RIGHT);
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+
+}
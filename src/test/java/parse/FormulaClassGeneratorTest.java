@@ -0,0 +1,68 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import calc.Calculator;
+import item.CalcResult;
+import item.FormulaItem;
+import parse.AbstractParser.EvaluationOrder;
+
+/**
+ * FormulaClassGeneratorと、CompiledFormulaのバイトコードへの変換をテストするクラスです。
+ */
+public class FormulaClassGeneratorTest {
+
+	/**
+	 * 計算した回数が一定の回数を超えるとバイトコードに変換され、変換前と同じ計算結果になるかテストします。<br>
+	 * longだけで計算する数式は、バイトコードに変換されません。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 変換前後の計算結果のテスト() throws ParseException {
+		String[] formulas = { "1+2*3", "30+11-22*4/2", "2(3+4)*5", "-(3)", "(2)(3)", "1.5*0.1-7/3", "-0*1", "(1+(2*(3-4)))/8" };
+		for (String formula : formulas) {
+			for (EvaluationOrder order : EvaluationOrder.values()) {
+				CompiledFormula compiled = FormulaCompiler.compile(new FormulaItem(formula), order);
+				CalcResult expected = compiled.evaluate(Calculator.getCUICalc());
+				for (int i = 0; i < 1001; i++) {
+					compiled.evaluate(Calculator.getCUICalc());
+				}
+				assertNotEquals(compiled.isLongArithmetic(), compiled.isBytecodeCompiled(), formula);
+				assertEquals(expected, compiled.evaluate(Calculator.getCUICalc()), formula);
+			}
+		}
+	}
+
+	/**
+	 * バイトコードに変換した後も、計算中のエラーがParseExceptionとしてスローされるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 変換後のエラーのテスト() throws ParseException {
+		CompiledFormula compiled = FormulaCompiler.compile(new FormulaItem("1+2/(3-3)"), EvaluationOrder.OPERATOR_PRECEDENCE);
+		for (int i = 0; i < 1001; i++) {
+			assertThrows(ParseException.class, () -> compiled.evaluate(Calculator.getCUICalc()));
+		}
+		assertTrue(compiled.isBytecodeCompiled());
+		ParseException e = assertThrows(ParseException.class, () -> compiled.evaluate(Calculator.getCUICalc()));
+		assertEquals("0で割ることは出来ません", e.getCause().getMessage());
+	}
+
+	/**
+	 * バイトコードが長くなりすぎる数式は変換されず、命令列の実行で計算されるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 長すぎる数式のテスト() throws ParseException {
+		StringBuilder formula = new StringBuilder("0");
+		for (int i = 0; i < 2000; i++) {
+			formula.append("+1");
+		}
+		CompiledFormula compiled = FormulaCompiler.compile(new FormulaItem(formula.toString()), EvaluationOrder.LEFT_TO_RIGHT);
+		for (int i = 0; i < 1001; i++) {
+			compiled.evaluate(Calculator.getCUICalc());
+		}
+		assertFalse(compiled.isBytecodeCompiled());
+		assertEquals(new CalcResult(2000), compiled.evaluate(Calculator.getCUICalc()));
+	}
+
+}
@@ -0,0 +1,129 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import calc.Calculator;
+import item.CalcResult;
+import item.FormulaItem;
+import parse.AbstractParser.EvaluationOrder;
+
+/**
+ * FormulaCompilerをテストするクラスです。
+ */
+public class FormulaCompilerTest {
+
+	/**
+	 * 括弧が深く入れ子になっている数式を、StackOverflowErrorを発生させずに変換できるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 深い括弧のテスト() throws ParseException {
+		int depth = 100000;
+		StringBuilder formula = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			formula.append("1*(0+");
+		}
+		formula.append('1');
+		for (int i = 0; i < depth; i++) {
+			formula.append(')');
+		}
+		for (EvaluationOrder order : EvaluationOrder.values()) {
+			CompiledFormula compiled = FormulaCompiler.compile(new FormulaItem(formula.toString()), order, depth);
+			assertEquals(new CalcResult(1), compiled.evaluate(Calculator.getCUICalc()));
+		}
+		CompiledFormula small = FormulaCompiler.compile(new FormulaItem("2*(1+2*(1+2*(1+1)))"), EvaluationOrder.OPERATOR_PRECEDENCE, 3);
+		assertEquals(new CalcResult(22), small.evaluate(Calculator.getCUICalc()));
+	}
+
+	/**
+	 * 括弧の深さが上限を超えた場合、ParseExceptionがスローされるかテストします。
+	 */
+	@Test void 括弧の深さの上限のテスト() {
+		ParseException e = assertThrows(ParseException.class,
+				() -> FormulaCompiler.compile(new FormulaItem("((((1))))"), EvaluationOrder.LEFT_TO_RIGHT, 3));
+		assertEquals("括弧の深さが上限(3)を超えています", e.getCause().getMessage());
+		assertDoesNotThrow(() -> FormulaCompiler.compile(new FormulaItem("(((1)))"), EvaluationOrder.LEFT_TO_RIGHT, 3));
+	}
+
+	/**
+	 * 整数と足し算、引き算、掛け算だけでできている数式がlongで計算され、
+	 * 途中の値が大きくなる場合も含めて、{@link Calculator}で計算した場合と同じ結果になるかテストします。
+	 */
+	@Test void 整数だけの数式のテスト() throws ParseException {
+		assertTrue(FormulaCompiler.compile(new FormulaItem("2(3+4)*5-6"), EvaluationOrder.OPERATOR_PRECEDENCE).isLongArithmetic());
+		assertFalse(FormulaCompiler.compile(new FormulaItem("2+4/2"), EvaluationOrder.OPERATOR_PRECEDENCE).isLongArithmetic());
+		assertFalse(FormulaCompiler.compile(new FormulaItem("2+0.5"), EvaluationOrder.OPERATOR_PRECEDENCE).isLongArithmetic());
+		assertFalse(FormulaCompiler.compile(new FormulaItem("18014398509481984+1"), EvaluationOrder.OPERATOR_PRECEDENCE).isLongArithmetic());
+
+		// 足し算を上書きした計算機は、longで計算せずに計算機で計算します
+		Calculator reference = new Calculator() {
+			@Override
+			public double plus(double x, double y) {
+				return Calculator.super.plus(x, y);
+			}
+
+			@Override
+			public void display() {}
+		};
+		Random random = new Random(0);
+		String[] operators = { "+", "-", "*" };
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder formula = new StringBuilder(Integer.toString(random.nextInt(100000)));
+			int count = random.nextInt(8) + 1;
+			for (int j = 0; j < count; j++) {
+				formula.append(operators[random.nextInt(operators.length)]);
+				if (random.nextInt(4) == 0) {
+					formula.append(random.nextInt(10)).append("(").append(random.nextInt(100000000)).append("-")
+							.append(random.nextInt(100000000)).append(")");
+				} else {
+					formula.append(random.nextInt(100000000));
+				}
+			}
+			for (EvaluationOrder order : EvaluationOrder.values()) {
+				CompiledFormula compiled = FormulaCompiler.compile(new FormulaItem(formula.toString()), order);
+				assertTrue(compiled.isLongArithmetic(), formula.toString());
+				CalcResult expected;
+				try {
+					expected = compiled.evaluate(reference);
+				} catch (ParseException e) {
+					assertThrows(ParseException.class, () -> compiled.evaluate(Calculator.getCUICalc()), formula.toString());
+					continue;
+				}
+				assertEquals(expected, compiled.evaluate(Calculator.getCUICalc()), formula.toString());
+			}
+		}
+	}
+
+	/**
+	 * {@link Calculator}を継承したインターフェースのdefaultメソッドで四則演算を上書きした計算機を、
+	 * 既定の計算方法ではないものとして扱い、longで計算せずに計算機で計算するかテストします。
+	 */
+	@Test void インターフェースで上書きした計算機のテスト() throws ParseException {
+		Calculator calc = new ShiftedCalculator() {
+			@Override
+			public void display() {}
+		};
+		assertTrue(CompiledFormula.hasDefaultArithmetic(Calculator.getCUICalc()));
+		assertFalse(CompiledFormula.hasDefaultArithmetic(calc));
+		CompiledFormula compiled = FormulaCompiler.compile(new FormulaItem("1+2*3"), EvaluationOrder.OPERATOR_PRECEDENCE);
+		assertTrue(compiled.isLongArithmetic());
+		assertEquals(new CalcResult(8), compiled.evaluate(calc));
+		assertEquals(new CalcResult(7), compiled.evaluate(Calculator.getCUICalc()));
+	}
+
+	/**
+	 * 足し算の計算結果に1を足す計算機です。
+	 */
+	private static interface ShiftedCalculator extends Calculator {
+
+		@Override
+		default double plus(double x, double y) {
+			return Calculator.super.plus(x, y) + 1;
+		}
+
+	}
+
+}
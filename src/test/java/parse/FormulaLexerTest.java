@@ -0,0 +1,90 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * FormulaLexerをテストするクラスです。
+ */
+public class FormulaLexerTest {
+
+	/**
+	 * 文字の種類の判定をテストします。
+	 */
+	@Test void 文字の種類の判定テスト() {
+		assertEquals(FormulaLexer.DIGIT, FormulaLexer.typeOf('7'));
+		assertEquals(FormulaLexer.POINT, FormulaLexer.typeOf('.'));
+		assertEquals(FormulaLexer.OPERATOR, FormulaLexer.typeOf('/'));
+		assertEquals(FormulaLexer.OPEN, FormulaLexer.typeOf('('));
+		assertEquals(FormulaLexer.CLOSE, FormulaLexer.typeOf(')'));
+		assertEquals(FormulaLexer.EQUALS, FormulaLexer.typeOf('='));
+		assertEquals(FormulaLexer.FOREIGN_DIGIT, FormulaLexer.typeOf('３'));
+		assertEquals(FormulaLexer.OTHER, FormulaLexer.typeOf('a'));
+		assertEquals(FormulaLexer.OTHER, FormulaLexer.typeOf('あ'));
+	}
+
+	/**
+	 * 数字の読み取り結果がDouble.parseDoubleと同じになるかテストします。
+	 */
+	@Test void 数字の読み取りテスト() {
+		String[] numbers = {
+				"0", "-0", "+5", "12", ".5", "5.", "-.25", "0.1", "3.14159", "000123.4500",
+				"9007199254740993", "123456789012345678901234567890", "0.1234567890123456789012345", "1" + "0".repeat(400)
+		};
+		for (String number : numbers) {
+			FormulaLexer lexer = new FormulaLexer(number + "+");
+			assertTrue(lexer.scanNumber(), number);
+			assertEquals(Double.parseDouble(number), lexer.number(), number);
+			assertEquals('+', lexer.peek(), number);
+		}
+	}
+
+	/**
+	 * 数値として正しくない文字列を読み取った場合、falseが返り、その文字列が読み飛ばされるかテストします。
+	 */
+	@Test void 不正な数字の読み取りテスト() {
+		String[] numbers = { "", "+", "-", ".", "1.2.3", "３" };
+		for (String number : numbers) {
+			FormulaLexer lexer = new FormulaLexer(number + "(");
+			assertFalse(lexer.scanNumber(), number);
+			assertEquals('(', lexer.peek(), number);
+		}
+	}
+
+	/**
+	 * 符号は先頭の1文字のみ読み取るかテストします。
+	 */
+	@Test void 符号の読み取りテスト() {
+		FormulaLexer lexer = new FormulaLexer("--5");
+		assertFalse(lexer.scanNumber());
+		assertEquals(1, lexer.position());
+	}
+
+	/**
+	 * 対応する括弧の終わりの位置を探せるかテストします。
+	 */
+	@Test void 括弧の終わりの検索テスト() {
+		FormulaLexer lexer = new FormulaLexer("(1+(2*3))+4");
+		lexer.next();
+		assertEquals(8, lexer.findGroupEnd());
+		assertEquals(1, lexer.position());
+		lexer = new FormulaLexer("(1+(2*3)");
+		lexer.next();
+		assertEquals(-1, lexer.findGroupEnd());
+	}
+
+	/**
+	 * 数式の終わりに達した場合、'='として扱われるかテストします。
+	 */
+	@Test void 数式の終わりのテスト() {
+		FormulaLexer lexer = new FormulaLexer("1");
+		assertTrue(lexer.hasNext());
+		assertEquals('1', lexer.next());
+		assertFalse(lexer.hasNext());
+		assertEquals('=', lexer.peek());
+		assertEquals('=', lexer.next());
+		assertEquals(1, lexer.position());
+	}
+
+}
@@ -0,0 +1,286 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import calc.Calculator;
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * 受け取った数式を計算して送信する{@link FormulaProcessor}をテストするクラスです。
+ */
+public class FormulaProcessorTest {
+
+	/**
+	 * 受け取った順番に計算結果が送信されるかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 順番のテスト() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			FormulaProcessor processor = new FormulaProcessor.Builder(LogicFormulaParser.getParser(), Calculator.getCUICalc())
+					.executor(executor).batchSize(16).maxBatches(4).build();
+			Collector collector = new Collector(7);
+			processor.subscribe(collector);
+			int count = 20000;
+			try (SubmissionPublisher<FormulaItem> publisher = new SubmissionPublisher<>(executor, 64)) {
+				publisher.subscribe(processor);
+				for (int i = 0; i < count; i++) {
+					publisher.submit(new FormulaItem(i + "+" + (i % 7) + "*2"));
+				}
+			}
+			collector.done.get(1, TimeUnit.MINUTES);
+			assertEquals(count, collector.results.size());
+			for (int i = 0; i < count; i++) {
+				assertEquals(new CalcResult(i + (i % 7) * 2), collector.results.get(i));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * 順番を保たない場合も、全ての計算結果が送信されるかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 順番を保たない場合のテスト() throws Exception {
+		FormulaProcessor processor = new FormulaProcessor.Builder(SimpleFormulaParser.getParser(), Calculator.getCUICalc())
+				.batchSize(8).ordered(false).build();
+		Collector collector = new Collector(Long.MAX_VALUE);
+		processor.subscribe(collector);
+		int count = 5000;
+		Source source = new Source(count, 0);
+		source.subscribe(processor);
+		collector.done.get(1, TimeUnit.MINUTES);
+		List<Double> values = new ArrayList<>();
+		collector.results.forEach(result -> values.add(result.get().doubleValue()));
+		Collections.sort(values);
+		assertEquals(count, values.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals(i * 2.0, values.get(i));
+		}
+	}
+
+	/**
+	 * 下流の要求が少ない場合に、上流に要求する数が一定に保たれるかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 背圧のテスト() throws Exception {
+		FormulaProcessor processor = new FormulaProcessor.Builder(SimpleFormulaParser.getParser(), Calculator.getCUICalc())
+				.batchSize(10).maxBatches(2).build();
+		Collector collector = new Collector(0);
+		processor.subscribe(collector);
+		Source source = new Source(1000000, 0);
+		source.subscribe(processor);
+		collector.subscription.request(5);
+		while (collector.results.size() < 5) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		assertEquals(5, collector.results.size());
+		assertTrue(source.requested.get() <= 35, String.valueOf(source.requested.get()));
+		collector.subscription.request(100);
+		while (collector.results.size() < 105) {
+			Thread.sleep(10);
+		}
+		assertTrue(source.requested.get() <= 135, String.valueOf(source.requested.get()));
+		collector.subscription.cancel();
+		assertTrue(source.cancelled);
+		assertEquals(new CalcResult(104 * 2), collector.results.get(104));
+	}
+
+	/**
+	 * 計算中にエラーが発生した場合に、それより前の計算結果を送信してからエラーを通知し、上流の購読を取り消すかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void エラーのテスト() throws Exception {
+		FormulaProcessor processor = new FormulaProcessor.Builder(SimpleFormulaParser.getParser(), Calculator.getCUICalc()).batchSize(4).build();
+		Collector collector = new Collector(Long.MAX_VALUE);
+		processor.subscribe(collector);
+		Source source = new Source(100, 50);
+		source.subscribe(processor);
+		Throwable error = assertThrows(Exception.class, () -> collector.done.get(1, TimeUnit.MINUTES)).getCause();
+		assertInstanceOf(ParseException.class, error);
+		assertEquals(50, collector.results.size());
+		assertTrue(source.cancelled);
+
+		Collector second = new Collector(1);
+		processor.subscribe(second);
+		assertInstanceOf(IllegalStateException.class, assertThrows(Exception.class, () -> second.done.get(1, TimeUnit.MINUTES)).getCause());
+	}
+
+	/**
+	 * 順番を保たない場合に計算中にエラーが発生したとき、計算中の他のまとまりの計算結果を送信してからエラーを通知するかテストします。
+	 * @throws Exception テスト中にエラーが発生した場合
+	 */
+	@Test void 順番を保たない場合のエラーのテスト() throws Exception {
+		Semaphore gate = new Semaphore(0);
+		Parser parser = (item, calc) -> {
+			if (item.get().equals("0*2=")) {
+				gate.acquireUninterruptibly();
+			}
+			return SimpleFormulaParser.getParser().parseAndCalc(item, calc);
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			FormulaProcessor processor = new FormulaProcessor.Builder(parser, Calculator.getCUICalc())
+					.executor(executor).batchSize(4).maxBatches(2).ordered(false).build();
+			Collector collector = new Collector(Long.MAX_VALUE);
+			processor.subscribe(collector);
+			Source source = new Source(100, 5);
+			source.subscribe(processor);
+			// 0～3のまとまりの計算が終わるまで、4～7のまとまりで発生したエラーは通知しません
+			Thread.sleep(100);
+			assertFalse(collector.done.isDone());
+			gate.release();
+			Throwable error = assertThrows(Exception.class, () -> collector.done.get(1, TimeUnit.MINUTES)).getCause();
+			assertInstanceOf(ParseException.class, error);
+			List<Double> values = new ArrayList<>();
+			collector.results.forEach(result -> values.add(result.get().doubleValue()));
+			Collections.sort(values);
+			assertEquals(List.of(0.0, 2.0, 4.0, 6.0, 8.0), values);
+			assertTrue(source.cancelled);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * "i*2"の数式を要求された数だけ送信する上流です。指定された位置では0で割る数式を送信します。
+	 */
+	private static class Source implements Flow.Publisher<FormulaItem> {
+
+		/**
+		 * 送信する数式の数
+		 */
+		private final long count;
+
+		/**
+		 * 0で割る数式を送信する位置。0の場合は送信しない
+		 */
+		private final long errorAt;
+
+		/**
+		 * 要求された数の合計
+		 */
+		private final AtomicLong requested = new AtomicLong();
+
+		/**
+		 * 購読が取り消されたか
+		 */
+		private volatile boolean cancelled = false;
+
+		/**
+		 * 上流を作成します。
+		 * @param count 送信する数式の数
+		 * @param errorAt 0で割る数式を送信する位置。0の場合は送信しない
+		 */
+		Source(long count, long errorAt) {
+			this.count = count;
+			this.errorAt = errorAt;
+		}
+
+		@Override
+		public void subscribe(Flow.Subscriber<? super FormulaItem> subscriber) {
+			AtomicLong sent = new AtomicLong();
+			subscriber.onSubscribe(new Flow.Subscription() {
+
+				@Override
+				public synchronized void request(long n) {
+					requested.addAndGet(n);
+					for (long i = 0; i < n && !cancelled && sent.get() < count; i++) {
+						long value = sent.getAndIncrement();
+						subscriber.onNext(new FormulaItem((value == errorAt && errorAt != 0) ? "1/0" : value + "*2"));
+					}
+					if (!cancelled && sent.get() == count) {
+						cancelled = true;
+						subscriber.onComplete();
+					}
+				}
+
+				@Override
+				public void cancel() {
+					cancelled = true;
+				}
+
+			});
+		}
+
+	}
+
+	/**
+	 * 計算結果を受け取る下流です。
+	 */
+	private static class Collector implements Flow.Subscriber<CalcResult> {
+
+		/**
+		 * 購読を開始したときに要求する数
+		 */
+		private final long initialRequest;
+
+		/**
+		 * 受け取った計算結果
+		 */
+		private final List<CalcResult> results = Collections.synchronizedList(new ArrayList<>());
+
+		/**
+		 * 終了の通知
+		 */
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+		/**
+		 * 購読
+		 */
+		private volatile Flow.Subscription subscription;
+
+		/**
+		 * 下流を作成します。
+		 * @param initialRequest 購読を開始したときに要求する数。1以上の有限の数の場合は、1つ受け取るごとに1つ要求します。0の場合は要求しません
+		 */
+		Collector(long initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (this.initialRequest > 0) {
+				subscription.request(this.initialRequest);
+			}
+		}
+
+		@Override
+		public void onNext(CalcResult item) {
+			this.results.add(item);
+			if (this.initialRequest > 0 && this.initialRequest != Long.MAX_VALUE) {
+				this.subscription.request(1);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			this.done.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			this.done.complete(null);
+		}
+
+	}
+
+}
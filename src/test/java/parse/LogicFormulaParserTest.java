@@ -31,4 +31,10 @@ public class LogicFormulaParserTest extends ParserTest {
 		parenthesesAdvancedTest(-3326);
 	}
 
-}
\ No newline at end of file
+	@Override
+	@Test void 従来の計算方法との比較テスト() {
+		legacyComparisonTest(-3, 105, 0.3, 9.999999999999998, 0.666666666666666, 0, 0, 5, 3.5,
+				-233, -3326, 3, 2, 6, 8, 3, 4, 2.3105973032789145E13);
+	}
+
+}
@@ -8,6 +8,7 @@ import java.util.function.Supplier;
 
 import org.junit.jupiter.api.Test;
 
+import calc.ArithmeticKernel;
 import calc.Calculator;
 import item.CalcResult;
 import item.FormulaItem;
@@ -23,7 +24,7 @@ abstract public class ParserTest extends AbstractParser{
 	 * このメソッドでは、呼び出しをそのままテスト対象のパーサに転送します。
 	 */
     @Override
-    public CalcResult parseAndCalc(FormulaItem item, Calculator calc) throws ParseException {
+    public CalcResult parseAndCalc(FormulaItem item, ArithmeticKernel calc) throws ParseException {
         return PARSER.parseAndCalc(item, calc);
     }
 
@@ -70,7 +71,7 @@ abstract public class ParserTest extends AbstractParser{
     				return new SimpleFormulaParser() {
         				
         				@Override
-        				public CalcResult parseAndCalc(FormulaItem item, Calculator calc) throws ParseException {
+        				public CalcResult parseAndCalc(FormulaItem item, ArithmeticKernel calc) throws ParseException {
         					item = this.parseAndCalc(item, calc, ParseMode.PARENTHESES);
         					return super.parseAndCalc(item, calc);
         				}
@@ -85,7 +86,7 @@ abstract public class ParserTest extends AbstractParser{
 					return new LogicFormulaParser() {
 						
 						@Override
-        				public CalcResult parseAndCalc(FormulaItem item, Calculator calc) throws ParseException {
+        				public CalcResult parseAndCalc(FormulaItem item, ArithmeticKernel calc) throws ParseException {
         					item = this.parseAndCalc(item, calc, ParseMode.PARENTHESES);
         					return super.parseAndCalc(item, calc);
         				}
@@ -226,6 +227,44 @@ abstract public class ParserTest extends AbstractParser{
     	});
     }
     
+    /**
+     * 変更前の何度も解析し直すパーサで、計算できた数式です。
+     */
+    final private static String[] LEGACY_FORMULAS = {
+    		"30+11-22*4/2", "-21*15/-3", "0.1+0.2", "10/3*3", "1/3+1/3", "-0", "0*-5", "+5", ".5+3.",
+    		"6+9+(7+9(65-90)-9)-21", "9+(4+9*(8*5(+3-8)/5)*9)-99", "-(3)", "5--(3)", "(2)(3)", "2*(3+4)(5-1)/7",
+    		"1+2=3+4", "(1=2)+3", "19363472856348+3274687654386*8/7"
+    };
+
+    /**
+     * 変更前の何度も解析し直すパーサで、どちらのパーサでもParseExceptionがスローされた数式です。
+     */
+    final private static String[] LEGACY_ERROR_FORMULAS = {
+    		"--5", "60+*90", "12t", "9/0", "(", ")", "(3))", "2(3)4", "()", "1.2.3+4"
+    };
+
+    /**
+     * 数式を1回だけ読み取って計算した結果が、変更前の何度も解析し直すパーサで計算した結果と同じになるかテストします。<br>
+     * 正しい答えはテストクラスによって変わります。
+     */
+    @Test abstract void 従来の計算方法との比較テスト();
+
+    /**
+     * 数式を1回だけ読み取って計算した結果が、変更前の何度も解析し直すパーサで計算した結果と同じになるかテストします。<br>
+     * エラーになる数式は、ParseExceptionをスローすることを確認します。
+     * @param expected {@link #LEGACY_FORMULAS}の各数式を変更前のパーサで計算した結果
+     */
+    final protected void legacyComparisonTest(double... expected) {
+    	assertEquals(LEGACY_FORMULAS.length, expected.length);
+    	for (int i = 0; i < LEGACY_FORMULAS.length; i++) {
+    		FormulaItem item = new FormulaItem(LEGACY_FORMULAS[i]);
+    		assertEquals(new CalcResult(expected[i]), assertDoesNotThrow(() -> PARSER.parseAndCalc(item, Calculator.getCUICalc()), LEGACY_FORMULAS[i]), LEGACY_FORMULAS[i]);
+    	}
+    	for (String formula : LEGACY_ERROR_FORMULAS) {
+    		assertThrows(ParseException.class, () -> PARSER.parseAndCalc(new FormulaItem(formula), Calculator.getCUICalc()), formula);
+    	}
+    }
+
     abstract @Test void 括弧の複雑なテスト();
     
     protected void parenthesesAdvancedTest(double expected) {
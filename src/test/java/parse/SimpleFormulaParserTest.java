@@ -30,4 +30,10 @@ final public class SimpleFormulaParserTest extends ParserTest {
 		parenthesesAdvancedTest(-4770);
 	}
 
+	@Override
+	@Test void 従来の計算方法との比較テスト() {
+		legacyComparisonTest(38, 105, 0.3, 9.999999999999998, 0.444444444444444, 0, 0, 5, 3.5,
+				-233, -4770, 3, 2, 6, 8, 3, 4, 2.5872183440838855E13);
+	}
+
 }
@@ -0,0 +1,203 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import calc.Calculator;
+import item.CalcResult;
+import item.FormulaItem;
+
+/**
+ * Readerから数式を読み込みながら計算する{@link StreamingEvaluator}をテストするクラスです。
+ */
+public class StreamingEvaluatorTest {
+
+	/**
+	 * 数式の一部として使用する文字列
+	 */
+	private static final String[] TOKENS = { "(", "(", ")", ")", "-(", "2(", ")(", "+", "-", "*", "/", "=", ".", "a", "" };
+
+	/**
+	 * ランダムな数式をReaderから読み込んで計算した結果が、文字列から計算した結果と同じになるかテストします。
+	 * 文字列から計算してエラーになる数式は、Readerから読み込んだ場合も同じエラーになるかテストします。
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws ParseException 文字列から計算できた数式を、Readerから読み込んで計算できなかった場合
+	 */
+	@Test void 文字列から計算した場合との比較テスト() throws IOException, ParseException {
+		Random random = new Random(0);
+		Parser[] parsers = { SimpleFormulaParser.getParser(), LogicFormulaParser.getParser() };
+		int computed = 0;
+		for (int i = 0; i < 20000; i++) {
+			String formula = this.formula(random);
+			for (Parser parser : parsers) {
+				CalcResult expected;
+				try {
+					expected = parser.parseAndCalc(new FormulaItem(formula), Calculator.getCUICalc());
+				} catch (ParseException e) {
+					this.assertSameError(e, () -> parser.parseAndCalc(new StringReader(formula), Calculator.getCUICalc()), formula);
+					continue;
+				}
+				assertEquals(expected, parser.parseAndCalc(new StringReader(formula), Calculator.getCUICalc()), formula);
+				computed++;
+			}
+		}
+		assertTrue(computed > 10000, String.valueOf(computed));
+	}
+
+	/**
+	 * 計算中のエラーと数式の誤りの両方がある数式は、Readerから読み込んだ場合も、文字列から計算した場合と同じく数式の誤りのエラーになるかテストします。
+	 */
+	@Test void 計算中のエラーと数式の誤りの両方がある数式のテスト() {
+		String[] formulas = { "4/0.*=67", "1/0+", "(5/0)+a", "2*(1/0", "1/0+2)" };
+		for (String formula : formulas) {
+			for (Parser parser : new Parser[] { SimpleFormulaParser.getParser(), LogicFormulaParser.getParser() }) {
+				ParseException expected = assertThrows(ParseException.class,
+						() -> parser.parseAndCalc(new FormulaItem(formula), Calculator.getCUICalc()), formula);
+				assertInstanceOf(IllegalArgumentException.class, expected.getCause(), formula);
+				this.assertSameError(expected, () -> parser.parseAndCalc(new StringReader(formula), Calculator.getCUICalc()), formula);
+			}
+		}
+		ParseException e = assertThrows(ParseException.class,
+				() -> LogicFormulaParser.getParser().parseAndCalc(new StringReader("1/0+2*3"), Calculator.getCUICalc()));
+		assertInstanceOf(ArithmeticException.class, e.getCause());
+	}
+
+	/**
+	 * Readerから読み込んで計算した場合に、文字列から計算した場合と同じエラーになるか確認します。
+	 * @param expected 文字列から計算した場合のエラー
+	 * @param executable Readerから読み込んで計算する処理
+	 * @param formula 数式
+	 */
+	private void assertSameError(ParseException expected, Executable executable, String formula) {
+		ParseException actual = assertThrows(ParseException.class, executable, formula);
+		assertEquals(expected.getCause().getClass(), actual.getCause().getClass(), formula);
+		assertEquals(expected.getCause().getMessage(), actual.getCause().getMessage(), formula);
+	}
+
+	/**
+	 * 文字列として保持しない非常に長い数式を、Readerから読み込んで計算できるかテストします。
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 非常に長い数式のテスト() throws IOException, ParseException {
+		int terms = 20_000_000;
+		Reader chain = new RepeatingReader("(((1", "+1", terms, ")*2)-3)/4");
+		assertEquals(((terms + 1) * 2.0 - 3) / 4, SimpleFormulaParser.getParser().parseAndCalc(chain, Calculator.getCUICalc()).get());
+		Reader terms2 = new RepeatingReader("0", "+2*3.5-1/4", terms / 4, "");
+		assertEquals((terms / 4) * 6.75, LogicFormulaParser.getParser().parseAndCalc(terms2, Calculator.getCUICalc()).get());
+	}
+
+	/**
+	 * チャネルから読み込んで計算できるかテストします。
+	 * @throws IOException 読み込み中にエラーが発生した場合
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void チャネルから読み込むテスト() throws IOException, ParseException {
+		ByteArrayInputStream input = new ByteArrayInputStream("12+2*4=この後は読み込みません".getBytes(StandardCharsets.UTF_8));
+		assertEquals(20.0, LogicFormulaParser.getParser().parseAndCalc(Channels.newChannel(input), StandardCharsets.UTF_8, Calculator.getCUICalc()).get());
+		assertEquals(56.0, SimpleFormulaParser.getParser().parseAndCalc(new StringReader("12+2*4"), Calculator.getCUICalc()).get());
+	}
+
+	/**
+	 * ランダムな数式を作成します。
+	 * @param random 乱数
+	 * @return 数式
+	 */
+	private String formula(Random random) {
+		StringBuilder builder = new StringBuilder();
+		int length = random.nextInt(12);
+		for (int i = 0; i < length; i++) {
+			if (random.nextInt(3) == 0) {
+				builder.append(TOKENS[random.nextInt(TOKENS.length)]);
+			} else {
+				if (random.nextInt(4) == 0) {
+					builder.append(random.nextBoolean() ? '-' : '+');
+				}
+				builder.append((random.nextInt(999) + 1) / Math.pow(10, random.nextInt(3)));
+				builder.append("+-*/".charAt(random.nextInt(4)));
+			}
+		}
+		builder.append(random.nextInt(100) + 1);
+		return builder.toString();
+	}
+
+	/**
+	 * 最初の文字列、同じ文字列の繰り返し、最後の文字列を順番に読み込むReaderです。数式全体を文字列として保持しません。
+	 */
+	private static class RepeatingReader extends Reader {
+
+		/**
+		 * 最初の文字列
+		 */
+		private final String head;
+
+		/**
+		 * 繰り返す文字列
+		 */
+		private final String body;
+
+		/**
+		 * 最後の文字列
+		 */
+		private final String tail;
+
+		/**
+		 * 繰り返す回数
+		 */
+		private final long count;
+
+		/**
+		 * 次に読み込む文字の位置
+		 */
+		private long position = 0;
+
+		/**
+		 * Readerを作成します。
+		 * @param head 最初の文字列
+		 * @param body 繰り返す文字列
+		 * @param count 繰り返す回数
+		 * @param tail 最後の文字列
+		 */
+		RepeatingReader(String head, String body, long count, String tail) {
+			this.head = head;
+			this.body = body;
+			this.count = count;
+			this.tail = tail;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) {
+			long bodyEnd = this.head.length() + this.body.length() * this.count;
+			long end = bodyEnd + this.tail.length();
+			int read = 0;
+			while ((read < length) && (this.position < end)) {
+				char c;
+				if (this.position < this.head.length()) {
+					c = this.head.charAt((int) this.position);
+				} else if (this.position < bodyEnd) {
+					c = this.body.charAt((int) ((this.position - this.head.length()) % this.body.length()));
+				} else {
+					c = this.tail.charAt((int) (this.position - bodyEnd));
+				}
+				buffer[offset + read++] = c;
+				this.position++;
+			}
+			return (read == 0) ? -1 : read;
+		}
+
+		@Override
+		public void close() {}
+
+	}
+
+}
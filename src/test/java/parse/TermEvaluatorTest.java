@@ -0,0 +1,106 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import calc.Calculator;
+import item.FormulaItem;
+import parse.AbstractParser.EvaluationOrder;
+
+/**
+ * 非常に長い数式を項ごとに複数のスレッドで分担して計算する{@link TermEvaluator}をテストするクラスです。
+ */
+public class TermEvaluatorTest {
+
+	/**
+	 * 四則演算を上書きした計算機です。複数のスレッドで分担せずに、命令列を先頭から順に実行します。
+	 */
+	private static final Calculator SEQUENTIAL = new Calculator() {
+		@Override
+		public double divide(double x, double y) {
+			return Calculator.super.divide(x, y);
+		}
+
+		@Override
+		public void display() {}
+	};
+
+	/**
+	 * 掛け算と割り算の項を足し引きした数式や、その数式全体を括弧で囲んだ数式が、命令列を先頭から順に実行した場合と同じ結果になるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 先頭から順に計算した場合との比較テスト() throws ParseException {
+		String terms = this.terms(new Random(0), 40000);
+		String[] formulas = { terms, "(" + terms + ")*2.5", "3-(" + terms + ")/(" + terms + "+1)", "2(" + terms + ")" };
+		for (EvaluationOrder order : EvaluationOrder.values()) {
+			for (String formula : formulas) {
+				CompiledFormula compiled = FormulaCompiler.compile(new FormulaItem(formula), order);
+				assertEquals(CompiledFormula.PARALLEL, compiled.isParallelTerms());
+				assertEquals(compiled.evaluate(SEQUENTIAL), compiled.evaluate(Calculator.getCUICalc()), order.toString());
+			}
+		}
+	}
+
+	/**
+	 * 途中の項で0で割る数式は、先頭から順に計算した場合と同じ例外がスローされるかテストします。
+	 */
+	@Test void 途中で計算できなくなる数式のテスト() {
+		Random random = new Random(1);
+		String formula = this.terms(random, 20000) + "+1/0+" + this.terms(random, 20000);
+		CompiledFormula compiled = assertDoesNotThrow(() -> FormulaCompiler.compile(new FormulaItem(formula), EvaluationOrder.OPERATOR_PRECEDENCE));
+		assertEquals(CompiledFormula.PARALLEL, compiled.isParallelTerms());
+		ParseException expected = assertThrows(ParseException.class, () -> compiled.evaluate(SEQUENTIAL));
+		ParseException actual = assertThrows(ParseException.class, () -> compiled.evaluate(Calculator.getCUICalc()));
+		assertEquals(expected.getCause().getClass(), actual.getCause().getClass());
+		assertEquals(expected.getCause().getMessage(), actual.getCause().getMessage());
+	}
+
+	/**
+	 * 括弧が深く入れ子になっていて、中も数字と演算子が交互に並んでいるだけで分担できない数式も、正しく計算できるかテストします。
+	 * @throws ParseException 数式が不正な場合
+	 */
+	@Test void 分担できない数式のテスト() throws ParseException {
+		StringBuilder formula = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			formula.append("1.5*(");
+		}
+		formula.append("1").append("+0.5".repeat(70000));
+		formula.append(")/1.5".repeat(1000));
+		CompiledFormula compiled = FormulaCompiler.compile(new FormulaItem(formula.toString()), EvaluationOrder.OPERATOR_PRECEDENCE);
+		assertEquals(CompiledFormula.PARALLEL, compiled.isParallelTerms());
+		assertEquals(compiled.evaluate(SEQUENTIAL), compiled.evaluate(Calculator.getCUICalc()));
+		assertFalse(FormulaCompiler.compile(new FormulaItem("1*2+3*4"), EvaluationOrder.OPERATOR_PRECEDENCE).isParallelTerms());
+	}
+
+	/**
+	 * 掛け算や割り算、括弧を含む項を足し引きした数式を作成します。
+	 * @param random 乱数
+	 * @param count 項の数
+	 * @return 数式
+	 */
+	private String terms(Random random, int count) {
+		StringBuilder formula = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				formula.append(random.nextBoolean() ? '+' : '-');
+			}
+			formula.append(random.nextInt(100)).append('.').append(random.nextInt(10));
+			switch (random.nextInt(3)) {
+				case 0:
+					formula.append('*').append(random.nextInt(9) + 1);
+					break;
+				case 1:
+					formula.append('/').append(random.nextInt(9) + 1).append(".5");
+					break;
+				default:
+					formula.append("*(").append(random.nextInt(10)).append('-').append(random.nextInt(10)).append(')');
+					break;
+			}
+		}
+		return formula.toString();
+	}
+
+}
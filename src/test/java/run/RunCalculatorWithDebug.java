@@ -8,6 +8,7 @@ import javax.swing.JDialog;
 import javax.swing.JLabel;
 import javax.swing.SwingUtilities;
 
+import calc.ArithmeticKernel;
 import calc.Calculator;
 import item.CalcResult;
 import item.FormulaItem;
@@ -31,7 +32,7 @@ public final class RunCalculatorWithDebug {
 		SimpleFormulaParser simpleFormulaParser = new SimpleFormulaParser() {
 
 			@Override
-			public CalcResult parseAndCalc(FormulaItem item, Calculator calc) throws ParseException {
+			public CalcResult parseAndCalc(FormulaItem item, ArithmeticKernel calc) throws ParseException {
 				item = this.parseAndCalc(item, calc, ParseMode.PARENTHESES);
 				return super.parseAndCalc(item, calc);
 			}
@@ -40,7 +41,7 @@ public final class RunCalculatorWithDebug {
 		LogicFormulaParser logicFormulaParser = new LogicFormulaParser() {
 
 			@Override
-			public CalcResult parseAndCalc(FormulaItem item, Calculator calc) throws ParseException {
+			public CalcResult parseAndCalc(FormulaItem item, ArithmeticKernel calc) throws ParseException {
 				item = this.parseAndCalc(item, calc, ParseMode.PARENTHESES);
 				return super.parseAndCalc(item, calc);
 			}